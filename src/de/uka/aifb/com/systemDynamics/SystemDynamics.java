@@ -22,6 +22,9 @@
 package de.uka.aifb.com.systemDynamics;
 
 import de.uka.aifb.com.systemDynamics.gui.MainFrame;
+import de.uka.aifb.com.systemDynamics.model.ExecutionEngine;
+import de.uka.aifb.com.systemDynamics.model.IntegrationMethod;
+import de.uka.aifb.com.systemDynamics.model.SimulationSpecification;
 import java.io.*;
 import java.util.*;
 import javax.swing.UIManager;
@@ -32,6 +35,7 @@ import javax.swing.UIManager;
  *
  * 2008-01-24: constructor was rewritten: additional code for Spanish GUI
  * 2008-01-24: storeNewLocale was rewritten: additional code for Spanish GUI
+ * 2026-10-16: constructor and storeNewLocale: additional code for execution engine
  */
 
 /**
@@ -47,6 +51,8 @@ public class SystemDynamics {
    private static final String SYSTEM_DYNAMICS_PROPERTIES_FILE = "systemDynamics.properties";
    
    private Locale locale;
+   private ExecutionEngine executionEngine;
+   private SimulationSpecification simulationSpecification;
    private ResourceBundle messages;
    
    /**
@@ -82,6 +88,100 @@ public class SystemDynamics {
       Locale.setDefault(locale);
       
       messages = ResourceBundle.getBundle(RESOURCE_BUNDLE, locale);
+      
+      // (3) execution engine
+      executionEngine = parseExecutionEngineProperty(properties);
+      
+      // (4) simulation specification
+      simulationSpecification = parseSimulationSpecificationProperties(properties);
+   }
+   
+   /**
+    * Loads the execution engine for model execution from the properties file. The interpreter is
+    * used if the properties file does not exist or does not contain a valid execution engine.
+    * 
+    * @return execution engine
+    */
+   public static ExecutionEngine loadExecutionEngine() {
+      Properties properties = new Properties();
+      try {
+         properties.load(new FileInputStream(SYSTEM_DYNAMICS_PROPERTIES_FILE));
+      } catch (IOException e) {
+         // do nothing
+      }
+      return parseExecutionEngineProperty(properties);
+   }
+   
+   /**
+    * Gets the execution engine from the specified properties (key 'executionEngine').
+    * 
+    * @param properties properties
+    * @return execution engine (interpreter if key is missing or invalid)
+    */
+   private static ExecutionEngine parseExecutionEngineProperty(Properties properties) {
+      String executionEngineString = properties.getProperty("executionEngine");
+      if (executionEngineString != null) {
+         try {
+            return ExecutionEngine.parseExecutionEngine(executionEngineString);
+         } catch (IllegalArgumentException e) {
+            // do nothing -> standard execution engine
+         }
+      }
+      return ExecutionEngine.INTERPRETER;
+   }
+   
+   /**
+    * Loads the simulation specification (time step and integration method) from the properties
+    * file. The default specification is used if the properties file does not exist or does not
+    * contain a valid specification.
+    * 
+    * @return simulation specification
+    */
+   public static SimulationSpecification loadSimulationSpecification() {
+      Properties properties = new Properties();
+      try {
+         properties.load(new FileInputStream(SYSTEM_DYNAMICS_PROPERTIES_FILE));
+      } catch (IOException e) {
+         // do nothing
+      }
+      return parseSimulationSpecificationProperties(properties);
+   }
+   
+   /**
+    * Gets the simulation specification from the specified properties (keys 'dt',
+    * 'integrationMethod', 'relativeTolerance' and 'absoluteTolerance').
+    * 
+    * @param properties properties
+    * @return simulation specification (default specification if a key is invalid, default value
+    *         for a missing key)
+    */
+   private static SimulationSpecification parseSimulationSpecificationProperties(Properties properties) {
+      String dtString = properties.getProperty("dt");
+      String integrationMethodString = properties.getProperty("integrationMethod");
+      String relativeToleranceString = properties.getProperty("relativeTolerance");
+      String absoluteToleranceString = properties.getProperty("absoluteTolerance");
+      try {
+         double dt = SimulationSpecification.DEFAULT.getDT();
+         if (dtString != null) {
+            dt = Double.parseDouble(dtString.trim());
+         }
+         IntegrationMethod integrationMethod = SimulationSpecification.DEFAULT.getIntegrationMethod();
+         if (integrationMethodString != null) {
+            integrationMethod = IntegrationMethod.parseIntegrationMethod(integrationMethodString);
+         }
+         double relativeTolerance = SimulationSpecification.DEFAULT_RELATIVE_TOLERANCE;
+         if (relativeToleranceString != null) {
+            relativeTolerance = Double.parseDouble(relativeToleranceString.trim());
+         }
+         double absoluteTolerance = SimulationSpecification.DEFAULT_ABSOLUTE_TOLERANCE;
+         if (absoluteToleranceString != null) {
+            absoluteTolerance = Double.parseDouble(absoluteToleranceString.trim());
+         }
+         return new SimulationSpecification(dt, integrationMethod, relativeTolerance, absoluteTolerance);
+      } catch (IllegalArgumentException e) {
+         // do nothing -> standard simulation specification
+      }
+      return SimulationSpecification.DEFAULT;
    }
    
    /**
@@ -93,6 +193,25 @@ public class SystemDynamics {
       return locale;
    }
    
+   /**
+    * Gets the execution engine used for model execution.
+    * 
+    * @return execution engine
+    */
+   public ExecutionEngine getExecutionEngine() {
+      return executionEngine;
+   }
+   
+   /**
+    * Gets the simulation specification (time step and integration method) used for model
+    * execution.
+    * 
+    * @return simulation specification
+    */
+   public SimulationSpecification getSimulationSpecification() {
+      return simulationSpecification;
+   }
+   
    /**
     * Stores the new locale of the application into preperties file but does not change GUI language
     * before restart.
@@ -108,9 +227,18 @@ public class SystemDynamics {
       // store to properties file
       Properties properties = new Properties();
       properties.setProperty("locale", newLocale.getLanguage() + "_" + newLocale.getCountry());
+      properties.setProperty("executionEngine", executionEngine.name().toLowerCase());
+      properties.setProperty("dt", Double.toString(simulationSpecification.getDT()));
+      properties.setProperty("integrationMethod", simulationSpecification.getIntegrationMethod().name().toLowerCase());
+      properties.setProperty("relativeTolerance", Double.toString(simulationSpecification.getRelativeTolerance()));
+      properties.setProperty("absoluteTolerance", Double.toString(simulationSpecification.getAbsoluteTolerance()));
       try {
          String comment = " GUI language for application SystemDynamics" + lineSeparator
                         + "# Key 'locale' can be either 'en_US' (US English), 'de_DE' (German) or 'es_ES' (Spanish)" + lineSeparator
+                        + "# Key 'executionEngine' can be either 'interpreter', 'compiled', 'bytecode', 'parallel' or 'change_propagation'" + lineSeparator
+                        + "# Key 'dt' is the time step (1 divided by a positive integer, e.g. 0.25), values are still reported once per round" + lineSeparator
+                        + "# Key 'integrationMethod' can be either 'euler', 'heun', 'rk4', 'dormand_prince' (adaptive, 'dt' is the initial time step), 'backward_euler' or 'bdf2' (implicit, for stiff models)" + lineSeparator
+                        + "# Keys 'relativeTolerance' and 'absoluteTolerance' are the error tolerances of 'dormand_prince'" + lineSeparator
                         + "#";
          properties.store(new FileOutputStream(SYSTEM_DYNAMICS_PROPERTIES_FILE), comment);
       } catch (IOException e) {
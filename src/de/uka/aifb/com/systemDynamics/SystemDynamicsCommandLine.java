@@ -25,8 +25,10 @@ import de.uka.aifb.com.systemDynamics.csv.CSVExport;
 import de.uka.aifb.com.systemDynamics.model.*;
 import de.uka.aifb.com.systemDynamics.xml.*;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.StringTokenizer;
 
 /**
@@ -43,6 +45,32 @@ public class SystemDynamicsCommandLine {
    public static boolean exportCSV;
    public static String exportFileName;
    
+   /** XML IDs of the level nodes to compute and export (<code>null</code>: all level nodes) */
+   public static String[] outputNodeIds;
+   
+   /** time step and integration method (the properties file's ones if not specified) */
+   public static SimulationSpecification simulationSpecification;
+   
+   /** step multiples of level nodes by XML ID (<code>null</code>: single-rate execution) */
+   public static HashMap<String, Integer> stepMultipleIds;
+   
+   /** compare the multirate execution with the single-rate execution? */
+   public static boolean compareWithSingleRate;
+   
+   /** compute the steady state directly instead of exporting the rounds? */
+   public static boolean computeSteadyState;
+   
+   /** linearize the model and print the eigenvalues instead of exporting the rounds? */
+   public static boolean linearize;
+   
+   /** method for computing the Jacobian of the linearization */
+   public static JacobianMethod jacobianMethod = JacobianMethod.FORMULAS;
+   
+   /** single-rate execution for the comparison with the multirate execution */
+   private static Model singleRateModel;
+   private static LevelNode[] singleRateLevelNodes;
+   private static double[] maximumDeviations;
+   
    /**
     * Constructor.
     * 
@@ -114,10 +142,56 @@ public class SystemDynamicsCommandLine {
          System.exit(1);
       }
       
-      // (4) execute model and export values
-      LevelNode[] levelNodes = model.getLevelNodes().toArray(new LevelNode[0]);
+      // (4) execute model (using the configured execution engine) and export values
+      LevelNode[] levelNodes;
+      if (outputNodeIds == null) {
+         levelNodes = model.getLevelNodes().toArray(new LevelNode[0]);
+      } else {
+         // only compute the nodes the output nodes depend on
+         levelNodes = getOutputNodes(model, levelNodeMap);
+         int numberOfEvaluatedNodes = model.getNumberOfEvaluatedNodes();
+         model.setOutputNodes(Arrays.asList(levelNodes));
+         System.out.println("Model sliced: " + model.getNumberOfEvaluatedNodes() + " of "
+                            + numberOfEvaluatedNodes + " nodes are computed in each round.");
+      }
+      if (simulationSpecification == null) {
+         simulationSpecification = SystemDynamics.loadSimulationSpecification();
+      }
+      model.setSimulationSpecification(simulationSpecification);
+      if (!simulationSpecification.isDefault()) {
+         System.out.println("Simulation: " + simulationSpecification + " (values reported once per round).");
+      }
+      if (computeSteadyState) {
+         printSteadyState(model, levelNodes);
+         if (!linearize) {
+            return levelNodeMap;
+         }
+      }
+      if (linearize) {
+         // at the steady state if computed, otherwise at the initial values
+         printLinearization(model);
+         return levelNodeMap;
+      }
+      ModelExecutor executor;
+      if (stepMultipleIds == null) {
+         ExecutionEngine executionEngine = SystemDynamics.loadExecutionEngine();
+         if (!executionEngine.supports(simulationSpecification)) {
+            System.out.println("Execution engine: interpreter (the " + executionEngine.name().toLowerCase()
+                               + " engine does not support " + simulationSpecification + ").");
+         }
+         executor = executionEngine.createModelExecutor(model);
+      } else {
+         if (!simulationSpecification.isDefault()) {
+            System.out.println("ERROR: Multirate execution requires the Euler method with DT = 1.");
+            System.exit(1);
+         }
+         executor = new MultirateModel(model, getLevelNodeStepMultiples(model, levelNodeMap));
+      }
       // sort level nodes alphabetically
       Arrays.sort(levelNodes);
+      if (stepMultipleIds != null && compareWithSingleRate) {
+         prepareSingleRateRun(levelNodes);
+      }
       
       try {
          if (exportCSV) {
@@ -134,7 +208,7 @@ public class SystemDynamicsCommandLine {
             
             double[] values = new double[levelNodes.length];
             for (int j = 0; j < values.length; j++) {
-               values[j] = levelNodes[j].getCurrentValue();
+               values[j] = executor.getCurrentValue(levelNodes[j]);
             }
             csvExport.write(values);
             for (int i = 0; i < numberRounds; i++) {
@@ -148,12 +222,13 @@ public class SystemDynamicsCommandLine {
                   }
                   System.out.print(percent + "%");
                }
-               model.computeNextValues();
+               executor.computeNextValues();
                values = new double[levelNodes.length];
                for (int j = 0; j < values.length; j++) {
-                  values[j] = levelNodes[j].getCurrentValue();
+                  values[j] = executor.getCurrentValue(levelNodes[j]);
                }
                csvExport.write(values);
+               compareWithSingleRateRun(values);
             }
             csvExport.close();
          } else {
@@ -170,7 +245,7 @@ public class SystemDynamicsCommandLine {
             
             double[] values = new double[levelNodes.length];
             for (int j = 0; j < values.length; j++) {
-               values[j] = levelNodes[j].getCurrentValue();
+               values[j] = executor.getCurrentValue(levelNodes[j]);
             }
             xmlExport.write(values);
             for (int i = 0; i < numberRounds; i++) {
@@ -184,25 +259,199 @@ public class SystemDynamicsCommandLine {
                   }
                   System.out.print(percent + "%");
                }
-               model.computeNextValues();
+               executor.computeNextValues();
                values = new double[levelNodes.length];
                for (int j = 0; j < values.length; j++) {
-                  values[j] = levelNodes[j].getCurrentValue();
+                  values[j] = executor.getCurrentValue(levelNodes[j]);
                }
                xmlExport.write(values);
+               compareWithSingleRateRun(values);
             }
             xmlExport.close();
          }
       } catch (IOException e) {
          System.out.println("ERROR: An IOException occured during export.");
          System.exit(1);
+      } catch (ArithmeticException e) {
+         // implicit integration method failed
+         System.out.println();
+         System.out.println("ERROR: " + e.getMessage());
+         System.exit(1);
       }
       
       System.out.println();
       System.out.println("Export finished successfully.");
+      if (simulationSpecification.isAdaptive()) {
+         System.out.println("Time steps: " + model.getNumberOfAcceptedSteps() + " accepted, "
+                            + model.getNumberOfRejectedSteps() + " rejected.");
+      }
+      if (executor instanceof MultirateModel) {
+         MultirateModel multirateModel = (MultirateModel)executor;
+         long numberOfSingleRateEvaluations = multirateModel.getNumberOfEvaluations()
+                                              + multirateModel.getNumberOfSkippedEvaluations();
+         System.out.println("Multirate: " + multirateModel.getNumberOfEvaluations() + " of "
+                            + numberOfSingleRateEvaluations + " node evaluations computed.");
+         if (singleRateModel != null) {
+            System.out.println("Maximum absolute deviations from the single-rate execution:");
+            for (int i = 0; i < levelNodes.length; i++) {
+               System.out.println("   " + levelNodes[i].getNodeName() + ": " + maximumDeviations[i]);
+            }
+         }
+      }
       return levelNodeMap;
    }
    
+   /**
+    * Computes the steady state of the model directly (the number of rounds is the maximum number of
+    * rounds of the time stepping fallback) and prints the values of the specified level nodes.
+    * 
+    * @param model model
+    * @param levelNodes level nodes to print
+    */
+   private static void printSteadyState(Model model, LevelNode[] levelNodes) {
+      SteadyState steadyState = model.computeSteadyState(Model.DEFAULT_STEADY_STATE_TOLERANCE, numberRounds);
+      if (steadyState.isConverged()) {
+         System.out.println("Steady state found: " + steadyState.getNumberOfIterations()
+                            + " Newton/Broyden iterations, " + steadyState.getNumberOfRounds()
+                            + " rounds of time stepping.");
+      } else {
+         System.out.println("ERROR: No steady state found within " + numberRounds
+                            + " rounds of time stepping, last approximation:");
+      }
+      Arrays.sort(levelNodes);
+      for (LevelNode levelNode : levelNodes) {
+         System.out.println("   " + levelNode.getNodeName() + ": " + steadyState.getValue(levelNode));
+      }
+      System.out.println("Maximum absolute net flow: " + steadyState.getResidual());
+      if (!steadyState.isConverged()) {
+         System.exit(1);
+      }
+   }
+   
+   /**
+    * Linearizes the model at the level nodes' current values and prints the eigenvalues of the
+    * Jacobian with their time constants and oscillation periods.
+    * 
+    * @param model model
+    */
+   private static void printLinearization(Model model) {
+      LinearizationAnalysis analysis =
+         new LinearizationAnalysis(model, jacobianMethod, Runtime.getRuntime().availableProcessors());
+      System.out.println("Linearization: " + analysis.getLevelNodes().size() + " level nodes, "
+                         + analysis.getNumberOfNonZeroEntries() + " non-zero Jacobian entries, "
+                         + analysis.getNumberOfBlocks() + " blocks (largest: "
+                         + analysis.getLargestBlockSize() + " level nodes).");
+      System.out.println("Eigenvalues (time constant and oscillation period in rounds):");
+      for (int i = 0; i < analysis.getNumberOfEigenvalues(); i++) {
+         double imaginaryPart = analysis.getEigenvalueImaginaryPart(i);
+         String eigenvalue = String.valueOf(analysis.getEigenvalueRealPart(i));
+         if (imaginaryPart != 0) {
+            eigenvalue += ((imaginaryPart > 0) ? " + " : " - ") + Math.abs(imaginaryPart) + "i";
+         }
+         System.out.println("   " + eigenvalue + ": time constant " + analysis.getTimeConstant(i)
+                            + ", period " + analysis.getOscillationPeriod(i));
+      }
+      System.out.println("Stable: " + analysis.isStable() + ", rounds stable: "
+                         + analysis.isRoundMapStable() + ", oscillating: " + analysis.isOscillating());
+   }
+   
+   /**
+    * Gets the step multiples of the level nodes specified by the parameter [--rates]. As the model
+    * only knows the node names, all level nodes with the name of a specified ID get the step
+    * multiple.
+    * 
+    * @param model model
+    * @param levelNodeMap XML ID to name mapping of the level nodes
+    * @return step multiples of level nodes
+    */
+   private static HashMap<LevelNode, Integer> getLevelNodeStepMultiples(Model model,
+                                                                        HashMap<String, String> levelNodeMap) {
+      HashMap<LevelNode, Integer> levelNodeStepMultiples = new HashMap<LevelNode, Integer>();
+      for (String id : stepMultipleIds.keySet()) {
+         String nodeName = levelNodeMap.get(id);
+         if (nodeName == null) {
+            System.out.println("ERROR: The model has no level node with the ID " + id + ".");
+            System.exit(1);
+         }
+         for (LevelNode levelNode : model.getLevelNodes()) {
+            if (levelNode.getNodeName().equals(nodeName)) {
+               levelNodeStepMultiples.put(levelNode, stepMultipleIds.get(id));
+            }
+         }
+      }
+      return levelNodeStepMultiples;
+   }
+   
+   /**
+    * Reads the model a second time for the single-rate execution the multirate execution is
+    * compared with.
+    * 
+    * @param levelNodes exported level nodes of the multirate execution (sorted alphabetically)
+    */
+   private static void prepareSingleRateRun(LevelNode[] levelNodes) {
+      try {
+         singleRateModel = XMLModelReader.readXMLModel(xmlModelFileName);
+         singleRateModel.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         System.out.println("ERROR: The model could not be read for the single-rate execution.");
+         System.exit(1);
+      }
+      
+      // level nodes with the same names (in the same order)
+      HashMap<String, LevelNode> name2levelNode = new HashMap<String, LevelNode>();
+      for (LevelNode levelNode : singleRateModel.getLevelNodes()) {
+         name2levelNode.put(levelNode.getNodeName(), levelNode);
+      }
+      singleRateLevelNodes = new LevelNode[levelNodes.length];
+      for (int i = 0; i < levelNodes.length; i++) {
+         singleRateLevelNodes[i] = name2levelNode.get(levelNodes[i].getNodeName());
+      }
+      maximumDeviations = new double[levelNodes.length];
+   }
+   
+   /**
+    * Computes the next round of the single-rate execution (if the multirate execution is compared
+    * with it) and updates the maximum deviations.
+    * 
+    * @param values values of the multirate execution in this round
+    */
+   private static void compareWithSingleRateRun(double[] values) {
+      if (singleRateModel == null) {
+         return;
+      }
+      
+      singleRateModel.computeNextValues();
+      for (int i = 0; i < values.length; i++) {
+         double deviation = Math.abs(values[i] - singleRateModel.getCurrentValue(singleRateLevelNodes[i]));
+         maximumDeviations[i] = Math.max(maximumDeviations[i], deviation);
+      }
+   }
+   
+   /**
+    * Gets the level nodes with the XML IDs specified by the parameter [-n|--nodes]. As the model
+    * only knows the node names, all level nodes with the name of a specified ID are returned.
+    * 
+    * @param model model
+    * @param levelNodeMap XML ID to name mapping of the level nodes
+    * @return output nodes
+    */
+   private static LevelNode[] getOutputNodes(Model model, HashMap<String, String> levelNodeMap) {
+      LinkedHashSet<LevelNode> outputNodes = new LinkedHashSet<LevelNode>();
+      for (String outputNodeId : outputNodeIds) {
+         String nodeName = levelNodeMap.get(outputNodeId);
+         if (nodeName == null) {
+            System.out.println("ERROR: The model has no level node with the ID " + outputNodeId + ".");
+            System.exit(1);
+         }
+         for (LevelNode levelNode : model.getLevelNodes()) {
+            if (levelNode.getNodeName().equals(nodeName)) {
+               outputNodes.add(levelNode);
+            }
+         }
+      }
+      return outputNodes.toArray(new LevelNode[0]);
+   }
+   
    public static String doMain(String[] args,int run)
    {
 	   String modelName = null;   
@@ -283,6 +532,9 @@ public class SystemDynamicsCommandLine {
    public static void main(String[] args) throws Exception {
 	   
 	   HashMap<String,String> levelNodeMap;
+	   args = extractOutputNodeIds(args);
+	   args = extractSimulationSpecification(args);
+	   args = extractStepMultipleIds(args);
 	   if(args.length==8){
 		   System.out.println("Simulating default System Dynamics");
 		   SystemDynamicsCommandLine.numberRounds = getNumberRounds(args);
@@ -387,10 +639,180 @@ public class SystemDynamicsCommandLine {
       System.out.println("     one of [cvs|xml]: CVS or XML export of execution values");
       System.out.println("   [-o|--output]");
       System.out.println("     output file for execution values");
+      System.out.println("   [-n|--nodes] <level_node_id>,<level_node_id>,...");
+      System.out.println("     optional: only computes and exports the specified level nodes (XML IDs)");
+      System.out.println("   [-d|--dt] <time_step>");
+      System.out.println("     optional: time step (1 divided by a positive integer, e.g. 0.25), values are still exported once per round");
+      System.out.println("   [-i|--integration] [euler|heun|rk4|dormand_prince|backward_euler|bdf2]");
+      System.out.println("     optional: integration method of the level nodes (dormand_prince: adaptive time steps, dt is the initial one;");
+      System.out.println("     backward_euler and bdf2: implicit methods for stiff models)");
+      System.out.println("   [--rtol] <relative_tolerance> [--atol] <absolute_tolerance>");
+      System.out.println("     optional: error tolerances of the adaptive integration method");
+      System.out.println("   [--rates] <level_node_id>=<step_multiple>,...");
+      System.out.println("     optional: multirate execution, the level nodes are only advanced every <step_multiple> rounds");
+      System.out.println("   [--compare]");
+      System.out.println("     optional: prints the maximum deviations of the multirate from the single-rate execution");
+      System.out.println("   [--steady-state]");
+      System.out.println("     optional: computes and prints the steady state (all net flows 0) instead of exporting the rounds,");
+      System.out.println("     <number_rounds> is the maximum number of rounds of the time stepping fallback");
+      System.out.println("   [--linearize] [--jacobian] [formulas|finite_differences]");
+      System.out.println("     optional: prints the eigenvalues, time constants and oscillation periods of the model linearized");
+      System.out.println("     at the initial values (at the steady state together with --steady-state) instead of exporting the rounds");
       System.out.println("  [-h]");
       System.out.println("	Hiring  Parameters for this round");
    }
    
+   /**
+    * Removes the optional parameter [-n|--nodes] (comma separated XML IDs of the level nodes to
+    * compute and export) from the command line arguments and stores the XML IDs.
+    * 
+    * @param args command line arguments
+    * @return command line arguments without the parameter [-n|--nodes]
+    */
+   private static String[] extractOutputNodeIds(String[] args) {
+      if (args == null) {
+         throw new IllegalArgumentException("'args' must not be null.");
+      }
+      
+      ArrayList<String> remainingArgs = new ArrayList<String>();
+      for (int i = 0; i < args.length; i++) {
+         if ((args[i].equals("-n") || args[i].equals("--nodes")) && i + 1 < args.length) {
+            ArrayList<String> ids = new ArrayList<String>();
+            for (String id : args[++i].split(",")) {
+               if (id.trim().length() > 0) {
+                  ids.add(id.trim());
+               }
+            }
+            outputNodeIds = ids.toArray(new String[0]);
+         } else {
+            remainingArgs.add(args[i]);
+         }
+      }
+      return remainingArgs.toArray(new String[0]);
+   }
+   
+   /**
+    * Removes the optional parameters [-d|--dt] (time step), [-i|--integration] (integration
+    * method), [--rtol] and [--atol] (tolerances of the adaptive integration method) from the
+    * command line arguments and stores the simulation specification. Missing parameters are taken
+    * from the properties file.
+    * 
+    * @param args command line arguments
+    * @return command line arguments without the simulation specification parameters
+    */
+   private static String[] extractSimulationSpecification(String[] args) {
+      if (args == null) {
+         throw new IllegalArgumentException("'args' must not be null.");
+      }
+      
+      SimulationSpecification defaultSpecification = SystemDynamics.loadSimulationSpecification();
+      double dt = defaultSpecification.getDT();
+      IntegrationMethod integrationMethod = defaultSpecification.getIntegrationMethod();
+      double relativeTolerance = defaultSpecification.getRelativeTolerance();
+      double absoluteTolerance = defaultSpecification.getAbsoluteTolerance();
+      boolean isSpecified = false;
+      
+      ArrayList<String> remainingArgs = new ArrayList<String>();
+      try {
+         for (int i = 0; i < args.length; i++) {
+            if ((args[i].equals("-d") || args[i].equals("--dt")) && i + 1 < args.length) {
+               try {
+                  dt = Double.parseDouble(args[++i]);
+               } catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("Invalid time step '" + args[i] + "'.");
+               }
+               isSpecified = true;
+            } else if ((args[i].equals("-i") || args[i].equals("--integration")) && i + 1 < args.length) {
+               integrationMethod = IntegrationMethod.parseIntegrationMethod(args[++i]);
+               isSpecified = true;
+            } else if ((args[i].equals("--rtol") || args[i].equals("--atol")) && i + 1 < args.length) {
+               double tolerance;
+               try {
+                  tolerance = Double.parseDouble(args[i + 1]);
+               } catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("Invalid tolerance '" + args[i + 1] + "'.");
+               }
+               if (args[i++].equals("--rtol")) {
+                  relativeTolerance = tolerance;
+               } else {
+                  absoluteTolerance = tolerance;
+               }
+               isSpecified = true;
+            } else {
+               remainingArgs.add(args[i]);
+            }
+         }
+         if (isSpecified) {
+            simulationSpecification = new SimulationSpecification(dt, integrationMethod,
+                                                                  relativeTolerance, absoluteTolerance);
+         }
+      } catch (IllegalArgumentException e) {
+         // wrong parameters -> show help
+         System.out.println("ERROR: " + e.getMessage());
+         printHelp();
+         
+         // exit program
+         System.exit(1);
+      }
+      return remainingArgs.toArray(new String[0]);
+   }
+   
+   /**
+    * Removes the optional parameters [--rates] (comma separated step multiples of level nodes as
+    * XML ID=step multiple), [--compare], [--steady-state], [--linearize] and [--jacobian] (Jacobian
+    * method) from the command line arguments and stores them.
+    * 
+    * @param args command line arguments
+    * @return command line arguments without the parameters [--rates], [--compare],
+    *         [--steady-state], [--linearize] and [--jacobian]
+    */
+   private static String[] extractStepMultipleIds(String[] args) {
+      if (args == null) {
+         throw new IllegalArgumentException("'args' must not be null.");
+      }
+      
+      ArrayList<String> remainingArgs = new ArrayList<String>();
+      for (int i = 0; i < args.length; i++) {
+         if (args[i].equals("--rates") && i + 1 < args.length) {
+            stepMultipleIds = new HashMap<String, Integer>();
+            for (String stepMultipleId : args[++i].split(",")) {
+               String[] parts = stepMultipleId.split("=");
+               int stepMultiple = 0;
+               if (parts.length == 2) {
+                  try {
+                     stepMultiple = Integer.parseInt(parts[1].trim());
+                  } catch (NumberFormatException e) {
+                     // do nothing -> error message below
+                  }
+               }
+               if (stepMultiple < 1) {
+                  System.out.println("ERROR: Invalid step multiple '" + stepMultipleId + "'.");
+                  printHelp();
+                  System.exit(1);
+               }
+               stepMultipleIds.put(parts[0].trim(), stepMultiple);
+            }
+         } else if (args[i].equals("--compare")) {
+            compareWithSingleRate = true;
+         } else if (args[i].equals("--steady-state")) {
+            computeSteadyState = true;
+         } else if (args[i].equals("--linearize")) {
+            linearize = true;
+         } else if (args[i].equals("--jacobian") && i + 1 < args.length) {
+            try {
+               jacobianMethod = JacobianMethod.parseJacobianMethod(args[++i]);
+            } catch (IllegalArgumentException e) {
+               System.out.println("ERROR: Invalid Jacobian method '" + args[i] + "'.");
+               printHelp();
+               System.exit(1);
+            }
+         } else {
+            remainingArgs.add(args[i]);
+         }
+      }
+      return remainingArgs.toArray(new String[0]);
+   }
+   
    /**
     * Gets the model file name out of the command line arguments.
     * <p>
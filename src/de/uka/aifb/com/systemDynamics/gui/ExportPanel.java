@@ -45,14 +45,14 @@ public class ExportPanel extends JPanel implements ActionListener,
 
    private static final long serialVersionUID = 1L;
    
-   private static final String TEMP_MODEL_FILE_NAME = "temp_model.xml";
-   
    private Locale locale;
    private ResourceBundle messages;
 
    private NumberFormat integerNumberFormatter;
    
    private Model model;
+   private ExecutionEngine executionEngine;
+   private SimulationSpecification simulationSpecification;
    
    private JTextField numberRoundsField;
    private JButton csvExportButton;
@@ -78,6 +78,8 @@ public class ExportPanel extends JPanel implements ActionListener,
       }
       
       this.model = model;
+      executionEngine = start.getExecutionEngine();
+      simulationSpecification = start.getSimulationSpecification();
       
       locale = start.getLocale();
       messages = start.getMessages();
@@ -204,11 +206,10 @@ public class ExportPanel extends JPanel implements ActionListener,
       
       // (3) export
       
-      // "clone" model
+      // clone model (in memory), so that the user can go on changing the model during the export
       Model clonedModel;
       try {
-         XMLModelWriter.writeXMLModel(model, TEMP_MODEL_FILE_NAME);
-         clonedModel = XMLModelReader.readXMLModel(TEMP_MODEL_FILE_NAME);
+         clonedModel = model.deepCopy();
          clonedModel.validateModelAndSetUnchangeable();
       } catch (Exception excep) {
          JOptionPane.showMessageDialog(this,
@@ -219,7 +220,6 @@ public class ExportPanel extends JPanel implements ActionListener,
          // exit method
          return;
       }
-      new File(TEMP_MODEL_FILE_NAME).delete();
       
       if (e.getSource() == csvExportButton) {
          // (3a) CSV export
@@ -340,6 +340,8 @@ public class ExportPanel extends JPanel implements ActionListener,
          csvExportButton.setEnabled(false);
          setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
          
+         model.setSimulationSpecification(simulationSpecification);
+         ModelExecutor modelExecutor = executionEngine.createModelExecutor(model);
          LevelNode[] levelNodes = model.getLevelNodes().toArray(new LevelNode[0]);
          // sort level nodes alphabetically
          Arrays.sort(levelNodes);
@@ -357,7 +359,7 @@ public class ExportPanel extends JPanel implements ActionListener,
 
             double[] values = new double[levelNodes.length];
             for (int j = 0; j < values.length; j++) {
-               values[j] = levelNodes[j].getCurrentValue();
+               values[j] = modelExecutor.getCurrentValue(levelNodes[j]);
             }
             csvExport.write(values);
             progressMonitor.setNote(numberFormatter.format(0) + " " + messages.getString("ExportModelExecutionThread.ProgressMonitor.Note.Text1") + " " + numberFormatter.format(numberRounds) + " " + messages.getString("ExportModelExecutionThread.ProgressMonitor.Note.Text2"));
@@ -368,10 +370,10 @@ public class ExportPanel extends JPanel implements ActionListener,
                   canceled = true;
                   break;
                }
-               model.computeNextValues();
+               modelExecutor.computeNextValues();
                values = new double[levelNodes.length];
                for (int j = 0; j < values.length; j++) {
-                  values[j] = levelNodes[j].getCurrentValue();
+                  values[j] = modelExecutor.getCurrentValue(levelNodes[j]);
                }
                csvExport.write(values);
                progressMonitor.setNote(numberFormatter.format(i) + " " + messages.getString("ExportModelExecutionThread.ProgressMonitor.Note.Text1") + " " + numberFormatter.format(numberRounds) + " " + messages.getString("ExportModelExecutionThread.ProgressMonitor.Note.Text2"));
@@ -462,6 +464,8 @@ public class ExportPanel extends JPanel implements ActionListener,
          xmlExportButton.setEnabled(false);
          setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
          
+         model.setSimulationSpecification(simulationSpecification);
+         ModelExecutor modelExecutor = executionEngine.createModelExecutor(model);
          LevelNode[] levelNodes = model.getLevelNodes().toArray(new LevelNode[0]);
          // sort level nodes alphabetically
          Arrays.sort(levelNodes);
@@ -479,7 +483,7 @@ public class ExportPanel extends JPanel implements ActionListener,
 
             double[] values = new double[levelNodes.length];
             for (int j = 0; j < values.length; j++) {
-               values[j] = levelNodes[j].getCurrentValue();
+               values[j] = modelExecutor.getCurrentValue(levelNodes[j]);
             }
             xmlExport.write(values);
             progressMonitor.setNote(numberFormatter.format(0) + " " + messages.getString("ExportModelExecutionThread.ProgressMonitor.Note.Text1") + " " + numberFormatter.format(numberRounds) + " " + messages.getString("ExportModelExecutionThread.ProgressMonitor.Note.Text2"));
@@ -501,10 +505,10 @@ public class ExportPanel extends JPanel implements ActionListener,
                   
                   return;
                }
-               model.computeNextValues();
+               modelExecutor.computeNextValues();
                values = new double[levelNodes.length];
                for (int j = 0; j < values.length; j++) {
-                  values[j] = levelNodes[j].getCurrentValue();
+                  values[j] = modelExecutor.getCurrentValue(levelNodes[j]);
                }
                xmlExport.write(values);
                progressMonitor.setNote(numberFormatter.format(i) + " " + messages.getString("ExportModelExecutionThread.ProgressMonitor.Note.Text1") + " " + numberFormatter.format(numberRounds) + " " + messages.getString("ExportModelExecutionThread.ProgressMonitor.Note.Text2"));
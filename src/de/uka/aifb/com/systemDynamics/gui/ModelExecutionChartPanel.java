@@ -60,6 +60,7 @@ public class ModelExecutionChartPanel extends JPanel implements FocusListener {
    private NumberFormat integerNumberFormatter;
    
    private Model model;
+   private ModelExecutor modelExecutor;
    private LevelNode[] levelNodes;
    
    private XYSeries[] xySeriesArray;
@@ -73,7 +74,8 @@ public class ModelExecutionChartPanel extends JPanel implements FocusListener {
     * Constructor.
     * 
     * @param start {@link de.uka.aifb.com.systemDynamics.SystemDynamics} instance
-    * @param model {@link de.uka.aifb.com.systemDynamics.model.Model} instance
+    * @param model {@link de.uka.aifb.com.systemDynamics.model.Model} instance (valid, the panel
+    *              executes an in-memory copy of it)
     */
    public ModelExecutionChartPanel(SystemDynamics start, Model model) {
       super(null);
@@ -85,7 +87,16 @@ public class ModelExecutionChartPanel extends JPanel implements FocusListener {
          throw new IllegalArgumentException("'model' must not be null");
       }
       
-      this.model = model;
+      // execute a copy (in memory), so that the execution never works on the live model
+      this.model = model.deepCopy();
+      this.model.setSimulationSpecification(start.getSimulationSpecification());
+      try {
+         this.model.validateModelAndSetUnchangeable();
+      } catch (ModelValidationException e) {
+         // cannot happen: the copy of a valid model is valid
+         throw new Error(e);
+      }
+      modelExecutor = start.getExecutionEngine().createModelExecutor(this.model);
       
       locale = start.getLocale();
       messages = start.getMessages();
@@ -268,7 +279,7 @@ public class ModelExecutionChartPanel extends JPanel implements FocusListener {
       XYSeriesCollection data = new XYSeriesCollection();
       for (i = 0; i < xySeriesArray.length; i++) {
          XYSeries xySeries = new XYSeries(levelNodes[i].getNodeName());
-         xySeries.add(0.0, levelNodes[i].getCurrentValue());
+         xySeries.add(0.0, modelExecutor.getCurrentValue(levelNodes[i]));
          data.addSeries(xySeries);
          xySeriesArray[i] = xySeries;
       }
@@ -494,9 +505,9 @@ public class ModelExecutionChartPanel extends JPanel implements FocusListener {
             }
             progressMonitor.setNote(numberFormatter.format(i) + " " + messages.getString("ModelExecutionThread.ProgressMonitor.Note.Text1") + " " + numberFormatter.format(numberRounds) + " " + messages.getString("ModelExecutionThread.ProgressMonitor.Note.Text2"));
             progressMonitor.setProgress(i);
-            model.computeNextValues();
+            modelExecutor.computeNextValues();
             for (int j = 0; j < xySeriesArray.length; j++) {
-               xySeriesArray[j].add(nextRound, levelNodes[j].getCurrentValue());
+               xySeriesArray[j].add(nextRound, modelExecutor.getCurrentValue(levelNodes[j]));
             }
             nextRound++;
          }
@@ -458,8 +458,10 @@ public class SystemDynamicsGraph extends JGraph implements GraphModelListener {
       }
       
       // check if all formula nodes are part of this graph
+      HashSet<AbstractNode> formulaNodes = new HashSet<AbstractNode>();
       if (formula != null) {
-         for (AbstractNode node : formula.getAllNodesInASTSubtree()) {
+         new ASTDependencyCollector().collectNodes(formula, formulaNodes);
+         for (AbstractNode node : formulaNodes) {
             if (modelNode2graphNode.get(node) == null) {
                // formula node not in graph -> WRONG!
                return false;
@@ -472,11 +474,9 @@ public class SystemDynamicsGraph extends JGraph implements GraphModelListener {
       
       // remove old dependency edges and add new ones
       removeIncomingDependencyEdges(vertex);
-      if (formula != null) {
-         for (AbstractNode node : formula.getAllNodesInASTSubtree()) {
-            if (node != graphNode2modelNode.get(vertex)) {
-               addDependencyEdge(modelNode2graphNode.get(node), vertex, addAdditionalPoint);
-            }
+      for (AbstractNode node : formulaNodes) {
+         if (node != graphNode2modelNode.get(vertex)) {
+            addDependencyEdge(modelNode2graphNode.get(node), vertex, addAdditionalPoint);
          }
       }
       
@@ -1227,6 +1227,13 @@ public class SystemDynamicsGraph extends JGraph implements GraphModelListener {
                                  initialFormula,
                                  id2auxiliaryNode, id2constantNode, id2levelNode);
                         if (newFormula.wasNewFormulaEntered()) {
+                           if (model.createsAuxiliaryNodesCycleDependency(node, newFormula.getFormula())) {
+                              JOptionPane.showMessageDialog(null,
+                                    messages.getString("SystemDynamicsGraph.ChangeFormula.AuxiliaryNodesCycleDependency.ErrorMessage"),
+                                    messages.getString("SystemDynamicsGraph.ChangeFormula.AuxiliaryNodesCycleDependency"),
+                                    JOptionPane.ERROR_MESSAGE);
+                              return;
+                           }
                            if (cell instanceof AuxiliaryNodeGraphCell) {
                               setFormula((AuxiliaryNodeGraphCell)cell, newFormula.getFormula(), true);
                            } else {
@@ -0,0 +1,251 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class copies formulas for a copy of their model (see {@link Model#deepCopy(Map)}): the
+ * nodes are replaced by their copies, the operations are copied and the literals are shared (AST
+ * elements are immutable).
+ * <p>
+ * Subtrees shared between the copied formulas (see {@link ASTInterner}) are copied only once, so
+ * they are shared between the copies, too.
+ *
+ * @version 1.0
+ */
+class ASTCopier implements ASTVisitor {
+   
+   /** copy of each node of the original model */
+   private Map<AbstractNode, AbstractNode> node2copy;
+   
+   /** copy of each already copied operation */
+   private IdentityHashMap<ASTElement, ASTElement> operation2copy;
+   
+   /** copy of the last visited AST element */
+   private ASTElement result;
+   
+   /**
+    * Constructor.
+    * 
+    * @param node2copy copy of each node of the original model
+    */
+   ASTCopier(Map<AbstractNode, AbstractNode> node2copy) {
+      if (node2copy == null) {
+         throw new IllegalArgumentException("'node2copy' must not be null.");
+      }
+      
+      this.node2copy = node2copy;
+      operation2copy = new IdentityHashMap<ASTElement, ASTElement>();
+   }
+   
+   /**
+    * Returns a copy of the specified formula referring to the nodes' copies.
+    * 
+    * @param formula formula
+    * @return copy of the formula
+    */
+   ASTElement copy(ASTElement formula) {
+      if (formula == null) {
+         throw new IllegalArgumentException("'formula' must not be null.");
+      }
+      
+      ASTElement copiedFormula = copyElement(formula);
+      result = null;
+      return copiedFormula;
+   }
+   
+   /**
+    * Returns a copy of the specified AST element.
+    * 
+    * @param element AST element
+    * @return copy of the AST element
+    */
+   private ASTElement copyElement(ASTElement element) {
+      ASTElement copy = operation2copy.get(element);
+      if (copy == null) {
+         element.accept(this);
+         copy = result;
+         operation2copy.put(element, copy);
+      }
+      return copy;
+   }
+   
+   /**
+    * Returns copies of the specified operands.
+    * 
+    * @param operands operands
+    * @return copies of the operands
+    */
+   private ASTElement[] copyElements(ASTElement[] operands) {
+      ASTElement[] copies = new ASTElement[operands.length];
+      for (int i = 0; i < operands.length; i++) {
+         copies[i] = copyElement(operands[i]);
+      }
+      return copies;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ASTVisitor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Copies an addition.
+    * 
+    * @param astPlus addition
+    */
+   public void visit(ASTPlus astPlus) {
+      result = new ASTPlus(copyElement(astPlus.getLeftElement()), copyElement(astPlus.getRightElement()));
+   }
+   
+   /**
+    * Copies a subtraction.
+    * 
+    * @param astMinus subtraction
+    */
+   public void visit(ASTMinus astMinus) {
+      result = new ASTMinus(copyElement(astMinus.getLeftElement()), copyElement(astMinus.getRightElement()));
+   }
+   
+   /**
+    * Copies a multiplication.
+    * 
+    * @param astMultiply multiplication
+    */
+   public void visit(ASTMultiply astMultiply) {
+      result = new ASTMultiply(copyElement(astMultiply.getLeftElement()),
+                               copyElement(astMultiply.getRightElement()));
+   }
+   
+   /**
+    * Copies a sum.
+    * 
+    * @param astSum sum
+    */
+   public void visit(ASTSum astSum) {
+      ASTElement[] summands = new ASTElement[astSum.getNumberOfOperands()];
+      for (int i = 0; i < summands.length; i++) {
+         summands[i] = astSum.getOperand(i);
+      }
+      result = new ASTSum(copyElements(summands));
+   }
+   
+   /**
+    * Copies a product.
+    * 
+    * @param astProduct product
+    */
+   public void visit(ASTProduct astProduct) {
+      ASTElement[] factors = new ASTElement[astProduct.getNumberOfOperands()];
+      for (int i = 0; i < factors.length; i++) {
+         factors[i] = astProduct.getOperand(i);
+      }
+      result = new ASTProduct(copyElements(factors));
+   }
+   
+   /**
+    * Copies a division.
+    * 
+    * @param astDivide division
+    */
+   public void visit(ASTDivide astDivide) {
+      result = new ASTDivide(copyElement(astDivide.getLeftElement()), copyElement(astDivide.getRightElement()));
+   }
+   
+   /**
+    * Copies a minimum.
+    * 
+    * @param astMin minimum
+    */
+   public void visit(ASTMin astMin) {
+      result = new ASTMin(copyElement(astMin.getLeftElement()), copyElement(astMin.getRightElement()));
+   }
+   
+   /**
+    * Copies a maximum.
+    * 
+    * @param astMax maximum
+    */
+   public void visit(ASTMax astMax) {
+      result = new ASTMax(copyElement(astMax.getLeftElement()), copyElement(astMax.getRightElement()));
+   }
+   
+   /**
+    * Copies a rounding.
+    * 
+    * @param astRound rounding
+    */
+   public void visit(ASTRound astRound) {
+      result = new ASTRound(copyElement(astRound.getLeftElement()), copyElement(astRound.getRightElement()));
+   }
+   
+   /**
+    * Replaces an auxiliary node by its copy.
+    * 
+    * @param auxiliaryNode auxiliary node
+    */
+   public void visit(AuxiliaryNode auxiliaryNode) {
+      result = getCopy(auxiliaryNode);
+   }
+   
+   /**
+    * Replaces a constant node by its copy.
+    * 
+    * @param constantNode constant node
+    */
+   public void visit(ConstantNode constantNode) {
+      result = getCopy(constantNode);
+   }
+   
+   /**
+    * Replaces a level node by its copy.
+    * 
+    * @param levelNode level node
+    */
+   public void visit(LevelNode levelNode) {
+      result = getCopy(levelNode);
+   }
+   
+   /**
+    * Shares a literal (literals are immutable).
+    * 
+    * @param astLiteral literal
+    */
+   public void visit(ASTLiteral astLiteral) {
+      result = astLiteral;
+   }
+   
+   /**
+    * Gets the copy of the specified node.
+    * 
+    * @param node node of the original model
+    * @return copy
+    */
+   private ASTElement getCopy(AbstractNode node) {
+      AbstractNode copy = node2copy.get(node);
+      if (copy == null) {
+         throw new IllegalArgumentException("The formula contains a node of another model.");
+      }
+      return (ASTElement)copy;
+   }
+}
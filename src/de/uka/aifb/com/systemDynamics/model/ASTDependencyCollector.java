@@ -0,0 +1,148 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class collects the nodes (leaves) of formulas, i.e. the nodes a formula depends on.
+ * <p>
+ * The collected nodes are written into a caller-supplied set or bitmap, so that no objects are
+ * allocated during the traversal. An instance can be reused for any number of formulas, but it
+ * must not be used by several threads at the same time.
+ *
+ * @version 1.0
+ */
+public class ASTDependencyCollector extends ASTWalker {
+   
+   /** target set (if collecting into a set) */
+   private Set<AbstractNode> nodeSet;
+   
+   /** target bitmap and node to index mapping (if collecting into a bitmap) */
+   private BitSet nodeBitmap;
+   private Map<? extends AbstractNode, Integer> node2index;
+   
+   /** searched node (if searching a node) */
+   private AbstractNode searchedNode;
+   private boolean isSearchedNodeFound;
+   
+   /**
+    * Adds all nodes of the specified formula to the specified set.
+    * 
+    * @param formula formula
+    * @param nodes set the nodes are added to
+    */
+   public void collectNodes(ASTElement formula, Set<AbstractNode> nodes) {
+      if (formula == null) {
+         throw new IllegalArgumentException("'formula' must not be null.");
+      }
+      if (nodes == null) {
+         throw new IllegalArgumentException("'nodes' must not be null.");
+      }
+      
+      nodeSet = nodes;
+      try {
+         formula.accept(this);
+      } finally {
+         nodeSet = null;
+      }
+   }
+   
+   /**
+    * Sets the bits of all nodes of the specified formula in the specified bitmap. Nodes without
+    * index are ignored.
+    * 
+    * @param formula formula
+    * @param node2index node to index mapping
+    * @param nodes bitmap the nodes' bits are set in
+    */
+   public void collectNodes(ASTElement formula, Map<? extends AbstractNode, Integer> node2index,
+                            BitSet nodes) {
+      if (formula == null) {
+         throw new IllegalArgumentException("'formula' must not be null.");
+      }
+      if (node2index == null) {
+         throw new IllegalArgumentException("'node2index' must not be null.");
+      }
+      if (nodes == null) {
+         throw new IllegalArgumentException("'nodes' must not be null.");
+      }
+      
+      this.node2index = node2index;
+      nodeBitmap = nodes;
+      try {
+         formula.accept(this);
+      } finally {
+         this.node2index = null;
+         nodeBitmap = null;
+      }
+   }
+   
+   /**
+    * Checks whether the specified formula contains the specified node.
+    * 
+    * @param formula formula
+    * @param node node
+    * @return <code>true</code> iff the formula contains the node
+    */
+   public boolean containsNode(ASTElement formula, AbstractNode node) {
+      if (formula == null) {
+         throw new IllegalArgumentException("'formula' must not be null.");
+      }
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      
+      searchedNode = node;
+      isSearchedNodeFound = false;
+      try {
+         formula.accept(this);
+         return isSearchedNodeFound;
+      } finally {
+         searchedNode = null;
+      }
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from abstract class ASTWalker
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Collects the specified node.
+    * 
+    * @param node node
+    */
+   @Override
+   protected void visitNode(AbstractNode node) {
+      if (nodeSet != null) {
+         nodeSet.add(node);
+      } else if (nodeBitmap != null) {
+         Integer index = node2index.get(node);
+         if (index != null) {
+            nodeBitmap.set(index);
+         }
+      } else if (node == searchedNode) {
+         isSearchedNodeFound = true;
+      }
+   }
+}
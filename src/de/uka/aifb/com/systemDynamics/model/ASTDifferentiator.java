@@ -0,0 +1,292 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This class evaluates a formula together with its derivative with respect to one variable
+ * (forward-mode automatic differentiation). The values and derivatives of the formula's nodes are
+ * taken from caller-supplied arrays indexed by node id, so auxiliary nodes can be evaluated for
+ * other level node values than the current ones without changing the nodes.
+ * <p>
+ * The minimum and maximum are differentiated as the selected operand. A rounding is
+ * differentiated as its value (i.e. as if it were not rounded), so that the linearization shows
+ * the dynamics of the rounded quantity instead of a derivative of 0.
+ * <p>
+ * An instance can be reused for any number of formulas, but it must not be used by several
+ * threads at the same time.
+ *
+ * @version 1.0
+ */
+class ASTDifferentiator implements ASTVisitor {
+   
+   /** values and derivatives of the nodes by node id */
+   private double[] nodeValues;
+   private double[] nodeDerivatives;
+   
+   /** value and derivative of the last visited AST element */
+   private double value;
+   private double derivative;
+   
+   /**
+    * Constructor.
+    * 
+    * @param nodeValues values of the nodes by node id (read when a formula is differentiated)
+    * @param nodeDerivatives derivatives of the nodes by node id (read when a formula is
+    *                        differentiated)
+    */
+   ASTDifferentiator(double[] nodeValues, double[] nodeDerivatives) {
+      if (nodeValues == null) {
+         throw new IllegalArgumentException("'nodeValues' must not be null.");
+      }
+      if (nodeDerivatives == null) {
+         throw new IllegalArgumentException("'nodeDerivatives' must not be null.");
+      }
+      
+      this.nodeValues = nodeValues;
+      this.nodeDerivatives = nodeDerivatives;
+   }
+   
+   /**
+    * Evaluates the specified formula and its derivative. Afterwards, they can be read with
+    * {@link #getValue()} and {@link #getDerivative()}.
+    * 
+    * @param formula formula
+    */
+   void differentiate(ASTElement formula) {
+      if (formula == null) {
+         throw new IllegalArgumentException("'formula' must not be null.");
+      }
+      
+      formula.accept(this);
+   }
+   
+   /**
+    * Gets the value of the last differentiated formula.
+    * 
+    * @return value
+    */
+   double getValue() {
+      return value;
+   }
+   
+   /**
+    * Gets the derivative of the last differentiated formula.
+    * 
+    * @return derivative
+    */
+   double getDerivative() {
+      return derivative;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ASTVisitor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Visits an addition.
+    * 
+    * @param astPlus addition
+    */
+   public void visit(ASTPlus astPlus) {
+      astPlus.getLeftElement().accept(this);
+      double leftValue = value;
+      double leftDerivative = derivative;
+      astPlus.getRightElement().accept(this);
+      value = leftValue + value;
+      derivative = leftDerivative + derivative;
+   }
+   
+   /**
+    * Visits a subtraction.
+    * 
+    * @param astMinus subtraction
+    */
+   public void visit(ASTMinus astMinus) {
+      astMinus.getLeftElement().accept(this);
+      double leftValue = value;
+      double leftDerivative = derivative;
+      astMinus.getRightElement().accept(this);
+      value = leftValue - value;
+      derivative = leftDerivative - derivative;
+   }
+   
+   /**
+    * Visits a multiplication.
+    * 
+    * @param astMultiply multiplication
+    */
+   public void visit(ASTMultiply astMultiply) {
+      astMultiply.getLeftElement().accept(this);
+      double leftValue = value;
+      double leftDerivative = derivative;
+      astMultiply.getRightElement().accept(this);
+      derivative = leftDerivative * value + leftValue * derivative;
+      value = leftValue * value;
+   }
+   
+   /**
+    * Visits a sum.
+    * 
+    * @param astSum sum
+    */
+   public void visit(ASTSum astSum) {
+      double sumValue = 0;
+      double sumDerivative = 0;
+      for (int i = 0; i < astSum.getNumberOfOperands(); i++) {
+         astSum.getOperand(i).accept(this);
+         sumValue = (i == 0) ? value : sumValue + value;
+         sumDerivative += derivative;
+      }
+      value = sumValue;
+      derivative = sumDerivative;
+   }
+   
+   /**
+    * Visits a product.
+    * 
+    * @param astProduct product
+    */
+   public void visit(ASTProduct astProduct) {
+      double productValue = 0;
+      double productDerivative = 0;
+      for (int i = 0; i < astProduct.getNumberOfOperands(); i++) {
+         astProduct.getOperand(i).accept(this);
+         if (i == 0) {
+            productValue = value;
+            productDerivative = derivative;
+         } else {
+            productDerivative = productDerivative * value + productValue * derivative;
+            productValue *= value;
+         }
+      }
+      value = productValue;
+      derivative = productDerivative;
+   }
+   
+   /**
+    * Visits a division.
+    * 
+    * @param astDivide division
+    */
+   public void visit(ASTDivide astDivide) {
+      astDivide.getLeftElement().accept(this);
+      double leftValue = value;
+      double leftDerivative = derivative;
+      astDivide.getRightElement().accept(this);
+      derivative = (leftDerivative * value - leftValue * derivative) / (value * value);
+      value = leftValue / value;
+   }
+   
+   /**
+    * Visits a minimum.
+    * 
+    * @param astMin minimum
+    */
+   public void visit(ASTMin astMin) {
+      astMin.getLeftElement().accept(this);
+      double leftValue = value;
+      double leftDerivative = derivative;
+      astMin.getRightElement().accept(this);
+      if (leftValue <= value) {
+         value = leftValue;
+         derivative = leftDerivative;
+      }
+   }
+   
+   /**
+    * Visits a maximum.
+    * 
+    * @param astMax maximum
+    */
+   public void visit(ASTMax astMax) {
+      astMax.getLeftElement().accept(this);
+      double leftValue = value;
+      double leftDerivative = derivative;
+      astMax.getRightElement().accept(this);
+      if (leftValue >= value) {
+         value = leftValue;
+         derivative = leftDerivative;
+      }
+   }
+   
+   /**
+    * Visits a rounding.
+    * 
+    * @param astRound rounding
+    */
+   public void visit(ASTRound astRound) {
+      astRound.getLeftElement().accept(this);
+      double leftValue = value;
+      double leftDerivative = derivative;
+      astRound.getRightElement().accept(this);
+      value = ASTRound.round(leftValue, value);
+      derivative = leftDerivative;
+   }
+   
+   /**
+    * Visits an auxiliary node.
+    * 
+    * @param auxiliaryNode auxiliary node
+    */
+   public void visit(AuxiliaryNode auxiliaryNode) {
+      visitNode(auxiliaryNode);
+   }
+   
+   /**
+    * Visits a constant node.
+    * 
+    * @param constantNode constant node
+    */
+   public void visit(ConstantNode constantNode) {
+      visitNode(constantNode);
+   }
+   
+   /**
+    * Visits a level node.
+    * 
+    * @param levelNode level node
+    */
+   public void visit(LevelNode levelNode) {
+      visitNode(levelNode);
+   }
+   
+   /**
+    * Visits a literal.
+    * 
+    * @param astLiteral literal
+    */
+   public void visit(ASTLiteral astLiteral) {
+      value = astLiteral.getValue();
+      derivative = 0;
+   }
+   
+   /**
+    * Reads the value and the derivative of the specified node.
+    * 
+    * @param node node
+    */
+   private void visitNode(AbstractNode node) {
+      value = nodeValues[node.getId()];
+      derivative = nodeDerivatives[node.getId()];
+   }
+}
@@ -31,8 +31,8 @@ import java.util.*;
  */
 public class ASTDivide implements ASTElement {
    
-   private ASTElement leftElement;
-   private ASTElement rightElement;
+   private final ASTElement leftElement;
+   private final ASTElement rightElement;
    
    /**
     * Constructor.
@@ -69,8 +69,8 @@ public class ASTDivide implements ASTElement {
     * @return set of all nodes in AST subtree
     */
    public HashSet<AbstractNode> getAllNodesInASTSubtree() {
-      HashSet<AbstractNode> nodeSet = leftElement.getAllNodesInASTSubtree();
-      nodeSet.addAll(rightElement.getAllNodesInASTSubtree());
+      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+      new ASTDependencyCollector().collectNodes(this, nodeSet);
       return nodeSet;
    }
    
@@ -86,7 +86,7 @@ public class ASTDivide implements ASTElement {
          if (leftElement instanceof AbstractNode || leftElement instanceof ASTDivide) {
             return leftElement.getStringRepresentation() + " / (" + rightElement.getStringRepresentation() + ")";
          } else {
-            if ((leftElement instanceof ASTPlus || leftElement instanceof ASTMinus) && rightElement instanceof AbstractNode) {
+            if ((leftElement instanceof ASTPlus || leftElement instanceof ASTSum || leftElement instanceof ASTMinus) && rightElement instanceof AbstractNode) {
                return "(" + leftElement.getStringRepresentation() + ") / " + rightElement.getStringRepresentation();
             } else {
                return "(" + leftElement.getStringRepresentation() + ") / (" + rightElement.getStringRepresentation() + ")";
@@ -122,7 +122,7 @@ public class ASTDivide implements ASTElement {
          if (leftElement instanceof AbstractNode || leftElement instanceof ASTDivide) {
             return leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + " / (" + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ")";
          } else {
-            if ((leftElement instanceof ASTPlus || leftElement instanceof ASTMinus) && rightElement instanceof AbstractNode) {
+            if ((leftElement instanceof ASTPlus || leftElement instanceof ASTSum || leftElement instanceof ASTMinus) && rightElement instanceof AbstractNode) {
                return "(" + leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ") / " + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id);
             } else {
                return "(" + leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ") / (" + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ")";
@@ -132,91 +132,61 @@ public class ASTDivide implements ASTElement {
    }
    
    /**
-    * Creates and returns a <b>deep</b> copy of this object. Only the nodes in the leaves
-    * are not cloned.
+    * Returns this instance. AST elements are immutable, so there is no need for a copy.
     * 
-    * @return a deep clone of this instance
+    * @return this instance
     */
    @Override
 public Object clone() {
-      ASTElement leftClone = (ASTElement)leftElement.clone();
-      ASTElement rightClone = (ASTElement)rightElement.clone();
-      
-      return new ASTDivide(leftClone, rightClone);
+      return this;
    }
    
    /**
-    * Returns an iterator over the subtree of this node (output in preorder).
+    * Gets the left operand.
     * 
-    * @return iterator over the subtree of this node (output in preorder)
+    * @return left operand
     */
-   public Iterator<ASTElement> iterator() {
-      return new ASTDivideIterator(this);
+   public ASTElement getLeftElement() {
+      return leftElement;
    }
    
    /**
-    * Inner class implementing the {@link java.util.Iterator} interface. 
+    * Gets the right operand.
+    * 
+    * @return right operand
     */
-   private class ASTDivideIterator implements Iterator<ASTElement> {
-      
-      private ASTDivide astDivide;
-      private Iterator<ASTElement> leftSubtreeIterator;
-      private Iterator<ASTElement> rightSubtreeIterator;
-      
-      /**
-       * Constructor.
-       * 
-       * @param astDivide {@link de.uka.aifb.com.systemDynamics.model.ASTDivide} instance
-       */
-      private ASTDivideIterator(ASTDivide astDivide) {
-         if (astDivide == null) {
-            throw new IllegalArgumentException("'astDivide' must not be null.");
-         }
-         
-         // deep copy of the astDivide is used -> so it cannot be changed from outside
-         this.astDivide = (ASTDivide)astDivide.clone();
-      }
-      
-      /**
-       * Checks if there is a next element in this iteration.
-       * 
-       * @return <code>true</code> iff there is a next element
-       */
-      public boolean hasNext() {
-         return (rightSubtreeIterator == null || rightSubtreeIterator.hasNext());
+   public ASTElement getRightElement() {
+      return rightElement;
+   }
+   
+   /**
+    * Returns a division with the specified operands. If these are the operands of
+    * this division, this instance is returned. Otherwise, a new instance is created which
+    * shares the specified subtrees.
+    * 
+    * @param leftElement left operand
+    * @param rightElement right operand
+    * @return division with the specified operands
+    */
+   public ASTDivide withOperands(ASTElement leftElement, ASTElement rightElement) {
+      if (leftElement == this.leftElement && rightElement == this.rightElement) {
+         return this;
       }
       
-      /**
-       * Gets this iteration's next element.
-       * 
-       * @return next element
-       */
-      public ASTElement next() {
-         // (1) root node
-         if (leftSubtreeIterator == null) {
-            leftSubtreeIterator = astDivide.leftElement.iterator();
-            return astDivide;
-         }
-         
-         // (2) nodes of left subtree
-         if (rightSubtreeIterator == null) {
-            ASTElement result = leftSubtreeIterator.next();
-            if (!leftSubtreeIterator.hasNext()) {
-               rightSubtreeIterator = astDivide.rightElement.iterator();
-            }
-            return result;
-         }
-         
-         // (3) nodes of right subtree
-         //     (NoSuchElementException will be thrown if there are no nodes any more)
-         return rightSubtreeIterator.next();
+      return new ASTDivide(leftElement, rightElement);
+   }
+   
+   /**
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
+    * 
+    * @param visitor visitor
+    */
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
       }
       
-      /**
-       * Removes the element last returned by this iterator.
-       */
-      public void remove() {
-         throw new UnsupportedOperationException();
-      }
+      visitor.visit(this);
    }
 }
\ No newline at end of file
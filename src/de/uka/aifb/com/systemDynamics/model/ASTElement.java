@@ -24,12 +24,14 @@ package de.uka.aifb.com.systemDynamics.model;
 import java.util.*;
 
 /**
- * This interface describes an abstract syntax tree (AST) element.
+ * This interface describes an abstract syntax tree (AST) element. AST elements are immutable, so
+ * (sub)trees can be shared between formulas. A changed formula is built from new operations that
+ * reference the unchanged subtrees (see e.g. {@link ASTPlus#withOperands(ASTElement, ASTElement)}).
  * 
  * @author Joachim Melcher, University of Karlsruhe, AIFB
  * @version 1.0
  */
-public interface ASTElement extends Iterable<ASTElement> {
+public interface ASTElement {
 
    /**
     * Evaluates the ASTElement.
@@ -45,6 +47,14 @@ public interface ASTElement extends Iterable<ASTElement> {
     */
    public HashSet<AbstractNode> getAllNodesInASTSubtree();
    
+   /**
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
+    * 
+    * @param visitor visitor
+    */
+   public void accept(ASTVisitor visitor);
+   
    /**
     * Gets a <code>String</code> representation of the node's formula.
     * 
@@ -65,10 +75,9 @@ public interface ASTElement extends Iterable<ASTElement> {
                                               HashMap<LevelNode, Integer> levelNode2id);
    
    /**
-    * Creates and returns a <b>deep</b> copy of this object. Only the nodes in the leaves
-    * are not cloned.
+    * Returns this instance. AST elements are immutable, so there is no need for a copy.
     * 
-    * @return a deep clone of this instance
+    * @return this instance
     */
    public Object clone();
 }
\ No newline at end of file
@@ -0,0 +1,345 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class implements hash-consing of formulas: structurally identical subtrees of all formulas
+ * passed to the same interner are replaced by one shared instance. Afterwards, two subtrees are
+ * structurally identical iff they are the same instance.
+ * <p>
+ * The first instance of a subtree passed to the interner becomes the shared one, i.e. a formula
+ * without any subtree seen before is returned as it is. As AST elements are immutable, sharing
+ * subtrees between formulas (and between nodes) is safe.
+ * <p>
+ * An instance can be reused for any number of formulas, but it must not be used by several
+ * threads at the same time.
+ *
+ * @version 1.0
+ */
+public class ASTInterner implements ASTVisitor {
+   
+   /** shared instance of each distinct operation and literal */
+   private HashMap<Object, ASTElement> key2element;
+   
+   /** number of operations passed to the interner (counted with repetitions) */
+   private int numberOfInternedOperations;
+   
+   /** interned form of the last visited AST element */
+   private ASTElement result;
+   
+   /**
+    * Constructor.
+    */
+   public ASTInterner() {
+      key2element = new HashMap<Object, ASTElement>();
+   }
+   
+   /**
+    * Returns the interned form of the specified formula, i.e. a structurally identical formula
+    * whose subtrees are shared with all formulas interned before.
+    * 
+    * @param formula formula
+    * @return interned formula
+    */
+   public ASTElement intern(ASTElement formula) {
+      if (formula == null) {
+         throw new IllegalArgumentException("'formula' must not be null.");
+      }
+      
+      ASTElement internedFormula = internElement(formula);
+      result = null;
+      return internedFormula;
+   }
+   
+   /**
+    * Gets the number of operations passed to this interner (counted with repetitions).
+    * 
+    * @return number of interned operations
+    */
+   public int getNumberOfInternedOperations() {
+      return numberOfInternedOperations;
+   }
+   
+   /**
+    * Gets the number of distinct operations passed to this interner, i.e. the number of operation
+    * instances which are shared by all interned formulas.
+    * 
+    * @return number of distinct operations
+    */
+   public int getNumberOfDistinctOperations() {
+      int numberOfDistinctOperations = 0;
+      for (ASTElement element : key2element.values()) {
+         if (!(element instanceof ASTLiteral)) {
+            numberOfDistinctOperations++;
+         }
+      }
+      return numberOfDistinctOperations;
+   }
+   
+   /**
+    * Returns the interned form of the specified AST element.
+    * 
+    * @param element AST element
+    * @return interned AST element
+    */
+   private ASTElement internElement(ASTElement element) {
+      element.accept(this);
+      return result;
+   }
+   
+   /**
+    * Returns the shared instance of the specified binary operation. The operands of the operation
+    * must already be interned.
+    * 
+    * @param operation operation with interned operands
+    * @param leftElement interned left operand
+    * @param rightElement interned right operand
+    * @return shared instance
+    */
+   private ASTElement internOperation(ASTElement operation, ASTElement leftElement,
+                                      ASTElement rightElement) {
+      return internOperation(operation, new ASTElement[] { leftElement, rightElement });
+   }
+   
+   /**
+    * Returns the shared instance of the specified operation. The operands of the operation must
+    * already be interned.
+    * 
+    * @param operation operation with interned operands
+    * @param operands interned operands
+    * @return shared instance
+    */
+   private ASTElement internOperation(ASTElement operation, ASTElement[] operands) {
+      numberOfInternedOperations++;
+      
+      OperationKey key = new OperationKey(operation.getClass(), operands);
+      ASTElement sharedOperation = key2element.get(key);
+      if (sharedOperation == null) {
+         key2element.put(key, operation);
+         sharedOperation = operation;
+      }
+      return sharedOperation;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ASTVisitor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Interns an addition.
+    * 
+    * @param astPlus addition
+    */
+   public void visit(ASTPlus astPlus) {
+      ASTElement leftElement = internElement(astPlus.getLeftElement());
+      ASTElement rightElement = internElement(astPlus.getRightElement());
+      result = internOperation(astPlus.withOperands(leftElement, rightElement), leftElement, rightElement);
+   }
+   
+   /**
+    * Interns a subtraction.
+    * 
+    * @param astMinus subtraction
+    */
+   public void visit(ASTMinus astMinus) {
+      ASTElement leftElement = internElement(astMinus.getLeftElement());
+      ASTElement rightElement = internElement(astMinus.getRightElement());
+      result = internOperation(astMinus.withOperands(leftElement, rightElement), leftElement, rightElement);
+   }
+   
+   /**
+    * Interns a multiplication.
+    * 
+    * @param astMultiply multiplication
+    */
+   public void visit(ASTMultiply astMultiply) {
+      ASTElement leftElement = internElement(astMultiply.getLeftElement());
+      ASTElement rightElement = internElement(astMultiply.getRightElement());
+      result = internOperation(astMultiply.withOperands(leftElement, rightElement), leftElement,
+                               rightElement);
+   }
+   
+   /**
+    * Interns a sum.
+    * 
+    * @param astSum sum
+    */
+   public void visit(ASTSum astSum) {
+      ASTElement[] summands = new ASTElement[astSum.getNumberOfOperands()];
+      for (int i = 0; i < summands.length; i++) {
+         summands[i] = internElement(astSum.getOperand(i));
+      }
+      result = internOperation(astSum.withOperands(summands), summands);
+   }
+   
+   /**
+    * Interns a product.
+    * 
+    * @param astProduct product
+    */
+   public void visit(ASTProduct astProduct) {
+      ASTElement[] factors = new ASTElement[astProduct.getNumberOfOperands()];
+      for (int i = 0; i < factors.length; i++) {
+         factors[i] = internElement(astProduct.getOperand(i));
+      }
+      result = internOperation(astProduct.withOperands(factors), factors);
+   }
+   
+   /**
+    * Interns a division.
+    * 
+    * @param astDivide division
+    */
+   public void visit(ASTDivide astDivide) {
+      ASTElement leftElement = internElement(astDivide.getLeftElement());
+      ASTElement rightElement = internElement(astDivide.getRightElement());
+      result = internOperation(astDivide.withOperands(leftElement, rightElement), leftElement,
+                               rightElement);
+   }
+   
+   /**
+    * Interns a minimum.
+    * 
+    * @param astMin minimum
+    */
+   public void visit(ASTMin astMin) {
+      ASTElement leftElement = internElement(astMin.getLeftElement());
+      ASTElement rightElement = internElement(astMin.getRightElement());
+      result = internOperation(astMin.withOperands(leftElement, rightElement), leftElement, rightElement);
+   }
+   
+   /**
+    * Interns a maximum.
+    * 
+    * @param astMax maximum
+    */
+   public void visit(ASTMax astMax) {
+      ASTElement leftElement = internElement(astMax.getLeftElement());
+      ASTElement rightElement = internElement(astMax.getRightElement());
+      result = internOperation(astMax.withOperands(leftElement, rightElement), leftElement, rightElement);
+   }
+   
+   /**
+    * Interns a rounding.
+    * 
+    * @param astRound rounding
+    */
+   public void visit(ASTRound astRound) {
+      ASTElement leftElement = internElement(astRound.getLeftElement());
+      ASTElement rightElement = internElement(astRound.getRightElement());
+      result = internOperation(astRound.withOperands(leftElement, rightElement), leftElement,
+                               rightElement);
+   }
+   
+   /**
+    * Interns an auxiliary node (nodes are unique anyway).
+    * 
+    * @param auxiliaryNode auxiliary node
+    */
+   public void visit(AuxiliaryNode auxiliaryNode) {
+      result = auxiliaryNode;
+   }
+   
+   /**
+    * Interns a constant node (nodes are unique anyway).
+    * 
+    * @param constantNode constant node
+    */
+   public void visit(ConstantNode constantNode) {
+      result = constantNode;
+   }
+   
+   /**
+    * Interns a level node (nodes are unique anyway).
+    * 
+    * @param levelNode level node
+    */
+   public void visit(LevelNode levelNode) {
+      result = levelNode;
+   }
+   
+   /**
+    * Interns a literal.
+    * 
+    * @param astLiteral literal
+    */
+   public void visit(ASTLiteral astLiteral) {
+      Long key = Double.doubleToLongBits(astLiteral.getValue());
+      ASTElement sharedLiteral = key2element.get(key);
+      if (sharedLiteral == null) {
+         key2element.put(key, astLiteral);
+         sharedLiteral = astLiteral;
+      }
+      result = sharedLiteral;
+   }
+   
+   /**
+    * Inner class implementing the hash table key of an operation: its type and its (interned)
+    * operands, which are compared by identity.
+    */
+   private static class OperationKey {
+      
+      private Class<?> operationClass;
+      private ASTElement[] operands;
+      
+      /**
+       * Constructor.
+       * 
+       * @param operationClass type of the operation
+       * @param operands interned operands
+       */
+      private OperationKey(Class<?> operationClass, ASTElement[] operands) {
+         this.operationClass = operationClass;
+         this.operands = operands;
+      }
+      
+      @Override
+      public boolean equals(Object object) {
+         if (!(object instanceof OperationKey)) {
+            return false;
+         }
+         
+         OperationKey key = (OperationKey)object;
+         if (operationClass != key.operationClass || operands.length != key.operands.length) {
+            return false;
+         }
+         for (int i = 0; i < operands.length; i++) {
+            if (operands[i] != key.operands[i]) {
+               return false;
+            }
+         }
+         return true;
+      }
+      
+      @Override
+      public int hashCode() {
+         int hashCode = operationClass.hashCode();
+         for (ASTElement operand : operands) {
+            hashCode = 31 * hashCode + System.identityHashCode(operand);
+         }
+         return hashCode;
+      }
+   }
+}
@@ -0,0 +1,132 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class implements an AST element representing a literal, i.e. a fixed number. Literals are
+ * not part of the formulas entered by the user. They are only created by the
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTOptimizer} for the executed form of a formula
+ * (e.g. by folding a subtree consisting only of constant nodes).
+ * 
+ * @version 1.0
+ */
+public class ASTLiteral implements ASTElement {
+   
+   private final double value;
+   
+   /**
+    * Constructor.
+    * 
+    * @param value value of the literal
+    */
+   public ASTLiteral(double value) {
+      this.value = value;
+   }
+   
+   /**
+    * Gets the literal's value.
+    * 
+    * @return literal's value
+    */
+   public double getValue() {
+      return value;
+   }
+   
+   /**
+    * Evaluates the ASTElement.
+    * 
+    * @return ASTElement value
+    */
+   public double evaluate() {
+      return value;
+   }
+   
+   /**
+    * Gets all nodes in this AST subtree (inclusive this ASTElement).
+    * 
+    * @return set of all nodes in AST subtree (always empty)
+    */
+   public HashSet<AbstractNode> getAllNodesInASTSubtree() {
+      return new HashSet<AbstractNode>();
+   }
+   
+   /**
+    * Gets a <code>String</code> representation of the node's formula.
+    * 
+    * @return <code>String</code> representation of the node's formula
+    */
+   public String getStringRepresentation() {
+      return Double.toString(value);
+   }
+   
+   /**
+    * Gets a short <code>String</code> representation of the node's formula. As the formula parser
+    * has no syntax for literals, the representation cannot be parsed again.
+    * 
+    * @param auxiliaryNode2id auxiliary node to id mapping
+    * @param constantNode2id constant node to id mapping
+    * @param levelNode2id level node to id mapping
+    * @return short <code>String</code> representation of the node's formula
+    */
+   public String getShortStringRepresentation(HashMap<AuxiliaryNode, Integer> auxiliaryNode2id,
+                                              HashMap<ConstantNode, Integer> constantNode2id,
+                                              HashMap<LevelNode, Integer> levelNode2id) {
+      if (auxiliaryNode2id == null) {
+         throw new IllegalArgumentException("'auxiliaryNode2id' must not be null.");
+      }
+      if (constantNode2id == null) {
+         throw new IllegalArgumentException("'constantNode2id' must not be null.");
+      }
+      if (levelNode2id == null) {
+         throw new IllegalArgumentException("'levelNode2id' must not be null.");
+      }
+      
+      return Double.toString(value);
+   }
+   
+   /**
+    * Returns this instance. AST elements are immutable, so there is no need for a copy.
+    * 
+    * @return this instance
+    */
+   @Override
+   public Object clone() {
+      return this;
+   }
+   
+   /**
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
+    * 
+    * @param visitor visitor
+    */
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
+      }
+      
+      visitor.visit(this);
+   }
+}
@@ -31,8 +31,8 @@ import java.util.*;
  */
 public class ASTMinus implements ASTElement {
    
-   private ASTElement leftElement;
-   private ASTElement rightElement;
+   private final ASTElement leftElement;
+   private final ASTElement rightElement;
    
    /**
     * Constructor.
@@ -67,8 +67,8 @@ public class ASTMinus implements ASTElement {
     * @return set of all nodes in AST subtree
     */
    public HashSet<AbstractNode> getAllNodesInASTSubtree() {
-      HashSet<AbstractNode> nodeSet = leftElement.getAllNodesInASTSubtree();
-      nodeSet.addAll(rightElement.getAllNodesInASTSubtree());
+      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+      new ASTDependencyCollector().collectNodes(this, nodeSet);
       return nodeSet;
    }
    
@@ -78,7 +78,7 @@ public class ASTMinus implements ASTElement {
     * @return <code>String</code> representation of the node's formula
     */
    public String getStringRepresentation() {
-      if (rightElement instanceof ASTPlus || rightElement instanceof ASTMinus) {
+      if (rightElement instanceof ASTPlus || rightElement instanceof ASTSum || rightElement instanceof ASTMinus) {
          return leftElement.getStringRepresentation() + " - (" + rightElement.getStringRepresentation() + ")";
       } else {
          return leftElement.getStringRepresentation() + " - " + rightElement.getStringRepresentation();
@@ -106,7 +106,7 @@ public class ASTMinus implements ASTElement {
          throw new IllegalArgumentException("'levelNode2id' must not be null.");
       }
       
-      if (rightElement instanceof ASTPlus || rightElement instanceof ASTMinus) {
+      if (rightElement instanceof ASTPlus || rightElement instanceof ASTSum || rightElement instanceof ASTMinus) {
          return leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + " - (" + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ")";
       } else {
          return leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + " - " + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id);
@@ -114,91 +114,61 @@ public class ASTMinus implements ASTElement {
    }
    
    /**
-    * Creates and returns a <b>deep</b> copy of this object. Only the nodes in the leaves
-    * are not cloned.
+    * Returns this instance. AST elements are immutable, so there is no need for a copy.
     * 
-    * @return a deep clone of this instance
+    * @return this instance
     */
    @Override
 public Object clone() {
-      ASTElement leftClone = (ASTElement)leftElement.clone();
-      ASTElement rightClone = (ASTElement)rightElement.clone();
-      
-      return new ASTMinus(leftClone, rightClone);
+      return this;
    }
    
    /**
-    * Returns an iterator over the subtree of this node (output in preorder).
+    * Gets the left operand.
     * 
-    * @return iterator over the subtree of this node (output in preorder)
+    * @return left operand
     */
-   public Iterator<ASTElement> iterator() {
-      return new ASTMinusIterator(this);
+   public ASTElement getLeftElement() {
+      return leftElement;
    }
    
    /**
-    * Inner class implementing the {@link java.util.Iterator} interface. 
+    * Gets the right operand.
+    * 
+    * @return right operand
     */
-   private class ASTMinusIterator implements Iterator<ASTElement> {
-      
-      private ASTMinus astMinus;
-      private Iterator<ASTElement> leftSubtreeIterator;
-      private Iterator<ASTElement> rightSubtreeIterator;
-      
-      /**
-       * Constructor.
-       * 
-       * @param astMinus {@link de.uka.aifb.com.systemDynamics.model.ASTMinus} instance
-       */
-      private ASTMinusIterator(ASTMinus astMinus) {
-         if (astMinus == null) {
-            throw new IllegalArgumentException("'astMinus' must not be null.");
-         }
-         
-         // deep copy of the ASTMinus is used -> so it cannot be changed from outside
-         this.astMinus = (ASTMinus)astMinus.clone();
-      }
-      
-      /**
-       * Checks if there is a next element in this iteration.
-       * 
-       * @return <code>true</code> iff there is a next element
-       */
-      public boolean hasNext() {
-         return (rightSubtreeIterator == null || rightSubtreeIterator.hasNext());
+   public ASTElement getRightElement() {
+      return rightElement;
+   }
+   
+   /**
+    * Returns a subtraction with the specified operands. If these are the operands of
+    * this subtraction, this instance is returned. Otherwise, a new instance is created which
+    * shares the specified subtrees.
+    * 
+    * @param leftElement left operand
+    * @param rightElement right operand
+    * @return subtraction with the specified operands
+    */
+   public ASTMinus withOperands(ASTElement leftElement, ASTElement rightElement) {
+      if (leftElement == this.leftElement && rightElement == this.rightElement) {
+         return this;
       }
       
-      /**
-       * Gets this iteration's next element.
-       * 
-       * @return next element
-       */
-      public ASTElement next() {
-         // (1) root node
-         if (leftSubtreeIterator == null) {
-            leftSubtreeIterator = astMinus.leftElement.iterator();
-            return astMinus;
-         }
-         
-         // (2) nodes of left subtree
-         if (rightSubtreeIterator == null) {
-            ASTElement result = leftSubtreeIterator.next();
-            if (!leftSubtreeIterator.hasNext()) {
-               rightSubtreeIterator = astMinus.rightElement.iterator();
-            }
-            return result;
-         }
-         
-         // (3) nodes of right subtree
-         //     (NoSuchElementException will be thrown if there are no nodes any more)
-         return rightSubtreeIterator.next();
+      return new ASTMinus(leftElement, rightElement);
+   }
+   
+   /**
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
+    * 
+    * @param visitor visitor
+    */
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
       }
       
-      /**
-       * Removes the element last returned by this iterator.
-       */
-      public void remove() {
-         throw new UnsupportedOperationException();
-      }
+      visitor.visit(this);
    }
 }
\ No newline at end of file
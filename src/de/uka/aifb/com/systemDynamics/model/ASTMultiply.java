@@ -31,8 +31,8 @@ import java.util.*;
  */
 public class ASTMultiply implements ASTElement {
    
-   private ASTElement leftElement;
-   private ASTElement rightElement;
+   private final ASTElement leftElement;
+   private final ASTElement rightElement;
    
    /**
     * Constructor.
@@ -67,8 +67,8 @@ public class ASTMultiply implements ASTElement {
     * @return set of all nodes in AST subtree
     */
    public HashSet<AbstractNode> getAllNodesInASTSubtree() {
-      HashSet<AbstractNode> nodeSet = leftElement.getAllNodesInASTSubtree();
-      nodeSet.addAll(rightElement.getAllNodesInASTSubtree());
+      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+      new ASTDependencyCollector().collectNodes(this, nodeSet);
       return nodeSet;
    }
    
@@ -78,13 +78,13 @@ public class ASTMultiply implements ASTElement {
     * @return <code>String</code> representation of the node's formula
     */
    public String getStringRepresentation() {
-      if ((leftElement instanceof AbstractNode || leftElement instanceof ASTMultiply) && rightElement instanceof AbstractNode) {
+      if ((leftElement instanceof AbstractNode || leftElement instanceof ASTMultiply || leftElement instanceof ASTProduct) && rightElement instanceof AbstractNode) {
          return leftElement.getStringRepresentation() + " * " + rightElement.getStringRepresentation();
       } else {
-         if (leftElement instanceof AbstractNode || leftElement instanceof ASTMultiply) {
+         if (leftElement instanceof AbstractNode || leftElement instanceof ASTMultiply || leftElement instanceof ASTProduct) {
             return leftElement.getStringRepresentation() + " * (" + rightElement.getStringRepresentation() + ")";
          } else {
-            if ((leftElement instanceof ASTPlus || leftElement instanceof ASTMinus) && rightElement instanceof AbstractNode) {
+            if ((leftElement instanceof ASTPlus || leftElement instanceof ASTSum || leftElement instanceof ASTMinus) && rightElement instanceof AbstractNode) {
                return "(" + leftElement.getStringRepresentation() + ") * " + rightElement.getStringRepresentation();
             } else {
                return "(" + leftElement.getStringRepresentation() + ") * (" + rightElement.getStringRepresentation() + ")";
@@ -114,13 +114,13 @@ public class ASTMultiply implements ASTElement {
          throw new IllegalArgumentException("'levelNode2id' must not be null.");
       }
       
-      if ((leftElement instanceof AbstractNode || leftElement instanceof ASTMultiply) && rightElement instanceof AbstractNode) {
+      if ((leftElement instanceof AbstractNode || leftElement instanceof ASTMultiply || leftElement instanceof ASTProduct) && rightElement instanceof AbstractNode) {
          return leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + " * " + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id);
       } else {
-         if (leftElement instanceof AbstractNode || leftElement instanceof ASTMultiply) {
+         if (leftElement instanceof AbstractNode || leftElement instanceof ASTMultiply || leftElement instanceof ASTProduct) {
             return leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + " * (" + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ")";
          } else {
-            if ((leftElement instanceof ASTPlus || leftElement instanceof ASTMinus) && rightElement instanceof AbstractNode) {
+            if ((leftElement instanceof ASTPlus || leftElement instanceof ASTSum || leftElement instanceof ASTMinus) && rightElement instanceof AbstractNode) {
                return "(" + leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ") * " + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id);
             } else {
                return "(" + leftElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ") * (" + rightElement.getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id) + ")";
@@ -130,91 +130,61 @@ public class ASTMultiply implements ASTElement {
    }
    
    /**
-    * Creates and returns a <b>deep</b> copy of this object. Only the nodes in the leaves
-    * are not cloned.
+    * Returns this instance. AST elements are immutable, so there is no need for a copy.
     * 
-    * @return a deep clone of this instance
+    * @return this instance
     */
    @Override
 public Object clone() {
-      ASTElement leftClone = (ASTElement)leftElement.clone();
-      ASTElement rightClone = (ASTElement)rightElement.clone();
-      
-      return new ASTMultiply(leftClone, rightClone);
+      return this;
    }
    
    /**
-    * Returns an iterator over the subtree of this node (output in preorder).
+    * Gets the left operand.
     * 
-    * @return iterator over the subtree of this node (output in preorder)
+    * @return left operand
     */
-   public Iterator<ASTElement> iterator() {
-      return new ASTMultiplyIterator(this);
+   public ASTElement getLeftElement() {
+      return leftElement;
    }
    
    /**
-    * Inner class implementing the {@link java.util.Iterator} interface. 
+    * Gets the right operand.
+    * 
+    * @return right operand
     */
-   private class ASTMultiplyIterator implements Iterator<ASTElement> {
-      
-      private ASTMultiply astMultiply;
-      private Iterator<ASTElement> leftSubtreeIterator;
-      private Iterator<ASTElement> rightSubtreeIterator;
-      
-      /**
-       * Constructor.
-       * 
-       * @param astMultiply {@link de.uka.aifb.com.systemDynamics.model.ASTMultiply} instance
-       */
-      private ASTMultiplyIterator(ASTMultiply astMultiply) {
-         if (astMultiply == null) {
-            throw new IllegalArgumentException("'astMultiply' must not be null.");
-         }
-         
-         // deep copy of the ASTMultiply is used -> so it cannot be changed from outside
-         this.astMultiply = (ASTMultiply)astMultiply.clone();
-      }
-      
-      /**
-       * Checks if there is a next element in this iteration.
-       * 
-       * @return <code>true</code> iff there is a next element
-       */
-      public boolean hasNext() {
-         return (rightSubtreeIterator == null || rightSubtreeIterator.hasNext());
+   public ASTElement getRightElement() {
+      return rightElement;
+   }
+   
+   /**
+    * Returns a multiplication with the specified operands. If these are the operands of
+    * this multiplication, this instance is returned. Otherwise, a new instance is created which
+    * shares the specified subtrees.
+    * 
+    * @param leftElement left operand
+    * @param rightElement right operand
+    * @return multiplication with the specified operands
+    */
+   public ASTMultiply withOperands(ASTElement leftElement, ASTElement rightElement) {
+      if (leftElement == this.leftElement && rightElement == this.rightElement) {
+         return this;
       }
       
-      /**
-       * Gets this iteration's next element.
-       * 
-       * @return next element
-       */
-      public ASTElement next() {
-         // (1) root node
-         if (leftSubtreeIterator == null) {
-            leftSubtreeIterator = astMultiply.leftElement.iterator();
-            return astMultiply;
-         }
-         
-         // (2) nodes of left subtree
-         if (rightSubtreeIterator == null) {
-            ASTElement result = leftSubtreeIterator.next();
-            if (!leftSubtreeIterator.hasNext()) {
-               rightSubtreeIterator = astMultiply.rightElement.iterator();
-            }
-            return result;
-         }
-         
-         // (3) nodes of right subtree
-         //     (NoSuchElementException will be thrown if there are no nodes any more)
-         return rightSubtreeIterator.next();
+      return new ASTMultiply(leftElement, rightElement);
+   }
+   
+   /**
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
+    * 
+    * @param visitor visitor
+    */
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
       }
       
-      /**
-       * Removes the element last returned by this iterator.
-       */
-      public void remove() {
-         throw new UnsupportedOperationException();
-      }
+      visitor.visit(this);
    }
 }
\ No newline at end of file
@@ -0,0 +1,495 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class implements an optimizer for formulas. It creates the executed form of a formula. By
+ * default, only exact rewrites are done, i.e. the optimized formula computes bit-identical values:
+ * <ul>
+ *   <li>constant nodes are replaced by literals and operations with literal operands only (as
+ *       well as the leading literal operands of sums and products) are folded into a literal,</li>
+ *   <li>identities are simplified: <code>x * 1</code>, <code>x + 0</code>, <code>x - 0</code>,
+ *       <code>x / 1</code>, <code>MIN(x, x)</code> and <code>MAX(x, x)</code>.</li>
+ * </ul>
+ * Roundings are never folded.
+ * <p>
+ * The following rewrites change the computed values in the last bits or for non-finite values,
+ * so they are only done if explicitly enabled (see {@link #ASTOptimizer(boolean)}):
+ * <ul>
+ *   <li><code>x * 0</code> becomes <code>0</code> (wrong for <code>NaN</code> and infinite
+ *       values of <code>x</code>),</li>
+ *   <li>subtraction and division chains with literal operands are reassociated:
+ *       <code>(x - a) - b</code> becomes <code>x - (a + b)</code> and <code>(x / a) / b</code>
+ *       becomes <code>x / (a * b)</code>.</li>
+ * </ul>
+ * <p>
+ * The original formula is not changed (AST elements are immutable). Unchanged subtrees are shared
+ * between the original formula and the optimized one. Constant nodes are folded into literals, so
+ * the optimized formula must not be used any more if a constant value changes.
+ * <p>
+ * An instance can be reused for any number of formulas, but it must not be used by several
+ * threads at the same time.
+ *
+ * @version 1.0
+ */
+public class ASTOptimizer implements ASTVisitor {
+   
+   /** are rewrites allowed which change the computed values (see class comment)? */
+   private boolean inexactRewrites;
+   
+   /** optimized form of the last visited AST element */
+   private ASTElement result;
+   
+   /**
+    * Constructor for an optimizer doing exact rewrites only.
+    */
+   public ASTOptimizer() {
+      this(false);
+   }
+   
+   /**
+    * Constructor.
+    * 
+    * @param inexactRewrites <code>true</code> iff zero absorption and the reassociation of
+    *                        subtraction and division chains are allowed (see class comment)
+    */
+   public ASTOptimizer(boolean inexactRewrites) {
+      this.inexactRewrites = inexactRewrites;
+   }
+   
+   /**
+    * Returns the optimized form of the specified formula.
+    * 
+    * @param formula formula
+    * @return optimized formula (the specified formula itself if nothing can be optimized)
+    */
+   public ASTElement optimize(ASTElement formula) {
+      if (formula == null) {
+         throw new IllegalArgumentException("'formula' must not be null.");
+      }
+      
+      ASTElement optimizedFormula = optimizeElement(formula);
+      result = null;
+      return optimizedFormula;
+   }
+   
+   /**
+    * Returns the optimized form of the specified AST element.
+    * 
+    * @param element AST element
+    * @return optimized AST element
+    */
+   private ASTElement optimizeElement(ASTElement element) {
+      element.accept(this);
+      return result;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ASTVisitor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Optimizes an addition.
+    * 
+    * @param astPlus addition
+    */
+   public void visit(ASTPlus astPlus) {
+      ASTElement leftElement = optimizeElement(astPlus.getLeftElement());
+      ASTElement rightElement = optimizeElement(astPlus.getRightElement());
+      
+      if (isLiteral(leftElement) && isLiteral(rightElement)) {
+         result = new ASTLiteral(getValue(leftElement) + getValue(rightElement));
+      } else if (isLiteral(leftElement, 0)) {
+         result = rightElement;
+      } else if (isLiteral(rightElement, 0)) {
+         result = leftElement;
+      } else {
+         result = astPlus.withOperands(leftElement, rightElement);
+      }
+   }
+   
+   /**
+    * Optimizes a subtraction.
+    * 
+    * @param astMinus subtraction
+    */
+   public void visit(ASTMinus astMinus) {
+      ASTElement leftElement = optimizeElement(astMinus.getLeftElement());
+      ASTElement rightElement = optimizeElement(astMinus.getRightElement());
+      
+      if (isLiteral(leftElement) && isLiteral(rightElement)) {
+         result = new ASTLiteral(getValue(leftElement) - getValue(rightElement));
+      } else if (isLiteral(rightElement, 0)) {
+         result = leftElement;
+      } else if (inexactRewrites && isLiteral(rightElement) && leftElement instanceof ASTMinus
+                 && isLiteral(((ASTMinus)leftElement).getRightElement())) {
+         // (x - a) - b = x - (a + b)
+         ASTMinus innerMinus = (ASTMinus)leftElement;
+         double subtrahend = getValue(innerMinus.getRightElement()) + getValue(rightElement);
+         if (subtrahend == 0) {
+            result = innerMinus.getLeftElement();
+         } else {
+            result = innerMinus.withOperands(innerMinus.getLeftElement(), new ASTLiteral(subtrahend));
+         }
+      } else {
+         result = astMinus.withOperands(leftElement, rightElement);
+      }
+   }
+   
+   /**
+    * Optimizes a multiplication.
+    * 
+    * @param astMultiply multiplication
+    */
+   public void visit(ASTMultiply astMultiply) {
+      ASTElement leftElement = optimizeElement(astMultiply.getLeftElement());
+      ASTElement rightElement = optimizeElement(astMultiply.getRightElement());
+      
+      if (isLiteral(leftElement) && isLiteral(rightElement)) {
+         result = new ASTLiteral(getValue(leftElement) * getValue(rightElement));
+      } else if (inexactRewrites && (isLiteral(leftElement, 0) || isLiteral(rightElement, 0))) {
+         result = new ASTLiteral(0);
+      } else if (isLiteral(leftElement, 1)) {
+         result = rightElement;
+      } else if (isLiteral(rightElement, 1)) {
+         result = leftElement;
+      } else {
+         result = astMultiply.withOperands(leftElement, rightElement);
+      }
+   }
+   
+   /**
+    * Optimizes a sum: leading literals are folded and summands <code>0</code> are removed. The
+    * order of the remaining summands is kept, so the result stays bit-identical.
+    * 
+    * @param astSum sum
+    */
+   public void visit(ASTSum astSum) {
+      ArrayList<ASTElement> summands = new ArrayList<ASTElement>(astSum.getNumberOfOperands());
+      for (int i = 0; i < astSum.getNumberOfOperands(); i++) {
+         ASTElement summand = optimizeElement(astSum.getOperand(i));
+         if (isLiteral(summand, 0)) {
+            continue;
+         }
+         if (isLiteral(summand) && summands.size() == 1 && isLiteral(summands.get(0))) {
+            // leading literals
+            summands.set(0, new ASTLiteral(getValue(summands.get(0)) + getValue(summand)));
+         } else {
+            summands.add(summand);
+         }
+      }
+      if (summands.size() > 1 && isLiteral(summands.get(0), 0)) {
+         summands.remove(0);
+      }
+      
+      if (summands.isEmpty()) {
+         result = new ASTLiteral(0);
+      } else if (summands.size() == 1) {
+         result = summands.get(0);
+      } else if (summands.size() == 2) {
+         result = new ASTPlus(summands.get(0), summands.get(1));
+      } else {
+         result = astSum.withOperands(summands.toArray(new ASTElement[summands.size()]));
+      }
+   }
+   
+   /**
+    * Optimizes a product: leading literals are folded and factors <code>1</code> are removed. The
+    * order of the remaining factors is kept, so the result stays bit-identical. A factor
+    * <code>0</code> makes the whole product <code>0</code> if inexact rewrites are allowed.
+    * 
+    * @param astProduct product
+    */
+   public void visit(ASTProduct astProduct) {
+      ArrayList<ASTElement> factors = new ArrayList<ASTElement>(astProduct.getNumberOfOperands());
+      for (int i = 0; i < astProduct.getNumberOfOperands(); i++) {
+         ASTElement factor = optimizeElement(astProduct.getOperand(i));
+         if (inexactRewrites && isLiteral(factor, 0)) {
+            result = new ASTLiteral(0);
+            return;
+         }
+         if (isLiteral(factor, 1)) {
+            continue;
+         }
+         if (isLiteral(factor) && factors.size() == 1 && isLiteral(factors.get(0))) {
+            // leading literals
+            factors.set(0, new ASTLiteral(getValue(factors.get(0)) * getValue(factor)));
+         } else {
+            factors.add(factor);
+         }
+      }
+      if (factors.size() > 1 && isLiteral(factors.get(0), 1)) {
+         factors.remove(0);
+      }
+      
+      if (factors.isEmpty()) {
+         result = new ASTLiteral(1);
+      } else if (factors.size() == 1) {
+         result = factors.get(0);
+      } else if (factors.size() == 2) {
+         result = new ASTMultiply(factors.get(0), factors.get(1));
+      } else {
+         result = astProduct.withOperands(factors.toArray(new ASTElement[factors.size()]));
+      }
+   }
+   
+   /**
+    * Optimizes a division.
+    * 
+    * @param astDivide division
+    */
+   public void visit(ASTDivide astDivide) {
+      ASTElement leftElement = optimizeElement(astDivide.getLeftElement());
+      ASTElement rightElement = optimizeElement(astDivide.getRightElement());
+      
+      if (isLiteral(leftElement) && isLiteral(rightElement)) {
+         result = new ASTLiteral(getValue(leftElement) / getValue(rightElement));
+      } else if (isLiteral(rightElement, 1)) {
+         result = leftElement;
+      } else if (inexactRewrites && isLiteral(rightElement) && leftElement instanceof ASTDivide
+                 && isLiteral(((ASTDivide)leftElement).getRightElement())) {
+         // (x / a) / b = x / (a * b)
+         ASTDivide innerDivide = (ASTDivide)leftElement;
+         double divisor = getValue(innerDivide.getRightElement()) * getValue(rightElement);
+         if (divisor == 1) {
+            result = innerDivide.getLeftElement();
+         } else {
+            result = innerDivide.withOperands(innerDivide.getLeftElement(), new ASTLiteral(divisor));
+         }
+      } else {
+         result = astDivide.withOperands(leftElement, rightElement);
+      }
+   }
+   
+   /**
+    * Optimizes a minimum.
+    * 
+    * @param astMin minimum
+    */
+   public void visit(ASTMin astMin) {
+      ASTElement leftElement = optimizeElement(astMin.getLeftElement());
+      ASTElement rightElement = optimizeElement(astMin.getRightElement());
+      
+      if (isLiteral(leftElement) && isLiteral(rightElement)) {
+         result = new ASTLiteral(Math.min(getValue(leftElement), getValue(rightElement)));
+      } else if (isSameFormula(leftElement, rightElement)) {
+         result = leftElement;
+      } else {
+         result = astMin.withOperands(leftElement, rightElement);
+      }
+   }
+   
+   /**
+    * Optimizes a maximum.
+    * 
+    * @param astMax maximum
+    */
+   public void visit(ASTMax astMax) {
+      ASTElement leftElement = optimizeElement(astMax.getLeftElement());
+      ASTElement rightElement = optimizeElement(astMax.getRightElement());
+      
+      if (isLiteral(leftElement) && isLiteral(rightElement)) {
+         result = new ASTLiteral(Math.max(getValue(leftElement), getValue(rightElement)));
+      } else if (isSameFormula(leftElement, rightElement)) {
+         result = leftElement;
+      } else {
+         result = astMax.withOperands(leftElement, rightElement);
+      }
+   }
+   
+   /**
+    * Optimizes a rounding (only its operands, see class comment).
+    * 
+    * @param astRound rounding
+    */
+   public void visit(ASTRound astRound) {
+      ASTElement leftElement = optimizeElement(astRound.getLeftElement());
+      ASTElement rightElement = optimizeElement(astRound.getRightElement());
+      
+      result = astRound.withOperands(leftElement, rightElement);
+   }
+   
+   /**
+    * Optimizes an auxiliary node (nothing to do).
+    * 
+    * @param auxiliaryNode auxiliary node
+    */
+   public void visit(AuxiliaryNode auxiliaryNode) {
+      result = auxiliaryNode;
+   }
+   
+   /**
+    * Optimizes a constant node, i.e. replaces it by a literal.
+    * 
+    * @param constantNode constant node
+    */
+   public void visit(ConstantNode constantNode) {
+      result = new ASTLiteral(constantNode.getConstantValue());
+   }
+   
+   /**
+    * Optimizes a level node (nothing to do).
+    * 
+    * @param levelNode level node
+    */
+   public void visit(LevelNode levelNode) {
+      result = levelNode;
+   }
+   
+   /**
+    * Optimizes a literal (nothing to do).
+    * 
+    * @param astLiteral literal
+    */
+   public void visit(ASTLiteral astLiteral) {
+      result = astLiteral;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // private helper methods
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Checks whether the specified AST element is a literal.
+    * 
+    * @param element AST element
+    * @return <code>true</code> iff the specified AST element is a literal
+    */
+   private static boolean isLiteral(ASTElement element) {
+      return element instanceof ASTLiteral;
+   }
+   
+   /**
+    * Checks whether the specified AST element is a literal with the specified value.
+    * 
+    * @param element AST element
+    * @param value value
+    * @return <code>true</code> iff the specified AST element is a literal with the specified value
+    */
+   private static boolean isLiteral(ASTElement element, double value) {
+      return element instanceof ASTLiteral && ((ASTLiteral)element).getValue() == value;
+   }
+   
+   /**
+    * Gets the value of the specified literal.
+    * 
+    * @param literal literal
+    * @return value of the specified literal
+    */
+   private static double getValue(ASTElement literal) {
+      return ((ASTLiteral)literal).getValue();
+   }
+   
+   /**
+    * Checks whether the two specified formulas are structurally identical, i.e. whether they
+    * always evaluate to the same value.
+    * 
+    * @param formula1 first formula
+    * @param formula2 second formula
+    * @return <code>true</code> iff the two formulas are structurally identical
+    */
+   private static boolean isSameFormula(ASTElement formula1, ASTElement formula2) {
+      if (formula1 == formula2) {
+         return true;
+      }
+      if (formula1.getClass() != formula2.getClass()) {
+         return false;
+      }
+      if (formula1 instanceof ASTLiteral) {
+         return Double.doubleToLongBits(getValue(formula1)) == Double.doubleToLongBits(getValue(formula2));
+      }
+      if (formula1 instanceof AbstractNode) {
+         // different nodes
+         return false;
+      }
+      
+      if (getNumberOfOperands(formula1) != getNumberOfOperands(formula2)) {
+         return false;
+      }
+      for (int i = 0; i < getNumberOfOperands(formula1); i++) {
+         if (!isSameFormula(getOperand(formula1, i), getOperand(formula2, i))) {
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * Gets the number of operands of the specified operation.
+    * 
+    * @param operation operation (no leaf!)
+    * @return number of operands
+    */
+   static int getNumberOfOperands(ASTElement operation) {
+      if (operation instanceof ASTSum) {
+         return ((ASTSum)operation).getNumberOfOperands();
+      }
+      if (operation instanceof ASTProduct) {
+         return ((ASTProduct)operation).getNumberOfOperands();
+      }
+      
+      // binary operation
+      return 2;
+   }
+   
+   /**
+    * Gets the operand with the specified index of the specified operation.
+    * 
+    * @param operation operation (no leaf!)
+    * @param index index of the operand (0 is the left operand of a binary operation)
+    * @return operand
+    */
+   static ASTElement getOperand(ASTElement operation, int index) {
+      if (operation instanceof ASTSum) {
+         return ((ASTSum)operation).getOperand(index);
+      }
+      if (operation instanceof ASTProduct) {
+         return ((ASTProduct)operation).getOperand(index);
+      }
+      if (operation instanceof ASTPlus) {
+         return index == 0 ? ((ASTPlus)operation).getLeftElement() : ((ASTPlus)operation).getRightElement();
+      }
+      if (operation instanceof ASTMinus) {
+         return index == 0 ? ((ASTMinus)operation).getLeftElement() : ((ASTMinus)operation).getRightElement();
+      }
+      if (operation instanceof ASTMultiply) {
+         return index == 0 ? ((ASTMultiply)operation).getLeftElement() : ((ASTMultiply)operation).getRightElement();
+      }
+      if (operation instanceof ASTDivide) {
+         return index == 0 ? ((ASTDivide)operation).getLeftElement() : ((ASTDivide)operation).getRightElement();
+      }
+      if (operation instanceof ASTMin) {
+         return index == 0 ? ((ASTMin)operation).getLeftElement() : ((ASTMin)operation).getRightElement();
+      }
+      if (operation instanceof ASTMax) {
+         return index == 0 ? ((ASTMax)operation).getLeftElement() : ((ASTMax)operation).getRightElement();
+      }
+      if (operation instanceof ASTRound) {
+         return index == 0 ? ((ASTRound)operation).getLeftElement() : ((ASTRound)operation).getRightElement();
+      }
+      
+      throw new Error("Unknown formula element " + operation.getClass().getName() + ".");
+   }
+}
\ No newline at end of file
@@ -0,0 +1,253 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class implements an AST element representing a product of at least three factors. It
+ * replaces a left-nested chain of multiplications <code>((f1 * f2) * f3) * ...</code>: the
+ * factors are multiplied from left to right in a loop, so the result is bit-identical to the one
+ * of the chain, but evaluating the product does not recurse into the chain.
+ * <p>
+ * In XML files, a product is stored as the equivalent chain of <code>ASTMultiply</code> elements.
+ *
+ * @version 1.0
+ */
+public class ASTProduct implements ASTElement {
+   
+   private final ASTElement[] factors;
+   
+   /**
+    * Constructor.
+    * 
+    * @param factors factors (at least two; the array is copied)
+    */
+   public ASTProduct(ASTElement[] factors) {
+      if (factors == null) {
+         throw new IllegalArgumentException("'factors' must not be null.");
+      }
+      if (factors.length < 2) {
+         throw new IllegalArgumentException("'factors' must contain at least two factors.");
+      }
+      for (ASTElement factor : factors) {
+         if (factor == null) {
+            throw new IllegalArgumentException("'factors' must not contain null.");
+         }
+      }
+      
+      this.factors = factors.clone();
+   }
+   
+   /**
+    * Creates the product <code>((f1 * f2) * f3) * ...</code> of the specified factors. If the
+    * first factor is a multiplication or a product itself, its factors are taken over (flattening
+    * of the left-nested chain).
+    * 
+    * @param factors factors (at least one)
+    * @return the only factor, a multiplication (two factors) or a product (more factors)
+    */
+   public static ASTElement createProduct(List<ASTElement> factors) {
+      if (factors == null) {
+         throw new IllegalArgumentException("'factors' must not be null.");
+      }
+      if (factors.isEmpty()) {
+         throw new IllegalArgumentException("'factors' must not be empty.");
+      }
+      
+      if (factors.size() == 1) {
+         return factors.get(0);
+      }
+      
+      ASTElement firstFactor = factors.get(0);
+      ArrayList<ASTElement> flatFactors = new ArrayList<ASTElement>(factors.size() + 1);
+      if (firstFactor instanceof ASTMultiply) {
+         flatFactors.add(((ASTMultiply)firstFactor).getLeftElement());
+         flatFactors.add(((ASTMultiply)firstFactor).getRightElement());
+      } else if (firstFactor instanceof ASTProduct) {
+         flatFactors.addAll(Arrays.asList(((ASTProduct)firstFactor).factors));
+      } else {
+         flatFactors.add(firstFactor);
+      }
+      flatFactors.addAll(factors.subList(1, factors.size()));
+      
+      if (flatFactors.size() == 2) {
+         return new ASTMultiply(flatFactors.get(0), flatFactors.get(1));
+      }
+      return new ASTProduct(flatFactors.toArray(new ASTElement[flatFactors.size()]));
+   }
+   
+   /**
+    * Evaluates the ASTElement.
+    * 
+    * @return ASTElement value
+    */
+   public double evaluate() {
+      double product = factors[0].evaluate();
+      for (int i = 1; i < factors.length; i++) {
+         product *= factors[i].evaluate();
+      }
+      return product;
+   }
+   
+   /**
+    * Gets all nodes in this AST subtree (inclusive this ASTElement).
+    * 
+    * @return set of all nodes in AST subtree
+    */
+   public HashSet<AbstractNode> getAllNodesInASTSubtree() {
+      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+      new ASTDependencyCollector().collectNodes(this, nodeSet);
+      return nodeSet;
+   }
+   
+   /**
+    * Gets a <code>String</code> representation of the node's formula.
+    * 
+    * @return <code>String</code> representation of the node's formula
+    */
+   public String getStringRepresentation() {
+      StringBuilder stringRepresentation = new StringBuilder();
+      for (int i = 0; i < factors.length; i++) {
+         if (i > 0) {
+            stringRepresentation.append(" * ");
+         }
+         if (needsParentheses(factors[i], i == 0)) {
+            stringRepresentation.append("(").append(factors[i].getStringRepresentation()).append(")");
+         } else {
+            stringRepresentation.append(factors[i].getStringRepresentation());
+         }
+      }
+      return stringRepresentation.toString();
+   }
+   
+   /**
+    * Gets a short <code>String</code> representation of the node's formula.
+    * 
+    * @param auxiliaryNode2id auxiliary node to id mapping
+    * @param constantNode2id constant node to id mapping
+    * @param levelNode2id level node to id mapping
+    * @return short <code>String</code> representation of the node's formula
+    */
+   public String getShortStringRepresentation(HashMap<AuxiliaryNode, Integer> auxiliaryNode2id,
+                                              HashMap<ConstantNode, Integer> constantNode2id,
+                                              HashMap<LevelNode, Integer> levelNode2id) {
+      if (auxiliaryNode2id == null) {
+         throw new IllegalArgumentException("'auxiliaryNode2id' must not be null.");
+      }
+      if (constantNode2id == null) {
+         throw new IllegalArgumentException("'constantNode2id' must not be null.");
+      }
+      if (levelNode2id == null) {
+         throw new IllegalArgumentException("'levelNode2id' must not be null.");
+      }
+      
+      StringBuilder stringRepresentation = new StringBuilder();
+      for (int i = 0; i < factors.length; i++) {
+         String factor = factors[i].getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id);
+         if (i > 0) {
+            stringRepresentation.append(" * ");
+         }
+         if (needsParentheses(factors[i], i == 0)) {
+            stringRepresentation.append("(").append(factor).append(")");
+         } else {
+            stringRepresentation.append(factor);
+         }
+      }
+      return stringRepresentation.toString();
+   }
+   
+   /**
+    * Returns this instance. AST elements are immutable, so there is no need for a copy.
+    * 
+    * @return this instance
+    */
+   @Override
+   public Object clone() {
+      return this;
+   }
+   
+   /**
+    * Gets the number of factors.
+    * 
+    * @return number of factors
+    */
+   public int getNumberOfOperands() {
+      return factors.length;
+   }
+   
+   /**
+    * Gets the factor with the specified index.
+    * 
+    * @param index index (from 0 to number of factors - 1)
+    * @return factor
+    */
+   public ASTElement getOperand(int index) {
+      return factors[index];
+   }
+   
+   /**
+    * Returns a product with the specified factors. If these are the factors of this product, this
+    * instance is returned. Otherwise, a new instance is created which shares the specified
+    * subtrees.
+    * 
+    * @param factors factors (at least two; the array is copied)
+    * @return product with the specified factors
+    */
+   public ASTProduct withOperands(ASTElement[] factors) {
+      if (factors != null && Arrays.equals(factors, this.factors)) {
+         return this;
+      }
+      
+      return new ASTProduct(factors);
+   }
+   
+   /**
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
+    * 
+    * @param visitor visitor
+    */
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
+      }
+      
+      visitor.visit(this);
+   }
+   
+   /**
+    * Checks whether the specified factor has to be put in parentheses.
+    * 
+    * @param factor factor
+    * @param isFirstFactor is it the first factor?
+    * @return <code>true</code> iff the factor has to be put in parentheses
+    */
+   private static boolean needsParentheses(ASTElement factor, boolean isFirstFactor) {
+      if (factor instanceof AbstractNode) {
+         return false;
+      }
+      
+      return !isFirstFactor || !(factor instanceof ASTMultiply || factor instanceof ASTProduct);
+   }
+}
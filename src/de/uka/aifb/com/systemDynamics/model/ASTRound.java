@@ -1,13 +1,14 @@
 package de.uka.aifb.com.systemDynamics.model;
 
 import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.util.*;
 
 
 
 public class ASTRound implements ASTElement {
-	  private ASTElement leftElement;
-	  private ASTElement rightElement;
+	  private final ASTElement leftElement;
+	  private final ASTElement rightElement;
 	   
 	   /**
 	    * Constructor.
@@ -33,12 +34,27 @@ public class ASTRound implements ASTElement {
 	    * @return ASTElement value
 	    */
 	   public double evaluate() {
+		  return round(leftElement.evaluate(), rightElement.evaluate());
+	   }
+	   
+	   /**
+	    * Rounds the specified value to the specified number of decimal places. All execution
+	    * backends (also the classes generated by the bytecode tier of
+	    * {@link CompiledModel}) use this method so that they compute exactly the same values.
+	    * The result does not depend on the default locale.
+	    * 
+	    * @param value value to round
+	    * @param precision number of decimal places
+	    * @return rounded value
+	    */
+	   public static double round(double value, double precision) {
 		  StringBuffer precisionString = new StringBuffer();
-		  int precisionVal = (int)rightElement.evaluate();
+		  int precisionVal = (int)precision;
 		  for(int i = 1; i<=precisionVal; i++)
 			  precisionString.append("#");
-		  DecimalFormat precision = new DecimalFormat("#." + precisionString.toString());
-		  return Double.valueOf(precision.format(leftElement.evaluate()));
+		  DecimalFormat precisionFormat = new DecimalFormat("#." + precisionString.toString(),
+		                                                    new DecimalFormatSymbols(Locale.US));
+		  return Double.valueOf(precisionFormat.format(value));
 	   }
 	   
 	   /**
@@ -47,8 +63,8 @@ public class ASTRound implements ASTElement {
 	    * @return set of all nodes in AST subtree
 	    */
 	   public HashSet<AbstractNode> getAllNodesInASTSubtree() {
-	      HashSet<AbstractNode> nodeSet = leftElement.getAllNodesInASTSubtree();
-	      nodeSet.addAll(rightElement.getAllNodesInASTSubtree());
+	      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+	      new ASTDependencyCollector().collectNodes(this, nodeSet);
 	      return nodeSet;
 	   }
 	   
@@ -91,92 +107,61 @@ public class ASTRound implements ASTElement {
 	   }
 	   
 	   /**
-	    * Creates and returns a <b>deep</b> copy of this object. Only the nodes in the leaves
-	    * are not cloned.
+	    * Returns this instance. AST elements are immutable, so there is no need for a copy.
 	    * 
-	    * @return a deep clone of this instance
+	    * @return this instance
 	    */
 	   @Override
 	public Object clone() {
-	      ASTElement leftClone = (ASTElement)leftElement.clone();
-	      ASTElement rightClone = (ASTElement)rightElement.clone();
-	      
-	      return new ASTRound(leftClone, rightClone);
+	      return this;
 	   }
 	   
 	   /**
-	    * Returns an iterator over the subtree of this node (output in preorder).
+	    * Gets the left operand.
 	    * 
-	    * @return iterator over the subtree of this node (output in preorder)
+	    * @return left operand
 	    */
-	   public Iterator<ASTElement> iterator() {
-	      return new ASTRoundIterator(this);
+	   public ASTElement getLeftElement() {
+	      return leftElement;
 	   }
 	   
 	   /**
-	    * Inner class implementing the {@link java.util.Iterator} interface. 
+	    * Gets the right operand.
+	    * 
+	    * @return right operand
 	    */
-	   private class ASTRoundIterator implements Iterator<ASTElement> {
-	      
-	      private ASTRound astRound;
-	      private Iterator<ASTElement> leftSubtreeIterator;
-	      private Iterator<ASTElement> rightSubtreeIterator;
-	      
-	      /**
-	       * Constructor.
-	       * 
-	       * @param astMultiply {@link de.uka.aifb.com.systemDynamics.model.ASTRound} instance
-	       */
-	      private ASTRoundIterator(ASTRound astRound) {
-	         if (astRound == null) {
-	            throw new IllegalArgumentException("'astRound' must not be null.");
-	         }
-	         
-	         // deep copy of the ASTMultiply is used -> so it cannot be changed from outside
-	         this.astRound = (ASTRound)astRound.clone();
-	      }
-	      
-	      /**
-	       * Checks if there is a next element in this iteration.
-	       * 
-	       * @return <code>true</code> iff there is a next element
-	       */
-	      public boolean hasNext() {
-	         return (rightSubtreeIterator == null || rightSubtreeIterator.hasNext());
+	   public ASTElement getRightElement() {
+	      return rightElement;
+	   }
+	   
+	   /**
+	    * Returns a rounding with the specified operands. If these are the operands of
+	    * this rounding, this instance is returned. Otherwise, a new instance is created which
+	    * shares the specified subtrees.
+	    * 
+	    * @param leftElement left operand
+	    * @param rightElement right operand
+	    * @return rounding with the specified operands
+	    */
+	   public ASTRound withOperands(ASTElement leftElement, ASTElement rightElement) {
+	      if (leftElement == this.leftElement && rightElement == this.rightElement) {
+	         return this;
 	      }
 	      
-	      /**
-	       * Gets this iteration's next element.
-	       * 
-	       * @return next element
-	       */
-	      public ASTElement next() {
-	         // (1) root node
-	         if (leftSubtreeIterator == null) {
-	            leftSubtreeIterator = astRound.leftElement.iterator();
-	            return astRound;
-	         }
-	         
-	         // (2) nodes of left subtree
-	         if (rightSubtreeIterator == null) {
-	            ASTElement result = leftSubtreeIterator.next();
-	            if (!leftSubtreeIterator.hasNext()) {
-	               rightSubtreeIterator = astRound.rightElement.iterator();
-	            }
-	            return result;
-	         }
-	         
-	         // (3) nodes of right subtree
-	         //     (NoSuchElementException will be thrown if there are no nodes any more)
-	         return rightSubtreeIterator.next();
+	      return new ASTRound(leftElement, rightElement);
+	   }
+	   
+	   /**
+	    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+	    * element.
+	    * 
+	    * @param visitor visitor
+	    */
+	   public void accept(ASTVisitor visitor) {
+	      if (visitor == null) {
+	         throw new IllegalArgumentException("'visitor' must not be null.");
 	      }
 	      
-	      /**
-	       * Removes the element last returned by this iterator.
-	       */
-	      public void remove() {
-	         throw new UnsupportedOperationException();
-	      }
+	      visitor.visit(this);
 	   }
-
 }
@@ -0,0 +1,243 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class implements an AST element representing a sum of at least three summands. It replaces
+ * a left-nested chain of additions <code>((s1 + s2) + s3) + ...</code>: the summands are added
+ * from left to right in a loop, so the result is bit-identical to the one of the chain, but
+ * evaluating the sum does not recurse into the chain.
+ * <p>
+ * In XML files, a sum is stored as the equivalent chain of <code>ASTPlus</code> elements.
+ *
+ * @version 1.0
+ */
+public class ASTSum implements ASTElement {
+   
+   private final ASTElement[] summands;
+   
+   /**
+    * Constructor.
+    * 
+    * @param summands summands (at least two; the array is copied)
+    */
+   public ASTSum(ASTElement[] summands) {
+      if (summands == null) {
+         throw new IllegalArgumentException("'summands' must not be null.");
+      }
+      if (summands.length < 2) {
+         throw new IllegalArgumentException("'summands' must contain at least two summands.");
+      }
+      for (ASTElement summand : summands) {
+         if (summand == null) {
+            throw new IllegalArgumentException("'summands' must not contain null.");
+         }
+      }
+      
+      this.summands = summands.clone();
+   }
+   
+   /**
+    * Creates the sum <code>((s1 + s2) + s3) + ...</code> of the specified summands. If the first
+    * summand is an addition or a sum itself, its summands are taken over (flattening of the
+    * left-nested chain).
+    * 
+    * @param summands summands (at least one)
+    * @return the only summand, an addition (two summands) or a sum (more summands)
+    */
+   public static ASTElement createSum(List<ASTElement> summands) {
+      if (summands == null) {
+         throw new IllegalArgumentException("'summands' must not be null.");
+      }
+      if (summands.isEmpty()) {
+         throw new IllegalArgumentException("'summands' must not be empty.");
+      }
+      
+      if (summands.size() == 1) {
+         return summands.get(0);
+      }
+      
+      ASTElement firstSummand = summands.get(0);
+      ArrayList<ASTElement> flatSummands = new ArrayList<ASTElement>(summands.size() + 1);
+      if (firstSummand instanceof ASTPlus) {
+         flatSummands.add(((ASTPlus)firstSummand).getLeftElement());
+         flatSummands.add(((ASTPlus)firstSummand).getRightElement());
+      } else if (firstSummand instanceof ASTSum) {
+         flatSummands.addAll(Arrays.asList(((ASTSum)firstSummand).summands));
+      } else {
+         flatSummands.add(firstSummand);
+      }
+      flatSummands.addAll(summands.subList(1, summands.size()));
+      
+      if (flatSummands.size() == 2) {
+         return new ASTPlus(flatSummands.get(0), flatSummands.get(1));
+      }
+      return new ASTSum(flatSummands.toArray(new ASTElement[flatSummands.size()]));
+   }
+   
+   /**
+    * Evaluates the ASTElement.
+    * 
+    * @return ASTElement value
+    */
+   public double evaluate() {
+      double sum = summands[0].evaluate();
+      for (int i = 1; i < summands.length; i++) {
+         sum += summands[i].evaluate();
+      }
+      return sum;
+   }
+   
+   /**
+    * Gets all nodes in this AST subtree (inclusive this ASTElement).
+    * 
+    * @return set of all nodes in AST subtree
+    */
+   public HashSet<AbstractNode> getAllNodesInASTSubtree() {
+      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+      new ASTDependencyCollector().collectNodes(this, nodeSet);
+      return nodeSet;
+   }
+   
+   /**
+    * Gets a <code>String</code> representation of the node's formula.
+    * 
+    * @return <code>String</code> representation of the node's formula
+    */
+   public String getStringRepresentation() {
+      StringBuilder stringRepresentation = new StringBuilder(summands[0].getStringRepresentation());
+      for (int i = 1; i < summands.length; i++) {
+         if (needsParentheses(summands[i])) {
+            stringRepresentation.append(" + (").append(summands[i].getStringRepresentation()).append(")");
+         } else {
+            stringRepresentation.append(" + ").append(summands[i].getStringRepresentation());
+         }
+      }
+      return stringRepresentation.toString();
+   }
+   
+   /**
+    * Gets a short <code>String</code> representation of the node's formula.
+    * 
+    * @param auxiliaryNode2id auxiliary node to id mapping
+    * @param constantNode2id constant node to id mapping
+    * @param levelNode2id level node to id mapping
+    * @return short <code>String</code> representation of the node's formula
+    */
+   public String getShortStringRepresentation(HashMap<AuxiliaryNode, Integer> auxiliaryNode2id,
+                                              HashMap<ConstantNode, Integer> constantNode2id,
+                                              HashMap<LevelNode, Integer> levelNode2id) {
+      if (auxiliaryNode2id == null) {
+         throw new IllegalArgumentException("'auxiliaryNode2id' must not be null.");
+      }
+      if (constantNode2id == null) {
+         throw new IllegalArgumentException("'constantNode2id' must not be null.");
+      }
+      if (levelNode2id == null) {
+         throw new IllegalArgumentException("'levelNode2id' must not be null.");
+      }
+      
+      StringBuilder stringRepresentation =
+         new StringBuilder(summands[0].getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id));
+      for (int i = 1; i < summands.length; i++) {
+         String summand = summands[i].getShortStringRepresentation(auxiliaryNode2id, constantNode2id, levelNode2id);
+         if (needsParentheses(summands[i])) {
+            stringRepresentation.append(" + (").append(summand).append(")");
+         } else {
+            stringRepresentation.append(" + ").append(summand);
+         }
+      }
+      return stringRepresentation.toString();
+   }
+   
+   /**
+    * Returns this instance. AST elements are immutable, so there is no need for a copy.
+    * 
+    * @return this instance
+    */
+   @Override
+   public Object clone() {
+      return this;
+   }
+   
+   /**
+    * Gets the number of summands.
+    * 
+    * @return number of summands
+    */
+   public int getNumberOfOperands() {
+      return summands.length;
+   }
+   
+   /**
+    * Gets the summand with the specified index.
+    * 
+    * @param index index (from 0 to number of summands - 1)
+    * @return summand
+    */
+   public ASTElement getOperand(int index) {
+      return summands[index];
+   }
+   
+   /**
+    * Returns a sum with the specified summands. If these are the summands of this sum, this
+    * instance is returned. Otherwise, a new instance is created which shares the specified
+    * subtrees.
+    * 
+    * @param summands summands (at least two; the array is copied)
+    * @return sum with the specified summands
+    */
+   public ASTSum withOperands(ASTElement[] summands) {
+      if (summands != null && Arrays.equals(summands, this.summands)) {
+         return this;
+      }
+      
+      return new ASTSum(summands);
+   }
+   
+   /**
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
+    * 
+    * @param visitor visitor
+    */
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
+      }
+      
+      visitor.visit(this);
+   }
+   
+   /**
+    * Checks whether the specified summand (not the first one) has to be put in parentheses.
+    * 
+    * @param summand summand
+    * @return <code>true</code> iff the summand has to be put in parentheses
+    */
+   private static boolean needsParentheses(ASTElement summand) {
+      return summand instanceof ASTPlus || summand instanceof ASTMinus || summand instanceof ASTSum;
+   }
+}
@@ -0,0 +1,127 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This interface describes a visitor for abstract syntax trees (ASTs) of formulas.
+ * <p>
+ * An AST element calls the <code>visit</code> method for its own type when
+ * {@link ASTElement#accept(ASTVisitor)} is invoked. The visitor decides itself whether and in
+ * which order the operands of an operation are visited (see
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTWalker} for a depth-first traversal).
+ *
+ * @version 1.0
+ */
+public interface ASTVisitor {
+   
+   /**
+    * Visits an addition.
+    * 
+    * @param astPlus addition
+    */
+   public void visit(ASTPlus astPlus);
+   
+   /**
+    * Visits a subtraction.
+    * 
+    * @param astMinus subtraction
+    */
+   public void visit(ASTMinus astMinus);
+   
+   /**
+    * Visits a multiplication.
+    * 
+    * @param astMultiply multiplication
+    */
+   public void visit(ASTMultiply astMultiply);
+   
+   /**
+    * Visits a sum.
+    * 
+    * @param astSum sum
+    */
+   public void visit(ASTSum astSum);
+   
+   /**
+    * Visits a product.
+    * 
+    * @param astProduct product
+    */
+   public void visit(ASTProduct astProduct);
+   
+   /**
+    * Visits a division.
+    * 
+    * @param astDivide division
+    */
+   public void visit(ASTDivide astDivide);
+   
+   /**
+    * Visits a minimum.
+    * 
+    * @param astMin minimum
+    */
+   public void visit(ASTMin astMin);
+   
+   /**
+    * Visits a maximum.
+    * 
+    * @param astMax maximum
+    */
+   public void visit(ASTMax astMax);
+   
+   /**
+    * Visits a rounding.
+    * 
+    * @param astRound rounding
+    */
+   public void visit(ASTRound astRound);
+   
+   /**
+    * Visits an auxiliary node.
+    * 
+    * @param auxiliaryNode auxiliary node
+    */
+   public void visit(AuxiliaryNode auxiliaryNode);
+   
+   /**
+    * Visits a constant node.
+    * 
+    * @param constantNode constant node
+    */
+   public void visit(ConstantNode constantNode);
+   
+   /**
+    * Visits a level node.
+    * 
+    * @param levelNode level node
+    */
+   public void visit(LevelNode levelNode);
+   
+   /**
+    * Visits a literal.
+    * 
+    * @param astLiteral literal
+    */
+   public void visit(ASTLiteral astLiteral);
+}
@@ -0,0 +1,203 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This abstract class implements a depth-first (preorder) traversal of an abstract syntax tree
+ * (AST). For every operation, {@link #visitOperation(ASTElement)} is called before its operands
+ * are visited (from left to right). For every leaf, {@link #visitNode(AbstractNode)} is called
+ * (literals are passed to {@link #visitLiteral(ASTLiteral)}, which ignores them by default).
+ * <p>
+ * The traversal does not allocate any objects.
+ *
+ * @version 1.0
+ */
+public abstract class ASTWalker implements ASTVisitor {
+   
+   /**
+    * Is called for every operation before its operands are visited. The default implementation
+    * does nothing.
+    * 
+    * @param operation operation
+    */
+   protected void visitOperation(ASTElement operation) {
+      // do nothing
+   }
+   
+   /**
+    * Is called for every leaf (auxiliary, constant or level node).
+    * 
+    * @param node node
+    */
+   protected abstract void visitNode(AbstractNode node);
+   
+   /**
+    * Is called for every literal. The default implementation does nothing.
+    * 
+    * @param literal literal
+    */
+   protected void visitLiteral(ASTLiteral literal) {
+      // do nothing
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ASTVisitor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Visits an addition.
+    * 
+    * @param astPlus addition
+    */
+   public void visit(ASTPlus astPlus) {
+      visitOperation(astPlus);
+      astPlus.getLeftElement().accept(this);
+      astPlus.getRightElement().accept(this);
+   }
+   
+   /**
+    * Visits a subtraction.
+    * 
+    * @param astMinus subtraction
+    */
+   public void visit(ASTMinus astMinus) {
+      visitOperation(astMinus);
+      astMinus.getLeftElement().accept(this);
+      astMinus.getRightElement().accept(this);
+   }
+   
+   /**
+    * Visits a multiplication.
+    * 
+    * @param astMultiply multiplication
+    */
+   public void visit(ASTMultiply astMultiply) {
+      visitOperation(astMultiply);
+      astMultiply.getLeftElement().accept(this);
+      astMultiply.getRightElement().accept(this);
+   }
+   
+   /**
+    * Visits a sum.
+    * 
+    * @param astSum sum
+    */
+   public void visit(ASTSum astSum) {
+      visitOperation(astSum);
+      for (int i = 0; i < astSum.getNumberOfOperands(); i++) {
+         astSum.getOperand(i).accept(this);
+      }
+   }
+   
+   /**
+    * Visits a product.
+    * 
+    * @param astProduct product
+    */
+   public void visit(ASTProduct astProduct) {
+      visitOperation(astProduct);
+      for (int i = 0; i < astProduct.getNumberOfOperands(); i++) {
+         astProduct.getOperand(i).accept(this);
+      }
+   }
+   
+   /**
+    * Visits a division.
+    * 
+    * @param astDivide division
+    */
+   public void visit(ASTDivide astDivide) {
+      visitOperation(astDivide);
+      astDivide.getLeftElement().accept(this);
+      astDivide.getRightElement().accept(this);
+   }
+   
+   /**
+    * Visits a minimum.
+    * 
+    * @param astMin minimum
+    */
+   public void visit(ASTMin astMin) {
+      visitOperation(astMin);
+      astMin.getLeftElement().accept(this);
+      astMin.getRightElement().accept(this);
+   }
+   
+   /**
+    * Visits a maximum.
+    * 
+    * @param astMax maximum
+    */
+   public void visit(ASTMax astMax) {
+      visitOperation(astMax);
+      astMax.getLeftElement().accept(this);
+      astMax.getRightElement().accept(this);
+   }
+   
+   /**
+    * Visits a rounding.
+    * 
+    * @param astRound rounding
+    */
+   public void visit(ASTRound astRound) {
+      visitOperation(astRound);
+      astRound.getLeftElement().accept(this);
+      astRound.getRightElement().accept(this);
+   }
+   
+   /**
+    * Visits an auxiliary node.
+    * 
+    * @param auxiliaryNode auxiliary node
+    */
+   public void visit(AuxiliaryNode auxiliaryNode) {
+      visitNode(auxiliaryNode);
+   }
+   
+   /**
+    * Visits a constant node.
+    * 
+    * @param constantNode constant node
+    */
+   public void visit(ConstantNode constantNode) {
+      visitNode(constantNode);
+   }
+   
+   /**
+    * Visits a level node.
+    * 
+    * @param levelNode level node
+    */
+   public void visit(LevelNode levelNode) {
+      visitNode(levelNode);
+   }
+   
+   /**
+    * Visits a literal.
+    * 
+    * @param astLiteral literal
+    */
+   public void visit(ASTLiteral astLiteral) {
+      visitLiteral(astLiteral);
+   }
+}
@@ -38,6 +38,32 @@ public abstract class AbstractNode {
    
    private String nodeName;
    
+   /** dense id within the model (-1 if the node does not belong to a model) */
+   private int id = -1;
+   
+   /**
+    * Sets the node's id. Called by the model when the node is created.
+    * 
+    * @param id id (not negative)
+    */
+   void setId(int id) {
+      if (id < 0) {
+         throw new IllegalArgumentException("'id' must not be negative.");
+      }
+      
+      this.id = id;
+   }
+   
+   /**
+    * Gets the node's id. The ids of a model's nodes are dense (from 0 to the number of created nodes
+    * - 1) and do not change, so they can be used as indexes into arrays.
+    * 
+    * @return id (-1 if the node does not belong to a model)
+    */
+   int getId() {
+      return id;
+   }
+   
    /**
     * Sets the node name.
     * 
@@ -41,6 +41,9 @@ public class AuxiliaryNode extends AbstractNode implements ASTElement {
    
    private ASTElement formula;
    
+   /** executed form of the formula (see {@link ASTOptimizer}) */
+   private ASTElement executionFormula;
+   
    /**
     * Constructor.
     * 
@@ -65,18 +68,14 @@ public class AuxiliaryNode extends AbstractNode implements ASTElement {
    }
    
    /**
-    * Sets the auxiliary node's formula. A deep copy of the formula is stored. So the stored formula
-    * cannot be changed from outside. The formula can also be <code>null</code> in order to
-    * delete the formula.
+    * Sets the auxiliary node's formula. As AST elements are immutable, the formula is stored without
+    * copying it. The formula can also be <code>null</code> in order to delete the formula.
     * 
     * @param formula formula
     */
    void setFormula(ASTElement formula) {
-      if (formula == null) {
-         this.formula = null;
-      } else {
-         this.formula = (ASTElement)formula.clone();
-      }
+      this.formula = formula;
+      executionFormula = formula;
    }
    
    /**
@@ -89,17 +88,38 @@ public class AuxiliaryNode extends AbstractNode implements ASTElement {
    }
    
    /**
-    * Gets the auxiliary node's formula. A deep copy of the formula is returned. So the stored
-    * formula cannot be changed from outside.
+    * Gets the auxiliary node's formula. As AST elements are immutable, the stored formula itself is
+    * returned.
     * 
     * @return auxiliary node's formula or <code>null</code> iff there is no formula
     */
    public ASTElement getFormula() {
-      if (formula == null) {
-         return null;
+      return formula;
+   }
+   
+   /**
+    * Sets the executed form of the auxiliary node's formula, i.e. an optimized formula which computes
+    * bit-identical values (see {@link ASTOptimizer}). The formula itself (e.g. for display and
+    * XML export) is not changed.
+    * 
+    * @param executionFormula executed form of the formula
+    */
+   void setExecutionFormula(ASTElement executionFormula) {
+      if (executionFormula == null) {
+         throw new IllegalArgumentException("'executionFormula' must not be null.");
       }
       
-      return (ASTElement)formula.clone();
+      this.executionFormula = executionFormula;
+   }
+   
+   /**
+    * Gets the executed form of the auxiliary node's formula. Unless an optimized formula was set, this
+    * is the formula itself.
+    * 
+    * @return executed form of the formula or <code>null</code> iff there is no formula
+    */
+   ASTElement getExecutionFormula() {
+      return executionFormula;
    }
    
    /**
@@ -108,7 +128,38 @@ public class AuxiliaryNode extends AbstractNode implements ASTElement {
     * @return set of all nodes this auxiliary node depends on
     */
    public HashSet<AbstractNode> getAllNodesThisOneDependsOn() {
-      return (formula != null) ? formula.getAllNodesInASTSubtree() : new HashSet<AbstractNode>();
+      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+      collectAllNodesThisOneDependsOn(nodeSet);
+      return nodeSet;
+   }
+   
+   /**
+    * Adds all nodes this auxiliary node depends on to the specified set.
+    * 
+    * @param nodes set the nodes are added to
+    */
+   public void collectAllNodesThisOneDependsOn(Set<AbstractNode> nodes) {
+      if (nodes == null) {
+         throw new IllegalArgumentException("'nodes' must not be null.");
+      }
+      
+      if (formula != null) {
+         new ASTDependencyCollector().collectNodes(formula, nodes);
+      }
+   }
+   
+   /**
+    * Checks whether this auxiliary node depends on the specified node.
+    * 
+    * @param node node
+    * @return <code>true</code> iff the specified node is part of this auxiliary node's formula
+    */
+   public boolean dependsOn(AbstractNode node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      
+      return (formula != null) && new ASTDependencyCollector().containsNode(formula, node);
    }
 
    /////////////////////////////////////////////////////////////////////////////////////////////////
@@ -130,7 +181,7 @@ public double getCurrentValue() {
     */
    @Override
 void computeNextValue() {
-      currentValue = formula.evaluate();
+      currentValue = executionFormula.evaluate();
    }
    
    /////////////////////////////////////////////////////////////////////////////////////////////////
@@ -200,63 +251,16 @@ public Object clone() {
    }
    
    /**
-    * Returns an iterator over the subtree of this node (here: only this node).
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
     * 
-    * @return iterator over the subtree of this node (here: only this node)
-    */
-   public Iterator<ASTElement> iterator() {
-      return new AuxiliaryNodeIterator(this);
-   }
-   
-   /**
-    * Inner class implementing the {@link java.util.Iterator} interface. 
+    * @param visitor visitor
     */
-   private class AuxiliaryNodeIterator implements Iterator<ASTElement> {
-      
-      private AuxiliaryNode auxiliaryNode;
-      
-      /**
-       * Constructor.
-       * 
-       * @param auxiliaryNode {@link de.uka.aifb.com.systemDynamics.model.AuxiliaryNode} instance
-       */
-      private AuxiliaryNodeIterator(AuxiliaryNode auxiliaryNode) {
-         if (auxiliaryNode == null) {
-            throw new IllegalArgumentException("'auxiliaryNode' must not be null.");
-         }
-         
-         this.auxiliaryNode = auxiliaryNode;
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
       }
       
-      /**
-       * Checks if there is a next element in this iteration.
-       * 
-       * @return <code>true</code> iff there is a next element
-       */
-      public boolean hasNext() {
-         return auxiliaryNode != null;
-      }
-      
-      /**
-       * Gets this iteration's next element.
-       * 
-       * @return next element
-       */
-      public ASTElement next() {
-         if (auxiliaryNode != null) {
-            AuxiliaryNode temp = auxiliaryNode;
-            auxiliaryNode = null;
-            return temp;
-         } else {
-            throw new NoSuchElementException();
-         }
-      }
-      
-      /**
-       * Removes the element last returned by this iterator.
-       */
-      public void remove() {
-         throw new UnsupportedOperationException();
-      }
+      visitor.visit(this);
    }
 }
\ No newline at end of file
@@ -21,19 +21,55 @@
 
 package de.uka.aifb.com.systemDynamics.model;
 
+import java.util.*;
+
 /**
  * This AuxiliaryNodeCycleDependencyException indicates that the model's auxiliary nodes have
- * a cycle dependency.
+ * a cycle dependency. The exception contains all auxiliary nodes of the cycle (i.e. of the strongly
+ * connected component).
  *
  * @author Joachim Melcher, University of Karlsruhe, AIFB
  * @version 1.0
  */
-public class AuxiliaryNodesCycleDependencyException extends Exception {
+public class AuxiliaryNodesCycleDependencyException extends ModelValidationException {
    
    private static final long serialVersionUID = 1L;
    private static final String MESSAGE = "The model's auxiliary nodes have a cycle dependency.";
    
+   private List<AuxiliaryNode> cycleNodes;
+   
+   /**
+    * Constructor (the auxiliary nodes of the cycle are unknown).
+    */
    public AuxiliaryNodesCycleDependencyException() {
       super(MESSAGE);
+      cycleNodes = Collections.emptyList();
+   }
+   
+   /**
+    * Constructor.
+    * 
+    * @param cycleNodes auxiliary nodes of the cycle
+    */
+   public AuxiliaryNodesCycleDependencyException(List<AuxiliaryNode> cycleNodes) {
+      super(MESSAGE);
+      if (cycleNodes == null) {
+         throw new IllegalArgumentException("'cycleNodes' must not be null.");
+      }
+      this.cycleNodes = Collections.unmodifiableList(new ArrayList<AuxiliaryNode>(cycleNodes));
+   }
+   
+   /**
+    * Gets the auxiliary nodes of the cycle.
+    * 
+    * @return auxiliary nodes of the cycle (empty if unknown)
+    */
+   public List<AuxiliaryNode> getCycleNodes() {
+      return cycleNodes;
+   }
+   
+   @Override
+   public List<AbstractNode> getProblematicNodes() {
+      return new ArrayList<AbstractNode>(cycleNodes);
    }
 }
\ No newline at end of file
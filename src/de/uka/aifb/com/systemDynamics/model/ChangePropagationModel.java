@@ -0,0 +1,232 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class implements an execution backend which only re-evaluates the nodes whose inputs have
+ * changed (change propagation). It pays off for models with large subsystems which reach a fixed
+ * point early.
+ * <p>
+ * An auxiliary or rate node is only evaluated if a node of its formula has changed since the node
+ * was evaluated last, i.e. after the first time step, quiescent subgraphs are skipped completely.
+ * A level node is skipped if all its flows are zero, as its value would not change. Whether a value
+ * has changed is detected exactly (the default) or with a tolerance: a node only counts as changed
+ * if its value differs by more than epsilon from the value it had when it counted as changed the
+ * last time, so slow drifts are propagated after all. With exact change detection, the computed
+ * values are the same as the ones of
+ * {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()}, as a skipped node would
+ * get the same value again.
+ * <p>
+ * Like the interpreter, this class works on the nodes of the model. It counts the evaluated and the
+ * skipped node evaluations.
+ *
+ * @version 1.0
+ */
+public class ChangePropagationModel implements ModelExecutor {
+   
+   private Model model;
+   
+   private double epsilon;
+   
+   /** evaluation schedule of the model (auxiliary nodes, rate nodes, level nodes) */
+   private AbstractNode[] schedule;
+   
+   /** schedule positions of the auxiliary and rate nodes depending on each scheduled node */
+   private int[][] dependantPositions;
+   
+   /** by schedule position: has a node of the formula changed since the last evaluation? */
+   private boolean[] isInputChanged;
+   
+   /** by schedule position: value when the node counted as changed the last time */
+   private double[] propagatedValues;
+   
+   private long numberOfEvaluations;
+   private long numberOfSkippedEvaluations;
+   
+   /**
+    * Constructor. Changes are detected exactly.
+    * 
+    * @param model model to execute (must already be unchangeable)
+    */
+   public ChangePropagationModel(Model model) {
+      this(model, 0);
+   }
+   
+   /**
+    * Constructor.
+    * 
+    * @param model model to execute (must already be unchangeable)
+    * @param epsilon maximum difference of a value which does not count as change (0: changes are
+    *                detected exactly)
+    */
+   public ChangePropagationModel(Model model, double epsilon) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (model.isChangeable()) {
+         throw new ModelStillChangeableException();
+      }
+      if (!(epsilon >= 0)) {
+         throw new IllegalArgumentException("'epsilon' must not be negative.");
+      }
+      
+      this.model = model;
+      this.epsilon = epsilon;
+      schedule = model.getEvaluationSchedule();
+      
+      int[] id2position = new int[model.getNumberOfNodeIds()];
+      Arrays.fill(id2position, -1);
+      for (int i = 0; i < schedule.length; i++) {
+         id2position[schedule[i].getId()] = i;
+      }
+      
+      dependantPositions = new int[schedule.length][];
+      ArrayList<Integer> positions = new ArrayList<Integer>();
+      for (int i = 0; i < schedule.length; i++) {
+         positions.clear();
+         for (AbstractNode dependant : model.getDependants(schedule[i])) {
+            // (the level nodes a rate node flows to or from are checked in each time step anyway)
+            if (dependant instanceof LevelNode || id2position[dependant.getId()] < 0) {
+               continue;
+            }
+            positions.add(id2position[dependant.getId()]);
+         }
+         dependantPositions[i] = new int[positions.size()];
+         for (int j = 0; j < dependantPositions[i].length; j++) {
+            dependantPositions[i][j] = positions.get(j);
+         }
+      }
+      
+      // in the first time step, all nodes are evaluated
+      isInputChanged = new boolean[schedule.length];
+      Arrays.fill(isInputChanged, true);
+      propagatedValues = new double[schedule.length];
+      for (int i = 0; i < schedule.length; i++) {
+         propagatedValues[i] = schedule[i].getCurrentValue();
+      }
+   }
+   
+   /**
+    * Gets the number of node evaluations so far.
+    * 
+    * @return number of node evaluations
+    */
+   public long getNumberOfEvaluations() {
+      return numberOfEvaluations;
+   }
+   
+   /**
+    * Gets the number of node evaluations skipped so far, because the node's value could not
+    * change.
+    * 
+    * @return number of skipped node evaluations
+    */
+   public long getNumberOfSkippedEvaluations() {
+      return numberOfSkippedEvaluations;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ModelExecutor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Computes the nodes' values for the next time step.
+    */
+   public void computeNextValues() {
+      // The dependants of auxiliary and rate nodes follow them in the schedule, so they are marked
+      // for this time step. The dependants of level nodes precede them, so they are marked for the
+      // next time step.
+      for (int i = 0; i < schedule.length; i++) {
+         AbstractNode node = schedule[i];
+         if (node instanceof LevelNode) {
+            if (hasOnlyZeroFlows((LevelNode)node)) {
+               numberOfSkippedEvaluations++;
+               continue;
+            }
+         } else {
+            if (!isInputChanged[i]) {
+               numberOfSkippedEvaluations++;
+               continue;
+            }
+            isInputChanged[i] = false;
+         }
+         
+         node.computeNextValue();
+         numberOfEvaluations++;
+         
+         double value = node.getCurrentValue();
+         if (isChanged(propagatedValues[i], value)) {
+            propagatedValues[i] = value;
+            for (int dependantPosition : dependantPositions[i]) {
+               isInputChanged[dependantPosition] = true;
+            }
+         }
+      }
+   }
+   
+   /**
+    * Gets the current value of the specified node.
+    * 
+    * @param node level, rate, auxiliary or constant node of the executed model
+    * @return current value
+    */
+   public double getCurrentValue(AbstractNode node) {
+      return model.getCurrentValue(node);
+   }
+   
+   /**
+    * Checks whether all flows of the specified level node are zero.
+    * 
+    * @param levelNode level node
+    * @return <code>true</code> iff all flows are zero
+    */
+   private static boolean hasOnlyZeroFlows(LevelNode levelNode) {
+      for (RateNode rateNode : levelNode.getIncomingFlows()) {
+         if (rateNode.getCurrentValue() != 0) {
+            return false;
+         }
+      }
+      for (RateNode rateNode : levelNode.getOutgoingFlows()) {
+         if (rateNode.getCurrentValue() != 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * Checks whether the specified new value counts as change of the specified old value.
+    * 
+    * @param oldValue old value
+    * @param newValue new value
+    * @return <code>true</code> iff the value has changed
+    */
+   private boolean isChanged(double oldValue, double newValue) {
+      if (epsilon == 0) {
+         return Double.doubleToLongBits(oldValue) != Double.doubleToLongBits(newValue);
+      }
+      return !(Math.abs(newValue - oldValue) <= epsilon);
+   }
+}
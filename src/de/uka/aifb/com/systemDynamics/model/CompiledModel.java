@@ -0,0 +1,1125 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+
+/**
+ * This class implements a compiled execution backend for a System Dynamics model.
+ * <p>
+ * When an instance is created, all node values are stored in one flat <code>double</code> array
+ * and the formulas of the auxiliary and rate nodes are lowered into a linear instruction stream
+ * (in the order of the model's evaluation schedule). A time step then is just one pass over the
+ * instruction stream followed by the level node updates - without any virtual calls, iterators or
+ * hash set lookups.
+ * <p>
+ * The executed (optimized) form of the formulas is compiled (see
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTOptimizer}), literals are stored in slots of their
+ * own. The computed values are bit-identical to the ones computed by
+ * {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()}: the operations are
+ * executed with the same operands and the flows of a level node are added and subtracted in the
+ * same order.
+ * <p>
+ * Common subexpressions are evaluated only once per time step: an operation which occurs several
+ * times in the (hash-consed, see {@link de.uka.aifb.com.systemDynamics.model.ASTInterner})
+ * executed formulas is stored in a slot of its own (or in the slot of the node whose whole formula
+ * it is) when it is evaluated for the first time, and all further occurrences use this slot.
+ * <p>
+ * Optionally, a bytecode tier can be enabled: after a warm-up number of rounds, a class with one
+ * straight-line method computing the whole time step is generated and used for all following
+ * rounds (see {@link de.uka.aifb.com.systemDynamics.model.StepClassGenerator}). If the class
+ * cannot be generated or loaded, the instruction stream is used further on.
+ * <p>
+ * The compiled model starts with the current values of the model's nodes and afterwards works on
+ * its own copy of the values, i.e. the nodes of the model are not changed by this class.
+ * <p>
+ * By default, a time step is one round (Euler method, DT = 1). The explicit fixed-step methods
+ * (Euler method, Heun's method and the classical Runge-Kutta method with any DT) can be specified
+ * as well (see {@link #CompiledModel(Model, SimulationSpecification)}): the instruction stream is
+ * then executed for each evaluation of the flows and the level nodes are integrated exactly as by
+ * {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()}. The bytecode tier is only
+ * available for the default specification.
+ * <p>
+ * Besides its own run, the compiled model can execute any number of further runs concurrently:
+ * each run keeps its values and its round counter in a {@link SimulationState} of its own (see
+ * {@link #createSimulationState()} and {@link #computeNextValues(SimulationState)}), while the
+ * instruction stream, the slots and the flow arrays are shared and never changed after the
+ * compilation. These runs always use the instruction stream, not the bytecode tier.
+ *
+ * @version 1.0
+ */
+public class CompiledModel implements ModelExecutor {
+   
+   /** opcode: target = operand 1 */
+   static final int COPY = 0;
+   
+   /** opcode: target = operand 1 + operand 2 */
+   static final int ADD = 1;
+   
+   /** opcode: target = operand 1 - operand 2 */
+   static final int SUBTRACT = 2;
+   
+   /** opcode: target = operand 1 * operand 2 */
+   static final int MULTIPLY = 3;
+   
+   /** opcode: target = operand 1 / operand 2 */
+   static final int DIVIDE = 4;
+   
+   /** opcode: target = min(operand 1, operand 2) */
+   static final int MIN = 5;
+   
+   /** opcode: target = max(operand 1, operand 2) */
+   static final int MAX = 6;
+   
+   /** opcode: target = operand 1 rounded to operand 2 decimal places */
+   static final int ROUND = 7;
+   
+   /** number of <code>int</code>s per instruction (opcode, target slot, operand slot 1, operand slot 2) */
+   static final int INSTRUCTION_LENGTH = 4;
+   
+   /** default number of rounds executed before the bytecode tier is switched on */
+   public static final int DEFAULT_WARM_UP_ROUNDS = 100;
+   
+   private static final String GENERATED_CLASS_NAME_PREFIX =
+      "de.uka.aifb.com.systemDynamics.model.GeneratedModelStep";
+   
+   /** number of generated classes (used for unique class names) */
+   private static int numberOfGeneratedClasses;
+   
+   private Model model;
+   
+   private SimulationSpecification simulationSpecification;
+   
+   /**
+    * <code>true</code> iff the executed (optimized) formulas are compiled, otherwise the original
+    * formulas are compiled, which still read the constant nodes' slots
+    */
+   private boolean compilesExecutionFormulas;
+   
+   /**
+    * node values: level nodes (in evaluation schedule order), auxiliary nodes, rate nodes,
+    * constant nodes, literals, common subexpressions and at last the temporary values of the
+    * formulas
+    */
+   private double[] values;
+   
+   /** values before the first time step (copied for each simulation state) */
+   private double[] initialValues;
+   
+   /** instruction stream for the auxiliary and rate nodes (in evaluation schedule order) */
+   private int[] code;
+   
+   private int numberOfLevelNodes;
+   
+   /** flows of level node i: slots incomingFlowSlots[incomingFlowStart[i]..incomingFlowStart[i+1]-1] */
+   private int[] incomingFlowStart;
+   private int[] incomingFlowSlots;
+   private int[] outgoingFlowStart;
+   private int[] outgoingFlowSlots;
+   
+   /** first instruction index (in <code>int</code>s) of each auxiliary and rate node's formula */
+   private HashMap<AbstractNode, Integer> node2codeStart;
+   
+   private HashMap<AbstractNode, Integer> node2slot;
+   
+   /** slot of each (distinct) literal value */
+   private HashMap<Double, Integer> literal2slot;
+   
+   /** number of operations of the executed formulas without common subexpression elimination */
+   private int numberOfFormulaOperations;
+   
+   /** bytecode tier */
+   private boolean isBytecodeTierPending;
+   private int warmUpRounds;
+   private int executedRounds;
+   private ModelStep modelStep;
+   
+   /** data structures used during compilation */
+   private int firstTemporarySlot;
+   private int numberOfTemporarySlots;
+   private int[] codeBuffer;
+   private int codeLength;
+   private IdentityHashMap<ASTElement, Integer> operation2occurrences;
+   private IdentityHashMap<ASTElement, Integer> commonSubexpression2slot;
+   private int nextCommonSubexpressionSlot;
+   
+   /**
+    * Constructor. Compiles the specified model. The bytecode tier is not used.
+    * 
+    * @param model model to compile (must already be unchangeable)
+    */
+   public CompiledModel(Model model) {
+      this(model, true);
+   }
+   
+   /**
+    * Constructor. Compiles the specified model. The bytecode tier is not used.
+    * <p>
+    * If the original formulas are compiled instead of the executed ones, no constant is folded into
+    * a literal, so the values of the constant nodes' slots can be changed afterwards (see
+    * {@link MultiScenarioModel}).
+    * 
+    * @param model model to compile (must already be unchangeable)
+    * @param compileExecutionFormulas <code>true</code> iff the executed (optimized) formulas are
+    *                                 compiled, otherwise the original formulas are compiled
+    */
+   CompiledModel(Model model, boolean compileExecutionFormulas) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (model.isChangeable()) {
+         throw new ModelStillChangeableException();
+      }
+      
+      this.model = model;
+      this.compilesExecutionFormulas = compileExecutionFormulas;
+      simulationSpecification = SimulationSpecification.DEFAULT;
+      
+      compile();
+   }
+   
+   /**
+    * Constructor. Compiles the specified model and switches on the bytecode tier after the
+    * specified number of rounds.
+    * 
+    * @param model model to compile (must already be unchangeable)
+    * @param warmUpRounds number of rounds executed before the bytecode tier is switched on
+    *                     (at least 0)
+    */
+   public CompiledModel(Model model, int warmUpRounds) {
+      this(model);
+      
+      if (warmUpRounds < 0) {
+         throw new IllegalArgumentException("'warmUpRounds' must be at least 0.");
+      }
+      
+      this.warmUpRounds = warmUpRounds;
+      isBytecodeTierPending = true;
+   }
+   
+   /**
+    * Constructor. Compiles the specified model, whose level nodes are integrated with the
+    * specified explicit fixed-step method. The bytecode tier is not used.
+    * 
+    * @param model model to compile (must already be unchangeable)
+    * @param simulationSpecification simulation specification (see {@link #isSupported(SimulationSpecification)})
+    */
+   public CompiledModel(Model model, SimulationSpecification simulationSpecification) {
+      this(model);
+      
+      if (simulationSpecification == null) {
+         throw new IllegalArgumentException("'simulationSpecification' must not be null.");
+      }
+      if (!isSupported(simulationSpecification)) {
+         throw new IllegalArgumentException("'simulationSpecification' must specify an explicit fixed-step method.");
+      }
+      
+      this.simulationSpecification = simulationSpecification;
+   }
+   
+   /**
+    * Checks whether compiled models can integrate with the specified simulation specification,
+    * i.e. whether it specifies an explicit fixed-step method (neither the adaptive nor an implicit
+    * method).
+    * 
+    * @param simulationSpecification simulation specification
+    * @return <code>true</code> iff the simulation specification is supported
+    */
+   public static boolean isSupported(SimulationSpecification simulationSpecification) {
+      if (simulationSpecification == null) {
+         throw new IllegalArgumentException("'simulationSpecification' must not be null.");
+      }
+      
+      return !simulationSpecification.isAdaptive() && !simulationSpecification.isImplicit();
+   }
+   
+   /**
+    * Gets the simulation specification the level nodes are integrated with.
+    * 
+    * @return simulation specification
+    */
+   public SimulationSpecification getSimulationSpecification() {
+      return simulationSpecification;
+   }
+   
+   /**
+    * Gets the compiled model.
+    * 
+    * @return compiled model
+    */
+   public Model getModel() {
+      return model;
+   }
+   
+   /**
+    * Gets the number of instructions of the compiled instruction stream.
+    * 
+    * @return number of instructions
+    */
+   public int getNumberOfInstructions() {
+      return code.length / INSTRUCTION_LENGTH;
+   }
+   
+   /**
+    * Gets the number of operations evaluated per time step, i.e. the number of operations of the
+    * executed formulas after common subexpression elimination.
+    * 
+    * @return number of operations evaluated per time step
+    */
+   public int getNumberOfEvaluatedOperations() {
+      int numberOfEvaluatedOperations = 0;
+      for (int i = 0; i < code.length; i += INSTRUCTION_LENGTH) {
+         if (code[i] != COPY) {
+            numberOfEvaluatedOperations++;
+         }
+      }
+      return numberOfEvaluatedOperations;
+   }
+   
+   /**
+    * Gets the number of operations per time step which are not evaluated thanks to common
+    * subexpression elimination.
+    * 
+    * @return number of eliminated operations per time step
+    */
+   public int getNumberOfEliminatedOperations() {
+      return numberOfFormulaOperations - getNumberOfEvaluatedOperations();
+   }
+   
+   /**
+    * Checks whether the time steps are computed by generated bytecode.
+    * 
+    * @return <code>true</code> iff the bytecode tier is active
+    */
+   public boolean isBytecodeTierActive() {
+      return modelStep != null;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ModelExecutor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Computes the nodes' values for the next time step.
+    */
+   public void computeNextValues() {
+      if (isBytecodeTierPending && executedRounds >= warmUpRounds) {
+         createModelStep();
+      }
+      if (modelStep != null) {
+         modelStep.step(values);
+         return;
+      }
+      executedRounds++;
+      
+      step(values);
+   }
+   
+   /**
+    * Gets the current value of the specified node.
+    * 
+    * @param node level, rate, auxiliary or constant node of the compiled model
+    * @return current value
+    */
+   public double getCurrentValue(AbstractNode node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      if (node instanceof SourceSinkNode) {
+         throw new UnsupportedOperationException();
+      }
+      
+      Integer slot = node2slot.get(node);
+      if (slot == null) {
+         throw new IllegalArgumentException("'node' must be a node of the compiled model.");
+      }
+      
+      return values[slot];
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // concurrent runs
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Creates the state of a new run, starting with the initial values (the nodes' values when the
+    * model was compiled). Only the values array is allocated.
+    * 
+    * @return state of a new run
+    */
+   public SimulationState createSimulationState() {
+      return new SimulationState(this, initialValues.clone());
+   }
+   
+   /**
+    * Computes the nodes' values for the next time step of the run with the specified state. This
+    * method may be called by several threads at the same time for different states.
+    * 
+    * @param state state of the run (created by this compiled model)
+    */
+   public void computeNextValues(SimulationState state) {
+      if (state == null) {
+         throw new IllegalArgumentException("'state' must not be null.");
+      }
+      if (state.getCompiledModel() != this) {
+         throw new IllegalArgumentException("'state' must be a state of this compiled model.");
+      }
+      
+      step(state.getValues());
+      state.incrementRound();
+   }
+   
+   /**
+    * Executes one round on the specified values array: for the default simulation specification,
+    * the instruction stream for the auxiliary and rate nodes and then the level node updates.
+    * Otherwise, the level nodes are integrated over the round (see {@link #integrate(double[])}).
+    * Only the values array is changed.
+    * 
+    * @param values values of all slots
+    */
+   private void step(final double[] values) {
+      if (!simulationSpecification.isDefault()) {
+         integrate(values);
+         return;
+      }
+      
+      // (1) auxiliary nodes and rate nodes
+      executeCode(values);
+      
+      // (2) level nodes: add incoming flows and subtract outgoing flows
+      for (int i = 0; i < numberOfLevelNodes; i++) {
+         double value = values[i];
+         for (int j = incomingFlowStart[i]; j < incomingFlowStart[i + 1]; j++) {
+            value += values[incomingFlowSlots[j]];
+         }
+         for (int j = outgoingFlowStart[i]; j < outgoingFlowStart[i + 1]; j++) {
+            value -= values[outgoingFlowSlots[j]];
+         }
+         values[i] = value;
+      }
+   }
+   
+   /**
+    * Integrates the level nodes over one round with the time step and the explicit fixed-step
+    * method of the simulation specification. The operations are the same as the ones of
+    * {@link Model#computeNextValues()}, so the values are bit-identical. Afterwards, the auxiliary
+    * and rate nodes have the values of the last evaluation within the round.
+    * 
+    * @param values values of all slots
+    */
+   private void integrate(final double[] values) {
+      double dt = simulationSpecification.getDT();
+      double[] startValues = new double[numberOfLevelNodes];
+      double[] slopes = new double[numberOfLevelNodes];
+      double[] slopeSums = new double[numberOfLevelNodes];
+      
+      for (int step = 0; step < simulationSpecification.getNumberOfStepsPerRound(); step++) {
+         System.arraycopy(values, 0, startValues, 0, numberOfLevelNodes);
+         
+         switch (simulationSpecification.getIntegrationMethod()) {
+            case EULER:
+               computeSlopes(values, slopes);
+               setLevelNodeValues(values, startValues, dt, slopes);
+               break;
+            case HEUN:
+               computeSlopes(values, slopes);
+               System.arraycopy(slopes, 0, slopeSums, 0, slopes.length);
+               setLevelNodeValues(values, startValues, dt, slopes);
+               computeSlopes(values, slopes);
+               addSlopes(slopeSums, 1, slopes);
+               setLevelNodeValues(values, startValues, dt / 2, slopeSums);
+               break;
+            case RK4:
+               computeSlopes(values, slopes);
+               System.arraycopy(slopes, 0, slopeSums, 0, slopes.length);
+               setLevelNodeValues(values, startValues, dt / 2, slopes);
+               computeSlopes(values, slopes);
+               addSlopes(slopeSums, 2, slopes);
+               setLevelNodeValues(values, startValues, dt / 2, slopes);
+               computeSlopes(values, slopes);
+               addSlopes(slopeSums, 2, slopes);
+               setLevelNodeValues(values, startValues, dt, slopes);
+               computeSlopes(values, slopes);
+               addSlopes(slopeSums, 1, slopes);
+               setLevelNodeValues(values, startValues, dt / 6, slopeSums);
+               break;
+            default:
+               throw new Error("Unknown integration method " + simulationSpecification.getIntegrationMethod() + ".");
+         }
+      }
+   }
+   
+   /**
+    * Executes the instruction stream and stores the net flows of the level nodes (incoming minus
+    * outgoing flows, in the same order as {@link LevelNode#getNetFlow()}).
+    * 
+    * @param values values of all slots
+    * @param slopes array the net flows are stored into
+    */
+   private void computeSlopes(final double[] values, double[] slopes) {
+      executeCode(values);
+      for (int i = 0; i < numberOfLevelNodes; i++) {
+         double netFlow = 0;
+         for (int j = incomingFlowStart[i]; j < incomingFlowStart[i + 1]; j++) {
+            netFlow += values[incomingFlowSlots[j]];
+         }
+         for (int j = outgoingFlowStart[i]; j < outgoingFlowStart[i + 1]; j++) {
+            netFlow -= values[outgoingFlowSlots[j]];
+         }
+         slopes[i] = netFlow;
+      }
+   }
+   
+   /**
+    * Adds the specified weighted slopes to the slope sums.
+    * 
+    * @param slopeSums slope sums
+    * @param weight weight
+    * @param slopes slopes
+    */
+   private static void addSlopes(double[] slopeSums, double weight, double[] slopes) {
+      for (int i = 0; i < slopeSums.length; i++) {
+         slopeSums[i] += weight * slopes[i];
+      }
+   }
+   
+   /**
+    * Sets the level nodes' values (slots 0 to number of level nodes - 1) to start value + step *
+    * slope.
+    * 
+    * @param values values of all slots
+    * @param startValues start values of the time step
+    * @param step step size
+    * @param slopes slopes
+    */
+   private static void setLevelNodeValues(double[] values, double[] startValues, double step,
+                                          double[] slopes) {
+      for (int i = 0; i < startValues.length; i++) {
+         values[i] = startValues[i] + step * slopes[i];
+      }
+   }
+   
+   /**
+    * Executes the instruction stream, i.e. computes the auxiliary and rate nodes.
+    * 
+    * @param values values of all slots
+    */
+   private void executeCode(final double[] values) {
+      final int[] code = this.code;
+      
+      for (int i = 0; i < code.length; i += INSTRUCTION_LENGTH) {
+         switch (code[i]) {
+            case COPY:
+               values[code[i + 1]] = values[code[i + 2]];
+               break;
+            case ADD:
+               values[code[i + 1]] = values[code[i + 2]] + values[code[i + 3]];
+               break;
+            case SUBTRACT:
+               values[code[i + 1]] = values[code[i + 2]] - values[code[i + 3]];
+               break;
+            case MULTIPLY:
+               values[code[i + 1]] = values[code[i + 2]] * values[code[i + 3]];
+               break;
+            case DIVIDE:
+               values[code[i + 1]] = values[code[i + 2]] / values[code[i + 3]];
+               break;
+            case MIN:
+               values[code[i + 1]] = Math.min(values[code[i + 2]], values[code[i + 3]]);
+               break;
+            case MAX:
+               values[code[i + 1]] = Math.max(values[code[i + 2]], values[code[i + 3]]);
+               break;
+            case ROUND:
+               values[code[i + 1]] = ASTRound.round(values[code[i + 2]], values[code[i + 3]]);
+               break;
+            default:
+               throw new Error("Unknown opcode " + code[i] + ".");
+         }
+      }
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // compilation
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Gets the slot of the specified node in the values array.
+    * 
+    * @param node node
+    * @return slot
+    */
+   int getSlot(AbstractNode node) {
+      Integer slot = node2slot.get(node);
+      if (slot == null) {
+         throw new IllegalArgumentException("'node' must be a node of the compiled model.");
+      }
+      
+      return slot;
+   }
+   
+   /**
+    * Gets the instruction stream. The returned array must not be changed.
+    * 
+    * @return instruction stream
+    */
+   int[] getCode() {
+      return code;
+   }
+   
+   /**
+    * Gets the values array with the initial values (before the first call of
+    * {@link #computeNextValues()}). The returned array must not be changed.
+    * 
+    * @return values array
+    */
+   double[] getValues() {
+      return values;
+   }
+   
+   /**
+    * Gets the number of level nodes, which are stored in the slots 0 to number of level nodes - 1.
+    * 
+    * @return number of level nodes
+    */
+   int getNumberOfLevelNodes() {
+      return numberOfLevelNodes;
+   }
+   
+   /**
+    * Sets the level nodes' values (slots 0 to number of level nodes - 1), e.g. to continue the
+    * execution from another state (see {@link PararealModel}).
+    * 
+    * @param levelNodeValues level nodes' values (in the order of the slots)
+    */
+   void setLevelNodeValues(double[] levelNodeValues) {
+      System.arraycopy(levelNodeValues, 0, values, 0, numberOfLevelNodes);
+   }
+   
+   /**
+    * Gets the start indices of the level nodes' incoming flows: the slots of the incoming flows of
+    * level node i are <code>getIncomingFlowSlots()[getIncomingFlowStart()[i]]</code> to
+    * <code>getIncomingFlowSlots()[getIncomingFlowStart()[i + 1] - 1]</code>. The returned array
+    * must not be changed.
+    * 
+    * @return start indices of the incoming flows
+    */
+   int[] getIncomingFlowStart() {
+      return incomingFlowStart;
+   }
+   
+   /**
+    * Gets the slots of the level nodes' incoming flows (see {@link #getIncomingFlowStart()}). The
+    * returned array must not be changed.
+    * 
+    * @return slots of the incoming flows
+    */
+   int[] getIncomingFlowSlots() {
+      return incomingFlowSlots;
+   }
+   
+   /**
+    * Gets the start indices of the level nodes' outgoing flows (see
+    * {@link #getIncomingFlowStart()}). The returned array must not be changed.
+    * 
+    * @return start indices of the outgoing flows
+    */
+   int[] getOutgoingFlowStart() {
+      return outgoingFlowStart;
+   }
+   
+   /**
+    * Gets the slots of the level nodes' outgoing flows (see {@link #getIncomingFlowStart()}). The
+    * returned array must not be changed.
+    * 
+    * @return slots of the outgoing flows
+    */
+   int[] getOutgoingFlowSlots() {
+      return outgoingFlowSlots;
+   }
+   
+   /**
+    * Gets the index (in <code>int</code>s) of the first instruction of the specified auxiliary or
+    * rate node's formula within the instruction stream.
+    * 
+    * @param node auxiliary or rate node
+    * @return index of first instruction
+    */
+   int getCodeStart(AbstractNode node) {
+      Integer codeStart = node2codeStart.get(node);
+      if (codeStart == null) {
+         throw new IllegalArgumentException("'node' must be an auxiliary or rate node of the compiled model.");
+      }
+      
+      return codeStart;
+   }
+   
+   /**
+    * Compiles the model: assigns value slots to all nodes, lowers the formulas into the
+    * instruction stream and creates the level nodes' flow arrays.
+    */
+   private void compile() {
+      AbstractNode[] schedule = model.getEvaluationSchedule();
+      Set<ConstantNode> constantNodes = model.getConstantNodes();
+      
+      // (1) assign slots: level nodes first (so that level node i is stored in slot i), then
+      //     auxiliary and rate nodes (schedule order), then constant nodes
+      node2slot = new HashMap<AbstractNode, Integer>();
+      ArrayList<LevelNode> levelNodes = new ArrayList<LevelNode>();
+      for (AbstractNode node : schedule) {
+         if (node instanceof LevelNode) {
+            node2slot.put(node, levelNodes.size());
+            levelNodes.add((LevelNode)node);
+         }
+      }
+      numberOfLevelNodes = levelNodes.size();
+      
+      int nextSlot = numberOfLevelNodes;
+      for (AbstractNode node : schedule) {
+         if (!(node instanceof LevelNode)) {
+            node2slot.put(node, nextSlot++);
+         }
+      }
+      for (ConstantNode constantNode : constantNodes) {
+         node2slot.put(constantNode, nextSlot++);
+      }
+      literal2slot = new HashMap<Double, Integer>();
+      LiteralCollector literalCollector = new LiteralCollector();
+      for (AbstractNode node : schedule) {
+         ASTElement formula = getExecutionFormula(node);
+         if (formula != null) {
+            formula.accept(literalCollector);
+         }
+      }
+      for (Double literal : literalCollector.literals) {
+         literal2slot.put(literal, nextSlot++);
+      }
+      
+      // (2) find common subexpressions: operations occurring more than once get a slot of their own
+      operation2occurrences = new IdentityHashMap<ASTElement, Integer>();
+      numberOfFormulaOperations = 0;
+      IdentityHashMap<ASTElement, Integer> operation2size = new IdentityHashMap<ASTElement, Integer>();
+      for (AbstractNode node : schedule) {
+         ASTElement formula = getExecutionFormula(node);
+         if (formula != null) {
+            countOccurrences(formula);
+            numberOfFormulaOperations += getNumberOfOperations(formula, operation2size);
+         }
+      }
+      commonSubexpression2slot = new IdentityHashMap<ASTElement, Integer>();
+      nextCommonSubexpressionSlot = nextSlot;
+      for (int occurrences : operation2occurrences.values()) {
+         if (occurrences > 1) {
+            nextSlot++;
+         }
+      }
+      firstTemporarySlot = nextSlot;
+      numberOfTemporarySlots = 0;
+      
+      // (3) lower formulas
+      node2codeStart = new HashMap<AbstractNode, Integer>();
+      codeBuffer = new int[16 * INSTRUCTION_LENGTH];
+      codeLength = 0;
+      for (AbstractNode node : schedule) {
+         ASTElement formula = getExecutionFormula(node);
+         if (formula == null) {
+            // level node
+            continue;
+         }
+         node2codeStart.put(node, codeLength);
+         compileFormula(formula, node2slot.get(node));
+      }
+      code = new int[codeLength];
+      System.arraycopy(codeBuffer, 0, code, 0, codeLength);
+      codeBuffer = null;
+      operation2occurrences = null;
+      commonSubexpression2slot = null;
+      
+      // (4) flow arrays of the level nodes (same order as in LevelNode.computeNextValue())
+      incomingFlowStart = new int[numberOfLevelNodes + 1];
+      outgoingFlowStart = new int[numberOfLevelNodes + 1];
+      ArrayList<Integer> incomingSlots = new ArrayList<Integer>();
+      ArrayList<Integer> outgoingSlots = new ArrayList<Integer>();
+      for (int i = 0; i < numberOfLevelNodes; i++) {
+         LevelNode levelNode = levelNodes.get(i);
+         incomingFlowStart[i] = incomingSlots.size();
+         for (RateNode incomingFlow : levelNode.getIncomingFlowsInEvaluationOrder()) {
+            incomingSlots.add(node2slot.get(incomingFlow));
+         }
+         outgoingFlowStart[i] = outgoingSlots.size();
+         for (RateNode outgoingFlow : levelNode.getOutgoingFlowsInEvaluationOrder()) {
+            outgoingSlots.add(node2slot.get(outgoingFlow));
+         }
+      }
+      incomingFlowStart[numberOfLevelNodes] = incomingSlots.size();
+      outgoingFlowStart[numberOfLevelNodes] = outgoingSlots.size();
+      incomingFlowSlots = toIntArray(incomingSlots);
+      outgoingFlowSlots = toIntArray(outgoingSlots);
+      
+      // (5) initial values
+      values = new double[firstTemporarySlot + numberOfTemporarySlots];
+      for (AbstractNode node : node2slot.keySet()) {
+         values[node2slot.get(node)] = node.getCurrentValue();
+      }
+      for (Double literal : literal2slot.keySet()) {
+         values[literal2slot.get(literal)] = literal;
+      }
+      initialValues = values.clone();
+   }
+   
+   /**
+    * Gets the compiled form of the specified node's formula, i.e. the executed form or (if the
+    * original formulas are compiled) the formula itself.
+    * 
+    * @param node node
+    * @return compiled form of the formula or <code>null</code> iff the node is no auxiliary or rate
+    *         node
+    */
+   private ASTElement getExecutionFormula(AbstractNode node) {
+      if (node instanceof AuxiliaryNode) {
+         return compilesExecutionFormulas ? ((AuxiliaryNode)node).getExecutionFormula()
+                                          : ((AuxiliaryNode)node).getFormula();
+      }
+      if (node instanceof RateNode) {
+         return compilesExecutionFormulas ? ((RateNode)node).getExecutionFormula()
+                                          : ((RateNode)node).getFormula();
+      }
+      
+      return null;
+   }
+   
+   /**
+    * Generates and loads the class for the bytecode tier. If the class cannot be generated or
+    * instantiated, the instruction stream is used further on.
+    */
+   private void createModelStep() {
+      isBytecodeTierPending = false;
+      
+      String className;
+      synchronized (CompiledModel.class) {
+         className = GENERATED_CLASS_NAME_PREFIX + numberOfGeneratedClasses++;
+      }
+      
+      try {
+         byte[] classFile = StepClassGenerator.generateClassFile(className.replace('.', '/'), code,
+                                                                 numberOfLevelNodes,
+                                                                 incomingFlowStart, incomingFlowSlots,
+                                                                 outgoingFlowStart, outgoingFlowSlots);
+         StepClassLoader classLoader = new StepClassLoader(CompiledModel.class.getClassLoader());
+         modelStep = (ModelStep)classLoader.defineStepClass(className, classFile)
+                                           .getDeclaredConstructor().newInstance();
+      } catch (NoSuchMethodException e) {
+         // fall back to instruction stream
+         modelStep = null;
+      } catch (InstantiationException e) {
+         // fall back to instruction stream
+         modelStep = null;
+      } catch (IllegalAccessException e) {
+         // fall back to instruction stream
+         modelStep = null;
+      } catch (InvocationTargetException e) {
+         // fall back to instruction stream
+         modelStep = null;
+      } catch (LinkageError e) {
+         // fall back to instruction stream
+         modelStep = null;
+      }
+   }
+   
+   /**
+    * Lowers the specified formula so that its value is stored into the specified target slot.
+    * 
+    * @param formula formula
+    * @param targetSlot target slot
+    */
+   private void compileFormula(ASTElement formula, int targetSlot) {
+      if (formula instanceof AbstractNode || formula instanceof ASTLiteral
+          || commonSubexpression2slot.containsKey(formula)) {
+         emit(COPY, targetSlot, compileExpression(formula, 0), 0);
+      } else {
+         compileOperation(formula, targetSlot, 0);
+         if (isCommonSubexpression(formula)) {
+            // the node's slot is not changed any more during the time step
+            commonSubexpression2slot.put(formula, targetSlot);
+         }
+      }
+   }
+   
+   /**
+    * Lowers the specified subexpression and returns the slot containing its value. Leaves are
+    * not copied, their own slot is used directly.
+    * 
+    * @param element subexpression
+    * @param depth depth of the subexpression (determines its temporary slot)
+    * @return slot containing the subexpression's value
+    */
+   private int compileExpression(ASTElement element, int depth) {
+      if (element instanceof AbstractNode) {
+         Integer slot = node2slot.get((AbstractNode)element);
+         if (slot == null) {
+            throw new Error("Formula references a node which is not part of the model.");
+         }
+         return slot;
+      }
+      if (element instanceof ASTLiteral) {
+         return literal2slot.get(((ASTLiteral)element).getValue());
+      }
+      
+      Integer commonSubexpressionSlot = commonSubexpression2slot.get(element);
+      if (commonSubexpressionSlot != null) {
+         // already evaluated
+         return commonSubexpressionSlot;
+      }
+      if (isCommonSubexpression(element)) {
+         int slot = nextCommonSubexpressionSlot++;
+         compileOperation(element, slot, depth);
+         commonSubexpression2slot.put(element, slot);
+         return slot;
+      }
+      
+      // temporary slots are reused by the following formulas -> one slot per depth is enough
+      if (depth >= numberOfTemporarySlots) {
+         numberOfTemporarySlots = depth + 1;
+      }
+      int temporarySlot = firstTemporarySlot + depth;
+      compileOperation(element, temporarySlot, depth + 1);
+      return temporarySlot;
+   }
+   
+   /**
+    * Counts the occurrences of the specified subexpression's operations. The operands of an
+    * operation which already occurred are not counted again, as they are not evaluated again.
+    * 
+    * @param element subexpression
+    */
+   private void countOccurrences(ASTElement element) {
+      if (element instanceof AbstractNode || element instanceof ASTLiteral) {
+         return;
+      }
+      
+      Integer occurrences = operation2occurrences.get(element);
+      if (occurrences != null) {
+         operation2occurrences.put(element, occurrences + 1);
+         return;
+      }
+      
+      operation2occurrences.put(element, 1);
+      for (int i = 0; i < ASTOptimizer.getNumberOfOperands(element); i++) {
+         countOccurrences(ASTOptimizer.getOperand(element, i));
+      }
+   }
+   
+   /**
+    * Checks whether the specified operation occurs more than once in the executed formulas.
+    * 
+    * @param operation operation
+    * @return <code>true</code> iff the operation is a common subexpression
+    */
+   private boolean isCommonSubexpression(ASTElement operation) {
+      Integer occurrences = operation2occurrences.get(operation);
+      return occurrences != null && occurrences > 1;
+   }
+   
+   /**
+    * Gets the number of operations of the specified subexpression, counted as if it was a tree (a
+    * sum or product with n operands counts as n - 1 operations).
+    * 
+    * @param element subexpression
+    * @param operation2size already computed numbers of operations
+    * @return number of operations
+    */
+   private static int getNumberOfOperations(ASTElement element,
+                                            IdentityHashMap<ASTElement, Integer> operation2size) {
+      if (element instanceof AbstractNode || element instanceof ASTLiteral) {
+         return 0;
+      }
+      
+      Integer size = operation2size.get(element);
+      if (size == null) {
+         int numberOfOperands = ASTOptimizer.getNumberOfOperands(element);
+         size = numberOfOperands - 1;
+         for (int i = 0; i < numberOfOperands; i++) {
+            size += getNumberOfOperations(ASTOptimizer.getOperand(element, i), operation2size);
+         }
+         operation2size.put(element, size);
+      }
+      return size;
+   }
+   
+   /**
+    * Lowers the specified operation so that its value is stored into the specified target slot.
+    * 
+    * @param operation operation (no leaf!)
+    * @param targetSlot target slot
+    * @param depth depth of the operation's operands
+    */
+   private void compileOperation(ASTElement operation, int targetSlot, int depth) {
+      if (operation instanceof ASTSum || operation instanceof ASTProduct) {
+         compileChain(operation, targetSlot, depth);
+         return;
+      }
+      
+      int opcode;
+      ASTElement leftElement;
+      ASTElement rightElement;
+      if (operation instanceof ASTPlus) {
+         opcode = ADD;
+         leftElement = ((ASTPlus)operation).getLeftElement();
+         rightElement = ((ASTPlus)operation).getRightElement();
+      } else if (operation instanceof ASTMinus) {
+         opcode = SUBTRACT;
+         leftElement = ((ASTMinus)operation).getLeftElement();
+         rightElement = ((ASTMinus)operation).getRightElement();
+      } else if (operation instanceof ASTMultiply) {
+         opcode = MULTIPLY;
+         leftElement = ((ASTMultiply)operation).getLeftElement();
+         rightElement = ((ASTMultiply)operation).getRightElement();
+      } else if (operation instanceof ASTDivide) {
+         opcode = DIVIDE;
+         leftElement = ((ASTDivide)operation).getLeftElement();
+         rightElement = ((ASTDivide)operation).getRightElement();
+      } else if (operation instanceof ASTMin) {
+         opcode = MIN;
+         leftElement = ((ASTMin)operation).getLeftElement();
+         rightElement = ((ASTMin)operation).getRightElement();
+      } else if (operation instanceof ASTMax) {
+         opcode = MAX;
+         leftElement = ((ASTMax)operation).getLeftElement();
+         rightElement = ((ASTMax)operation).getRightElement();
+      } else if (operation instanceof ASTRound) {
+         opcode = ROUND;
+         leftElement = ((ASTRound)operation).getLeftElement();
+         rightElement = ((ASTRound)operation).getRightElement();
+      } else {
+         throw new Error("Unknown formula element " + operation.getClass().getName() + ".");
+      }
+      
+      int leftSlot = compileExpression(leftElement, depth);
+      int rightSlot = compileExpression(rightElement, depth + 1);
+      emit(opcode, targetSlot, leftSlot, rightSlot);
+   }
+   
+   /**
+    * Lowers the specified sum or product so that its value is stored into the specified target
+    * slot. The operands are added or multiplied from left to right, the target slot is used as
+    * accumulator.
+    * 
+    * @param operation sum or product
+    * @param targetSlot target slot
+    * @param depth depth of the operation's operands
+    */
+   private void compileChain(ASTElement operation, int targetSlot, int depth) {
+      int opcode = (operation instanceof ASTSum) ? ADD : MULTIPLY;
+      int numberOfOperands = ASTOptimizer.getNumberOfOperands(operation);
+      
+      int firstSlot = compileExpression(ASTOptimizer.getOperand(operation, 0), depth);
+      int secondSlot = compileExpression(ASTOptimizer.getOperand(operation, 1), depth + 1);
+      emit(opcode, targetSlot, firstSlot, secondSlot);
+      for (int i = 2; i < numberOfOperands; i++) {
+         int operandSlot = compileExpression(ASTOptimizer.getOperand(operation, i), depth);
+         emit(opcode, targetSlot, targetSlot, operandSlot);
+      }
+   }
+   
+   /**
+    * Appends an instruction to the instruction stream.
+    * 
+    * @param opcode opcode
+    * @param targetSlot target slot
+    * @param operandSlot1 slot of first operand
+    * @param operandSlot2 slot of second operand
+    */
+   private void emit(int opcode, int targetSlot, int operandSlot1, int operandSlot2) {
+      if (codeLength + INSTRUCTION_LENGTH > codeBuffer.length) {
+         int[] newCodeBuffer = new int[2 * codeBuffer.length];
+         System.arraycopy(codeBuffer, 0, newCodeBuffer, 0, codeLength);
+         codeBuffer = newCodeBuffer;
+      }
+      
+      codeBuffer[codeLength++] = opcode;
+      codeBuffer[codeLength++] = targetSlot;
+      codeBuffer[codeLength++] = operandSlot1;
+      codeBuffer[codeLength++] = operandSlot2;
+   }
+   
+   /**
+    * Converts the specified list into an <code>int</code> array.
+    * 
+    * @param list list
+    * @return <code>int</code> array
+    */
+   private static int[] toIntArray(List<Integer> list) {
+      int[] array = new int[list.size()];
+      for (int i = 0; i < array.length; i++) {
+         array[i] = list.get(i);
+      }
+      return array;
+   }
+   
+   /**
+    * Inner class collecting the distinct values of all literals of the visited formulas.
+    */
+   private static class LiteralCollector extends ASTWalker {
+      
+      private LinkedHashSet<Double> literals = new LinkedHashSet<Double>();
+      
+      @Override
+      protected void visitNode(AbstractNode node) {
+         // do nothing
+      }
+      
+      @Override
+      protected void visitLiteral(ASTLiteral literal) {
+         literals.add(literal.getValue());
+      }
+   }
+   
+   /**
+    * Inner class implementing the class loader for the classes generated by the bytecode tier.
+    * Each compiled model uses its own class loader, so that the generated class can be unloaded
+    * together with the compiled model.
+    */
+   private static class StepClassLoader extends ClassLoader {
+      
+      /**
+       * Constructor.
+       * 
+       * @param parent parent class loader
+       */
+      private StepClassLoader(ClassLoader parent) {
+         super(parent);
+      }
+      
+      /**
+       * Defines the class with the specified name from the specified class file.
+       * 
+       * @param className class name
+       * @param classFile class file
+       * @return defined class
+       */
+      private Class<?> defineStepClass(String className, byte[] classFile) {
+         return defineClass(className, classFile, 0, classFile.length);
+      }
+   }
+}
@@ -186,63 +186,16 @@ public Object clone() {
    }
    
    /**
-    * Returns an iterator over the subtree of this node (here: only this node).
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
     * 
-    * @return iterator over the subtree of this node (here: only this node)
+    * @param visitor visitor
     */
-   public Iterator<ASTElement> iterator() {
-      return new ConstantNodeIterator(this);
-   }
-   
-   /**
-    * Inner class implementing the {@link java.util.Iterator} interface. 
-    */
-   private class ConstantNodeIterator implements Iterator<ASTElement> {
-      
-      private ConstantNode constantNode;
-      
-      /**
-       * Constructor.
-       * 
-       * @param constantNode {@link de.uka.aifb.com.systemDynamics.model.ConstantNode} instance
-       */
-      private ConstantNodeIterator(ConstantNode constantNode) {
-         if (constantNode == null) {
-            throw new IllegalArgumentException("'constantNode' must not be null.");
-         }
-         
-         this.constantNode = constantNode;
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
       }
       
-      /**
-       * Checks if there is a next element in this iteration.
-       * 
-       * @return <code>true</code> iff there is a next element
-       */
-      public boolean hasNext() {
-         return constantNode != null;
-      }
-      
-      /**
-       * Gets this iteration's next element.
-       * 
-       * @return next element
-       */
-      public ASTElement next() {
-         if (constantNode != null) {
-            ConstantNode temp = constantNode;
-            constantNode = null;
-            return temp;
-         } else {
-            throw new NoSuchElementException();
-         }
-      }
-      
-      /**
-       * Removes the element last returned by this iterator.
-       */
-      public void remove() {
-         throw new UnsupportedOperationException();
-      }
+      visitor.visit(this);
    }
 }
\ No newline at end of file
@@ -0,0 +1,350 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This class computes the (complex) eigenvalues of a real square matrix: the matrix is balanced,
+ * reduced to upper Hessenberg form by Gaussian elimination with pivoting and then the eigenvalues
+ * are computed by the shifted QR algorithm (Francis double shift). Eigenvectors are not computed.
+ *
+ * @version 1.0
+ */
+class Eigenvalues {
+   
+   /** maximum number of QR iterations per eigenvalue */
+   private static final int MAX_ITERATIONS = 30;
+   
+   private double[] realParts;
+   private double[] imaginaryParts;
+   
+   /**
+    * Constructor. The specified matrix is not changed.
+    * 
+    * @param matrix square matrix
+    * @throws ArithmeticException if the QR algorithm does not converge
+    */
+   Eigenvalues(double[][] matrix) {
+      if (matrix == null) {
+         throw new IllegalArgumentException("'matrix' must not be null.");
+      }
+      
+      int n = matrix.length;
+      double[][] a = new double[n][];
+      for (int i = 0; i < n; i++) {
+         if (matrix[i].length != n) {
+            throw new IllegalArgumentException("'matrix' must be square.");
+         }
+         a[i] = matrix[i].clone();
+      }
+      
+      realParts = new double[n];
+      imaginaryParts = new double[n];
+      balance(a);
+      reduceToHessenberg(a);
+      computeHessenbergEigenvalues(a);
+   }
+   
+   /**
+    * Gets the real parts of the eigenvalues. The returned array must not be changed.
+    * 
+    * @return real parts
+    */
+   double[] getRealParts() {
+      return realParts;
+   }
+   
+   /**
+    * Gets the imaginary parts of the eigenvalues (complex conjugate pairs are adjacent). The
+    * returned array must not be changed.
+    * 
+    * @return imaginary parts
+    */
+   double[] getImaginaryParts() {
+      return imaginaryParts;
+   }
+   
+   /**
+    * Balances the specified matrix by similarity transformations with powers of 2, so that the
+    * norms of corresponding rows and columns are similar (this improves the accuracy).
+    * 
+    * @param a matrix (overwritten by the balanced matrix)
+    */
+   private static void balance(double[][] a) {
+      int n = a.length;
+      boolean isBalanced = false;
+      while (!isBalanced) {
+         isBalanced = true;
+         for (int i = 0; i < n; i++) {
+            double columnNorm = 0;
+            double rowNorm = 0;
+            for (int j = 0; j < n; j++) {
+               if (j != i) {
+                  columnNorm += Math.abs(a[j][i]);
+                  rowNorm += Math.abs(a[i][j]);
+               }
+            }
+            if (columnNorm != 0 && rowNorm != 0) {
+               double sum = columnNorm + rowNorm;
+               double factor = 1;
+               while (columnNorm < rowNorm / 2) {
+                  factor *= 2;
+                  columnNorm *= 4;
+               }
+               while (columnNorm > rowNorm * 2) {
+                  factor /= 2;
+                  columnNorm /= 4;
+               }
+               if ((columnNorm + rowNorm) / factor < 0.95 * sum) {
+                  isBalanced = false;
+                  for (int j = 0; j < n; j++) {
+                     a[i][j] /= factor;
+                     a[j][i] *= factor;
+                  }
+               }
+            }
+         }
+      }
+   }
+   
+   /**
+    * Reduces the specified matrix to upper Hessenberg form by elimination with pivoting
+    * (similarity transformations). The entries below the subdiagonal are set to 0.
+    * 
+    * @param a matrix (overwritten by the Hessenberg matrix)
+    */
+   private static void reduceToHessenberg(double[][] a) {
+      int n = a.length;
+      for (int m = 1; m < n - 1; m++) {
+         // pivot: largest absolute value in column m - 1 below the diagonal
+         double pivot = 0;
+         int pivotRow = m;
+         for (int j = m; j < n; j++) {
+            if (Math.abs(a[j][m - 1]) > Math.abs(pivot)) {
+               pivot = a[j][m - 1];
+               pivotRow = j;
+            }
+         }
+         if (pivotRow != m) {
+            for (int j = m - 1; j < n; j++) {
+               double value = a[pivotRow][j];
+               a[pivotRow][j] = a[m][j];
+               a[m][j] = value;
+            }
+            for (int j = 0; j < n; j++) {
+               double value = a[j][pivotRow];
+               a[j][pivotRow] = a[j][m];
+               a[j][m] = value;
+            }
+         }
+         if (pivot != 0) {
+            for (int i = m + 1; i < n; i++) {
+               double factor = a[i][m - 1];
+               if (factor != 0) {
+                  factor /= pivot;
+                  a[i][m - 1] = 0;
+                  for (int j = m; j < n; j++) {
+                     a[i][j] -= factor * a[m][j];
+                  }
+                  for (int j = 0; j < n; j++) {
+                     a[j][m] += factor * a[j][i];
+                  }
+               }
+            }
+         }
+      }
+   }
+   
+   /**
+    * Computes the eigenvalues of the specified upper Hessenberg matrix by the shifted QR algorithm.
+    * 
+    * @param a upper Hessenberg matrix (destroyed)
+    * @throws ArithmeticException if the QR algorithm does not converge
+    */
+   private void computeHessenbergEigenvalues(double[][] a) {
+      int n = a.length;
+      double norm = 0;
+      for (int i = 0; i < n; i++) {
+         for (int j = Math.max(i - 1, 0); j < n; j++) {
+            norm += Math.abs(a[i][j]);
+         }
+      }
+      
+      int last = n - 1;
+      double shift = 0;
+      double p = 0, q = 0, r = 0, x, y, z = 0, w;
+      while (last >= 0) {
+         int iterations = 0;
+         int l;
+         do {
+            // look for a single small subdiagonal element
+            for (l = last; l >= 1; l--) {
+               double s = Math.abs(a[l - 1][l - 1]) + Math.abs(a[l][l]);
+               if (s == 0) {
+                  s = norm;
+               }
+               if (Math.abs(a[l][l - 1]) + s == s) {
+                  a[l][l - 1] = 0;
+                  break;
+               }
+            }
+            x = a[last][last];
+            if (l == last) {
+               // one root found
+               realParts[last] = x + shift;
+               imaginaryParts[last] = 0;
+               last--;
+            } else {
+               y = a[last - 1][last - 1];
+               w = a[last][last - 1] * a[last - 1][last];
+               if (l == last - 1) {
+                  // two roots found
+                  p = 0.5 * (y - x);
+                  q = p * p + w;
+                  z = Math.sqrt(Math.abs(q));
+                  x += shift;
+                  if (q >= 0) {
+                     // real pair
+                     z = p + (p >= 0 ? z : -z);
+                     realParts[last - 1] = x + z;
+                     realParts[last] = x + z;
+                     if (z != 0) {
+                        realParts[last] = x - w / z;
+                     }
+                     imaginaryParts[last - 1] = 0;
+                     imaginaryParts[last] = 0;
+                  } else {
+                     // complex pair
+                     realParts[last - 1] = x + p;
+                     realParts[last] = x + p;
+                     imaginaryParts[last - 1] = z;
+                     imaginaryParts[last] = -z;
+                  }
+                  last -= 2;
+               } else {
+                  // no roots found yet -> next QR iteration
+                  if (iterations == MAX_ITERATIONS) {
+                     throw new ArithmeticException("The QR algorithm for the eigenvalues does not converge.");
+                  }
+                  if (iterations == 10 || iterations == 20) {
+                     // exceptional shift
+                     shift += x;
+                     for (int i = 0; i <= last; i++) {
+                        a[i][i] -= x;
+                     }
+                     double s = Math.abs(a[last][last - 1]) + Math.abs(a[last - 1][last - 2]);
+                     x = 0.75 * s;
+                     y = x;
+                     w = -0.4375 * s * s;
+                  }
+                  iterations++;
+                  
+                  // look for two consecutive small subdiagonal elements
+                  int m;
+                  for (m = last - 2; m >= l; m--) {
+                     z = a[m][m];
+                     r = x - z;
+                     double s = y - z;
+                     p = (r * s - w) / a[m + 1][m] + a[m][m + 1];
+                     q = a[m + 1][m + 1] - z - r - s;
+                     r = a[m + 2][m + 1];
+                     s = Math.abs(p) + Math.abs(q) + Math.abs(r);
+                     p /= s;
+                     q /= s;
+                     r /= s;
+                     if (m == l) {
+                        break;
+                     }
+                     double u = Math.abs(a[m][m - 1]) * (Math.abs(q) + Math.abs(r));
+                     double v = Math.abs(p) * (Math.abs(a[m - 1][m - 1]) + Math.abs(z) + Math.abs(a[m + 1][m + 1]));
+                     if (u + v == v) {
+                        break;
+                     }
+                  }
+                  for (int i = m + 2; i <= last; i++) {
+                     a[i][i - 2] = 0;
+                     if (i != m + 2) {
+                        a[i][i - 3] = 0;
+                     }
+                  }
+                  
+                  // double QR step on rows l to last and columns m to last
+                  for (int k = m; k <= last - 1; k++) {
+                     if (k != m) {
+                        p = a[k][k - 1];
+                        q = a[k + 1][k - 1];
+                        r = 0;
+                        if (k != last - 1) {
+                           r = a[k + 2][k - 1];
+                        }
+                        x = Math.abs(p) + Math.abs(q) + Math.abs(r);
+                        if (x != 0) {
+                           p /= x;
+                           q /= x;
+                           r /= x;
+                        }
+                     }
+                     double s = Math.sqrt(p * p + q * q + r * r);
+                     if (p < 0) {
+                        s = -s;
+                     }
+                     if (s != 0) {
+                        if (k == m) {
+                           if (l != m) {
+                              a[k][k - 1] = -a[k][k - 1];
+                           }
+                        } else {
+                           a[k][k - 1] = -s * x;
+                        }
+                        p += s;
+                        x = p / s;
+                        y = q / s;
+                        z = r / s;
+                        q /= p;
+                        r /= p;
+                        for (int j = k; j <= last; j++) {
+                           p = a[k][j] + q * a[k + 1][j];
+                           if (k != last - 1) {
+                              p += r * a[k + 2][j];
+                              a[k + 2][j] -= p * z;
+                           }
+                           a[k + 1][j] -= p * y;
+                           a[k][j] -= p * x;
+                        }
+                        int maxRow = Math.min(last, k + 3);
+                        for (int i = l; i <= maxRow; i++) {
+                           p = x * a[i][k] + y * a[i][k + 1];
+                           if (k != last - 1) {
+                              p += z * a[i][k + 2];
+                              a[i][k + 2] -= p * r;
+                           }
+                           a[i][k + 1] -= p * q;
+                           a[i][k] -= p;
+                        }
+                     }
+                  }
+               }
+            }
+         } while (l < last - 1);
+      }
+   }
+}
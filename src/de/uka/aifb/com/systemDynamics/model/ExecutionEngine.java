@@ -0,0 +1,148 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This enumeration lists the available execution backends for System Dynamics models.
+ *
+ * @version 1.0
+ */
+public enum ExecutionEngine {
+   
+   /** the model's nodes are evaluated directly by {@link Model#computeNextValues()} */
+   INTERPRETER,
+   
+   /** the model is compiled into a {@link CompiledModel} first */
+   COMPILED,
+   
+   /**
+    * the model is compiled into a {@link CompiledModel} which generates bytecode after
+    * {@link CompiledModel#DEFAULT_WARM_UP_ROUNDS} rounds
+    */
+   BYTECODE,
+   
+   /**
+    * the stages of independent nodes of very large models are computed by several threads (see
+    * {@link ParallelModel})
+    */
+   PARALLEL,
+   
+   /**
+    * only the nodes whose inputs have changed are computed, quiescent subgraphs are skipped (see
+    * {@link ChangePropagationModel})
+    */
+   CHANGE_PROPAGATION;
+   
+   /**
+    * Checks whether this execution backend supports the specified simulation specification. The
+    * interpreter supports all specifications, the compiled backends the explicit fixed-step methods
+    * (see {@link CompiledModel#isSupported(SimulationSpecification)}) and the other backends only
+    * the default specification (Euler method, DT = 1).
+    * 
+    * @param simulationSpecification simulation specification
+    * @return <code>true</code> iff the simulation specification is supported
+    */
+   public boolean supports(SimulationSpecification simulationSpecification) {
+      if (simulationSpecification == null) {
+         throw new IllegalArgumentException("'simulationSpecification' must not be null.");
+      }
+      
+      switch (this) {
+         case INTERPRETER:
+            return true;
+         case COMPILED:
+         case BYTECODE:
+            return CompiledModel.isSupported(simulationSpecification);
+         case PARALLEL:
+         case CHANGE_PROPAGATION:
+            return simulationSpecification.isDefault();
+         default:
+            throw new Error("Unknown execution engine " + this + ".");
+      }
+   }
+   
+   /**
+    * Creates an executor for the specified model using this execution backend. If this backend
+    * does not support the model's simulation specification (see
+    * {@link #supports(SimulationSpecification)}), the model itself is returned, i.e. the
+    * interpreter is used. For other specifications than the default one, the compiled backends do
+    * not use the bytecode tier.
+    * 
+    * @param model model to execute (must already be unchangeable)
+    * @return model executor
+    */
+   public ModelExecutor createModelExecutor(Model model) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (model.isChangeable()) {
+         throw new ModelStillChangeableException();
+      }
+      
+      SimulationSpecification simulationSpecification = model.getSimulationSpecification();
+      if (!supports(simulationSpecification)) {
+         return model;
+      }
+      
+      switch (this) {
+         case INTERPRETER:
+            return model;
+         case COMPILED:
+            if (!simulationSpecification.isDefault()) {
+               return new CompiledModel(model, simulationSpecification);
+            }
+            return new CompiledModel(model);
+         case BYTECODE:
+            if (!simulationSpecification.isDefault()) {
+               return new CompiledModel(model, simulationSpecification);
+            }
+            return new CompiledModel(model, CompiledModel.DEFAULT_WARM_UP_ROUNDS);
+         case PARALLEL:
+            return new ParallelModel(model);
+         case CHANGE_PROPAGATION:
+            return new ChangePropagationModel(model);
+         default:
+            throw new Error("Unknown execution engine " + this + ".");
+      }
+   }
+   
+   /**
+    * Gets the execution engine with the specified name (case insensitive, e.g. 'compiled').
+    * 
+    * @param name name of execution engine
+    * @return execution engine
+    */
+   public static ExecutionEngine parseExecutionEngine(String name) {
+      if (name == null) {
+         throw new IllegalArgumentException("'name' must not be null.");
+      }
+      
+      for (ExecutionEngine executionEngine : values()) {
+         if (executionEngine.name().equalsIgnoreCase(name.trim())) {
+            return executionEngine;
+         }
+      }
+      
+      throw new IllegalArgumentException("Unknown execution engine '" + name + "'.");
+   }
+}
@@ -0,0 +1,401 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class maintains a topological order of a directed graph while edges are added and removed
+ * (algorithm of Pearce and Kelly). Every node has a position, and for every edge the source's
+ * position is smaller than the target's one.
+ * <p>
+ * If an added edge violates the order, only the nodes between the positions of its target and its
+ * source are searched: the nodes reachable from the target and the nodes reaching the source
+ * within this region are moved, keeping the set of used positions. If the source is reachable from
+ * the target, the edge would close a cycle. Such an edge is still stored, but as an unordered edge
+ * which is not part of the order. As long as there are unordered edges, the graph may have a cycle;
+ * {@link #hasCycle()} tries to insert them into the order again (e.g. after the edges of the cycle
+ * were removed).
+ *
+ * @version 1.0
+ */
+class IncrementalTopologicalOrder<N> {
+   
+   private HashMap<N, Integer> node2position;
+   
+   /** nodes by position (<code>null</code>: position of a removed node) */
+   private ArrayList<N> position2node;
+   
+   /** edges which are part of the order */
+   private HashMap<N, LinkedHashSet<N>> successors;
+   private HashMap<N, LinkedHashSet<N>> predecessors;
+   
+   /** edges which would close a cycle (source -> targets) */
+   private HashMap<N, LinkedHashSet<N>> unorderedSuccessors;
+   private int numberOfUnorderedEdges;
+   
+   /**
+    * Constructor.
+    */
+   IncrementalTopologicalOrder() {
+      node2position = new HashMap<N, Integer>();
+      position2node = new ArrayList<N>();
+      successors = new HashMap<N, LinkedHashSet<N>>();
+      predecessors = new HashMap<N, LinkedHashSet<N>>();
+      unorderedSuccessors = new HashMap<N, LinkedHashSet<N>>();
+   }
+   
+   /**
+    * Adds the specified node (without edges) at the end of the order.
+    * 
+    * @param node node
+    */
+   void addNode(N node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      if (node2position.containsKey(node)) {
+         return;
+      }
+      
+      node2position.put(node, position2node.size());
+      position2node.add(node);
+      successors.put(node, new LinkedHashSet<N>());
+      predecessors.put(node, new LinkedHashSet<N>());
+   }
+   
+   /**
+    * Removes the specified node and all its edges.
+    * 
+    * @param node node
+    */
+   void removeNode(N node) {
+      Integer position = node2position.remove(node);
+      if (position == null) {
+         return;
+      }
+      
+      for (N successor : successors.remove(node)) {
+         predecessors.get(successor).remove(node);
+      }
+      for (N predecessor : predecessors.remove(node)) {
+         successors.get(predecessor).remove(node);
+      }
+      LinkedHashSet<N> targets = unorderedSuccessors.remove(node);
+      if (targets != null) {
+         numberOfUnorderedEdges -= targets.size();
+      }
+      Iterator<LinkedHashSet<N>> iterator = unorderedSuccessors.values().iterator();
+      while (iterator.hasNext()) {
+         targets = iterator.next();
+         if (targets.remove(node)) {
+            numberOfUnorderedEdges--;
+            if (targets.isEmpty()) {
+               iterator.remove();
+            }
+         }
+      }
+      
+      position2node.set(position, null);
+      if (position2node.size() > 2 * node2position.size() + 16) {
+         compact();
+      }
+   }
+   
+   /**
+    * Adds the specified edge. If it would close a cycle, it is stored as unordered edge.
+    * 
+    * @param source source node
+    * @param target target node
+    * @return <code>true</code> iff the edge is part of the order, <code>false</code> iff it would
+    *         close a cycle
+    */
+   boolean addEdge(N source, N target) {
+      checkNode(source);
+      checkNode(target);
+      
+      if (successors.get(source).contains(target)) {
+         return true;
+      }
+      LinkedHashSet<N> targets = unorderedSuccessors.get(source);
+      if (targets != null && targets.contains(target)) {
+         return false;
+      }
+      
+      if (source == target || !reorder(source, target)) {
+         if (targets == null) {
+            targets = new LinkedHashSet<N>();
+            unorderedSuccessors.put(source, targets);
+         }
+         targets.add(target);
+         numberOfUnorderedEdges++;
+         return false;
+      }
+      
+      successors.get(source).add(target);
+      predecessors.get(target).add(source);
+      return true;
+   }
+   
+   /**
+    * Removes the specified edge.
+    * 
+    * @param source source node
+    * @param target target node
+    */
+   void removeEdge(N source, N target) {
+      checkNode(source);
+      checkNode(target);
+      
+      if (successors.get(source).remove(target)) {
+         predecessors.get(target).remove(source);
+         return;
+      }
+      
+      LinkedHashSet<N> targets = unorderedSuccessors.get(source);
+      if (targets != null && targets.remove(target)) {
+         numberOfUnorderedEdges--;
+         if (targets.isEmpty()) {
+            unorderedSuccessors.remove(source);
+         }
+      }
+   }
+   
+   /**
+    * Checks whether the specified edge would close a cycle. The graph is not changed.
+    * 
+    * @param source source node
+    * @param target target node
+    * @return <code>true</code> iff the source is reachable from the target
+    */
+   boolean wouldCreateCycle(N source, N target) {
+      checkNode(source);
+      checkNode(target);
+      
+      if (source == target) {
+         return true;
+      }
+      if (numberOfUnorderedEdges == 0) {
+         // only nodes between the target's and the source's positions can be on a path
+         int upperBound = node2position.get(source);
+         if (node2position.get(target) > upperBound) {
+            return false;
+         }
+         return !collectForward(target, source, upperBound, new ArrayList<N>());
+      }
+      
+      // the order does not contain all edges -> search all nodes reachable from the target
+      HashSet<N> visitedNodes = new HashSet<N>();
+      LinkedList<N> stack = new LinkedList<N>();
+      stack.add(target);
+      visitedNodes.add(target);
+      while (!stack.isEmpty()) {
+         N node = stack.removeLast();
+         ArrayList<N> nextNodes = new ArrayList<N>(successors.get(node));
+         if (unorderedSuccessors.containsKey(node)) {
+            nextNodes.addAll(unorderedSuccessors.get(node));
+         }
+         for (N nextNode : nextNodes) {
+            if (nextNode == source) {
+               return true;
+            }
+            if (visitedNodes.add(nextNode)) {
+               stack.add(nextNode);
+            }
+         }
+      }
+      return false;
+   }
+   
+   /**
+    * Checks whether the graph has a cycle. The unordered edges are inserted into the order again
+    * where possible.
+    * 
+    * @return <code>true</code> iff the graph has a cycle
+    */
+   boolean hasCycle() {
+      if (numberOfUnorderedEdges == 0) {
+         return false;
+      }
+      
+      // if the graph has no cycle, every edge can be inserted (in any sequence); otherwise, an
+      // edge of the cycle cannot be inserted even after all other edges are inserted
+      HashMap<N, LinkedHashSet<N>> edges = unorderedSuccessors;
+      unorderedSuccessors = new HashMap<N, LinkedHashSet<N>>();
+      numberOfUnorderedEdges = 0;
+      for (N source : edges.keySet()) {
+         for (N target : edges.get(source)) {
+            addEdge(source, target);
+         }
+      }
+      return (numberOfUnorderedEdges > 0);
+   }
+   
+   /**
+    * Gets all nodes in the maintained order. This is a topological order iff the graph has no
+    * cycle (see {@link #hasCycle()}).
+    * 
+    * @return nodes in order
+    */
+   List<N> getOrder() {
+      ArrayList<N> order = new ArrayList<N>(node2position.size());
+      for (N node : position2node) {
+         if (node != null) {
+            order.add(node);
+         }
+      }
+      return order;
+   }
+   
+   /**
+    * Moves the nodes between the target's and the source's positions, so that the specified new
+    * edge fits into the order.
+    * 
+    * @param source source node
+    * @param target target node
+    * @return <code>false</code> iff the source is reachable from the target (nothing is moved)
+    */
+   private boolean reorder(N source, N target) {
+      int lowerBound = node2position.get(target);
+      int upperBound = node2position.get(source);
+      if (lowerBound > upperBound) {
+         // already in order
+         return true;
+      }
+      
+      ArrayList<N> forwardNodes = new ArrayList<N>();
+      if (!collectForward(target, source, upperBound, forwardNodes)) {
+         return false;
+      }
+      ArrayList<N> backwardNodes = collectBackward(source, lowerBound);
+      
+      // the nodes reaching the source are placed before the nodes reachable from the target (each
+      // group keeps its relative order), using the positions of both groups
+      Comparator<N> byPosition = new Comparator<N>() {
+         public int compare(N node1, N node2) {
+            return node2position.get(node1).compareTo(node2position.get(node2));
+         }
+      };
+      Collections.sort(backwardNodes, byPosition);
+      Collections.sort(forwardNodes, byPosition);
+      ArrayList<N> movedNodes = new ArrayList<N>(backwardNodes);
+      movedNodes.addAll(forwardNodes);
+      
+      int[] positions = new int[movedNodes.size()];
+      for (int i = 0; i < positions.length; i++) {
+         positions[i] = node2position.get(movedNodes.get(i));
+      }
+      Arrays.sort(positions);
+      
+      for (int i = 0; i < positions.length; i++) {
+         N node = movedNodes.get(i);
+         node2position.put(node, positions[i]);
+         position2node.set(positions[i], node);
+      }
+      return true;
+   }
+   
+   /**
+    * Collects all nodes reachable from the specified start node which have at most the specified
+    * position.
+    * 
+    * @param start start node
+    * @param source node which must not be reached
+    * @param upperBound maximum position
+    * @param nodes list the reached nodes (inclusive the start node) are added to
+    * @return <code>false</code> iff the source is reachable
+    */
+   private boolean collectForward(N start, N source, int upperBound, ArrayList<N> nodes) {
+      HashSet<N> visitedNodes = new HashSet<N>();
+      LinkedList<N> stack = new LinkedList<N>();
+      stack.add(start);
+      visitedNodes.add(start);
+      while (!stack.isEmpty()) {
+         N node = stack.removeLast();
+         nodes.add(node);
+         for (N successor : successors.get(node)) {
+            if (successor == source) {
+               return false;
+            }
+            if (node2position.get(successor) < upperBound && visitedNodes.add(successor)) {
+               stack.add(successor);
+            }
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * Collects all nodes reaching the specified start node which have at least the specified
+    * position.
+    * 
+    * @param start start node
+    * @param lowerBound minimum position
+    * @return reaching nodes (inclusive the start node)
+    */
+   private ArrayList<N> collectBackward(N start, int lowerBound) {
+      ArrayList<N> nodes = new ArrayList<N>();
+      HashSet<N> visitedNodes = new HashSet<N>();
+      LinkedList<N> stack = new LinkedList<N>();
+      stack.add(start);
+      visitedNodes.add(start);
+      while (!stack.isEmpty()) {
+         N node = stack.removeLast();
+         nodes.add(node);
+         for (N predecessor : predecessors.get(node)) {
+            if (node2position.get(predecessor) > lowerBound && visitedNodes.add(predecessor)) {
+               stack.add(predecessor);
+            }
+         }
+      }
+      return nodes;
+   }
+   
+   /**
+    * Removes the positions of removed nodes (the order is kept).
+    */
+   private void compact() {
+      ArrayList<N> nodes = new ArrayList<N>(node2position.size());
+      for (N node : position2node) {
+         if (node != null) {
+            node2position.put(node, nodes.size());
+            nodes.add(node);
+         }
+      }
+      position2node = nodes;
+   }
+   
+   /**
+    * Checks that the specified node was added.
+    * 
+    * @param node node
+    */
+   private void checkNode(N node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      if (!node2position.containsKey(node)) {
+         throw new IllegalArgumentException("'node' must be added before.");
+      }
+   }
+}
@@ -0,0 +1,82 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This enumeration lists the available methods for integrating the level nodes' values over a time
+ * step (see {@link SimulationSpecification}).
+ *
+ * @version 1.0
+ */
+public enum IntegrationMethod {
+   
+   /** explicit Euler method: the flows at the beginning of the time step are used (first order) */
+   EULER,
+   
+   /**
+    * Heun's method (second-order Runge-Kutta): the mean of the flows at the beginning of the time
+    * step and at the Euler estimate of its end are used
+    */
+   HEUN,
+   
+   /** classical fourth-order Runge-Kutta method (four evaluations of the flows per time step) */
+   RK4,
+   
+   /**
+    * adaptive Dormand-Prince method (embedded Runge-Kutta 4(5)): the time step is chosen for each
+    * step so that the estimated error stays within the tolerances, DT is only the initial time step
+    */
+   DORMAND_PRINCE,
+   
+   /**
+    * implicit (backward) Euler method: the flows at the end of the time step are used, the implicit
+    * equations are solved by Newton iterations (first order, stable for stiff models)
+    */
+   BACKWARD_EULER,
+   
+   /**
+    * implicit second-order backward differentiation formula (BDF2), started with a backward Euler
+    * step; the implicit equations are solved by Newton iterations (stable for stiff models)
+    */
+   BDF2;
+   
+   /**
+    * Gets the integration method with the specified name (case insensitive, e.g. 'rk4').
+    * 
+    * @param name name of integration method
+    * @return integration method
+    */
+   public static IntegrationMethod parseIntegrationMethod(String name) {
+      if (name == null) {
+         throw new IllegalArgumentException("'name' must not be null.");
+      }
+      
+      for (IntegrationMethod integrationMethod : values()) {
+         if (integrationMethod.name().equalsIgnoreCase(name.trim())) {
+            return integrationMethod;
+         }
+      }
+      
+      throw new IllegalArgumentException("Unknown integration method '" + name + "'.");
+   }
+}
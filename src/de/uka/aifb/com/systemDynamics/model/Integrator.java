@@ -0,0 +1,664 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class integrates the level nodes of a {@link Model} over a round as specified by its
+ * simulation specification (see {@link Model#computeNextValues()}): the explicit fixed-step
+ * methods, the adaptive Dormand-Prince method and the implicit methods, whose Jacobians of the net
+ * flows are computed by finite differences with the sparsity structure of the model (also used by
+ * the {@link SteadyStateSolver}). The state kept between the rounds (next adaptive time step,
+ * Jacobian and its decomposition, previous values of BDF2) and the step counters are stored here.
+ *
+ * @version 1.0
+ */
+class Integrator {
+   
+   /** Dormand-Prince coefficients of the stages 2 to 7 (the 7th stage has the 5th order weights) */
+   private static final double[][] DORMAND_PRINCE_STAGES = {
+      { 1.0 / 5 },
+      { 3.0 / 40, 9.0 / 40 },
+      { 44.0 / 45, -56.0 / 15, 32.0 / 9 },
+      { 19372.0 / 6561, -25360.0 / 2187, 64448.0 / 6561, -212.0 / 729 },
+      { 9017.0 / 3168, -355.0 / 33, 46732.0 / 5247, 49.0 / 176, -5103.0 / 18656 },
+      { 35.0 / 384, 0, 500.0 / 1113, 125.0 / 192, -2187.0 / 6784, 11.0 / 84 } };
+   
+   /** Dormand-Prince weights of the error estimate (5th order weights - 4th order weights) */
+   private static final double[] DORMAND_PRINCE_ERROR_WEIGHTS =
+      { 71.0 / 57600, 0, -71.0 / 16695, 71.0 / 1920, -17253.0 / 339200, 22.0 / 525, -1.0 / 40 };
+   
+   /** smallest time step of the adaptive integration (accepted even if the error is too large) */
+   private static final double MIN_ADAPTIVE_STEP_SIZE = 1E-10;
+   
+   /** maximum number of Newton iterations of an implicit time step (per Jacobian) */
+   private static final int MAX_NEWTON_ITERATIONS = 10;
+   
+   /** Newton iterations stop if no value changes by more than this tolerance * (1 + |value|) */
+   private static final double NEWTON_TOLERANCE = 1E-10;
+   
+   private Model model;
+   
+   /** time step and integration method used by {@link #integrate()} */
+   private SimulationSpecification simulationSpecification;
+   
+   /** next time step of the adaptive integration method */
+   private double adaptiveStepSize;
+   
+   private long numberOfAcceptedSteps;
+   private long numberOfRejectedSteps;
+   
+   /**
+    * Jacobian of the net flows with respect to the level node values and LU decomposition of
+    * (identity - coefficient * Jacobian), kept for the following time steps of the implicit
+    * integration methods (<code>null</code>: not computed yet)
+    */
+   private double[][] implicitJacobian;
+   private LUDecomposition implicitDecomposition;
+   private double implicitDecompositionCoefficient;
+   
+   /**
+    * sparsity structure of the Jacobian for the evaluation schedule jacobianSchedule: by column,
+    * the rows (level nodes whose net flows depend on the column's level node), and groups of
+    * columns with disjoint rows, which are perturbed together (<code>null</code>: not created yet)
+    */
+   private AbstractNode[] jacobianSchedule;
+   private int[][] jacobianColumnRows;
+   private int[][] jacobianColumnGroups;
+   
+   /** level node values at the beginning of the previous time step (BDF2) */
+   private double[] previousLevelNodeValues;
+   
+   private long numberOfJacobianEvaluations;
+   
+   /**
+    * Constructor. The default simulation specification (Euler method, DT = 1) is used.
+    * 
+    * @param model model whose level nodes are integrated
+    */
+   Integrator(Model model) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      
+      this.model = model;
+      setSimulationSpecification(SimulationSpecification.DEFAULT);
+   }
+   
+   /**
+    * Sets the simulation specification. The state kept between the rounds is discarded.
+    * 
+    * @param simulationSpecification simulation specification
+    */
+   void setSimulationSpecification(SimulationSpecification simulationSpecification) {
+      if (simulationSpecification == null) {
+         throw new IllegalArgumentException("'simulationSpecification' must not be null.");
+      }
+      
+      this.simulationSpecification = simulationSpecification;
+      adaptiveStepSize = simulationSpecification.getDT();
+      implicitJacobian = null;
+      implicitDecomposition = null;
+      previousLevelNodeValues = null;
+   }
+   
+   /**
+    * Gets the simulation specification.
+    * 
+    * @return simulation specification
+    */
+   SimulationSpecification getSimulationSpecification() {
+      return simulationSpecification;
+   }
+   
+   /**
+    * Gets the number of time steps computed so far.
+    * 
+    * @return number of accepted time steps
+    */
+   long getNumberOfAcceptedSteps() {
+      return numberOfAcceptedSteps;
+   }
+   
+   /**
+    * Gets the number of time steps the adaptive integration method has rejected so far.
+    * 
+    * @return number of rejected time steps
+    */
+   long getNumberOfRejectedSteps() {
+      return numberOfRejectedSteps;
+   }
+   
+   /**
+    * Gets the number of Jacobians computed so far (see
+    * {@link #computeJacobian(int, LevelNode[], double[])}).
+    * 
+    * @return number of Jacobian evaluations
+    */
+   long getNumberOfJacobianEvaluations() {
+      return numberOfJacobianEvaluations;
+   }
+   
+   /**
+    * Discards the level node values of the previous time step, e.g. because the level nodes'
+    * values were set otherwise, so that the next BDF2 step is started with a backward Euler step.
+    */
+   void discardPreviousLevelNodeValues() {
+      previousLevelNodeValues = null;
+   }
+   
+   /**
+    * Integrates the level nodes over one round with the time step and the integration method of
+    * the simulation specification. For the default specification (Euler method, DT = 1), the
+    * nodes of the evaluation schedule are just computed in their order. Otherwise, for each
+    * evaluation of the flows (derivatives of the level nodes), the auxiliary and rate nodes of the
+    * evaluation schedule are computed for the current (intermediate) values of the level nodes.
+    */
+   void integrate() {
+      if (simulationSpecification.isDefault()) {
+         // the schedule contains the auxiliary nodes (in topological order!), the rate nodes and
+         // the level nodes -> they just have to be computed in this order
+         for (AbstractNode node : model.getEvaluationSchedule()) {
+            node.computeNextValue();
+         }
+         numberOfAcceptedSteps++;
+         return;
+      }
+      
+      int firstLevelNodeIndex = getFirstLevelNodeIndex();
+      LevelNode[] scheduledLevelNodes = getScheduledLevelNodes(firstLevelNodeIndex);
+      
+      if (simulationSpecification.isAdaptive()) {
+         integrateAdaptively(firstLevelNodeIndex, scheduledLevelNodes);
+         return;
+      }
+      if (simulationSpecification.isImplicit()) {
+         integrateImplicitly(firstLevelNodeIndex, scheduledLevelNodes);
+         return;
+      }
+      
+      double dt = simulationSpecification.getDT();
+      double[] startValues = new double[scheduledLevelNodes.length];
+      double[] slopes = new double[scheduledLevelNodes.length];
+      double[] slopeSums = new double[scheduledLevelNodes.length];
+      
+      for (int step = 0; step < simulationSpecification.getNumberOfStepsPerRound(); step++) {
+         for (int i = 0; i < scheduledLevelNodes.length; i++) {
+            startValues[i] = scheduledLevelNodes[i].getCurrentValue();
+         }
+         
+         switch (simulationSpecification.getIntegrationMethod()) {
+            case EULER:
+               computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+               setLevelNodeValues(scheduledLevelNodes, startValues, dt, slopes);
+               break;
+            case HEUN:
+               computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+               System.arraycopy(slopes, 0, slopeSums, 0, slopes.length);
+               setLevelNodeValues(scheduledLevelNodes, startValues, dt, slopes);
+               computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+               addSlopes(slopeSums, 1, slopes);
+               setLevelNodeValues(scheduledLevelNodes, startValues, dt / 2, slopeSums);
+               break;
+            case RK4:
+               computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+               System.arraycopy(slopes, 0, slopeSums, 0, slopes.length);
+               setLevelNodeValues(scheduledLevelNodes, startValues, dt / 2, slopes);
+               computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+               addSlopes(slopeSums, 2, slopes);
+               setLevelNodeValues(scheduledLevelNodes, startValues, dt / 2, slopes);
+               computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+               addSlopes(slopeSums, 2, slopes);
+               setLevelNodeValues(scheduledLevelNodes, startValues, dt, slopes);
+               computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+               addSlopes(slopeSums, 1, slopes);
+               setLevelNodeValues(scheduledLevelNodes, startValues, dt / 6, slopeSums);
+               break;
+            default:
+               throw new Error("Unknown integration method " + simulationSpecification.getIntegrationMethod() + ".");
+         }
+         numberOfAcceptedSteps++;
+      }
+   }
+   
+   /**
+    * Integrates the level nodes over one round with the adaptive Dormand-Prince method. A time step
+    * is accepted if the root mean square of the scaled error estimates is at most 1; the next time
+    * step is adapted to the error estimate in both cases. The last time step of the round is
+    * shortened to end exactly at the end of the round.
+    * 
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @param scheduledLevelNodes level nodes of the evaluation schedule
+    */
+   private void integrateAdaptively(int firstLevelNodeIndex, LevelNode[] scheduledLevelNodes) {
+      double relativeTolerance = simulationSpecification.getRelativeTolerance();
+      double absoluteTolerance = simulationSpecification.getAbsoluteTolerance();
+      double[] startValues = new double[scheduledLevelNodes.length];
+      double[][] stageSlopes = new double[DORMAND_PRINCE_STAGES.length + 1][scheduledLevelNodes.length];
+      double[] stageValues = new double[scheduledLevelNodes.length];
+      
+      for (int i = 0; i < scheduledLevelNodes.length; i++) {
+         startValues[i] = scheduledLevelNodes[i].getCurrentValue();
+      }
+      computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, stageSlopes[0]);
+      
+      double time = 0;
+      while (time < 1) {
+         double stepSize = Math.min(adaptiveStepSize, 1 - time);
+         boolean isLastStep = (stepSize == 1 - time);
+         
+         // stages 2 to 7: afterwards, the level nodes have the values of the 5th order solution
+         for (int stage = 1; stage < stageSlopes.length; stage++) {
+            double[] coefficients = DORMAND_PRINCE_STAGES[stage - 1];
+            for (int i = 0; i < scheduledLevelNodes.length; i++) {
+               double slope = 0;
+               for (int j = 0; j < coefficients.length; j++) {
+                  slope += coefficients[j] * stageSlopes[j][i];
+               }
+               stageValues[i] = startValues[i] + stepSize * slope;
+               scheduledLevelNodes[i].setCurrentValue(stageValues[i]);
+            }
+            computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, stageSlopes[stage]);
+         }
+         
+         // root mean square of the scaled error estimates
+         double error = 0;
+         for (int i = 0; i < scheduledLevelNodes.length; i++) {
+            double errorEstimate = 0;
+            for (int j = 0; j < stageSlopes.length; j++) {
+               errorEstimate += DORMAND_PRINCE_ERROR_WEIGHTS[j] * stageSlopes[j][i];
+            }
+            errorEstimate *= stepSize;
+            double scale = absoluteTolerance
+                           + relativeTolerance * Math.max(Math.abs(startValues[i]), Math.abs(stageValues[i]));
+            error += (errorEstimate / scale) * (errorEstimate / scale);
+         }
+         if (scheduledLevelNodes.length > 0) {
+            error = Math.sqrt(error / scheduledLevelNodes.length);
+         }
+         
+         // step size factor (safety factor 0.9, at most 5 times larger, at least 5 times smaller)
+         double factor = 5;
+         if (error > 0) {
+            factor = Math.min(5, Math.max(0.2, 0.9 * Math.pow(error, -0.2)));
+         } else if (!(error == 0)) {
+            // NaN
+            factor = 0.2;
+         }
+         
+         if (error <= 1 || stepSize <= MIN_ADAPTIVE_STEP_SIZE) {
+            numberOfAcceptedSteps++;
+            time = isLastStep ? 1 : time + stepSize;
+            System.arraycopy(stageValues, 0, startValues, 0, startValues.length);
+            // the last stage is evaluated at the new values (first same as last)
+            System.arraycopy(stageSlopes[stageSlopes.length - 1], 0, stageSlopes[0], 0, startValues.length);
+            if (isLastStep && factor >= 1) {
+               // the shortened last step of the round does not limit the next round's steps
+               adaptiveStepSize = Math.max(adaptiveStepSize, stepSize * factor);
+            } else {
+               adaptiveStepSize = stepSize * factor;
+            }
+         } else {
+            numberOfRejectedSteps++;
+            adaptiveStepSize = stepSize * factor;
+         }
+         adaptiveStepSize = Math.min(1, Math.max(MIN_ADAPTIVE_STEP_SIZE, adaptiveStepSize));
+      }
+      
+      for (int i = 0; i < scheduledLevelNodes.length; i++) {
+         scheduledLevelNodes[i].setCurrentValue(startValues[i]);
+      }
+   }
+   
+   /**
+    * Integrates the level nodes over one round with an implicit integration method. In each time
+    * step, the equations y = c + coefficient * f(y) are solved by (simplified) Newton iterations,
+    * with c = y0 and coefficient = DT for the backward Euler method and c = 4/3 y0 - 1/3 y(-1) and
+    * coefficient = 2/3 DT for BDF2 (y0: values at the beginning of the time step, y(-1): values at
+    * the beginning of the previous time step, f: net flows). The Jacobian of f and the LU
+    * decomposition are reused for the following time steps and rounds; they are only computed
+    * again if the Newton iterations do not converge with them.
+    * 
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @param scheduledLevelNodes level nodes of the evaluation schedule
+    * @throws ArithmeticException if the Newton iterations do not converge even with a new Jacobian
+    */
+   private void integrateImplicitly(int firstLevelNodeIndex, LevelNode[] scheduledLevelNodes) {
+      double dt = simulationSpecification.getDT();
+      double[] startValues = new double[scheduledLevelNodes.length];
+      double[] constantPart = new double[scheduledLevelNodes.length];
+      
+      if (implicitJacobian != null && implicitJacobian.length != scheduledLevelNodes.length) {
+         // the evaluation schedule was changed
+         implicitJacobian = null;
+         implicitDecomposition = null;
+         previousLevelNodeValues = null;
+      }
+      
+      for (int step = 0; step < simulationSpecification.getNumberOfStepsPerRound(); step++) {
+         for (int i = 0; i < scheduledLevelNodes.length; i++) {
+            startValues[i] = scheduledLevelNodes[i].getCurrentValue();
+         }
+         
+         double coefficient;
+         if (simulationSpecification.getIntegrationMethod() == IntegrationMethod.BDF2
+             && previousLevelNodeValues != null) {
+            coefficient = 2.0 / 3 * dt;
+            for (int i = 0; i < constantPart.length; i++) {
+               constantPart[i] = 4.0 / 3 * startValues[i] - 1.0 / 3 * previousLevelNodeValues[i];
+            }
+         } else {
+            // backward Euler step (also the first step of BDF2)
+            coefficient = dt;
+            System.arraycopy(startValues, 0, constantPart, 0, constantPart.length);
+         }
+         
+         boolean isConverged = false;
+         if (implicitJacobian != null) {
+            if (implicitDecompositionCoefficient != coefficient) {
+               decomposeImplicitMatrix(coefficient);
+            }
+            isConverged = solveImplicitStep(firstLevelNodeIndex, scheduledLevelNodes, startValues,
+                                            constantPart, coefficient);
+         }
+         if (!isConverged) {
+            implicitJacobian = computeJacobian(firstLevelNodeIndex, scheduledLevelNodes, startValues);
+            decomposeImplicitMatrix(coefficient);
+            isConverged = solveImplicitStep(firstLevelNodeIndex, scheduledLevelNodes, startValues,
+                                            constantPart, coefficient);
+         }
+         if (!isConverged) {
+            for (int i = 0; i < scheduledLevelNodes.length; i++) {
+               scheduledLevelNodes[i].setCurrentValue(startValues[i]);
+            }
+            throw new ArithmeticException("The Newton iterations of the implicit integration method do not converge.");
+         }
+         
+         previousLevelNodeValues = startValues.clone();
+         numberOfAcceptedSteps++;
+      }
+   }
+   
+   /**
+    * Solves the equations y = c + coefficient * f(y) of an implicit time step by Newton iterations
+    * with the current LU decomposition, starting at the values at the beginning of the time step.
+    * If they converge, the level nodes have the solution afterwards.
+    * 
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @param scheduledLevelNodes level nodes of the evaluation schedule
+    * @param startValues level node values at the beginning of the time step
+    * @param constantPart constant part c of the equations
+    * @param coefficient coefficient of the net flows
+    * @return <code>true</code> iff the Newton iterations converge
+    */
+   private boolean solveImplicitStep(int firstLevelNodeIndex, LevelNode[] scheduledLevelNodes,
+                                     double[] startValues, double[] constantPart, double coefficient) {
+      if (implicitDecomposition.isSingular()) {
+         return false;
+      }
+      
+      double[] values = startValues.clone();
+      double[] slopes = new double[scheduledLevelNodes.length];
+      for (int iteration = 0; iteration < MAX_NEWTON_ITERATIONS; iteration++) {
+         for (int i = 0; i < scheduledLevelNodes.length; i++) {
+            scheduledLevelNodes[i].setCurrentValue(values[i]);
+         }
+         computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+         
+         // Newton correction: (I - coefficient * J) * delta = -(y - c - coefficient * f(y))
+         double[] corrections = new double[values.length];
+         for (int i = 0; i < values.length; i++) {
+            corrections[i] = constantPart[i] + coefficient * slopes[i] - values[i];
+         }
+         implicitDecomposition.solve(corrections);
+         
+         boolean isConverged = true;
+         for (int i = 0; i < values.length; i++) {
+            values[i] += corrections[i];
+            if (!(Math.abs(corrections[i]) <= NEWTON_TOLERANCE * (1 + Math.abs(values[i])))) {
+               // (also for NaN)
+               isConverged = false;
+            }
+         }
+         if (isConverged) {
+            for (int i = 0; i < scheduledLevelNodes.length; i++) {
+               scheduledLevelNodes[i].setCurrentValue(values[i]);
+            }
+            return true;
+         }
+      }
+      return false;
+   }
+   
+   /**
+    * Computes the Jacobian of the net flows with respect to the level node values at the specified
+    * values by finite differences. Afterwards, the level nodes have the specified values again.
+    * <p>
+    * Only the structurally non-zero entries are computed (see
+    * {@link #createJacobianStructure(int, LevelNode[])}): the columns of a group influence
+    * disjoint rows, so they are perturbed together and the net flows are computed once per group
+    * instead of once per column. The entries are the same as with one perturbation per column.
+    * 
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @param scheduledLevelNodes level nodes of the evaluation schedule
+    * @param values level node values
+    * @return Jacobian
+    */
+   double[][] computeJacobian(int firstLevelNodeIndex, LevelNode[] scheduledLevelNodes, double[] values) {
+      if (jacobianSchedule != model.getEvaluationSchedule()) {
+         createJacobianStructure(firstLevelNodeIndex, scheduledLevelNodes);
+      }
+      
+      int n = scheduledLevelNodes.length;
+      double[] slopes = new double[n];
+      double[] perturbedSlopes = new double[n];
+      double[] increments = new double[n];
+      double[][] jacobian = new double[n][n];
+      
+      for (int i = 0; i < n; i++) {
+         scheduledLevelNodes[i].setCurrentValue(values[i]);
+      }
+      computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+      for (int[] group : jacobianColumnGroups) {
+         for (int j : group) {
+            increments[j] = 1E-7 * Math.max(1, Math.abs(values[j]));
+            scheduledLevelNodes[j].setCurrentValue(values[j] + increments[j]);
+         }
+         computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, perturbedSlopes);
+         for (int j : group) {
+            scheduledLevelNodes[j].setCurrentValue(values[j]);
+            for (int i : jacobianColumnRows[j]) {
+               jacobian[i][j] = (perturbedSlopes[i] - slopes[i]) / increments[j];
+            }
+         }
+      }
+      numberOfJacobianEvaluations++;
+      return jacobian;
+   }
+   
+   /**
+    * Creates the sparsity structure of the Jacobian for the current evaluation schedule with the
+    * reverse dependency index (see {@link Model#getDependants(AbstractNode)}): for each level node
+    * (column), the level nodes whose net flows depend on it within a round (rows). The columns are
+    * grouped greedily, so that the columns of a group have disjoint rows.
+    * 
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @param scheduledLevelNodes level nodes of the evaluation schedule
+    */
+   private void createJacobianStructure(int firstLevelNodeIndex, LevelNode[] scheduledLevelNodes) {
+      AbstractNode[] evaluationSchedule = model.getEvaluationSchedule();
+      int n = scheduledLevelNodes.length;
+      HashMap<AbstractNode, Integer> levelNode2index = new HashMap<AbstractNode, Integer>();
+      for (int i = 0; i < n; i++) {
+         levelNode2index.put(scheduledLevelNodes[i], i);
+      }
+      BitSet scheduledNodeIds = new BitSet(model.getNumberOfNodeIds());
+      for (int i = 0; i < firstLevelNodeIndex; i++) {
+         scheduledNodeIds.set(evaluationSchedule[i].getId());
+      }
+      
+      jacobianColumnRows = new int[n][];
+      ArrayList<ArrayList<Integer>> groups = new ArrayList<ArrayList<Integer>>();
+      ArrayList<BitSet> groupRows = new ArrayList<BitSet>();
+      BitSet visitedNodeIds = new BitSet(model.getNumberOfNodeIds());
+      BitSet rows = new BitSet(n);
+      ArrayList<AbstractNode> stack = new ArrayList<AbstractNode>();
+      for (int j = 0; j < n; j++) {
+         // auxiliary and rate nodes of the schedule depending on the level node -> level nodes
+         // they flow to or from
+         visitedNodeIds.clear();
+         rows.clear();
+         stack.add(scheduledLevelNodes[j]);
+         while (!stack.isEmpty()) {
+            AbstractNode node = stack.remove(stack.size() - 1);
+            for (AbstractNode dependant : model.getDependants(node)) {
+               if (dependant instanceof LevelNode) {
+                  Integer row = levelNode2index.get(dependant);
+                  if (row != null) {
+                     rows.set(row);
+                  }
+               } else if (scheduledNodeIds.get(dependant.getId()) && !visitedNodeIds.get(dependant.getId())) {
+                  visitedNodeIds.set(dependant.getId());
+                  stack.add(dependant);
+               }
+            }
+         }
+         jacobianColumnRows[j] = new int[rows.cardinality()];
+         int nextIndex = 0;
+         for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            jacobianColumnRows[j][nextIndex++] = row;
+         }
+         
+         int group = 0;
+         while (group < groups.size() && groupRows.get(group).intersects(rows)) {
+            group++;
+         }
+         if (group == groups.size()) {
+            groups.add(new ArrayList<Integer>());
+            groupRows.add(new BitSet(n));
+         }
+         groups.get(group).add(j);
+         groupRows.get(group).or(rows);
+      }
+      
+      jacobianColumnGroups = new int[groups.size()][];
+      for (int group = 0; group < groups.size(); group++) {
+         jacobianColumnGroups[group] = new int[groups.get(group).size()];
+         for (int i = 0; i < groups.get(group).size(); i++) {
+            jacobianColumnGroups[group][i] = groups.get(group).get(i);
+         }
+      }
+      jacobianSchedule = evaluationSchedule;
+   }
+   
+   /**
+    * Computes the LU decomposition of (identity - coefficient * Jacobian).
+    * 
+    * @param coefficient coefficient of the net flows
+    */
+   private void decomposeImplicitMatrix(double coefficient) {
+      int n = implicitJacobian.length;
+      double[][] matrix = new double[n][n];
+      for (int i = 0; i < n; i++) {
+         for (int j = 0; j < n; j++) {
+            matrix[i][j] = (i == j ? 1 : 0) - coefficient * implicitJacobian[i][j];
+         }
+      }
+      implicitDecomposition = new LUDecomposition(matrix);
+      implicitDecompositionCoefficient = coefficient;
+   }
+   
+   /**
+    * Gets the index of the first level node in the evaluation schedule (the level nodes are at its
+    * end).
+    * 
+    * @return index of the first level node
+    */
+   int getFirstLevelNodeIndex() {
+      AbstractNode[] evaluationSchedule = model.getEvaluationSchedule();
+      int firstLevelNodeIndex = evaluationSchedule.length;
+      while (firstLevelNodeIndex > 0 && evaluationSchedule[firstLevelNodeIndex - 1] instanceof LevelNode) {
+         firstLevelNodeIndex--;
+      }
+      return firstLevelNodeIndex;
+   }
+   
+   /**
+    * Gets the level nodes of the evaluation schedule.
+    * 
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @return level nodes of the evaluation schedule
+    */
+   LevelNode[] getScheduledLevelNodes(int firstLevelNodeIndex) {
+      AbstractNode[] evaluationSchedule = model.getEvaluationSchedule();
+      LevelNode[] scheduledLevelNodes = new LevelNode[evaluationSchedule.length - firstLevelNodeIndex];
+      System.arraycopy(evaluationSchedule, firstLevelNodeIndex, scheduledLevelNodes, 0, scheduledLevelNodes.length);
+      return scheduledLevelNodes;
+   }
+   
+   /**
+    * Computes the auxiliary and rate nodes of the evaluation schedule and stores the net flows of
+    * the specified level nodes.
+    * 
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @param scheduledLevelNodes level nodes of the evaluation schedule
+    * @param slopes array the net flows are stored into
+    */
+   void computeSlopes(int firstLevelNodeIndex, LevelNode[] scheduledLevelNodes, double[] slopes) {
+      AbstractNode[] evaluationSchedule = model.getEvaluationSchedule();
+      for (int i = 0; i < firstLevelNodeIndex; i++) {
+         evaluationSchedule[i].computeNextValue();
+      }
+      for (int i = 0; i < scheduledLevelNodes.length; i++) {
+         slopes[i] = scheduledLevelNodes[i].getNetFlow();
+      }
+   }
+   
+   /**
+    * Adds the specified weighted slopes to the slope sums.
+    * 
+    * @param slopeSums slope sums
+    * @param weight weight
+    * @param slopes slopes
+    */
+   static void addSlopes(double[] slopeSums, double weight, double[] slopes) {
+      for (int i = 0; i < slopeSums.length; i++) {
+         slopeSums[i] += weight * slopes[i];
+      }
+   }
+   
+   /**
+    * Sets the level nodes' values to start value + step * slope.
+    * 
+    * @param scheduledLevelNodes level nodes
+    * @param startValues start values of the time step
+    * @param step step size
+    * @param slopes slopes
+    */
+   static void setLevelNodeValues(LevelNode[] scheduledLevelNodes, double[] startValues, double step,
+                                  double[] slopes) {
+      for (int i = 0; i < scheduledLevelNodes.length; i++) {
+         scheduledLevelNodes[i].setCurrentValue(startValues[i] + step * slopes[i]);
+      }
+   }
+}
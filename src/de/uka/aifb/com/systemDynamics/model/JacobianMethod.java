@@ -0,0 +1,64 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This enumeration lists the available methods for computing the Jacobian of the level nodes' net
+ * flows (see {@link LinearizationAnalysis}).
+ *
+ * @version 1.0
+ */
+public enum JacobianMethod {
+   
+   /**
+    * the formulas are differentiated along the evaluation schedule (forward-mode automatic
+    * differentiation, exact up to rounding errors)
+    */
+   FORMULAS,
+   
+   /**
+    * the net flows are computed for perturbed level node values by compiled models in parallel;
+    * level nodes whose net flows depend on disjoint level nodes are perturbed together
+    */
+   FINITE_DIFFERENCES;
+   
+   /**
+    * Gets the Jacobian method with the specified name (case insensitive, e.g. 'formulas').
+    * 
+    * @param name name of Jacobian method
+    * @return Jacobian method
+    */
+   public static JacobianMethod parseJacobianMethod(String name) {
+      if (name == null) {
+         throw new IllegalArgumentException("'name' must not be null.");
+      }
+      
+      for (JacobianMethod jacobianMethod : values()) {
+         if (jacobianMethod.name().equalsIgnoreCase(name.trim())) {
+            return jacobianMethod;
+         }
+      }
+      
+      throw new IllegalArgumentException("Unknown Jacobian method '" + name + "'.");
+   }
+}
@@ -0,0 +1,142 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This class implements the LU decomposition (with partial pivoting) of a square matrix. Once
+ * decomposed, linear systems with this matrix can be solved for any number of right-hand sides
+ * in quadratic time each (used by the Newton iterations of the implicit integration methods).
+ *
+ * @version 1.0
+ */
+class LUDecomposition {
+   
+   /** L (below the diagonal, unit diagonal not stored) and U (diagonal and above) */
+   private double[][] lu;
+   
+   /** row permutation: row i of LU is row pivots[i] of the matrix */
+   private int[] pivots;
+   
+   private boolean isSingular;
+   
+   /**
+    * Constructor. The specified matrix is not changed.
+    * 
+    * @param matrix square matrix
+    */
+   LUDecomposition(double[][] matrix) {
+      if (matrix == null) {
+         throw new IllegalArgumentException("'matrix' must not be null.");
+      }
+      
+      int n = matrix.length;
+      lu = new double[n][];
+      pivots = new int[n];
+      for (int i = 0; i < n; i++) {
+         if (matrix[i].length != n) {
+            throw new IllegalArgumentException("'matrix' must be square.");
+         }
+         lu[i] = matrix[i].clone();
+         pivots[i] = i;
+      }
+      
+      for (int k = 0; k < n; k++) {
+         // pivot: largest absolute value in column k
+         int pivotRow = k;
+         for (int i = k + 1; i < n; i++) {
+            if (Math.abs(lu[i][k]) > Math.abs(lu[pivotRow][k])) {
+               pivotRow = i;
+            }
+         }
+         if (!(lu[pivotRow][k] != 0)) {
+            // zero or NaN
+            isSingular = true;
+            return;
+         }
+         if (pivotRow != k) {
+            double[] row = lu[pivotRow];
+            lu[pivotRow] = lu[k];
+            lu[k] = row;
+            int pivot = pivots[pivotRow];
+            pivots[pivotRow] = pivots[k];
+            pivots[k] = pivot;
+         }
+         
+         for (int i = k + 1; i < n; i++) {
+            double factor = lu[i][k] / lu[k][k];
+            lu[i][k] = factor;
+            if (factor != 0) {
+               for (int j = k + 1; j < n; j++) {
+                  lu[i][j] -= factor * lu[k][j];
+               }
+            }
+         }
+      }
+   }
+   
+   /**
+    * Checks whether the matrix is singular (no linear system can be solved then).
+    * 
+    * @return <code>true</code> iff the matrix is singular
+    */
+   boolean isSingular() {
+      return isSingular;
+   }
+   
+   /**
+    * Solves the linear system matrix * x = b. The solution replaces the right-hand side.
+    * 
+    * @param b right-hand side (overwritten by the solution)
+    */
+   void solve(double[] b) {
+      if (b == null) {
+         throw new IllegalArgumentException("'b' must not be null.");
+      }
+      if (b.length != lu.length) {
+         throw new IllegalArgumentException("'b' must have as many entries as the matrix has rows.");
+      }
+      if (isSingular) {
+         throw new ArithmeticException("Matrix is singular.");
+      }
+      
+      int n = lu.length;
+      double[] x = new double[n];
+      // forward substitution (L has a unit diagonal)
+      for (int i = 0; i < n; i++) {
+         double sum = b[pivots[i]];
+         for (int j = 0; j < i; j++) {
+            sum -= lu[i][j] * x[j];
+         }
+         x[i] = sum;
+      }
+      // backward substitution
+      for (int i = n - 1; i >= 0; i--) {
+         double sum = x[i];
+         for (int j = i + 1; j < n; j++) {
+            sum -= lu[i][j] * x[j];
+         }
+         x[i] = sum / lu[i][i];
+      }
+      System.arraycopy(x, 0, b, 0, n);
+   }
+}
@@ -45,8 +45,8 @@ public class LevelNode extends AbstractNode implements ASTElement, Comparable<Le
    
    private double startValue;
    private double currentValue;
-   private HashSet<RateNode> incomingFlows;
-   private HashSet<RateNode> outgoingFlows;
+   private NodeRegistry<RateNode> incomingFlows;
+   private NodeRegistry<RateNode> outgoingFlows;
 
    /**
     * Constructor.
@@ -65,8 +65,8 @@ public class LevelNode extends AbstractNode implements ASTElement, Comparable<Le
       setNodeName(nodeName);
       setStartValue(startValue);
       
-      incomingFlows = new HashSet<RateNode>();
-      outgoingFlows = new HashSet<RateNode>();
+      incomingFlows = new NodeRegistry<RateNode>(false);
+      outgoingFlows = new NodeRegistry<RateNode>(false);
    }
    
    /**
@@ -133,12 +133,13 @@ public class LevelNode extends AbstractNode implements ASTElement, Comparable<Le
    }
    
    /**
-    * Gets the set of all incoming flows. A shallow clone of the set of incoming flows is returned.
+    * Gets the set of all incoming flows. A read-only view of the set of incoming flows is returned
+    * (in the order in which the flows were added).
     * 
     * @return incoming flows
     */
-   public HashSet<RateNode> getIncomingFlows() {
-      return (HashSet<RateNode>)incomingFlows.clone();
+   public Set<RateNode> getIncomingFlows() {
+      return incomingFlows.getReadOnlyView();
    }
    
    /**
@@ -171,12 +172,60 @@ public class LevelNode extends AbstractNode implements ASTElement, Comparable<Le
    }
 
    /**
-    * Gets the set of all outgoing flows. A shallow clone of the set of outgoing flows is returned.
+    * Gets the set of all outgoing flows. A read-only view of the set of outgoing flows is returned
+    * (in the order in which the flows were added).
     * 
     * @return outgoing flows
     */
-   public HashSet<RateNode> getOutgoingFlows() {
-      return (HashSet<RateNode>)outgoingFlows.clone();
+   public Set<RateNode> getOutgoingFlows() {
+      return outgoingFlows.getReadOnlyView();
+   }
+   
+   /**
+    * Gets all incoming flows as an array. In contrast to {@link #getIncomingFlows()}, the flows are
+    * returned in exactly the order in which {@link #computeNextValue()} adds them.
+    * 
+    * @return incoming flows in evaluation order
+    */
+   RateNode[] getIncomingFlowsInEvaluationOrder() {
+      return incomingFlows.toArray(new RateNode[incomingFlows.size()]);
+   }
+   
+   /**
+    * Gets all outgoing flows as an array. In contrast to {@link #getOutgoingFlows()}, the flows are
+    * returned in exactly the order in which {@link #computeNextValue()} subtracts them.
+    * 
+    * @return outgoing flows in evaluation order
+    */
+   RateNode[] getOutgoingFlowsInEvaluationOrder() {
+      return outgoingFlows.toArray(new RateNode[outgoingFlows.size()]);
+   }
+   
+   /**
+    * Gets the net flow, i.e. the sum of the incoming flows minus the sum of the outgoing flows
+    * (current values of the rate nodes).
+    * 
+    * @return net flow
+    */
+   double getNetFlow() {
+      double netFlow = 0;
+      for (int i = 0, n = incomingFlows.size(); i < n; i++) {
+         netFlow += incomingFlows.get(i).getCurrentValue();
+      }
+      for (int i = 0, n = outgoingFlows.size(); i < n; i++) {
+         netFlow -= outgoingFlows.get(i).getCurrentValue();
+      }
+      return netFlow;
+   }
+   
+   /**
+    * Sets the level node's current value (used by the integration methods for the intermediate
+    * states within a time step).
+    * 
+    * @param currentValue current value
+    */
+   void setCurrentValue(double currentValue) {
+      this.currentValue = currentValue;
    }
    
    /////////////////////////////////////////////////////////////////////////////////////////////////
@@ -203,13 +252,13 @@ public double getCurrentValue() {
    @Override
 void computeNextValue() {
       // add incoming flows...
-      for (RateNode incomingFlow : incomingFlows) {
-         currentValue += incomingFlow.getCurrentValue();
+      for (int i = 0, n = incomingFlows.size(); i < n; i++) {
+         currentValue += incomingFlows.get(i).getCurrentValue();
       }
       
       // ... and subtract outgoing flows
-      for (RateNode outgoingFlow : outgoingFlows) {
-         currentValue -= outgoingFlow.getCurrentValue();
+      for (int i = 0, n = outgoingFlows.size(); i < n; i++) {
+         currentValue -= outgoingFlows.get(i).getCurrentValue();
       }
    }
 
@@ -280,12 +329,17 @@ public Object clone() {
    }
    
    /**
-    * Returns an iterator over the subtree of this node (here: only this node).
+    * Accepts the specified visitor, i.e. calls the visitor's <code>visit</code> method for this
+    * element.
     * 
-    * @return iterator over the subtree of this node (here: only this node)
+    * @param visitor visitor
     */
-   public Iterator<ASTElement> iterator() {
-      return new LevelNodeIterator(this);
+   public void accept(ASTVisitor visitor) {
+      if (visitor == null) {
+         throw new IllegalArgumentException("'visitor' must not be null.");
+      }
+      
+      visitor.visit(this);
    }
    
 ////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -309,56 +363,4 @@ public Object clone() {
       
       return getNodeName().compareTo(levelNode.getNodeName());
    }
-   
-   /**
-    * Inner class implementing the {@link java.util.Iterator} interface. 
-    */
-   private class LevelNodeIterator implements Iterator<ASTElement> {
-      
-      private LevelNode levelNode;
-      
-      /**
-       * Constructor.
-       * 
-       * @param levelNode {@link de.uka.aifb.com.systemDynamics.model.LevelNode} instance
-       */
-      private LevelNodeIterator(LevelNode levelNode) {
-         if (levelNode == null) {
-            throw new IllegalArgumentException("'levelNode' must not be null.");
-         }
-         
-         this.levelNode = levelNode;
-      }
-      
-      /**
-       * Checks if there is a next element in this iteration.
-       * 
-       * @return <code>true</code> iff there is a next element
-       */
-      public boolean hasNext() {
-         return levelNode != null;
-      }
-      
-      /**
-       * Gets this iteration's next element.
-       * 
-       * @return next element
-       */
-      public ASTElement next() {
-         if (levelNode != null) {
-            LevelNode temp = levelNode;
-            levelNode = null;
-            return temp;
-         } else {
-            throw new NoSuchElementException();
-         }
-      }
-      
-      /**
-       * Removes the element last returned by this iterator.
-       */
-      public void remove() {
-         throw new UnsupportedOperationException();
-      }
-   }
 }
\ No newline at end of file
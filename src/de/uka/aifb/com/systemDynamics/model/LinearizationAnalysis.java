@@ -0,0 +1,815 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class implements the linearization of a model at the level nodes' current values: the
+ * Jacobian J of the level nodes' net flows (incoming minus outgoing flows) with respect to the
+ * level node values and its eigenvalues. The Jacobian of the update map of a round (Euler method,
+ * DT = 1) is identity + J, its eigenvalues are 1 + the eigenvalues of J.
+ * <p>
+ * For each eigenvalue a + bi, the time constant 1 / |a| tells how fast the corresponding mode
+ * grows (a > 0) or decays (a < 0), and b != 0 means the mode oscillates with the period 2 pi / |b|.
+ * So the model returns to the state after a small disturbance iff all real parts are negative
+ * (and the rounds do iff all eigenvalues of the update map have an absolute value below 1).
+ * <p>
+ * The Jacobian is sparse: its structure is derived from the flows and the formula dependencies,
+ * i.e. the net flow of a level node can only depend on the level nodes the formulas of its flows
+ * depend on (directly or via auxiliary nodes). The eigenvalues are computed for the diagonal
+ * blocks of the strongly connected components of this structure only, as the eigenvalues of a
+ * block triangular matrix are the ones of its diagonal blocks.
+ * <p>
+ * The model's nodes are not changed.
+ *
+ * @version 1.0
+ */
+public class LinearizationAnalysis {
+   
+   /** relative increment of the level node values for finite differences */
+   private static final double FINITE_DIFFERENCE_INCREMENT = 1E-7;
+   
+   private Model model;
+   
+   private JacobianMethod jacobianMethod;
+   
+   /** analyzed level nodes (the level nodes of the evaluation schedule) */
+   private LevelNode[] levelNodes;
+   private HashMap<LevelNode, Integer> levelNode2index;
+   
+   /**
+    * by column (level node index): rows (level node indexes, ascending) with structurally non-zero
+    * entries and the entries
+    */
+   private int[][] columnRows;
+   private double[][] columnEntries;
+   
+   /** eigenvalues (ordered by decreasing real part) */
+   private double[] eigenvalueRealParts;
+   private double[] eigenvalueImaginaryParts;
+   
+   private int numberOfBlocks;
+   private int largestBlockSize;
+   
+   /**
+    * Constructor. Linearizes the specified model at the level nodes' current values, the Jacobian
+    * is computed from the formulas.
+    * 
+    * @param model model (must already be unchangeable)
+    * @throws ArithmeticException if the eigenvalues cannot be computed
+    */
+   public LinearizationAnalysis(Model model) {
+      this(model, JacobianMethod.FORMULAS, 1);
+   }
+   
+   /**
+    * Constructor. Linearizes the specified model at the level nodes' current values.
+    * 
+    * @param model model (must already be unchangeable)
+    * @param jacobianMethod method for computing the Jacobian
+    * @param numberOfThreads number of threads computing finite differences (at least 1)
+    * @throws ArithmeticException if the eigenvalues cannot be computed
+    */
+   public LinearizationAnalysis(Model model, JacobianMethod jacobianMethod, int numberOfThreads) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (model.isChangeable()) {
+         throw new ModelStillChangeableException();
+      }
+      if (jacobianMethod == null) {
+         throw new IllegalArgumentException("'jacobianMethod' must not be null.");
+      }
+      if (numberOfThreads < 1) {
+         throw new IllegalArgumentException("'numberOfThreads' must be at least 1.");
+      }
+      
+      this.model = model;
+      this.jacobianMethod = jacobianMethod;
+      
+      AbstractNode[] schedule = model.getEvaluationSchedule();
+      int firstLevelNodeIndex = schedule.length;
+      while (firstLevelNodeIndex > 0 && schedule[firstLevelNodeIndex - 1] instanceof LevelNode) {
+         firstLevelNodeIndex--;
+      }
+      levelNodes = new LevelNode[schedule.length - firstLevelNodeIndex];
+      levelNode2index = new HashMap<LevelNode, Integer>();
+      for (int i = 0; i < levelNodes.length; i++) {
+         levelNodes[i] = (LevelNode)schedule[firstLevelNodeIndex + i];
+         levelNode2index.put(levelNodes[i], i);
+      }
+      
+      int[][] columnNodes = createStructure(schedule, firstLevelNodeIndex);
+      columnEntries = new double[levelNodes.length][];
+      for (int j = 0; j < levelNodes.length; j++) {
+         columnEntries[j] = new double[columnRows[j].length];
+      }
+      switch (jacobianMethod) {
+         case FORMULAS:
+            differentiateFormulas(schedule, firstLevelNodeIndex, columnNodes);
+            break;
+         case FINITE_DIFFERENCES:
+            computeFiniteDifferences(numberOfThreads);
+            break;
+         default:
+            throw new Error("Unknown Jacobian method " + jacobianMethod + ".");
+      }
+      
+      computeEigenvalues();
+   }
+   
+   /**
+    * Gets the linearized model.
+    * 
+    * @return linearized model
+    */
+   public Model getModel() {
+      return model;
+   }
+   
+   /**
+    * Gets the method the Jacobian was computed with.
+    * 
+    * @return Jacobian method
+    */
+   public JacobianMethod getJacobianMethod() {
+      return jacobianMethod;
+   }
+   
+   /**
+    * Gets the analyzed level nodes, i.e. the level nodes computed in each round.
+    * 
+    * @return analyzed level nodes
+    */
+   public List<LevelNode> getLevelNodes() {
+      return Collections.unmodifiableList(Arrays.asList(levelNodes));
+   }
+   
+   /**
+    * Gets the entry of the Jacobian: the partial derivative of the net flow of the specified row
+    * level node with respect to the value of the specified column level node.
+    * 
+    * @param rowLevelNode level node whose net flow is differentiated
+    * @param columnLevelNode level node the net flow is differentiated with respect to
+    * @return partial derivative
+    */
+   public double getJacobianEntry(LevelNode rowLevelNode, LevelNode columnLevelNode) {
+      int row = getIndex(rowLevelNode, "rowLevelNode");
+      int column = getIndex(columnLevelNode, "columnLevelNode");
+      
+      int position = Arrays.binarySearch(columnRows[column], row);
+      return (position >= 0) ? columnEntries[column][position] : 0;
+   }
+   
+   /**
+    * Gets the number of structurally non-zero entries of the Jacobian.
+    * 
+    * @return number of structurally non-zero entries
+    */
+   public int getNumberOfNonZeroEntries() {
+      int numberOfNonZeroEntries = 0;
+      for (int[] rows : columnRows) {
+         numberOfNonZeroEntries += rows.length;
+      }
+      return numberOfNonZeroEntries;
+   }
+   
+   /**
+    * Gets the number of diagonal blocks (strongly connected components of the Jacobian's
+    * structure) the eigenvalues were computed for.
+    * 
+    * @return number of diagonal blocks
+    */
+   public int getNumberOfBlocks() {
+      return numberOfBlocks;
+   }
+   
+   /**
+    * Gets the size of the largest diagonal block.
+    * 
+    * @return size of the largest diagonal block
+    */
+   public int getLargestBlockSize() {
+      return largestBlockSize;
+   }
+   
+   /**
+    * Gets the number of eigenvalues (the number of analyzed level nodes).
+    * 
+    * @return number of eigenvalues
+    */
+   public int getNumberOfEigenvalues() {
+      return eigenvalueRealParts.length;
+   }
+   
+   /**
+    * Gets the real part of the specified eigenvalue. The eigenvalues are ordered by decreasing real
+    * part, i.e. the dominant (slowest decaying or fastest growing) ones come first.
+    * 
+    * @param index index of the eigenvalue
+    * @return real part
+    */
+   public double getEigenvalueRealPart(int index) {
+      return eigenvalueRealParts[checkEigenvalueIndex(index)];
+   }
+   
+   /**
+    * Gets the imaginary part of the specified eigenvalue (complex conjugate eigenvalues are
+    * adjacent, the positive imaginary part first).
+    * 
+    * @param index index of the eigenvalue
+    * @return imaginary part
+    */
+   public double getEigenvalueImaginaryPart(int index) {
+      return eigenvalueImaginaryParts[checkEigenvalueIndex(index)];
+   }
+   
+   /**
+    * Gets the time constant 1 / |real part| of the specified eigenvalue (infinite for a real part
+    * of 0).
+    * 
+    * @param index index of the eigenvalue
+    * @return time constant in rounds
+    */
+   public double getTimeConstant(int index) {
+      return 1 / Math.abs(getEigenvalueRealPart(index));
+   }
+   
+   /**
+    * Gets the oscillation period 2 pi / |imaginary part| of the specified eigenvalue (infinite for
+    * a real eigenvalue).
+    * 
+    * @param index index of the eigenvalue
+    * @return oscillation period in rounds
+    */
+   public double getOscillationPeriod(int index) {
+      return 2 * Math.PI / Math.abs(getEigenvalueImaginaryPart(index));
+   }
+   
+   /**
+    * Gets the time constant of the dominant eigenvalue (largest real part), i.e. of the slowest
+    * decaying or fastest growing mode.
+    * 
+    * @return dominant time constant in rounds
+    */
+   public double getDominantTimeConstant() {
+      if (getNumberOfEigenvalues() == 0) {
+         throw new IllegalStateException("The model has no analyzed level node.");
+      }
+      
+      return getTimeConstant(0);
+   }
+   
+   /**
+    * Checks whether the model is (locally) stable, i.e. all eigenvalues have a negative real part.
+    * 
+    * @return <code>true</code> iff stable
+    */
+   public boolean isStable() {
+      for (double realPart : eigenvalueRealParts) {
+         if (!(realPart < 0)) {
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * Checks whether the rounds (Euler method, DT = 1) are (locally) stable, i.e. all eigenvalues
+    * of the update map of a round have an absolute value below 1.
+    * 
+    * @return <code>true</code> iff the rounds are stable
+    */
+   public boolean isRoundMapStable() {
+      for (int i = 0; i < eigenvalueRealParts.length; i++) {
+         double realPart = 1 + eigenvalueRealParts[i];
+         double imaginaryPart = eigenvalueImaginaryParts[i];
+         if (!(realPart * realPart + imaginaryPart * imaginaryPart < 1)) {
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * Checks whether the model (locally) oscillates, i.e. an eigenvalue is complex.
+    * 
+    * @return <code>true</code> iff oscillating
+    */
+   public boolean isOscillating() {
+      for (double imaginaryPart : eigenvalueImaginaryParts) {
+         if (imaginaryPart != 0) {
+            return true;
+         }
+      }
+      return false;
+   }
+   
+   /**
+    * Creates the structure of the Jacobian: for each level node, the auxiliary and rate nodes
+    * depending on it within a round and the level nodes whose net flows depend on it.
+    * 
+    * @param schedule evaluation schedule
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @return by column: schedule positions (ascending) of the auxiliary and rate nodes depending on
+    *         the level node
+    */
+   private int[][] createStructure(AbstractNode[] schedule, int firstLevelNodeIndex) {
+      int[] id2position = new int[model.getNumberOfNodeIds()];
+      Arrays.fill(id2position, -1);
+      for (int i = 0; i < firstLevelNodeIndex; i++) {
+         id2position[schedule[i].getId()] = i;
+      }
+      
+      columnRows = new int[levelNodes.length][];
+      int[][] columnNodes = new int[levelNodes.length][];
+      BitSet nodes = new BitSet(firstLevelNodeIndex);
+      BitSet rows = new BitSet(levelNodes.length);
+      ArrayList<AbstractNode> stack = new ArrayList<AbstractNode>();
+      for (int j = 0; j < levelNodes.length; j++) {
+         nodes.clear();
+         rows.clear();
+         stack.add(levelNodes[j]);
+         while (!stack.isEmpty()) {
+            AbstractNode node = stack.remove(stack.size() - 1);
+            for (AbstractNode dependant : model.getDependants(node)) {
+               if (dependant instanceof LevelNode) {
+                  // level node the rate node flows to or from
+                  Integer row = levelNode2index.get(dependant);
+                  if (row != null) {
+                     rows.set(row);
+                  }
+               } else {
+                  int position = id2position[dependant.getId()];
+                  if (position >= 0 && !nodes.get(position)) {
+                     nodes.set(position);
+                     stack.add(dependant);
+                  }
+               }
+            }
+         }
+         columnNodes[j] = toArray(nodes);
+         columnRows[j] = toArray(rows);
+      }
+      return columnNodes;
+   }
+   
+   /**
+    * Computes the Jacobian by differentiating the formulas along the evaluation schedule, one
+    * column after the other. Only the auxiliary and rate nodes depending on the column's level node
+    * are differentiated.
+    * 
+    * @param schedule evaluation schedule
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @param columnNodes by column: schedule positions of the auxiliary and rate nodes depending on
+    *                    the level node
+    */
+   private void differentiateFormulas(AbstractNode[] schedule, int firstLevelNodeIndex, int[][] columnNodes) {
+      double[] nodeValues = new double[model.getNumberOfNodeIds()];
+      double[] nodeDerivatives = new double[model.getNumberOfNodeIds()];
+      for (ConstantNode constantNode : model.getConstantNodes()) {
+         nodeValues[constantNode.getId()] = constantNode.getCurrentValue();
+      }
+      for (LevelNode levelNode : model.getLevelNodes()) {
+         nodeValues[levelNode.getId()] = levelNode.getCurrentValue();
+      }
+      
+      // values of the auxiliary and rate nodes at the current level node values
+      ASTDifferentiator differentiator = new ASTDifferentiator(nodeValues, nodeDerivatives);
+      for (int i = 0; i < firstLevelNodeIndex; i++) {
+         differentiator.differentiate(getExecutionFormula(schedule[i]));
+         nodeValues[schedule[i].getId()] = differentiator.getValue();
+      }
+      
+      for (int j = 0; j < levelNodes.length; j++) {
+         nodeDerivatives[levelNodes[j].getId()] = 1;
+         for (int position : columnNodes[j]) {
+            differentiator.differentiate(getExecutionFormula(schedule[position]));
+            nodeDerivatives[schedule[position].getId()] = differentiator.getDerivative();
+         }
+         
+         for (int k = 0; k < columnRows[j].length; k++) {
+            LevelNode levelNode = levelNodes[columnRows[j][k]];
+            double entry = 0;
+            for (RateNode rateNode : levelNode.getIncomingFlows()) {
+               entry += nodeDerivatives[rateNode.getId()];
+            }
+            for (RateNode rateNode : levelNode.getOutgoingFlows()) {
+               entry -= nodeDerivatives[rateNode.getId()];
+            }
+            columnEntries[j][k] = entry;
+         }
+         
+         nodeDerivatives[levelNodes[j].getId()] = 0;
+         for (int position : columnNodes[j]) {
+            nodeDerivatives[schedule[position].getId()] = 0;
+         }
+      }
+   }
+   
+   /**
+    * Computes the Jacobian by finite differences. Columns whose level nodes influence disjoint
+    * rows are perturbed together; the groups of columns are computed in parallel by runs of one
+    * compiled model with a simulation state per thread.
+    * 
+    * @param numberOfThreads number of threads
+    */
+   private void computeFiniteDifferences(int numberOfThreads) {
+      // greedy grouping of the columns with disjoint rows
+      final ArrayList<ArrayList<Integer>> groups = new ArrayList<ArrayList<Integer>>();
+      ArrayList<BitSet> groupRows = new ArrayList<BitSet>();
+      for (int j = 0; j < levelNodes.length; j++) {
+         int group = 0;
+         while (group < groups.size() && !isDisjoint(groupRows.get(group), columnRows[j])) {
+            group++;
+         }
+         if (group == groups.size()) {
+            groups.add(new ArrayList<Integer>());
+            groupRows.add(new BitSet(levelNodes.length));
+         }
+         groups.get(group).add(j);
+         for (int row : columnRows[j]) {
+            groupRows.get(group).set(row);
+         }
+      }
+      
+      final CompiledModel compiledModel = new CompiledModel(model);
+      final SimulationState[] states = new SimulationState[Math.max(1, Math.min(numberOfThreads, groups.size()))];
+      for (int i = 0; i < states.length; i++) {
+         states[i] = compiledModel.createSimulationState();
+      }
+      final int[] levelNodeSlots = new int[levelNodes.length];
+      for (int i = 0; i < levelNodes.length; i++) {
+         levelNodeSlots[i] = compiledModel.getSlot(levelNodes[i]);
+      }
+      final double[] startValues = new double[compiledModel.getNumberOfLevelNodes()];
+      System.arraycopy(states[0].getValues(), 0, startValues, 0, startValues.length);
+      final double[] netFlows = computeNetFlows(compiledModel, states[0], startValues);
+      
+      if (states.length == 1) {
+         computeFiniteDifferences(compiledModel, states[0], groups, 0, 1, levelNodeSlots, startValues, netFlows);
+         return;
+      }
+      
+      ExecutorService executorService = Executors.newFixedThreadPool(states.length - 1, new ThreadFactory() {
+         public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Linearization");
+            // worker threads must not prevent the application from terminating
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      try {
+         ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>(states.length - 1);
+         for (int i = 1; i < states.length; i++) {
+            final int thread = i;
+            futures.add(executorService.submit(new Callable<Object>() {
+               public Object call() {
+                  computeFiniteDifferences(compiledModel, states[thread], groups, thread, states.length,
+                                           levelNodeSlots, startValues, netFlows);
+                  return null;
+               }
+            }));
+         }
+         
+         computeFiniteDifferences(compiledModel, states[0], groups, 0, states.length, levelNodeSlots,
+                                  startValues, netFlows);
+         
+         for (Future<Object> future : futures) {
+            try {
+               future.get();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new IllegalStateException("Interrupted while computing the finite differences.");
+            } catch (ExecutionException e) {
+               // rethrow the exception of the worker thread (e.g. a node value out of range)
+               Throwable cause = e.getCause();
+               if (cause instanceof RuntimeException) {
+                  throw (RuntimeException)cause;
+               }
+               if (cause instanceof Error) {
+                  throw (Error)cause;
+               }
+               throw new Error(cause);
+            }
+         }
+      } finally {
+         executorService.shutdown();
+      }
+   }
+   
+   /**
+    * Computes the columns of every number of threads-th group of columns (starting with the
+    * specified first group) by finite differences with the specified run of the compiled model.
+    * 
+    * @param compiledModel compiled model
+    * @param state simulation state of the thread
+* @param groups groups of columns with disjoint rows
+    * @param firstGroup first group
+    * @param groupStep distance of the groups of the thread
+    * @param levelNodeSlots by level node index: slot in the compiled model
+    * @param startValues level nodes' values (by slot)
+    * @param netFlows net flows at the level nodes' values (by slot)
+    */
+   private void computeFiniteDifferences(CompiledModel compiledModel, SimulationState state,
+                                         List<ArrayList<Integer>> groups, int firstGroup, int groupStep,
+                                         int[] levelNodeSlots, double[] startValues, double[] netFlows) {
+      double[] values = new double[startValues.length];
+      double[] increments = new double[levelNodes.length];
+      for (int group = firstGroup; group < groups.size(); group += groupStep) {
+         System.arraycopy(startValues, 0, values, 0, values.length);
+         for (int j : groups.get(group)) {
+            int slot = levelNodeSlots[j];
+            double increment = FINITE_DIFFERENCE_INCREMENT * Math.max(1, Math.abs(startValues[slot]));
+            values[slot] = startValues[slot] + increment;
+            // exactly representable increment
+            increments[j] = values[slot] - startValues[slot];
+         }
+         
+         double[] perturbedNetFlows = computeNetFlows(compiledModel, state, values);
+         for (int j : groups.get(group)) {
+            for (int k = 0; k < columnRows[j].length; k++) {
+               int slot = levelNodeSlots[columnRows[j][k]];
+               columnEntries[j][k] = (perturbedNetFlows[slot] - netFlows[slot]) / increments[j];
+            }
+         }
+      }
+   }
+   
+   /**
+    * Computes the level nodes' net flows at the specified values with the specified run of the
+    * compiled model.
+    * 
+    * @param compiledModel compiled model
+    * @param state simulation state of the run
+    * @param levelNodeValues level nodes' values (by slot)
+    * @return net flows (by slot)
+    */
+   private static double[] computeNetFlows(CompiledModel compiledModel, SimulationState state,
+                                           double[] levelNodeValues) {
+      state.setLevelNodeValues(levelNodeValues);
+      compiledModel.computeNextValues(state);
+      
+      double[] values = state.getValues();
+      int[] incomingFlowStart = compiledModel.getIncomingFlowStart();
+      int[] incomingFlowSlots = compiledModel.getIncomingFlowSlots();
+      int[] outgoingFlowStart = compiledModel.getOutgoingFlowStart();
+      int[] outgoingFlowSlots = compiledModel.getOutgoingFlowSlots();
+      double[] netFlows = new double[levelNodeValues.length];
+      for (int i = 0; i < netFlows.length; i++) {
+         double netFlow = 0;
+         for (int j = incomingFlowStart[i]; j < incomingFlowStart[i + 1]; j++) {
+            netFlow += values[incomingFlowSlots[j]];
+         }
+         for (int j = outgoingFlowStart[i]; j < outgoingFlowStart[i + 1]; j++) {
+            netFlow -= values[outgoingFlowSlots[j]];
+         }
+         netFlows[i] = netFlow;
+      }
+      return netFlows;
+   }
+   
+   /**
+    * Computes the eigenvalues of the Jacobian: the strongly connected components of its structure
+    * (Tarjan's algorithm) are its diagonal blocks after a permutation to block triangular form.
+    * 
+    * @throws ArithmeticException if the eigenvalues of a block cannot be computed
+    */
+   private void computeEigenvalues() {
+      int n = levelNodes.length;
+      eigenvalueRealParts = new double[n];
+      eigenvalueImaginaryParts = new double[n];
+      int numberOfEigenvalues = 0;
+      
+      // iterative Tarjan's algorithm (edge from column j to row i for each structural entry)
+      int[] indexes = new int[n];
+      int[] lowLinks = new int[n];
+      int[] nextEdges = new int[n];
+      boolean[] isOnStack = new boolean[n];
+      int[] componentStack = new int[n];
+      int componentStackSize = 0;
+      int[] callStack = new int[n];
+      int nextIndex = 1;
+      int[] block = new int[n];
+      int[] block2index = new int[n];
+      for (int start = 0; start < n; start++) {
+         if (indexes[start] > 0) {
+            continue;
+         }
+         int callStackSize = 0;
+         callStack[callStackSize++] = start;
+         indexes[start] = lowLinks[start] = nextIndex++;
+         componentStack[componentStackSize++] = start;
+         isOnStack[start] = true;
+         while (callStackSize > 0) {
+            int node = callStack[callStackSize - 1];
+            if (nextEdges[node] < columnRows[node].length) {
+               int successor = columnRows[node][nextEdges[node]++];
+               if (indexes[successor] == 0) {
+                  indexes[successor] = lowLinks[successor] = nextIndex++;
+                  componentStack[componentStackSize++] = successor;
+                  isOnStack[successor] = true;
+                  callStack[callStackSize++] = successor;
+               } else if (isOnStack[successor]) {
+                  lowLinks[node] = Math.min(lowLinks[node], indexes[successor]);
+               }
+               continue;
+            }
+            
+            callStackSize--;
+            if (callStackSize > 0) {
+               int parent = callStack[callStackSize - 1];
+               lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[node]);
+            }
+            if (lowLinks[node] == indexes[node]) {
+               // strongly connected component found
+               int blockSize = 0;
+               int member;
+               do {
+                  member = componentStack[--componentStackSize];
+                  isOnStack[member] = false;
+                  block2index[member] = blockSize;
+                  block[blockSize++] = member;
+               } while (member != node);
+               
+               numberOfBlocks++;
+               largestBlockSize = Math.max(largestBlockSize, blockSize);
+               if (blockSize == 1) {
+                  eigenvalueRealParts[numberOfEigenvalues] = getEntry(node, node);
+                  eigenvalueImaginaryParts[numberOfEigenvalues++] = 0;
+               } else {
+                  double[][] matrix = new double[blockSize][blockSize];
+                  for (int j = 0; j < blockSize; j++) {
+                     int column = block[j];
+                     for (int k = 0; k < columnRows[column].length; k++) {
+                        int row = columnRows[column][k];
+                        if (isInBlock(row, block, block2index, blockSize)) {
+                           matrix[block2index[row]][j] = columnEntries[column][k];
+                        }
+                     }
+                  }
+                  Eigenvalues eigenvalues = new Eigenvalues(matrix);
+                  System.arraycopy(eigenvalues.getRealParts(), 0, eigenvalueRealParts, numberOfEigenvalues, blockSize);
+                  System.arraycopy(eigenvalues.getImaginaryParts(), 0, eigenvalueImaginaryParts, numberOfEigenvalues, blockSize);
+                  numberOfEigenvalues += blockSize;
+               }
+            }
+         }
+      }
+      
+      sortEigenvalues();
+   }
+   
+   /**
+    * Sorts the eigenvalues by decreasing real part (and decreasing imaginary part for equal real
+    * parts).
+    */
+   private void sortEigenvalues() {
+      int n = eigenvalueRealParts.length;
+      Integer[] order = new Integer[n];
+      for (int i = 0; i < n; i++) {
+         order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+         public int compare(Integer index1, Integer index2) {
+            int result = Double.compare(eigenvalueRealParts[index2], eigenvalueRealParts[index1]);
+            if (result == 0) {
+               result = Double.compare(eigenvalueImaginaryParts[index2], eigenvalueImaginaryParts[index1]);
+            }
+            return result;
+         }
+      });
+      double[] realParts = new double[n];
+      double[] imaginaryParts = new double[n];
+      for (int i = 0; i < n; i++) {
+         realParts[i] = eigenvalueRealParts[order[i]];
+         imaginaryParts[i] = eigenvalueImaginaryParts[order[i]];
+      }
+      eigenvalueRealParts = realParts;
+      eigenvalueImaginaryParts = imaginaryParts;
+   }
+   
+   /**
+    * Checks whether the specified level node belongs to the current block.
+    * 
+    * @param levelNodeIndex level node index
+    * @param block level node indexes of the block
+    * @param block2index by level node index: index in the block (only valid for members)
+    * @param blockSize size of the block
+    * @return <code>true</code> iff member of the block
+    */
+   private static boolean isInBlock(int levelNodeIndex, int[] block, int[] block2index, int blockSize) {
+      int index = block2index[levelNodeIndex];
+      return (index < blockSize && block[index] == levelNodeIndex);
+   }
+   
+   /**
+    * Gets the entry of the Jacobian in the specified row and column.
+    * 
+    * @param row row
+    * @param column column
+    * @return entry
+    */
+   private double getEntry(int row, int column) {
+      int position = Arrays.binarySearch(columnRows[column], row);
+      return (position >= 0) ? columnEntries[column][position] : 0;
+   }
+   
+   /**
+    * Gets the index of the specified level node.
+    * 
+    * @param levelNode level node
+    * @param parameterName parameter name for the error message
+    * @return index
+    */
+   private int getIndex(LevelNode levelNode, String parameterName) {
+      if (levelNode == null) {
+         throw new IllegalArgumentException("'" + parameterName + "' must not be null.");
+      }
+      
+      Integer index = levelNode2index.get(levelNode);
+      if (index == null) {
+         throw new IllegalArgumentException("'" + parameterName + "' must be an analyzed level node.");
+      }
+      return index;
+   }
+   
+   /**
+    * Checks the specified eigenvalue index.
+    * 
+    * @param index index of the eigenvalue
+    * @return index
+    */
+   private int checkEigenvalueIndex(int index) {
+      if (index < 0 || index >= eigenvalueRealParts.length) {
+         throw new IllegalArgumentException("'index' must be at least 0 and less than the number of eigenvalues.");
+      }
+      return index;
+   }
+   
+   /**
+    * Gets the executed formula of the specified auxiliary or rate node.
+    * 
+    * @param node auxiliary or rate node
+    * @return executed formula
+    */
+   private static ASTElement getExecutionFormula(AbstractNode node) {
+      if (node instanceof AuxiliaryNode) {
+         return ((AuxiliaryNode)node).getExecutionFormula();
+      }
+      return ((RateNode)node).getExecutionFormula();
+   }
+   
+   /**
+    * Checks whether none of the specified rows is set in the specified bitmap.
+    * 
+    * @param rowBitmap bitmap
+    * @param rows rows
+    * @return <code>true</code> iff disjoint
+    */
+   private static boolean isDisjoint(BitSet rowBitmap, int[] rows) {
+      for (int row : rows) {
+         if (rowBitmap.get(row)) {
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * Gets the set bits of the specified bitmap (ascending).
+    * 
+    * @param bitmap bitmap
+    * @return set bits
+    */
+   private static int[] toArray(BitSet bitmap) {
+      int[] array = new int[bitmap.cardinality()];
+      int nextIndex = 0;
+      for (int i = bitmap.nextSetBit(0); i >= 0; i = bitmap.nextSetBit(i + 1)) {
+         array[nextIndex++] = i;
+      }
+      return array;
+   }
+}
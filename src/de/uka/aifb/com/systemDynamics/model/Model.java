@@ -29,32 +29,66 @@ import java.util.*;
  * @author Joachim Melcher, University of Karlsruhe, AIFB
  * @version 1.0
  */
-public class Model {
+public class Model implements ModelExecutor {
+   
+   /** default tolerance of the steady-state solver (see {@link #computeSteadyState(double, int)}) */
+   public static final double DEFAULT_STEADY_STATE_TOLERANCE = 1E-9;
+   
+   /** default maximum number of rounds of the steady-state solver's time stepping fallback */
+   public static final int DEFAULT_STEADY_STATE_ROUNDS = 10000;
    
    private String modelName;
    
-   protected HashSet<LevelNode> levelNodes;
-   protected HashSet<RateNode> rateNodes;
-   protected HashSet<ConstantNode> constantNodes;
-   protected HashSet<AuxiliaryNode> auxiliaryNodes;
-   protected HashSet<SourceSinkNode> sourceSinkNodes;
+   protected NodeRegistry<LevelNode> levelNodes;
+   protected NodeRegistry<RateNode> rateNodes;
+   protected NodeRegistry<ConstantNode> constantNodes;
+   protected NodeRegistry<AuxiliaryNode> auxiliaryNodes;
+   protected NodeRegistry<SourceSinkNode> sourceSinkNodes;
+   
+   /** number of ids given to the created nodes (the id of the next created node) */
+   private int numberOfNodeIds;
    
    protected boolean isChangeable;
    
-   /** data structure used in method 'haveAuxiliaryNodesCycleDependency()' */
-   private HashSet<AuxiliaryNode> visitedAuxiliaryNodes;
-   private HashSet<AuxiliaryNode> finishedAuxiliaryNodes;
-   private HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>> adjacentListOfAuxiliaryNodes;
+   /**
+    * topological order of the auxiliary nodes dependency graph (edge from A to B iff B's formula
+    * contains A), maintained while formulas are changed
+    */
+   private IncrementalTopologicalOrder<AuxiliaryNode> auxiliaryNodeOrder;
+   
+   /**
+    * evaluation schedule (auxiliary nodes in topological order, then rate nodes, then level nodes),
+    * computed once when the model is set unchangeable
+    */
+   private AbstractNode[] evaluationSchedule;
+   
+   /** integrator of the level nodes used by {@link #computeNextValues()} */
+   private Integrator integrator;
+   
+   /**
+    * reverse dependency index: direct dependants of each node, i.e. the rate and auxiliary nodes
+    * whose formulas contain the node, the level nodes a rate node flows to or from and the rate
+    * nodes flowing to or from a source/sink node (nodes without dependants are not contained)
+    */
+   private HashMap<AbstractNode, LinkedHashSet<AbstractNode>> node2dependants;
+   
+   /** nodes contained in the formula of each rate and auxiliary node with formula */
+   private HashMap<AbstractNode, LinkedHashSet<AbstractNode>> node2formulaNodes;
    
    /**
     * Constructor.
     */
    public Model() {
-      levelNodes = new HashSet<LevelNode>();
-      rateNodes = new HashSet<RateNode>();
-      constantNodes = new HashSet<ConstantNode>();
-      auxiliaryNodes = new HashSet<AuxiliaryNode>();
-      sourceSinkNodes = new HashSet<SourceSinkNode>();
+      levelNodes = new NodeRegistry<LevelNode>(true);
+      rateNodes = new NodeRegistry<RateNode>(true);
+      constantNodes = new NodeRegistry<ConstantNode>(true);
+      auxiliaryNodes = new NodeRegistry<AuxiliaryNode>(true);
+      sourceSinkNodes = new NodeRegistry<SourceSinkNode>(true);
+      
+      node2dependants = new HashMap<AbstractNode, LinkedHashSet<AbstractNode>>();
+      node2formulaNodes = new HashMap<AbstractNode, LinkedHashSet<AbstractNode>>();
+      auxiliaryNodeOrder = new IncrementalTopologicalOrder<AuxiliaryNode>();
+      integrator = new Integrator(this);
       
       isChangeable = true;
    }
@@ -84,6 +118,96 @@ public class Model {
       return modelName;
    }
    
+   /**
+    * Creates a deep copy of this model in memory (see {@link #deepCopy(Map)}).
+    * 
+    * @return copy of this model
+    */
+   public Model deepCopy() {
+      return deepCopy(new HashMap<AbstractNode, AbstractNode>());
+   }
+   
+   /**
+    * Creates a deep copy of this model in memory: the model name, all nodes with their names, start
+    * and constant values, the flows (in the same order) and the formulas are copied. The copy
+    * computes bit-identical values, but is independent of this model, e.g. it can be executed
+    * while this model is still changed.
+    * <p>
+    * Like a model read from a file, the copy is changeable and its level nodes start with their
+    * start values again, i.e. the values computed by this model are not copied. The simulation
+    * specification is copied.
+    * 
+    * @param node2copy map the copy of each node of this model is put into
+    * @return copy of this model
+    */
+   public Model deepCopy(Map<AbstractNode, AbstractNode> node2copy) {
+      if (node2copy == null) {
+         throw new IllegalArgumentException("'node2copy' must not be null.");
+      }
+      
+      Model copy = new Model();
+      if (modelName != null) {
+         copy.setModelName(modelName);
+      }
+      
+      // (1) nodes (in the same order as in this model)
+      for (LevelNode levelNode : levelNodes) {
+         node2copy.put(levelNode, copy.createLevelNode(levelNode.getNodeName(), levelNode.getStartValue()));
+      }
+      for (RateNode rateNode : rateNodes) {
+         node2copy.put(rateNode, copy.createRateNode(rateNode.getNodeName()));
+      }
+      for (ConstantNode constantNode : constantNodes) {
+         node2copy.put(constantNode, copy.createConstantNode(constantNode.getNodeName(),
+                                                             constantNode.getConstantValue()));
+      }
+      for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
+         node2copy.put(auxiliaryNode, copy.createAuxiliaryNode(auxiliaryNode.getNodeName()));
+      }
+      for (SourceSinkNode sourceSinkNode : sourceSinkNodes) {
+         node2copy.put(sourceSinkNode, copy.createSourceSinkNode());
+      }
+      
+      // (2) flows: the flows of the level nodes in their evaluation order, so that they are added
+      //     and subtracted in the same order
+      for (LevelNode levelNode : levelNodes) {
+         LevelNode levelNodeCopy = (LevelNode)node2copy.get(levelNode);
+         for (RateNode incomingFlow : levelNode.getIncomingFlowsInEvaluationOrder()) {
+            copy.addFlowFromRateNode2LevelNode((RateNode)node2copy.get(incomingFlow), levelNodeCopy);
+         }
+         for (RateNode outgoingFlow : levelNode.getOutgoingFlowsInEvaluationOrder()) {
+            copy.addFlowFromLevelNode2RateNode(levelNodeCopy, (RateNode)node2copy.get(outgoingFlow));
+         }
+      }
+      for (RateNode rateNode : rateNodes) {
+         RateNode rateNodeCopy = (RateNode)node2copy.get(rateNode);
+         if (rateNode.getFlowSource() instanceof SourceSinkNode) {
+            copy.addFlowFromSourceSinkNode2RateNode((SourceSinkNode)node2copy.get(rateNode.getFlowSource()),
+                                                    rateNodeCopy);
+         }
+         if (rateNode.getFlowSink() instanceof SourceSinkNode) {
+            copy.addFlowFromRateNode2SourceSinkNode(rateNodeCopy,
+                                                    (SourceSinkNode)node2copy.get(rateNode.getFlowSink()));
+         }
+      }
+      
+      // (3) formulas
+      ASTCopier copier = new ASTCopier(node2copy);
+      for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
+         if (auxiliaryNode.hasFormula()) {
+            copy.setFormula(node2copy.get(auxiliaryNode), copier.copy(auxiliaryNode.getFormula()));
+         }
+      }
+      for (RateNode rateNode : rateNodes) {
+         if (rateNode.hasFormula()) {
+            copy.setFormula(node2copy.get(rateNode), copier.copy(rateNode.getFormula()));
+         }
+      }
+      
+      copy.setSimulationSpecification(integrator.getSimulationSpecification());
+      return copy;
+   }
+   
    /////////////////////////////////////////////////////////////////////////////////////////////////
    // methods for creating new nodes
    /////////////////////////////////////////////////////////////////////////////////////////////////
@@ -101,6 +225,7 @@ public class Model {
       }
       
       LevelNode levelNode = new LevelNode(nodeName, startValue);
+      levelNode.setId(numberOfNodeIds++);
       levelNodes.add(levelNode);
       return levelNode;
    }
@@ -117,6 +242,7 @@ public class Model {
       }
       
       RateNode rateNode = new RateNode(nodeName);
+      rateNode.setId(numberOfNodeIds++);
       rateNodes.add(rateNode);
       return rateNode;
    }
@@ -134,6 +260,7 @@ public class Model {
       }
       
       ConstantNode constantNode = new ConstantNode(nodeName, constantValue);
+      constantNode.setId(numberOfNodeIds++);
       constantNodes.add(constantNode);
       return constantNode;
    }
@@ -150,7 +277,9 @@ public class Model {
       }
       
       AuxiliaryNode auxiliaryNode = new AuxiliaryNode(nodeName);
+      auxiliaryNode.setId(numberOfNodeIds++);
       auxiliaryNodes.add(auxiliaryNode);
+      auxiliaryNodeOrder.addNode(auxiliaryNode);
       return auxiliaryNode;
    }
    
@@ -165,6 +294,7 @@ public class Model {
       }
       
       SourceSinkNode sourceSinkNode = new SourceSinkNode();
+      sourceSinkNode.setId(numberOfNodeIds++);
       sourceSinkNodes.add(sourceSinkNode);
       return sourceSinkNode;
    }
@@ -224,12 +354,12 @@ public class Model {
          SourceSinkNode sourceSinkNode = (SourceSinkNode)node;
          
          // remove incoming flows
-         for (RateNode rateNode : sourceSinkNode.getIncomingFlows()) {
+         for (RateNode rateNode : sourceSinkNode.getIncomingFlows().toArray(new RateNode[0])) {
             removeFlowFromRateNode2SourceSinkNode(rateNode, sourceSinkNode);
          }
          
          // remove outgoing flows
-         for (RateNode rateNode : sourceSinkNode.getOutgoingFlows()) {
+         for (RateNode rateNode : sourceSinkNode.getOutgoingFlows().toArray(new RateNode[0])) {
             removeFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode);
          }
          
@@ -239,39 +369,44 @@ public class Model {
       // node is a level node, a constant node or an auxiliary node
 
       //   (1) check whether it is part of the formula of *another* rate node or auxiliary node
-      for (RateNode rateNode : rateNodes) {
-         if (node != rateNode) {
-            if (rateNode.getAllNodesThisOneDependsOn().contains(node)) {
-               throw new FormulaDependencyException(rateNode);
+      //       (the flows of rate nodes and source/sink nodes are already removed, and level nodes
+      //       only have dependants by formulas, so all remaining dependants are formula dependants)
+      AuxiliaryNode dependantAuxiliaryNode = null;
+      for (AbstractNode dependant : getDependants(node)) {
+         if (node != dependant) {
+            if (dependant instanceof RateNode) {
+               throw new FormulaDependencyException(dependant);
             }
-         }
-      }
-      for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
-         if (node != auxiliaryNode) {
-            if (auxiliaryNode.getAllNodesThisOneDependsOn().contains(node)) {
-               throw new FormulaDependencyException(auxiliaryNode);
+            if (dependant instanceof AuxiliaryNode && dependantAuxiliaryNode == null) {
+               dependantAuxiliaryNode = (AuxiliaryNode)dependant;
             }
          }
       }
+      if (dependantAuxiliaryNode != null) {
+         throw new FormulaDependencyException(dependantAuxiliaryNode);
+      }
       
       //   (2) if node is level node: remove incoming and outgoing flows
       if (node instanceof LevelNode) {
          LevelNode levelNode = (LevelNode)node;
          
          // remove incoming flows
-         for (RateNode rateNode : levelNode.getIncomingFlows()) {
+         for (RateNode rateNode : levelNode.getIncomingFlows().toArray(new RateNode[0])) {
             removeFlowFromRateNode2LevelNode(rateNode, levelNode);
          }
          
          // remove outgoing flows
-         for (RateNode rateNode : levelNode.getOutgoingFlows()) {
+         for (RateNode rateNode : levelNode.getOutgoingFlows().toArray(new RateNode[0])) {
             removeFlowFromLevelNode2RateNode(levelNode, rateNode);
          }
       }
       
       //   (3) remove node
+      updateFormulaDependencies(node, null);
+      node2dependants.remove(node);
       if (node instanceof AuxiliaryNode) {
          auxiliaryNodes.remove(node);
+         auxiliaryNodeOrder.removeNode((AuxiliaryNode)node);
       }
       if (node instanceof ConstantNode) {
          constantNodes.remove(node);
@@ -333,7 +468,8 @@ public class Model {
    }
    
    /**
-    * Sets the specified node's formula.
+    * Sets the specified node's formula. Identical subtrees of the formulas are shared when the
+    * model is set unchangeable (see {@link #validateModelAndSetUnchangeable()}).
     * 
     * @param node node to change
     * @param formula new formula
@@ -349,6 +485,8 @@ public class Model {
          throw new IllegalArgumentException("'node' must be of type AuxiliaryNode or RateNode.");
       }
       
+      updateFormulaDependencies(node, formula);
+      
       if (node instanceof AuxiliaryNode) {
          ((AuxiliaryNode)node).setFormula(formula);
       } else {
@@ -357,6 +495,37 @@ public class Model {
       }
    }
    
+   /**
+    * Checks whether the specified formula for the specified node would create an auxiliary nodes
+    * cycle dependency. The model is not changed. As the topological order of the auxiliary nodes
+    * is maintained while formulas are changed, only the auxiliary nodes between the formula nodes
+    * and the specified node in this order are searched.
+    * 
+    * @param node node whose formula should be changed
+    * @param formula new formula
+    * @return <code>true</code> iff the formula would create a cycle dependency
+    */
+   public boolean createsAuxiliaryNodesCycleDependency(AbstractNode node, ASTElement formula) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      
+      if (formula == null || !(node instanceof AuxiliaryNode) || !auxiliaryNodes.contains(node)) {
+         // only formulas of auxiliary nodes can create cycles
+         return false;
+      }
+      
+      HashSet<AbstractNode> formulaNodes = new HashSet<AbstractNode>();
+      new ASTDependencyCollector().collectNodes(formula, formulaNodes);
+      for (AbstractNode formulaNode : formulaNodes) {
+         if (isAuxiliaryNodeOrderEdge(formulaNode, node)
+             && auxiliaryNodeOrder.wouldCreateCycle((AuxiliaryNode)formulaNode, (AuxiliaryNode)node)) {
+            return true;
+         }
+      }
+      return false;
+   }
+   
    /**
     * Adds a flow from the specified level node to the specified rate node. If there is already
     * another flow to this rate node, the addition of this flow is not possible.
@@ -383,6 +552,7 @@ public class Model {
       
       levelNode.addOutgoingFlow(rateNode);
       rateNode.setFlowSource(levelNode);
+      addDependant(rateNode, levelNode);
       return true;
    }
    
@@ -409,6 +579,10 @@ public class Model {
       
       if (rateNodeCorrect && levelNodeCorrect) {
          rateNode.removeFlowSource();
+         if (rateNode.getFlowSink() != levelNode) {
+            // (otherwise, the level node still depends on the rate node by the other flow)
+            removeDependant(rateNode, levelNode);
+         }
          return levelNode.removeOutgoingFlow(rateNode);
       }
       
@@ -446,6 +620,7 @@ public class Model {
       
       rateNode.setFlowSink(levelNode);
       levelNode.addIncomingFlow(rateNode);
+      addDependant(rateNode, levelNode);
       return true;
    }
    
@@ -472,6 +647,10 @@ public class Model {
       
       if (rateNodeCorrect && levelNodeCorrect) {
          rateNode.removeFlowSink();
+         if (rateNode.getFlowSource() != levelNode) {
+            // (otherwise, the level node still depends on the rate node by the other flow)
+            removeDependant(rateNode, levelNode);
+         }
          return levelNode.removeIncomingFlow(rateNode);
       }
       
@@ -509,6 +688,7 @@ public class Model {
       
       sourceSinkNode.addOutgoingFlow(rateNode);
       rateNode.setFlowSource(sourceSinkNode);
+      addDependant(sourceSinkNode, rateNode);
       return true;
    }
    
@@ -535,6 +715,10 @@ public class Model {
       
       if (rateNodeCorrect && sourceSinkNodeCorrect) {
          rateNode.removeFlowSource();
+         if (rateNode.getFlowSink() != sourceSinkNode) {
+            // (otherwise, the rate node still depends on the source/sink node by the other flow)
+            removeDependant(sourceSinkNode, rateNode);
+         }
          return sourceSinkNode.removeOutgoingFlow(rateNode);
       }
       
@@ -572,6 +756,7 @@ public class Model {
       
       rateNode.setFlowSink(sourceSinkNode);
       sourceSinkNode.addIncomingFlow(rateNode);
+      addDependant(sourceSinkNode, rateNode);
       return true;
    }
    
@@ -598,6 +783,10 @@ public class Model {
       
       if (rateNodeCorrect && sourceSinkNodeCorrect) {
          rateNode.removeFlowSink();
+         if (rateNode.getFlowSource() != sourceSinkNode) {
+            // (otherwise, the rate node still depends on the source/sink node by the other flow)
+            removeDependant(sourceSinkNode, rateNode);
+         }
          return sourceSinkNode.removeIncomingFlow(rateNode);
       }
       
@@ -614,49 +803,169 @@ public class Model {
    /////////////////////////////////////////////////////////////////////////////////////////////////
    
    /**
-    * Gets the model's level nodes. A shallow clone of the set of level nodes is returned.
+    * Gets the model's level nodes. A read-only view of the set of level nodes is returned (in
+    * the order in which the nodes were created).
     * 
     * @return model's level nodes
     */
-   public HashSet<LevelNode> getLevelNodes() {
-      return (HashSet<LevelNode>)levelNodes.clone();
+   public Set<LevelNode> getLevelNodes() {
+      return levelNodes.getReadOnlyView();
    }
    
    /**
-    * Gets the model's rate nodes. A shallow clone of the set of rate nodes is returned.
+    * Gets the model's rate nodes. A read-only view of the set of rate nodes is returned (in
+    * the order in which the nodes were created).
     * 
     * @return model's rate nodes
     */
-   public HashSet<RateNode> getRateNodes() {
-      return (HashSet<RateNode>)rateNodes.clone();
+   public Set<RateNode> getRateNodes() {
+      return rateNodes.getReadOnlyView();
    }
    
    /**
-    * Gets the model's constant nodes. A shallow clone of the set of constant nodes is returned.
+    * Gets the model's constant nodes. A read-only view of the set of constant nodes is returned (in
+    * the order in which the nodes were created).
     * 
     * @return constant nodes
     */
-   public HashSet<ConstantNode> getConstantNodes() {
-      return (HashSet<ConstantNode>)constantNodes.clone();
+   public Set<ConstantNode> getConstantNodes() {
+      return constantNodes.getReadOnlyView();
    }
    
    /**
-    * Gets the model's auxiliary nodes. A shallow clone of the set of auxiliary nodes is returned.
+    * Gets the model's auxiliary nodes. A read-only view of the set of auxiliary nodes is returned (in
+    * the order in which the nodes were created).
     * 
     * @return model's auxiliary nodes
     */
-   public HashSet<AuxiliaryNode> getAuxiliaryNodes() {
-      return (HashSet<AuxiliaryNode>)auxiliaryNodes.clone();
+   public Set<AuxiliaryNode> getAuxiliaryNodes() {
+      return auxiliaryNodes.getReadOnlyView();
    }
    
    /**
-    * Gets the model's source/sink nodes. A shallow clone of the set of source/sink nodes is
-    * returned.
+    * Gets the model's source/sink nodes. A read-only view of the set of source/sink nodes is
+    * returned (in the order in which the nodes were created).
     * 
     * @return model's source/sink nodes
     */
-   public HashSet<SourceSinkNode> getSourceSinkNodes() {
-      return (HashSet<SourceSinkNode>)sourceSinkNodes.clone();
+   public Set<SourceSinkNode> getSourceSinkNodes() {
+      return sourceSinkNodes.getReadOnlyView();
+   }
+   
+   /**
+    * Gets the number of ids given to the model's nodes. All node ids are smaller, so arrays of this
+    * length can be indexed by node id.
+    * 
+    * @return number of node ids
+    */
+   int getNumberOfNodeIds() {
+      return numberOfNodeIds;
+   }
+   
+   /**
+    * Gets the direct dependants of the specified node, i.e. the rate and auxiliary nodes whose
+    * formulas contain the node, the level nodes a rate node flows to or from and the rate nodes
+    * flowing to or from a source/sink node. A read-only view of the set of dependants is returned.
+    * <p>
+    * The dependants are kept in an index which is updated whenever a formula or a flow changes, so
+    * the time does not depend on the model size.
+    * 
+    * @param node node
+    * @return direct dependants
+    */
+   public Set<AbstractNode> getDependants(AbstractNode node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      
+      LinkedHashSet<AbstractNode> dependants = node2dependants.get(node);
+      if (dependants == null) {
+         return Collections.emptySet();
+      }
+      return Collections.unmodifiableSet(dependants);
+   }
+   
+   /**
+    * Gets all nodes which directly or indirectly depend on the specified node, e.g. all nodes
+    * affected by a change of a constant node. The time is proportional to the size of the result.
+    * 
+    * @param node node
+    * @return all (direct and indirect) dependants
+    */
+   public Set<AbstractNode> getAllDependants(AbstractNode node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      
+      LinkedHashSet<AbstractNode> allDependants = new LinkedHashSet<AbstractNode>();
+      LinkedList<AbstractNode> todoList = new LinkedList<AbstractNode>();
+      todoList.add(node);
+      while (!todoList.isEmpty()) {
+         LinkedHashSet<AbstractNode> dependants = node2dependants.get(todoList.removeFirst());
+         if (dependants != null) {
+            for (AbstractNode dependant : dependants) {
+               if (allDependants.add(dependant)) {
+                  todoList.add(dependant);
+               }
+            }
+         }
+      }
+      
+      return allDependants;
+   }
+   
+   /**
+    * Gets all nodes the specified level nodes depend on (backward dependency closure), i.e. all
+    * nodes which can affect their values: the rate nodes flowing to or from a level node and the
+    * nodes contained in the formulas of the rate and auxiliary nodes, including further level
+    * nodes and their flows. The specified level nodes are contained, too. The time is proportional
+    * to the size of the result.
+    * 
+    * @param levelNodes level nodes
+    * @return all nodes the level nodes depend on
+    */
+   public Set<AbstractNode> getNodesLevelNodesDependOn(Collection<LevelNode> levelNodes) {
+      if (levelNodes == null) {
+         throw new IllegalArgumentException("'levelNodes' must not be null.");
+      }
+      
+      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+      ArrayList<AbstractNode> stack = new ArrayList<AbstractNode>();
+      for (LevelNode levelNode : levelNodes) {
+         if (levelNode == null) {
+            throw new IllegalArgumentException("'levelNodes' must not contain null.");
+         }
+         if (nodeSet.add(levelNode)) {
+            stack.add(levelNode);
+         }
+      }
+      
+      while (!stack.isEmpty()) {
+         AbstractNode nodeToDo = stack.remove(stack.size() - 1);
+         if (nodeToDo instanceof LevelNode) {
+            LevelNode levelNode = (LevelNode)nodeToDo;
+            for (RateNode rateNode : levelNode.getIncomingFlows()) {
+               if (nodeSet.add(rateNode)) {
+                  stack.add(rateNode);
+               }
+            }
+            for (RateNode rateNode : levelNode.getOutgoingFlows()) {
+               if (nodeSet.add(rateNode)) {
+                  stack.add(rateNode);
+               }
+            }
+         } else {
+            // rate and auxiliary nodes depend on their formula nodes (constant nodes do not depend
+            // on other nodes)
+            for (AbstractNode node : getFormulaNodes(nodeToDo)) {
+               if (nodeSet.add(node)) {
+                  stack.add(node);
+               }
+            }
+         }
+      }
+      
+      return nodeSet;
    }
    
    /**
@@ -668,9 +977,37 @@ public class Model {
       return isChangeable;
    }
    
+   /**
+    * Gets the number of operations of all rate and auxiliary node formulas, counted as if the
+    * formulas were trees, i.e. shared subtrees are counted every time they occur.
+    * 
+    * @return number of operations of all formulas
+    */
+   public int getNumberOfFormulaOperations() {
+      OperationCounter operationCounter = new OperationCounter();
+      countFormulaOperations(operationCounter);
+      return operationCounter.numberOfOperations;
+   }
+   
+   /**
+    * Gets the number of distinct operation instances of all rate and auxiliary node formulas.
+    * Together with {@link #getNumberOfFormulaOperations()}, this shows how many subtrees are
+    * shared (see {@link #validateModelAndSetUnchangeable()}).
+    * 
+    * @return number of distinct operation instances of all formulas
+    */
+   public int getNumberOfDistinctFormulaOperations() {
+      OperationCounter operationCounter = new OperationCounter();
+      countFormulaOperations(operationCounter);
+      return operationCounter.distinctOperations.size();
+   }
+   
    /**
     * Validates the model and sets it unchangeable. If the model is valid, the method runs without
     * throwing any exception. Otherwise, an appropriate exception is thrown.
+    * <p>
+    * Afterwards, structurally identical subtrees of all formulas are shared (hash-consing, see
+    * {@link ASTInterner}).
     * 
     * @throws AuxiliaryNodesCycleDependency if the model's auxiliary nodes have a cycle dependency
     * @throws NoFormulaException if a rate node or an auxiliary node has no formula
@@ -684,12 +1021,130 @@ public class Model {
                                                         RateNodeFlowException,
                                                         UselessNodeException {
       validateModel();
+      evaluationSchedule = createEvaluationSchedule();
+      internFormulas();
+      optimizeFormulas();
       isChangeable = false;
    }
    
+   /**
+    * Sets the output nodes of the model execution, i.e. the level nodes whose values are needed.
+    * Only the nodes the output nodes depend on (see
+    * {@link #getNodesLevelNodesDependOn(Collection)}) are kept in the evaluation schedule, so
+    * every other node is dropped from the execution. The output nodes get the same values as
+    * without slicing; the values of the dropped nodes are not computed any more.
+    * <p>
+    * The evaluation schedule is used by the interpreter and read by the other execution backends
+    * when they are created, i.e. this method has to be invoked before the model executor is
+    * created (see {@link ExecutionEngine#createModelExecutor(Model)}).
+    * 
+    * @param outputNodes level nodes of this model whose values are needed (<code>null</code>: all
+    *                    nodes are computed)
+    */
+   public void setOutputNodes(Collection<LevelNode> outputNodes) {
+      if (isChangeable) {
+         throw new ModelStillChangeableException();
+      }
+      
+      AbstractNode[] schedule = createEvaluationSchedule();
+      if (outputNodes != null) {
+         for (LevelNode outputNode : outputNodes) {
+            if (!levelNodes.contains(outputNode)) {
+               throw new IllegalArgumentException("'outputNodes' must only contain level nodes of this model.");
+            }
+         }
+         
+         // keep the relative order of the remaining nodes
+         Set<AbstractNode> nodesOutputNodesDependOn = getNodesLevelNodesDependOn(outputNodes);
+         AbstractNode[] slicedSchedule = new AbstractNode[nodesOutputNodesDependOn.size()];
+         int nextIndex = 0;
+         for (AbstractNode node : schedule) {
+            if (nodesOutputNodesDependOn.contains(node)) {
+               slicedSchedule[nextIndex++] = node;
+            }
+         }
+         schedule = new AbstractNode[nextIndex];
+         System.arraycopy(slicedSchedule, 0, schedule, 0, nextIndex);
+      }
+      evaluationSchedule = schedule;
+   }
+   
+   /**
+    * Gets the number of nodes computed in each time step, i.e. the number of auxiliary, rate and
+    * level nodes (only the ones the output nodes depend on, see
+    * {@link #setOutputNodes(Collection)}).
+    * 
+    * @return number of nodes computed in each time step
+    */
+   public int getNumberOfEvaluatedNodes() {
+      if (isChangeable) {
+         throw new ModelStillChangeableException();
+      }
+      
+      return evaluationSchedule.length;
+   }
+   
+   /**
+    * Sets the simulation specification (time step DT and integration method) used by
+    * {@link #computeNextValues()}. It can also be changed after the model was set unchangeable.
+    * <p>
+    * The compiled execution backends only support the explicit fixed-step methods and the other
+    * backends only the default specification, otherwise
+    * {@link ExecutionEngine#createModelExecutor(Model)} falls back to the interpreter (see
+    * {@link ExecutionEngine#supports(SimulationSpecification)}).
+    * 
+    * @param simulationSpecification simulation specification
+    */
+   public void setSimulationSpecification(SimulationSpecification simulationSpecification) {
+      if (simulationSpecification == null) {
+         throw new IllegalArgumentException("'simulationSpecification' must not be null.");
+      }
+      
+      integrator.setSimulationSpecification(simulationSpecification);
+   }
+   
+   /**
+    * Gets the simulation specification (time step DT and integration method).
+    * 
+    * @return simulation specification
+    */
+   public SimulationSpecification getSimulationSpecification() {
+      return integrator.getSimulationSpecification();
+   }
+   
+   /**
+    * Gets the number of time steps computed by {@link #computeNextValues()} so far.
+    * 
+    * @return number of accepted time steps
+    */
+   public long getNumberOfAcceptedSteps() {
+      return integrator.getNumberOfAcceptedSteps();
+   }
+   
+   /**
+    * Gets the number of time steps the adaptive integration method has rejected so far, because
+    * their estimated error was too large. A rejected time step is repeated with a smaller one.
+    * 
+    * @return number of rejected time steps
+    */
+   public long getNumberOfRejectedSteps() {
+      return integrator.getNumberOfRejectedSteps();
+   }
+   
+   /**
+    * Gets the number of Jacobians the implicit integration methods and the steady-state solver have
+    * computed so far. A Jacobian is reused as long as the Newton iterations converge with it.
+    * 
+    * @return number of Jacobian evaluations
+    */
+   public long getNumberOfJacobianEvaluations() {
+      return integrator.getNumberOfJacobianEvaluations();
+   }
+   
    /**
     * Validates the model. If the model is valid, the method runs without throwing any exception.
-    * Otherwise, an appropriate exception is thrown.
+    * Otherwise, an appropriate exception is thrown for the first model error found by
+    * {@link #getModelErrors()}.
     * 
     * @throws AuxiliaryNodesCycleDependencyException if the model's auxiliary nodes have a cycle
     *                                                dependency
@@ -703,37 +1158,74 @@ public class Model {
                                       NoLevelNodeException,
                                       RateNodeFlowException,
                                       UselessNodeException {
+      List<ModelValidationException> modelErrors = getModelErrors();
+      if (modelErrors.isEmpty()) {
+         return;
+      }
+      
+      ModelValidationException modelError = modelErrors.get(0);
+      if (modelError instanceof AuxiliaryNodesCycleDependencyException) {
+         throw (AuxiliaryNodesCycleDependencyException)modelError;
+      }
+      if (modelError instanceof NoFormulaException) {
+         throw (NoFormulaException)modelError;
+      }
+      if (modelError instanceof NoLevelNodeException) {
+         throw (NoLevelNodeException)modelError;
+      }
+      if (modelError instanceof RateNodeFlowException) {
+         throw (RateNodeFlowException)modelError;
+      }
+      if (modelError instanceof UselessNodeException) {
+         throw (UselessNodeException)modelError;
+      }
+      throw new Error("Unknown model error " + modelError.getClass().getName() + ".");
+   }
+   
+   /**
+    * Validates the model and gets all model errors, i.e. the validation does not stop at the first
+    * error. Each auxiliary nodes cycle dependency is reported with all auxiliary nodes of the
+    * cycle. All checks run in linear time in the number of nodes and formula dependencies.
+    * 
+    * @return all model errors in the order of the checks (empty iff the model is valid)
+    */
+   public List<ModelValidationException> getModelErrors() {
+      ArrayList<ModelValidationException> modelErrors = new ArrayList<ModelValidationException>();
+      
       // (i) MUST conditions:
       
       // (i) a) at least one level node
       if (levelNodes.isEmpty()) {
-         throw new NoLevelNodeException();
+         modelErrors.add(new NoLevelNodeException());
       }
       
       // (i) b) each rate node must have an incoming and an outgoing flow
       for (RateNode rateNode : rateNodes) {
          // rate node must have flow source and flow sink
          if (rateNode.getFlowSource() == null || rateNode.getFlowSink() == null) {
-            throw new RateNodeFlowException(rateNode);
+            modelErrors.add(new RateNodeFlowException(rateNode));
          }
       }
       
       // (i) c) rate nodes and auxiliary nodes must have formulas
       for (RateNode rateNode : rateNodes) {
          if (!rateNode.hasFormula()) {
-            throw new NoFormulaException(rateNode);
+            modelErrors.add(new NoFormulaException(rateNode));
          }
       }
       
       for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
          if (!auxiliaryNode.hasFormula()) {
-            throw new NoFormulaException(auxiliaryNode);
+            modelErrors.add(new NoFormulaException(auxiliaryNode));
          }
       }
       
-      // (i) d) no cycles within auxiliary nodes dependencies
+      // (i) d) no cycles within auxiliary nodes dependencies (the maintained order tells whether
+      //        there is a cycle, the cycles themselves are only searched if there is one)
       if (haveAuxiliaryNodesCycleDependency()) {
-         throw new AuxiliaryNodesCycleDependencyException();
+         for (List<AuxiliaryNode> cycleNodes : getAuxiliaryNodesCycles()) {
+            modelErrors.add(new AuxiliaryNodesCycleDependencyException(cycleNodes));
+         }
       }
       
       // (ii) CAN conditions (optinal, but I decided to make them compulsory)
@@ -743,257 +1235,464 @@ public class Model {
       // (ii) a) all constant nodes must be useful (influence at least one level node)
       for (ConstantNode constantNode : constantNodes) {
          if (!nodesLevelNodesDependOn.contains(constantNode)) {
-            throw new UselessNodeException(constantNode);
+            modelErrors.add(new UselessNodeException(constantNode));
          }
       }
       
       // (ii) b) all auxiliary nodes must be useful (influence at least one leve node)
       for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
          if (!nodesLevelNodesDependOn.contains(auxiliaryNode)) {
-            throw new UselessNodeException(auxiliaryNode);
+            modelErrors.add(new UselessNodeException(auxiliaryNode));
          }
       }
       
       // (ii) c) all source/sink nodes must be useful (influence at least one leve node)
       for (SourceSinkNode sourceSinkNode : sourceSinkNodes) {
          if (!nodesLevelNodesDependOn.contains(sourceSinkNode)) {
-            throw new UselessNodeException(sourceSinkNode);
+            modelErrors.add(new UselessNodeException(sourceSinkNode));
          }
       }
+      
+      return modelErrors;
    }
    
    /**
-    * Computes the nodes' values for the next time step.
+    * Computes the nodes' values for the next round. The level nodes are integrated over one time
+    * unit as specified by the simulation specification (see
+    * {@link #setSimulationSpecification(SimulationSpecification)}). For the default specification
+    * (Euler method, DT = 1), the auxiliary and rate nodes have the values the level nodes were
+    * computed with; otherwise, they have the values of the last evaluation within the round.
     */
    public void computeNextValues() {
       if (isChangeable) {
          throw new ModelStillChangeableException();
       }
       
-      // compute next values for auxiliary nodes (in topological order!)
-      HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>> adjacentList = getAdjacentListOfAuxiliaryNodes();
-      HashMap<AuxiliaryNode, Integer> numberOfPredecessorsMap = getNumberOfPredecessorsMap();
+      integrator.integrate();
+   }
+   
+   /**
+    * Gets the current value of the specified node.
+    * 
+    * @param node level, rate, auxiliary or constant node of this model
+    * @return current value
+    */
+   public double getCurrentValue(AbstractNode node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      
+      return node.getCurrentValue();
+   }
+   
+   /**
+    * Computes a steady state with the default tolerance and the default maximum number of rounds
+    * (see {@link #computeSteadyState(double, int)}).
+    * 
+    * @return steady state
+    */
+   public SteadyState computeSteadyState() {
+      return computeSteadyState(DEFAULT_STEADY_STATE_TOLERANCE, DEFAULT_STEADY_STATE_ROUNDS);
+   }
+   
+   /**
+    * Computes a steady state directly, i.e. level node values at which the net flow (incoming
+    * minus outgoing flows) of every level node is at most tolerance * (1 + |value|), starting at
+    * the current values.
+    * <p>
+    * The equations are solved by damped Newton iterations: the Jacobian of the net flows is
+    * computed by finite differences once and then updated by Broyden's method, a new one is only
+    * computed if a step does not decrease the net flows. If the iterations fail (e.g. for a
+    * singular Jacobian or a start too far away), the model is executed for some rounds (with the
+    * simulation specification) and the iterations are started again at the new values, until the
+    * maximum number of rounds is reached.
+    * <p>
+    * If a steady state is found, the level nodes have its values afterwards and the auxiliary and
+    * rate nodes the values computed with them. Otherwise (also if an exception is thrown), the
+    * level nodes have their values before again and the auxiliary and rate nodes the values
+    * computed with them.
+    * 
+    * @param tolerance tolerance of the net flows (greater than 0)
+    * @param maxRounds maximum number of rounds of the time stepping fallback (at least 0)
+    * @return steady state (or the last approximation, if none is found)
+    */
+   public SteadyState computeSteadyState(double tolerance, int maxRounds) {
+      if (isChangeable) {
+         throw new ModelStillChangeableException();
+      }
+      if (!(tolerance > 0)) {
+         throw new IllegalArgumentException("'tolerance' must be greater than 0.");
+      }
+      if (maxRounds < 0) {
+         throw new IllegalArgumentException("'maxRounds' must be at least 0.");
+      }
+      
+      return new SteadyStateSolver(this, integrator).computeSteadyState(tolerance, maxRounds);
+   }
+   
+   /**
+    * Gets the evaluation schedule used by method {@link #computeNextValues()}. The returned array
+    * must not be changed.
+    * 
+    * @return evaluation schedule
+    */
+   AbstractNode[] getEvaluationSchedule() {
+      if (isChangeable) {
+         throw new ModelStillChangeableException();
+      }
       
-      while (!numberOfPredecessorsMap.isEmpty()) {
-         for (AuxiliaryNode auxiliaryNode : numberOfPredecessorsMap.keySet()) {
-            if (numberOfPredecessorsMap.get(auxiliaryNode) == 0) {
-               // 'auxiliaryNode' has no not updated auxiliary node predecessor
-               
-               // compute next value for that auxiliary node
-               auxiliaryNode.computeNextValue();
-               
-               // decrease number of predecessors for all dependant nodes
-               // (if there are any dependant nodes)
-               HashSet<AuxiliaryNode> dependantAuxiliaryNodes = adjacentList.get(auxiliaryNode);
-               if (dependantAuxiliaryNodes != null) {
-                  for (AuxiliaryNode dependantAuxiliaryNode : adjacentList.get(auxiliaryNode)) {
-                     int numberOfPredecessors = numberOfPredecessorsMap.get(dependantAuxiliaryNode);
-                     numberOfPredecessors--;
-                     numberOfPredecessorsMap.put(dependantAuxiliaryNode, numberOfPredecessors);
-                  }
-               }
-               
-               // remove 'auxiliaryNode' from mapping
-               numberOfPredecessorsMap.remove(auxiliaryNode);
-               
-               // stop for loop
-               break;
-            }
-         }
+      return evaluationSchedule;
+   }
+   
+   /**
+    * Replaces structurally identical subtrees of all rate and auxiliary node formulas by one
+    * shared instance (see {@link ASTInterner}). The interning table is built from the current
+    * formulas only and is not kept afterwards, so replaced formulas do not stay reachable.
+    */
+   private void internFormulas() {
+      ASTInterner interner = new ASTInterner();
+      for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
+         auxiliaryNode.setFormula(interner.intern(auxiliaryNode.getFormula()));
+      }
+      for (RateNode rateNode : rateNodes) {
+         rateNode.setFormula(interner.intern(rateNode.getFormula()));
+      }
+   }
+   
+   /**
+    * Sets the executed form of all rate and auxiliary node formulas (constant folding and exact
+    * algebraic simplification, see {@link ASTOptimizer}). The original formulas are kept for
+    * display and XML export. As constant values cannot be changed any more after the model was
+    * set unchangeable and only exact rewrites are done, the executed form computes bit-identical
+    * values.
+    * <p>
+    * The executed forms are hash-consed (see {@link ASTInterner}), so that identical
+    * subexpressions - also the ones only created by the optimization - are shared by all formulas.
+    */
+   private void optimizeFormulas() {
+      ASTOptimizer optimizer = new ASTOptimizer();
+      ASTInterner interner = new ASTInterner();
+      for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
+         auxiliaryNode.setExecutionFormula(interner.intern(optimizer.optimize(auxiliaryNode.getFormula())));
+      }
+      for (RateNode rateNode : rateNodes) {
+         rateNode.setExecutionFormula(interner.intern(optimizer.optimize(rateNode.getFormula())));
       }
+   }
+   
+   /**
+    * Creates the evaluation schedule for method {@link #computeNextValues()}: first all auxiliary
+    * nodes in topological order, afterwards all rate nodes and at last all level nodes. The model
+    * must not have any auxiliary nodes cycle dependency.
+    * 
+    * @return evaluation schedule
+    */
+   private AbstractNode[] createEvaluationSchedule() {
+      AbstractNode[] schedule =
+         new AbstractNode[auxiliaryNodes.size() + rateNodes.size() + levelNodes.size()];
+      int nextIndex = 0;
       
-      // compute next values for rate nodes
+      // (1) auxiliary nodes in the maintained topological order
+      if (auxiliaryNodeOrder.hasCycle()) {
+         throw new Error("Auxiliary nodes have a cycle dependency.");
+      }
+      for (AuxiliaryNode auxiliaryNode : auxiliaryNodeOrder.getOrder()) {
+         schedule[nextIndex++] = auxiliaryNode;
+      }
+      
+      // (2) rate nodes
       for (RateNode rateNode : rateNodes) {
-         rateNode.computeNextValue();
+         schedule[nextIndex++] = rateNode;
       }
       
-      // compute next values for level nodes
+      // (3) level nodes
       for (LevelNode levelNode : levelNodes) {
-         levelNode.computeNextValue();
+         schedule[nextIndex++] = levelNode;
       }
+      
+      return schedule;
    }
    
    /**
-    * Checks whether the auxiliary nodes have a cycle dependency.
+    * Checks whether the auxiliary nodes have a cycle dependency. The topological order of the
+    * auxiliary nodes is maintained while formulas are changed, so only the dependencies which
+    * could not be inserted into the order have to be checked again.
     * 
     * @return <code>true</code> iff the auxiliary nodes have a cycle dependency
     */
    private boolean haveAuxiliaryNodesCycleDependency() {
-      visitedAuxiliaryNodes = new HashSet<AuxiliaryNode>();
-      finishedAuxiliaryNodes = new HashSet<AuxiliaryNode>();
-      adjacentListOfAuxiliaryNodes = new HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>>();
-      
-      // initialize directed graph representation of auxiliary nodes dependencies
-      adjacentListOfAuxiliaryNodes = getAdjacentListOfAuxiliaryNodes();
-      
-      // search for cycles using adapted depth-first search algorithm
-      for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
-         if (DFS_visit(auxiliaryNode)) {
-            // cycle found -> return true
-            return true;
+      return auxiliaryNodeOrder.hasCycle();
+   }
+   
+   /**
+    * Updates the dependency index for the specified new formula of the specified node.
+    * 
+    * @param node rate or auxiliary node
+    * @param formula new formula or <code>null</code>
+    */
+   private void updateFormulaDependencies(AbstractNode node, ASTElement formula) {
+      LinkedHashSet<AbstractNode> oldFormulaNodes = node2formulaNodes.remove(node);
+      if (oldFormulaNodes != null) {
+         for (AbstractNode formulaNode : oldFormulaNodes) {
+            removeDependant(formulaNode, node);
+            if (isAuxiliaryNodeOrderEdge(formulaNode, node)) {
+               auxiliaryNodeOrder.removeEdge((AuxiliaryNode)formulaNode, (AuxiliaryNode)node);
+            }
          }
       }
       
-      // no cycle found -> return false
-      return false;
+      if (formula != null) {
+         LinkedHashSet<AbstractNode> formulaNodes = new LinkedHashSet<AbstractNode>();
+         new ASTDependencyCollector().collectNodes(formula, formulaNodes);
+         node2formulaNodes.put(node, formulaNodes);
+         for (AbstractNode formulaNode : formulaNodes) {
+            addDependant(formulaNode, node);
+            if (isAuxiliaryNodeOrderEdge(formulaNode, node)) {
+               // (an edge closing a cycle is kept, the cycle is reported by the validation)
+               auxiliaryNodeOrder.addEdge((AuxiliaryNode)formulaNode, (AuxiliaryNode)node);
+            }
+         }
+      }
+   }
+   
+   /**
+    * Checks whether the dependency of the specified dependant on the specified node is an edge of
+    * the auxiliary nodes dependency graph, i.e. whether both are auxiliary nodes of this model.
+    * 
+    * @param node node
+    * @param dependant node depending on it
+    * @return <code>true</code> iff the dependency is an edge of the auxiliary nodes order
+    */
+   private boolean isAuxiliaryNodeOrderEdge(AbstractNode node, AbstractNode dependant) {
+      return (node instanceof AuxiliaryNode) && (dependant instanceof AuxiliaryNode)
+             && auxiliaryNodes.contains(node) && auxiliaryNodes.contains(dependant);
    }
    
    /**
-    * Searches for cycles using depth-first search (DFS) starting with the specified auxiliary node.
-    * This method should only be invoked by method {@link #haveAuxiliaryNodesCycleDependency()}.
+    * Gets the nodes contained in the formula of the specified node from the dependency index.
     * 
-    * @param auxiliaryNode auxiliary node
-    * @return <code>true</code> iff cycle was found in examined partial graph
+    * @param node rate or auxiliary node
+    * @return nodes of the formula (empty if the node has no formula)
     */
-   private boolean DFS_visit(AuxiliaryNode auxiliaryNode) {
-      if (auxiliaryNode == null) {
-         throw new IllegalArgumentException("'auxiliaryNode' must not be null.");
+   private Set<AbstractNode> getFormulaNodes(AbstractNode node) {
+      LinkedHashSet<AbstractNode> formulaNodes = node2formulaNodes.get(node);
+      if (formulaNodes == null) {
+         return Collections.emptySet();
       }
-      
-      if (finishedAuxiliaryNodes.contains(auxiliaryNode)) {
-         return false;
+      return formulaNodes;
+   }
+   
+   /**
+    * Adds the specified dependant of the specified node to the dependency index.
+    * 
+    * @param node node
+    * @param dependant node depending on it
+    */
+   private void addDependant(AbstractNode node, AbstractNode dependant) {
+      LinkedHashSet<AbstractNode> dependants = node2dependants.get(node);
+      if (dependants == null) {
+         dependants = new LinkedHashSet<AbstractNode>();
+         node2dependants.put(node, dependants);
       }
-      if (visitedAuxiliaryNodes.contains(auxiliaryNode)) {
-         // cycle found -> return true
-         return true;
+      dependants.add(dependant);
+   }
+   
+   /**
+    * Removes the specified dependant of the specified node from the dependency index.
+    * 
+    * @param node node
+    * @param dependant node no longer depending on it
+    */
+   private void removeDependant(AbstractNode node, AbstractNode dependant) {
+      LinkedHashSet<AbstractNode> dependants = node2dependants.get(node);
+      if (dependants != null) {
+         dependants.remove(dependant);
+         if (dependants.isEmpty()) {
+            node2dependants.remove(node);
+         }
       }
-      visitedAuxiliaryNodes.add(auxiliaryNode);
-      
-      // for each successor
-      HashSet<AuxiliaryNode> successors = adjacentListOfAuxiliaryNodes.get(auxiliaryNode);
-      if (successors != null) {
-         for (AuxiliaryNode successor : successors) {
-            if (DFS_visit(successor)) {
-               // cycle found -> return true
-               return true;
+   }
+   
+   /**
+    * Gets all auxiliary nodes cycle dependencies, i.e. all strongly connected components of the
+    * auxiliary nodes dependency graph with more than one node or with a node depending on itself.
+    * The components are computed by an iterative version of Tarjan's algorithm (explicit stacks
+    * instead of recursion, so long dependency chains cannot overflow the call stack).
+    * 
+    * @return auxiliary nodes of each cycle (in the order of their creation)
+    */
+   private List<List<AuxiliaryNode>> getAuxiliaryNodesCycles() {
+      List<List<AuxiliaryNode>> cycles = new ArrayList<List<AuxiliaryNode>>();
+      
+      // by node id: visiting index and lowest index reachable (0: not visited yet)
+      int[] indexes = new int[numberOfNodeIds];
+      int[] lowLinks = new int[numberOfNodeIds];
+      boolean[] isOnComponentStack = new boolean[numberOfNodeIds];
+      int nextIndex = 1;
+      
+      ArrayList<AuxiliaryNode> componentStack = new ArrayList<AuxiliaryNode>();
+      ArrayList<AuxiliaryNode> visitStack = new ArrayList<AuxiliaryNode>();
+      ArrayList<Iterator<AbstractNode>> formulaNodeIterators =
+         new ArrayList<Iterator<AbstractNode>>();
+      
+      for (AuxiliaryNode startNode : auxiliaryNodes) {
+         if (indexes[startNode.getId()] > 0) {
+            continue;
+         }
+         
+         AuxiliaryNode nextNode = startNode;
+         while (nextNode != null || !visitStack.isEmpty()) {
+            if (nextNode != null) {
+               // visit node
+               indexes[nextNode.getId()] = nextIndex;
+               lowLinks[nextNode.getId()] = nextIndex;
+               nextIndex++;
+               componentStack.add(nextNode);
+               isOnComponentStack[nextNode.getId()] = true;
+               visitStack.add(nextNode);
+               formulaNodeIterators.add(getFormulaNodes(nextNode).iterator());
+               nextNode = null;
+               continue;
+            }
+            
+            int top = visitStack.size() - 1;
+            AuxiliaryNode node = visitStack.get(top);
+            Iterator<AbstractNode> iterator = formulaNodeIterators.get(top);
+            if (iterator.hasNext()) {
+               AbstractNode formulaNode = iterator.next();
+               if (isAuxiliaryNodeOrderEdge(formulaNode, node)) {
+                  int formulaNodeId = formulaNode.getId();
+                  if (indexes[formulaNodeId] == 0) {
+                     nextNode = (AuxiliaryNode)formulaNode;
+                  } else if (isOnComponentStack[formulaNodeId]) {
+                     lowLinks[node.getId()] = Math.min(lowLinks[node.getId()], indexes[formulaNodeId]);
+                  }
+               }
+               continue;
+            }
+            
+            // all formula nodes visited
+            visitStack.remove(top);
+            formulaNodeIterators.remove(top);
+            if (top > 0) {
+               int parentId = visitStack.get(top - 1).getId();
+               lowLinks[parentId] = Math.min(lowLinks[parentId], lowLinks[node.getId()]);
+            }
+            if (lowLinks[node.getId()] == indexes[node.getId()]) {
+               // node is the root of a strongly connected component
+               ArrayList<AuxiliaryNode> component = new ArrayList<AuxiliaryNode>();
+               AuxiliaryNode componentNode;
+               do {
+                  componentNode = componentStack.remove(componentStack.size() - 1);
+                  isOnComponentStack[componentNode.getId()] = false;
+                  component.add(componentNode);
+               } while (componentNode != node);
+               
+               if (component.size() > 1 || getFormulaNodes(node).contains(node)) {
+                  Collections.sort(component, new Comparator<AuxiliaryNode>() {
+                     public int compare(AuxiliaryNode node1, AuxiliaryNode node2) {
+                        return node1.getId() - node2.getId();
+                     }
+                  });
+                  cycles.add(component);
+               }
             }
          }
       }
       
-      finishedAuxiliaryNodes.add(auxiliaryNode);
-      
-      // no cycle found -> return false
-      return false;
+      return cycles;
    }
    
    /**
-    * Gets all nodes the model's level nodes depend on.
+    * Gets all nodes the model's level nodes depend on. Each node is put on the stack at most once,
+    * i.e. the method runs in linear time in the number of nodes and formula dependencies.
     * 
     * @return set of all nodes the model's level nodes depend on
     */
    private HashSet<AbstractNode> getAllNodesLevelNodesDependOn() {
+      // (the set also contains the nodes already put on the stack)
       HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
-      LinkedList<AbstractNode> todoList = new LinkedList<AbstractNode>();
-      HashSet<AbstractNode> nodesAlreadyProcessed = new HashSet<AbstractNode>();
+      ArrayList<AbstractNode> stack = new ArrayList<AbstractNode>();
       
       for (LevelNode levelNode : levelNodes) {
          for (RateNode rateNode : levelNode.getIncomingFlows()) {
-            if (!nodesAlreadyProcessed.contains(rateNode)) {
-               nodeSet.add(rateNode);
-               todoList.add(rateNode);
-               nodesAlreadyProcessed.add(rateNode);
+            if (nodeSet.add(rateNode)) {
+               stack.add(rateNode);
             }
          }
          
          for (RateNode rateNode : levelNode.getOutgoingFlows()) {
-            if (!nodesAlreadyProcessed.contains(rateNode)) {
-               nodeSet.add(rateNode);
-               todoList.add(rateNode);
-               nodesAlreadyProcessed.add(rateNode);
+            if (nodeSet.add(rateNode)) {
+               stack.add(rateNode);
             }
          }
       }
       
-      while (!todoList.isEmpty()) {
-         AbstractNode nodeToDo = todoList.removeFirst();
-         if (nodeToDo instanceof RateNode) {
-            RateNode rateNode = (RateNode)nodeToDo;
-            for (AbstractNode node : rateNode.getAllNodesThisOneDependsOnAndSourceSinkNodes()) {
-               if (!nodesAlreadyProcessed.contains(node)) {
-                  nodeSet.add(node);
-                  todoList.add(node);
-                  nodesAlreadyProcessed.add(node);
+      while (!stack.isEmpty()) {
+         AbstractNode nodeToDo = stack.remove(stack.size() - 1);
+         if (nodeToDo instanceof RateNode || nodeToDo instanceof AuxiliaryNode) {
+            for (AbstractNode node : getFormulaNodes(nodeToDo)) {
+               if (nodeSet.add(node)) {
+                  stack.add(node);
                }
             }
          }
-         if (nodeToDo instanceof AuxiliaryNode) {
-            AuxiliaryNode auxiliaryNode = (AuxiliaryNode)nodeToDo;
-            for (AbstractNode node : auxiliaryNode.getAllNodesThisOneDependsOn()) {
-               if (!nodesAlreadyProcessed.contains(node)) {
-                  nodeSet.add(node);
-                  todoList.add(node);
-                  nodesAlreadyProcessed.add(node);
-               }
+         if (nodeToDo instanceof RateNode) {
+            // (source/sink nodes do not depend on other nodes -> not put on the stack)
+            RateNode rateNode = (RateNode)nodeToDo;
+            if (rateNode.getFlowSource() instanceof SourceSinkNode) {
+               nodeSet.add(rateNode.getFlowSource());
+            }
+            if (rateNode.getFlowSink() instanceof SourceSinkNode) {
+               nodeSet.add(rateNode.getFlowSink());
             }
          }
          // node instanceof LevelNode: do nothing (level nodes already processed!)
          
          // node instanceof ConstantNode: do nothing (constant nodes do not depend on other nodes!)
-         
-         // node instanceof SourceSinkNode: do nothing (source/sink nodes do not depend on other nodes!)
       }
       
       return nodeSet;
    }
    
    /**
-    * Gets an adjacent list reprensentation of the auxiliary nodes dependency graph.
-    * Auxiliary nodes without auxiliary node successor are not elements of the list.
+    * Passes all rate and auxiliary node formulas to the specified operation counter.
     * 
-    * @return adjacent list of the auxiliary nodes dependency graph
+    * @param operationCounter operation counter
     */
-   private HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>> getAdjacentListOfAuxiliaryNodes() {
-      HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>> adjacentList =
-         new HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>>();
-      
-      // initialize directed graph representation of auxiliary nodes dependencies
+   private void countFormulaOperations(OperationCounter operationCounter) {
       for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
-         HashSet<AbstractNode> nodesThisAuxiliaryNodeDependsOn =
-            auxiliaryNode.getAllNodesThisOneDependsOn();
-         for (AbstractNode node : nodesThisAuxiliaryNodeDependsOn) {
-            if (node instanceof AuxiliaryNode) {
-               AuxiliaryNode auxiliaryNodeThisAuxiliaryNodeDependsOn = (AuxiliaryNode)node;
-               
-               // insert into adjacent list
-               if (!adjacentList.containsKey(auxiliaryNodeThisAuxiliaryNodeDependsOn)) {
-                  // no key 'auxiliaryNodeThisAuxiliaryNodeDependsOn'
-                  HashSet<AuxiliaryNode> valueNodes = new HashSet<AuxiliaryNode>();
-                  valueNodes.add(auxiliaryNode);
-                  adjacentList.put(auxiliaryNodeThisAuxiliaryNodeDependsOn, valueNodes);
-               } else {
-                  // key 'auxiliaryNodeThisAuxiliaryNodeDependsOn' already exists
-                  HashSet<AuxiliaryNode> valueNodes =
-                     adjacentList.get(auxiliaryNodeThisAuxiliaryNodeDependsOn);
-                  valueNodes.add(auxiliaryNode);
-               }
-            }
+         if (auxiliaryNode.getFormula() != null) {
+            auxiliaryNode.getFormula().accept(operationCounter);
+         }
+      }
+      for (RateNode rateNode : rateNodes) {
+         if (rateNode.getFormula() != null) {
+            rateNode.getFormula().accept(operationCounter);
          }
       }
-      return adjacentList;
    }
    
    /**
-    * Gets a mapping from the auxiliary nodes to the number of their predecessor auxiliary nodes.
-    * 
-    * @return mapping from auxiliary nodes to the number of their predecessor auxiliary nodes
+    * Inner class counting the operations of the visited formulas.
     */
-   private HashMap<AuxiliaryNode, Integer> getNumberOfPredecessorsMap() {
-      HashMap<AuxiliaryNode, Integer> numberOfPredecessorsMap = new HashMap<AuxiliaryNode, Integer>();
+   private static class OperationCounter extends ASTWalker {
       
-      for (AuxiliaryNode auxiliaryNode : auxiliaryNodes) {
-         HashSet<AbstractNode> nodesThisAuxiliaryNodeDependsOn =
-            auxiliaryNode.getAllNodesThisOneDependsOn();
-         
-         int numberOfPredecessors = 0;
-         for (AbstractNode node : nodesThisAuxiliaryNodeDependsOn) {
-            if (node instanceof AuxiliaryNode) {
-               numberOfPredecessors++;
-            }
-         }
-         
-         numberOfPredecessorsMap.put(auxiliaryNode, numberOfPredecessors);
+      private int numberOfOperations;
+      
+      /** distinct operations (identity based, as the keys of the map) */
+      private IdentityHashMap<ASTElement, ASTElement> distinctOperations =
+         new IdentityHashMap<ASTElement, ASTElement>();
+      
+      @Override
+      protected void visitOperation(ASTElement operation) {
+         numberOfOperations++;
+         distinctOperations.put(operation, operation);
       }
       
-      return numberOfPredecessorsMap;
+      @Override
+      protected void visitNode(AbstractNode node) {
+         // do nothing
+      }
    }
 }
\ No newline at end of file
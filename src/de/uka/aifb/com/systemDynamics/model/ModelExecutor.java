@@ -0,0 +1,47 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This interface describes an execution backend for a System Dynamics model. The interpreter
+ * ({@link de.uka.aifb.com.systemDynamics.model.Model} itself) and the compiled backend
+ * ({@link de.uka.aifb.com.systemDynamics.model.CompiledModel}) implement it, so that the command
+ * line tool and the GUI can execute a model without knowing which backend is used.
+ *
+ * @version 1.0
+ */
+public interface ModelExecutor {
+   
+   /**
+    * Computes the nodes' values for the next time step.
+    */
+   public void computeNextValues();
+   
+   /**
+    * Gets the current value of the specified node.
+    * 
+    * @param node level, rate, auxiliary or constant node of the executed model
+    * @return current value
+    */
+   public double getCurrentValue(AbstractNode node);
+}
@@ -0,0 +1,41 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This interface is implemented by the classes generated by the bytecode tier of
+ * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel}. It has to be public because the
+ * generated classes are defined by their own class loader. It is not intended to be implemented
+ * by other classes.
+ *
+ * @version 1.0
+ */
+public interface ModelStep {
+   
+   /**
+    * Computes one time step on the specified value array of a compiled model.
+    * 
+    * @param values value array of the compiled model
+    */
+   public void step(double[] values);
+}
@@ -0,0 +1,52 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.List;
+
+/**
+ * This ModelValidationException is the superclass of all exceptions indicating a model error found
+ * by the validation of a model (see
+ * {@link de.uka.aifb.com.systemDynamics.model.Model#getModelErrors()}).
+ *
+ * @version 1.0
+ */
+public abstract class ModelValidationException extends Exception {
+   
+   private static final long serialVersionUID = 1L;
+   
+   /**
+    * Constructor.
+    * 
+    * @param message message
+    */
+   protected ModelValidationException(String message) {
+      super(message);
+   }
+   
+   /**
+    * Gets the nodes causing the model error.
+    * 
+    * @return nodes causing the model error (empty if the error is not caused by single nodes)
+    */
+   public abstract List<AbstractNode> getProblematicNodes();
+}
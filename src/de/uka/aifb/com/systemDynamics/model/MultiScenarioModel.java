@@ -0,0 +1,254 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This class implements an execution backend which computes several scenarios of a System
+ * Dynamics model in lockstep, e.g. for parameter studies. The scenarios only differ in the values
+ * of the constant nodes, which can be set for each scenario.
+ * <p>
+ * The model is compiled like by {@link de.uka.aifb.com.systemDynamics.model.CompiledModel}, but
+ * each slot of the values array is widened to one lane per scenario (structure of arrays: the
+ * values of slot s are stored at <code>s * number of scenarios</code> to
+ * <code>(s + 1) * number of scenarios - 1</code>). Each instruction is applied to all lanes in a
+ * simple loop over contiguous array elements, so the interpretation overhead is paid once for all
+ * scenarios and the loops can be vectorized by the JIT compiler.
+ * <p>
+ * The original formulas are compiled, as the executed formulas have the constant values folded in
+ * (see {@link de.uka.aifb.com.systemDynamics.model.ASTOptimizer}). Each lane computes the same
+ * operations in the same order as a {@link de.uka.aifb.com.systemDynamics.model.CompiledModel}
+ * compiling the original formulas, i.e. the results only can differ from the interpreter's ones
+ * where the optimizer changed the order of operations.
+ * <p>
+ * All scenarios start with the current values of the model's nodes. Afterwards, the class works
+ * on its own copy of the values, i.e. the nodes of the model are not changed.
+ *
+ * @version 1.0
+ */
+public class MultiScenarioModel {
+   
+   private CompiledModel compiledModel;
+   
+   private int numberOfScenarios;
+   
+   /** lanes of all slots (slot s: s * numberOfScenarios to (s + 1) * numberOfScenarios - 1) */
+   private double[] lanes;
+   
+   /** instruction stream (see CompiledModel) */
+   private int[] code;
+   
+   private int numberOfLevelNodes;
+   private int[] incomingFlowStart;
+   private int[] incomingFlowSlots;
+   private int[] outgoingFlowStart;
+   private int[] outgoingFlowSlots;
+   
+   /**
+    * Constructor.
+    * 
+    * @param model model to execute (must already be unchangeable)
+    * @param numberOfScenarios number of scenarios (at least 1)
+    */
+   public MultiScenarioModel(Model model, int numberOfScenarios) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (numberOfScenarios < 1) {
+         throw new IllegalArgumentException("'numberOfScenarios' must be at least 1.");
+      }
+      
+      compiledModel = new CompiledModel(model, false);
+      this.numberOfScenarios = numberOfScenarios;
+      
+      code = compiledModel.getCode();
+      numberOfLevelNodes = compiledModel.getNumberOfLevelNodes();
+      incomingFlowStart = compiledModel.getIncomingFlowStart();
+      incomingFlowSlots = compiledModel.getIncomingFlowSlots();
+      outgoingFlowStart = compiledModel.getOutgoingFlowStart();
+      outgoingFlowSlots = compiledModel.getOutgoingFlowSlots();
+      
+      // every scenario starts with the initial values
+      double[] values = compiledModel.getValues();
+      lanes = new double[values.length * numberOfScenarios];
+      for (int slot = 0; slot < values.length; slot++) {
+         for (int lane = 0; lane < numberOfScenarios; lane++) {
+            lanes[slot * numberOfScenarios + lane] = values[slot];
+         }
+      }
+   }
+   
+   /**
+    * Gets the number of scenarios.
+    * 
+    * @return number of scenarios
+    */
+   public int getNumberOfScenarios() {
+      return numberOfScenarios;
+   }
+   
+   /**
+    * Sets the specified constant node's value in the specified scenario.
+    * 
+    * @param constantNode constant node of the executed model
+    * @param scenario scenario (from 0 to number of scenarios - 1)
+    * @param constantValue constant value (only from ConstantNode.MIN_CONSTANT to
+    *                      ConstantNode.MAX_CONSTANT!)
+    */
+   public void setConstantValue(ConstantNode constantNode, int scenario, double constantValue) {
+      if (constantNode == null) {
+         throw new IllegalArgumentException("'constantNode' must not be null.");
+      }
+      checkScenario(scenario);
+      if (constantValue < ConstantNode.MIN_CONSTANT || constantValue > ConstantNode.MAX_CONSTANT) {
+         throw new NodeParameterOutOfRangeException(ConstantNode.MIN_CONSTANT, ConstantNode.MAX_CONSTANT);
+      }
+      
+      lanes[compiledModel.getSlot(constantNode) * numberOfScenarios + scenario] = constantValue;
+   }
+   
+   /**
+    * Computes the nodes' values for the next time step in all scenarios.
+    */
+   public void computeNextValues() {
+      final double[] lanes = this.lanes;
+      final int[] code = this.code;
+      final int width = numberOfScenarios;
+      
+      // (1) auxiliary nodes and rate nodes
+      for (int i = 0; i < code.length; i += CompiledModel.INSTRUCTION_LENGTH) {
+         int target = code[i + 1] * width;
+         int operand1 = code[i + 2] * width;
+         int operand2 = code[i + 3] * width;
+         switch (code[i]) {
+            case CompiledModel.COPY:
+               System.arraycopy(lanes, operand1, lanes, target, width);
+               break;
+            case CompiledModel.ADD:
+               for (int lane = 0; lane < width; lane++) {
+                  lanes[target + lane] = lanes[operand1 + lane] + lanes[operand2 + lane];
+               }
+               break;
+            case CompiledModel.SUBTRACT:
+               for (int lane = 0; lane < width; lane++) {
+                  lanes[target + lane] = lanes[operand1 + lane] - lanes[operand2 + lane];
+               }
+               break;
+            case CompiledModel.MULTIPLY:
+               for (int lane = 0; lane < width; lane++) {
+                  lanes[target + lane] = lanes[operand1 + lane] * lanes[operand2 + lane];
+               }
+               break;
+            case CompiledModel.DIVIDE:
+               for (int lane = 0; lane < width; lane++) {
+                  lanes[target + lane] = lanes[operand1 + lane] / lanes[operand2 + lane];
+               }
+               break;
+            case CompiledModel.MIN:
+               for (int lane = 0; lane < width; lane++) {
+                  lanes[target + lane] = Math.min(lanes[operand1 + lane], lanes[operand2 + lane]);
+               }
+               break;
+            case CompiledModel.MAX:
+               for (int lane = 0; lane < width; lane++) {
+                  lanes[target + lane] = Math.max(lanes[operand1 + lane], lanes[operand2 + lane]);
+               }
+               break;
+            case CompiledModel.ROUND:
+               for (int lane = 0; lane < width; lane++) {
+                  lanes[target + lane] = ASTRound.round(lanes[operand1 + lane], lanes[operand2 + lane]);
+               }
+               break;
+            default:
+               throw new Error("Unknown opcode " + code[i] + ".");
+         }
+      }
+      
+      // (2) level nodes: add incoming flows and subtract outgoing flows (in the same order as
+      //     the interpreter)
+      for (int i = 0; i < numberOfLevelNodes; i++) {
+         int target = i * width;
+         for (int j = incomingFlowStart[i]; j < incomingFlowStart[i + 1]; j++) {
+            int flow = incomingFlowSlots[j] * width;
+            for (int lane = 0; lane < width; lane++) {
+               lanes[target + lane] += lanes[flow + lane];
+            }
+         }
+         for (int j = outgoingFlowStart[i]; j < outgoingFlowStart[i + 1]; j++) {
+            int flow = outgoingFlowSlots[j] * width;
+            for (int lane = 0; lane < width; lane++) {
+               lanes[target + lane] -= lanes[flow + lane];
+            }
+         }
+      }
+   }
+   
+   /**
+    * Gets the current value of the specified node in the specified scenario.
+    * 
+    * @param node level, rate, auxiliary or constant node of the executed model
+    * @param scenario scenario (from 0 to number of scenarios - 1)
+    * @return current value
+    */
+   public double getCurrentValue(AbstractNode node, int scenario) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      if (node instanceof SourceSinkNode) {
+         throw new UnsupportedOperationException();
+      }
+      checkScenario(scenario);
+      
+      return lanes[compiledModel.getSlot(node) * numberOfScenarios + scenario];
+   }
+   
+   /**
+    * Gets the current values of the specified node in all scenarios.
+    * 
+    * @param node level, rate, auxiliary or constant node of the executed model
+    * @return current values (index: scenario)
+    */
+   public double[] getCurrentValues(AbstractNode node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      if (node instanceof SourceSinkNode) {
+         throw new UnsupportedOperationException();
+      }
+      
+      double[] values = new double[numberOfScenarios];
+      System.arraycopy(lanes, compiledModel.getSlot(node) * numberOfScenarios, values, 0,
+                       numberOfScenarios);
+      return values;
+   }
+   
+   /**
+    * Checks whether the specified scenario exists.
+    * 
+    * @param scenario scenario
+    */
+   private void checkScenario(int scenario) {
+      if (scenario < 0 || scenario >= numberOfScenarios) {
+         throw new IllegalArgumentException("'scenario' must be from 0 to " + (numberOfScenarios - 1) + ".");
+      }
+   }
+}
@@ -0,0 +1,224 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class implements an execution backend for models coupling subsystems with very different
+ * time scales (multirate integration). Every level node is assigned to a rate group by its step
+ * multiple m: it is advanced by one Euler step of m rounds every m rounds, using the flows at the
+ * beginning of these m rounds. An auxiliary or rate node is only computed in the rounds in which a
+ * level node it influences directly (not via other level nodes) begins its step.
+ * <p>
+ * Accuracy trade-off: a level node with step multiple m gets exactly the values of the Euler
+ * method with time step m at the end of its steps; in between, its value is held, i.e. the faster
+ * groups see the value of the beginning of the step. The error of the slow groups therefore grows
+ * like the error of the Euler method with an m times larger time step, so only level nodes whose
+ * flows change slowly compared to m rounds should get a large step multiple. With all step
+ * multiples 1, the computed values are the same as the ones of
+ * {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()}.
+ * <p>
+ * Like the interpreter, this class works on the nodes of the model. The auxiliary and rate nodes
+ * have the values of their last computation.
+ *
+ * @version 1.0
+ */
+public class MultirateModel implements ModelExecutor {
+   
+   private Model model;
+   
+   /** evaluation schedule of the model (auxiliary nodes, rate nodes, level nodes) */
+   private AbstractNode[] schedule;
+   
+   /** by schedule position: step multiple of a level node (0 for auxiliary and rate nodes) */
+   private int[] levelStepMultiples;
+   
+   /**
+    * by schedule position: distinct step multiples of the level nodes an auxiliary or rate node
+    * influences directly, i.e. the node is computed in a round iff the round is a multiple of one
+    * of them
+    */
+   private int[][] stepMultiples;
+   
+   /** by schedule position: net flow of a level node at the beginning of its current step */
+   private double[] netFlows;
+   
+   /** number of the next round (starting with 0) */
+   private long round;
+   
+   private long numberOfEvaluations;
+   private long numberOfSkippedEvaluations;
+   
+   /**
+    * Constructor.
+    * 
+    * @param model model to execute (must already be unchangeable)
+    * @param levelNodeStepMultiples step multiples (at least 1) of level nodes of the model, level
+    *                               nodes without step multiple are advanced every round
+    */
+   public MultirateModel(Model model, Map<LevelNode, Integer> levelNodeStepMultiples) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (model.isChangeable()) {
+         throw new ModelStillChangeableException();
+      }
+      if (levelNodeStepMultiples == null) {
+         throw new IllegalArgumentException("'levelNodeStepMultiples' must not be null.");
+      }
+      for (LevelNode levelNode : levelNodeStepMultiples.keySet()) {
+         if (!model.getLevelNodes().contains(levelNode)) {
+            throw new IllegalArgumentException("'levelNodeStepMultiples' must only contain level nodes of the model.");
+         }
+         Integer stepMultiple = levelNodeStepMultiples.get(levelNode);
+         if (stepMultiple == null || stepMultiple < 1) {
+            throw new IllegalArgumentException("'levelNodeStepMultiples' must only contain step multiples of at least 1.");
+         }
+      }
+      
+      this.model = model;
+      schedule = model.getEvaluationSchedule();
+      
+      int[] id2position = new int[model.getNumberOfNodeIds()];
+      Arrays.fill(id2position, -1);
+      for (int i = 0; i < schedule.length; i++) {
+         id2position[schedule[i].getId()] = i;
+      }
+      
+      // the dependants of an auxiliary or rate node follow it in the schedule -> backwards
+      levelStepMultiples = new int[schedule.length];
+      stepMultiples = new int[schedule.length][];
+      TreeSet<Integer> nodeStepMultiples = new TreeSet<Integer>();
+      for (int i = schedule.length - 1; i >= 0; i--) {
+         AbstractNode node = schedule[i];
+         if (node instanceof LevelNode) {
+            Integer stepMultiple = levelNodeStepMultiples.get(node);
+            levelStepMultiples[i] = (stepMultiple == null) ? 1 : stepMultiple;
+            continue;
+         }
+         
+         nodeStepMultiples.clear();
+         for (AbstractNode dependant : model.getDependants(node)) {
+            int position = id2position[dependant.getId()];
+            if (position < 0) {
+               continue;
+            }
+            if (dependant instanceof LevelNode) {
+               nodeStepMultiples.add(levelStepMultiples[position]);
+            } else {
+               for (int stepMultiple : stepMultiples[position]) {
+                  nodeStepMultiples.add(stepMultiple);
+               }
+            }
+         }
+         stepMultiples[i] = new int[nodeStepMultiples.size()];
+         int nextIndex = 0;
+         for (int stepMultiple : nodeStepMultiples) {
+            stepMultiples[i][nextIndex++] = stepMultiple;
+         }
+      }
+      
+      netFlows = new double[schedule.length];
+   }
+   
+   /**
+    * Gets the number of node evaluations so far (a level node is counted once per step).
+    * 
+    * @return number of node evaluations
+    */
+   public long getNumberOfEvaluations() {
+      return numberOfEvaluations;
+   }
+   
+   /**
+    * Gets the number of node evaluations skipped so far compared to the single-rate execution.
+    * 
+    * @return number of skipped node evaluations
+    */
+   public long getNumberOfSkippedEvaluations() {
+      return numberOfSkippedEvaluations;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ModelExecutor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Computes the nodes' values for the next round.
+    */
+   public void computeNextValues() {
+      for (int i = 0; i < schedule.length; i++) {
+         AbstractNode node = schedule[i];
+         int levelNodeStepMultiple = levelStepMultiples[i];
+         if (levelNodeStepMultiple == 1) {
+            node.computeNextValue();
+            numberOfEvaluations++;
+         } else if (levelNodeStepMultiple > 1) {
+            // Euler step of m rounds with the net flow of its first round, applied in its last round
+            LevelNode levelNode = (LevelNode)node;
+            long roundInStep = round % levelNodeStepMultiple;
+            if (roundInStep == 0) {
+               netFlows[i] = levelNode.getNetFlow();
+            }
+            if (roundInStep == levelNodeStepMultiple - 1) {
+               levelNode.setCurrentValue(levelNode.getCurrentValue() + levelNodeStepMultiple * netFlows[i]);
+               numberOfEvaluations++;
+            } else {
+               numberOfSkippedEvaluations++;
+            }
+         } else if (isDue(stepMultiples[i])) {
+            node.computeNextValue();
+            numberOfEvaluations++;
+         } else {
+            numberOfSkippedEvaluations++;
+         }
+      }
+      round++;
+   }
+   
+   /**
+    * Gets the current value of the specified node.
+    * 
+    * @param node level, rate, auxiliary or constant node of the executed model
+    * @return current value
+    */
+   public double getCurrentValue(AbstractNode node) {
+      return model.getCurrentValue(node);
+   }
+   
+   /**
+    * Checks whether the current round is a multiple of one of the specified step multiples.
+    * 
+    * @param nodeStepMultiples step multiples
+    * @return <code>true</code> iff the node has to be computed in the current round
+    */
+   private boolean isDue(int[] nodeStepMultiples) {
+      for (int stepMultiple : nodeStepMultiples) {
+         if (round % stepMultiple == 0) {
+            return true;
+         }
+      }
+      return false;
+   }
+}
@@ -21,13 +21,15 @@
 
 package de.uka.aifb.com.systemDynamics.model;
 
+import java.util.*;
+
 /**
  * This NoFormulaException indicates that a rate node or an auxiliary node has no formula.
  *
  * @author Joachim Melcher, University of Karlsruhe, AIFB
  * @version 1.0
  */
-public class NoFormulaException extends Exception {
+public class NoFormulaException extends ModelValidationException {
    
    private static final long serialVersionUID = 1L;
    private static final String MESSAGE = "A node has no formula.";
@@ -58,4 +60,9 @@ public class NoFormulaException extends Exception {
    public AbstractNode getNodeWithourFormula() {
       return nodeWithoutFormula;
    }
+   
+   @Override
+   public List<AbstractNode> getProblematicNodes() {
+      return Collections.<AbstractNode>singletonList(nodeWithoutFormula);
+   }
 }
\ No newline at end of file
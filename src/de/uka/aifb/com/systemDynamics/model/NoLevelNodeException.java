@@ -21,13 +21,15 @@
 
 package de.uka.aifb.com.systemDynamics.model;
 
+import java.util.*;
+
 /**
  * This NoLevelNodeException indicates that a System Dynamics model has no level node.
  *
  * @author Joachim Melcher, University of Karlsruhe, AIFB
  * @version 1.0
  */
-public class NoLevelNodeException extends Exception {
+public class NoLevelNodeException extends ModelValidationException {
    
    private static final long serialVersionUID = 1L;
    private static final String MESSAGE = "The System Dynamics model has no level node.";
@@ -38,4 +40,9 @@ public class NoLevelNodeException extends Exception {
    public NoLevelNodeException() {
       super(MESSAGE);
    }
+   
+   @Override
+   public List<AbstractNode> getProblematicNodes() {
+      return Collections.emptyList();
+   }
 }
\ No newline at end of file
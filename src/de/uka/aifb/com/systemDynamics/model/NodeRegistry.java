@@ -0,0 +1,207 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class implements an array-backed set of nodes which keeps the insertion order. It is used
+ * for the node sets of a {@link de.uka.aifb.com.systemDynamics.model.Model} and for the flows of
+ * level nodes and source/sink nodes.
+ * <p>
+ * An indexed registry finds a node by its id (see {@link AbstractNode#getId()}) in constant time,
+ * so it may only contain nodes with an id. A registry which is not indexed searches its nodes
+ * linearly, which is faster for the few flows of a node.
+ * <p>
+ * The nodes are compared by identity. The registry is only changed by the model; the outside only
+ * gets a read-only view (see {@link #getReadOnlyView()}), which reflects later changes.
+ *
+ * @version 1.0
+ */
+class NodeRegistry<T extends AbstractNode> extends AbstractSet<T> {
+   
+   private static final int INITIAL_CAPACITY = 4;
+   
+   private AbstractNode[] nodes;
+   private int size;
+   
+   /** position + 1 of each node by node id (0: not contained), <code>null</code> if not indexed */
+   private int[] positions;
+   
+   private int modificationCount;
+   
+   private Set<T> readOnlyView;
+   
+   /**
+    * Constructor.
+    * 
+    * @param indexed <code>true</code> iff the nodes are found by their ids
+    */
+   NodeRegistry(boolean indexed) {
+      nodes = new AbstractNode[INITIAL_CAPACITY];
+      if (indexed) {
+         positions = new int[INITIAL_CAPACITY];
+      }
+   }
+   
+   /**
+    * Gets a read-only view of this registry. The view is not a copy, i.e. it reflects later changes.
+    * 
+    * @return read-only view
+    */
+   Set<T> getReadOnlyView() {
+      if (readOnlyView == null) {
+         readOnlyView = Collections.unmodifiableSet(this);
+      }
+      return readOnlyView;
+   }
+   
+   /**
+    * Gets the node at the specified position (in insertion order).
+    * 
+    * @param index position (from 0 to size - 1)
+    * @return node
+    */
+   @SuppressWarnings("unchecked")
+   T get(int index) {
+      return (T)nodes[index];
+   }
+   
+   /**
+    * Gets the position of the specified node.
+    * 
+    * @param node node
+    * @return position or -1 if the node is not contained
+    */
+   private int indexOf(Object node) {
+      if (positions != null) {
+         if (!(node instanceof AbstractNode)) {
+            return -1;
+         }
+         int id = ((AbstractNode)node).getId();
+         if (id < 0 || id >= positions.length) {
+            return -1;
+         }
+         int index = positions[id] - 1;
+         return (index >= 0 && nodes[index] == node) ? index : -1;
+      }
+      
+      for (int i = 0; i < size; i++) {
+         if (nodes[i] == node) {
+            return i;
+         }
+      }
+      return -1;
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface Set
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   @Override
+   public int size() {
+      return size;
+   }
+   
+   @Override
+   public boolean contains(Object node) {
+      return indexOf(node) >= 0;
+   }
+   
+   @Override
+   public boolean add(T node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      if (contains(node)) {
+         return false;
+      }
+      
+      if (size == nodes.length) {
+         AbstractNode[] newNodes = new AbstractNode[2 * size];
+         System.arraycopy(nodes, 0, newNodes, 0, size);
+         nodes = newNodes;
+      }
+      if (positions != null) {
+         int id = node.getId();
+         if (id < 0) {
+            throw new IllegalArgumentException("'node' must have an id.");
+         }
+         if (id >= positions.length) {
+            int[] newPositions = new int[Math.max(2 * positions.length, id + 1)];
+            System.arraycopy(positions, 0, newPositions, 0, positions.length);
+            positions = newPositions;
+         }
+         positions[id] = size + 1;
+      }
+      nodes[size++] = node;
+      modificationCount++;
+      return true;
+   }
+   
+   @Override
+   public boolean remove(Object node) {
+      int index = indexOf(node);
+      if (index < 0) {
+         return false;
+      }
+      
+      // close the gap, so that the insertion order is kept
+      System.arraycopy(nodes, index + 1, nodes, index, size - index - 1);
+      nodes[--size] = null;
+      if (positions != null) {
+         positions[((AbstractNode)node).getId()] = 0;
+         for (int i = index; i < size; i++) {
+            positions[nodes[i].getId()] = i + 1;
+         }
+      }
+      modificationCount++;
+      return true;
+   }
+   
+   @Override
+   public Iterator<T> iterator() {
+      return new Iterator<T>() {
+         private int nextIndex = 0;
+         private int expectedModificationCount = modificationCount;
+         
+         public boolean hasNext() {
+            return nextIndex < size;
+         }
+         
+         public T next() {
+            if (modificationCount != expectedModificationCount) {
+               throw new ConcurrentModificationException();
+            }
+            if (nextIndex >= size) {
+               throw new NoSuchElementException();
+            }
+            return get(nextIndex++);
+         }
+         
+         public void remove() {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+}
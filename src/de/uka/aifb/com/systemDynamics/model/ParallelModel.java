@@ -0,0 +1,315 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class implements a parallel execution backend for very large System Dynamics models.
+ * <p>
+ * The evaluation schedule of the model is partitioned into stages whose nodes are independent of
+ * each other: the auxiliary nodes are grouped by their depth in the dependency graph of the
+ * auxiliary nodes (an auxiliary node only depends on auxiliary nodes of smaller depth), followed by
+ * one stage with all rate nodes and one stage with all level nodes. The stages are computed one
+ * after another. The nodes of a stage with at least the minimum parallel stage width are split into
+ * one chunk per thread, and the chunks are computed at the same time by the calling thread and a
+ * pool of worker threads. Narrower stages are computed by the calling thread alone, as the
+ * synchronization would cost more than it saves - so small models are computed sequentially.
+ * <p>
+ * Each node only writes its own value (a level node collects the values of its flows itself), so
+ * no locking is needed within a stage. As every node is computed exactly as by
+ * {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()}, the computed values are
+ * bit-identical. Like the interpreter, this class works on the nodes of the model.
+ * <p>
+ * The worker threads are daemon threads. They can be stopped by {@link #shutdown()}.
+ *
+ * @version 1.0
+ */
+public class ParallelModel implements ModelExecutor {
+   
+   /** default minimum number of nodes of a stage which is computed in parallel */
+   public static final int DEFAULT_MINIMUM_PARALLEL_STAGE_WIDTH = 2048;
+   
+   private Model model;
+   
+   /** nodes of each stage: auxiliary nodes (by depth), rate nodes and level nodes */
+   private AbstractNode[][] stages;
+   
+   /** chunks of each stage (<code>null</code> if the stage is computed sequentially) */
+   private ArrayList<StageChunk[]> stageChunks;
+   
+   /** worker threads (<code>null</code> if all stages are computed sequentially) */
+   private ExecutorService executorService;
+   
+   /**
+    * Constructor. One thread per available processor is used.
+    * 
+    * @param model model to execute (must already be unchangeable)
+    */
+   public ParallelModel(Model model) {
+      this(model, Runtime.getRuntime().availableProcessors(), DEFAULT_MINIMUM_PARALLEL_STAGE_WIDTH);
+   }
+   
+   /**
+    * Constructor.
+    * 
+    * @param model model to execute (must already be unchangeable)
+    * @param numberOfThreads number of threads computing a stage (inclusive the calling thread)
+    * @param minimumParallelStageWidth minimum number of nodes of a stage which is computed in
+    *                                  parallel
+    */
+   public ParallelModel(Model model, int numberOfThreads, int minimumParallelStageWidth) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (model.isChangeable()) {
+         throw new ModelStillChangeableException();
+      }
+      if (numberOfThreads < 1) {
+         throw new IllegalArgumentException("'numberOfThreads' must be at least 1.");
+      }
+      if (minimumParallelStageWidth < 1) {
+         throw new IllegalArgumentException("'minimumParallelStageWidth' must be at least 1.");
+      }
+      
+      this.model = model;
+      stages = createStages(model.getEvaluationSchedule(), model.getNumberOfNodeIds());
+      
+      stageChunks = new ArrayList<StageChunk[]>(stages.length);
+      for (AbstractNode[] stage : stages) {
+         if (numberOfThreads > 1 && stage.length >= minimumParallelStageWidth) {
+            stageChunks.add(createChunks(stage, numberOfThreads));
+         } else {
+            stageChunks.add(null);
+         }
+      }
+      
+      if (getNumberOfParallelStages() > 0) {
+         executorService = Executors.newFixedThreadPool(numberOfThreads - 1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+               Thread thread = new Thread(runnable, "ParallelModel worker");
+               thread.setDaemon(true);
+               return thread;
+            }
+         });
+      }
+   }
+   
+   /**
+    * Gets the number of stages a time step is split into.
+    * 
+    * @return number of stages
+    */
+   public int getNumberOfStages() {
+      return stages.length;
+   }
+   
+   /**
+    * Gets the number of stages which are computed in parallel.
+    * 
+    * @return number of parallel stages
+    */
+   public int getNumberOfParallelStages() {
+      int numberOfParallelStages = 0;
+      for (StageChunk[] chunks : stageChunks) {
+         if (chunks != null) {
+            numberOfParallelStages++;
+         }
+      }
+      return numberOfParallelStages;
+   }
+   
+   /**
+    * Stops the worker threads. Afterwards, the next values cannot be computed any more.
+    */
+   public void shutdown() {
+      if (executorService != null) {
+         executorService.shutdown();
+      }
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // methods from interface ModelExecutor
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Computes the nodes' values for the next time step.
+    */
+   public void computeNextValues() {
+      for (int i = 0; i < stages.length; i++) {
+         StageChunk[] chunks = stageChunks.get(i);
+         if (chunks == null) {
+            for (AbstractNode node : stages[i]) {
+               node.computeNextValue();
+            }
+         } else {
+            computeInParallel(chunks);
+         }
+      }
+   }
+   
+   /**
+    * Gets the current value of the specified node.
+    * 
+    * @param node level, rate, auxiliary or constant node of the executed model
+    * @return current value
+    */
+   public double getCurrentValue(AbstractNode node) {
+      return model.getCurrentValue(node);
+   }
+   
+   /**
+    * Computes the specified chunks of a stage: the first chunk is computed by the calling thread,
+    * the others by the worker threads. The method returns when all chunks are computed, so the
+    * values of the stage are visible to all threads afterwards.
+    * 
+    * @param chunks chunks of the stage
+    */
+   private void computeInParallel(StageChunk[] chunks) {
+      ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>(chunks.length - 1);
+      for (int i = 1; i < chunks.length; i++) {
+         futures.add(executorService.submit(chunks[i]));
+      }
+      
+      chunks[0].call();
+      
+      for (Future<Object> future : futures) {
+         try {
+            future.get();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing the next values.");
+         } catch (ExecutionException e) {
+            // rethrow the exception of the worker thread (e.g. a node value out of range)
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+               throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+               throw (Error)cause;
+            }
+            throw new Error(cause);
+         }
+      }
+   }
+   
+   /**
+    * Partitions the specified evaluation schedule into stages of independent nodes.
+    * 
+    * @param evaluationSchedule evaluation schedule (auxiliary nodes in topological order, rate
+    *                           nodes and level nodes)
+    * @param numberOfNodeIds number of node ids of the model
+    * @return stages
+    */
+   private static AbstractNode[][] createStages(AbstractNode[] evaluationSchedule, int numberOfNodeIds) {
+      ArrayList<ArrayList<AbstractNode>> auxiliaryNodeStages = new ArrayList<ArrayList<AbstractNode>>();
+      ArrayList<AbstractNode> rateNodes = new ArrayList<AbstractNode>();
+      ArrayList<AbstractNode> levelNodes = new ArrayList<AbstractNode>();
+      
+      // depth of an auxiliary node: 0 if it does not depend on any auxiliary node, otherwise one
+      // more than the maximum depth of these (computed before, as the schedule is in topological
+      // order); indexed by node id
+      int[] depths = new int[numberOfNodeIds];
+      for (AbstractNode node : evaluationSchedule) {
+         if (node instanceof AuxiliaryNode) {
+            AuxiliaryNode auxiliaryNode = (AuxiliaryNode)node;
+            int depth = 0;
+            for (AbstractNode predecessor : auxiliaryNode.getAllNodesThisOneDependsOn()) {
+               if (predecessor instanceof AuxiliaryNode) {
+                  depth = Math.max(depth, depths[predecessor.getId()] + 1);
+               }
+            }
+            depths[auxiliaryNode.getId()] = depth;
+            
+            while (auxiliaryNodeStages.size() <= depth) {
+               auxiliaryNodeStages.add(new ArrayList<AbstractNode>());
+            }
+            auxiliaryNodeStages.get(depth).add(auxiliaryNode);
+         } else if (node instanceof RateNode) {
+            rateNodes.add(node);
+         } else {
+            levelNodes.add(node);
+         }
+      }
+      
+      ArrayList<AbstractNode[]> stages = new ArrayList<AbstractNode[]>();
+      for (ArrayList<AbstractNode> auxiliaryNodeStage : auxiliaryNodeStages) {
+         stages.add(auxiliaryNodeStage.toArray(new AbstractNode[auxiliaryNodeStage.size()]));
+      }
+      if (!rateNodes.isEmpty()) {
+         stages.add(rateNodes.toArray(new AbstractNode[rateNodes.size()]));
+      }
+      stages.add(levelNodes.toArray(new AbstractNode[levelNodes.size()]));
+      
+      return stages.toArray(new AbstractNode[stages.size()][]);
+   }
+   
+   /**
+    * Splits the specified stage into chunks of (almost) the same size.
+    * 
+    * @param stage nodes of the stage
+    * @param numberOfChunks number of chunks
+    * @return chunks
+    */
+   private static StageChunk[] createChunks(AbstractNode[] stage, int numberOfChunks) {
+      StageChunk[] chunks = new StageChunk[numberOfChunks];
+      for (int i = 0; i < numberOfChunks; i++) {
+         int from = (int)((long)stage.length * i / numberOfChunks);
+         int to = (int)((long)stage.length * (i + 1) / numberOfChunks);
+         chunks[i] = new StageChunk(stage, from, to);
+      }
+      return chunks;
+   }
+   
+   /**
+    * Inner class implementing a chunk of a stage, i.e. a range of the stage's nodes which is
+    * computed by one thread.
+    */
+   private static class StageChunk implements Callable<Object> {
+      
+      private AbstractNode[] nodes;
+      private int from;
+      private int to;
+      
+      /**
+       * Constructor.
+       * 
+       * @param nodes nodes of the stage
+       * @param from index of the first node of the chunk
+       * @param to index after the last node of the chunk
+       */
+      private StageChunk(AbstractNode[] nodes, int from, int to) {
+         this.nodes = nodes;
+         this.from = from;
+         this.to = to;
+      }
+      
+      public Object call() {
+         for (int i = from; i < to; i++) {
+            nodes[i].computeNextValue();
+         }
+         return null;
+      }
+   }
+}
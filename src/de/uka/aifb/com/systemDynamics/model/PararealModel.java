@@ -0,0 +1,455 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class implements the parallel-in-time execution (Parareal) of a long run of a model. The
+ * rounds are split into segments. A cheap coarse propagator (Euler method with a time step of
+ * several rounds) predicts the level nodes' values at the beginning of each segment. Then the fine
+ * propagators (one round per step, i.e. the sequential execution) run all segments concurrently,
+ * and the predictions are corrected sequentially with the coarse propagator:
+ * <p>
+ * U(s + 1) = F(U_old(s)) + G(U(s)) - G(U_old(s))
+ * <p>
+ * This is iterated until the largest correction of a level node's value (relative to 1 + |value|)
+ * is at most the tolerance. After k iterations, the values at the beginning of the first k + 1
+ * segments are the ones of the sequential execution, so at the latest after as many iterations as
+ * segments, the values are exactly the ones of the sequential execution. A speedup is only gained
+ * if far fewer iterations are needed, i.e. if the coarse propagator is accurate enough.
+ * <p>
+ * With a tolerance greater than 0, the values at the segment boundaries can differ from the ones
+ * of the sequential execution by about the tolerance (the tolerance bounds the last correction,
+ * not the error). The optional check {@link #computeMaximumDeviation()} runs all rounds
+ * sequentially and reports the actual maximum deviation at the segment boundaries.
+ * <p>
+ * The model's nodes are not changed: the propagators are runs of one compiled model (see
+ * {@link CompiledModel}), each fine propagator has a {@link SimulationState} of its own.
+ *
+ * @version 1.0
+ */
+public class PararealModel {
+
+   private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+   /** default tolerance of the corrections */
+   public static final double DEFAULT_TOLERANCE = 1E-9;
+
+   private Model model;
+
+   private int numberRounds;
+
+   /** by segment: first round (the last entry is the number of rounds) */
+   private int[] segmentStart;
+
+   private int coarseStepMultiple;
+
+   private double tolerance;
+
+   private int numberOfLevelNodes;
+
+   /** level nodes' initial values */
+   private double[] initialValues;
+
+   /** coarse propagator (used by the calling thread only) */
+   private CompiledModel coarseModel;
+
+   /** states of the fine propagators (runs of the coarse propagator's compiled model): one per thread */
+   private SimulationState[] fineStates;
+
+   private ExecutorService executorService;
+
+   /** by segment boundary: level nodes' values at the beginning of the segment */
+   private double[][] boundaryValues;
+
+   /** maximum correction of each iteration */
+   private ArrayList<Double> iterationCorrections;
+
+   private boolean isConverged;
+
+   /**
+    * Constructor. One segment and one thread per available processor are used, the coarse
+    * propagator's time step is the tenth part of a segment.
+    *
+    * @param model model to execute (must already be unchangeable)
+    * @param numberRounds number of rounds (at least 1)
+    */
+   public PararealModel(Model model, int numberRounds) {
+      this(model, numberRounds, Math.max(1, Math.min(PROCESSORS, numberRounds)),
+           Math.max(1, numberRounds / (10 * PROCESSORS)), DEFAULT_TOLERANCE, PROCESSORS);
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param model model to execute (must already be unchangeable)
+    * @param numberRounds number of rounds (at least 1)
+    * @param numberOfSegments number of segments (at least 1 and at most number of rounds)
+    * @param coarseStepMultiple time step of the coarse propagator in rounds (at least 1)
+    * @param tolerance tolerance of the corrections (at least 0)
+    * @param numberOfThreads number of threads running the fine propagators (at least 1)
+    */
+   public PararealModel(Model model, int numberRounds, int numberOfSegments, int coarseStepMultiple,
+                        double tolerance, int numberOfThreads) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (model.isChangeable()) {
+         throw new ModelStillChangeableException();
+      }
+      if (numberRounds < 1) {
+         throw new IllegalArgumentException("'numberRounds' must be at least 1.");
+      }
+      if (numberOfSegments < 1 || numberOfSegments > numberRounds) {
+         throw new IllegalArgumentException("'numberOfSegments' must be at least 1 and at most 'numberRounds'.");
+      }
+      if (coarseStepMultiple < 1) {
+         throw new IllegalArgumentException("'coarseStepMultiple' must be at least 1.");
+      }
+      if (!(tolerance >= 0)) {
+         throw new IllegalArgumentException("'tolerance' must not be negative.");
+      }
+      if (numberOfThreads < 1) {
+         throw new IllegalArgumentException("'numberOfThreads' must be at least 1.");
+      }
+
+      this.model = model;
+      this.numberRounds = numberRounds;
+      this.coarseStepMultiple = coarseStepMultiple;
+      this.tolerance = tolerance;
+
+      segmentStart = new int[numberOfSegments + 1];
+      for (int i = 0; i <= numberOfSegments; i++) {
+         segmentStart[i] = (int)((long)i * numberRounds / numberOfSegments);
+      }
+
+      coarseModel = new CompiledModel(model);
+      numberOfLevelNodes = coarseModel.getNumberOfLevelNodes();
+      initialValues = new double[numberOfLevelNodes];
+      System.arraycopy(coarseModel.getValues(), 0, initialValues, 0, numberOfLevelNodes);
+
+      fineStates = new SimulationState[Math.min(numberOfThreads, numberOfSegments)];
+      for (int i = 0; i < fineStates.length; i++) {
+         fineStates[i] = coarseModel.createSimulationState();
+      }
+      if (fineStates.length > 1) {
+         executorService = Executors.newFixedThreadPool(fineStates.length - 1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+               Thread thread = new Thread(runnable, "Parareal propagator");
+               // worker threads must not prevent the application from terminating
+               thread.setDaemon(true);
+               return thread;
+            }
+         });
+      }
+   }
+
+   /**
+    * Gets the executed model.
+    *
+    * @return executed model
+    */
+   public Model getModel() {
+      return model;
+   }
+
+   /**
+    * Gets the number of rounds.
+    *
+    * @return number of rounds
+    */
+   public int getNumberRounds() {
+      return numberRounds;
+   }
+
+   /**
+    * Gets the number of segments.
+    *
+    * @return number of segments
+    */
+   public int getNumberOfSegments() {
+      return segmentStart.length - 1;
+   }
+
+   /**
+    * Executes the rounds. Afterwards, the values at the segment boundaries and the convergence
+    * report are available.
+    */
+   public void execute() {
+      int numberOfSegments = getNumberOfSegments();
+      boundaryValues = new double[numberOfSegments + 1][numberOfLevelNodes];
+      iterationCorrections = new ArrayList<Double>();
+      isConverged = false;
+
+      double[][] fineValues = new double[numberOfSegments][numberOfLevelNodes];
+      double[][] coarseValues = new double[numberOfSegments][numberOfLevelNodes];
+      double[] newCoarseValues = new double[numberOfLevelNodes];
+
+      // initial prediction by the coarse propagator
+      System.arraycopy(initialValues, 0, boundaryValues[0], 0, numberOfLevelNodes);
+      for (int i = 0; i < numberOfSegments; i++) {
+         propagateCoarsely(i, boundaryValues[i], coarseValues[i]);
+         System.arraycopy(coarseValues[i], 0, boundaryValues[i + 1], 0, numberOfLevelNodes);
+      }
+
+      for (int iteration = 1; iteration <= numberOfSegments; iteration++) {
+         // the beginning of the first unconverged segment is exact -> its end after this iteration
+         int firstSegment = iteration - 1;
+         propagateFinely(firstSegment, fineValues);
+
+         double maximumCorrection = 0;
+         for (int i = firstSegment; i < numberOfSegments; i++) {
+            if (i == firstSegment) {
+               // values at the beginning of the segment unchanged
+               System.arraycopy(coarseValues[i], 0, newCoarseValues, 0, numberOfLevelNodes);
+            } else {
+               propagateCoarsely(i, boundaryValues[i], newCoarseValues);
+            }
+            double[] values = boundaryValues[i + 1];
+            for (int j = 0; j < numberOfLevelNodes; j++) {
+               // same coarse values -> exactly the fine value
+               double value = fineValues[i][j] + (newCoarseValues[j] - coarseValues[i][j]);
+               double correction = Math.abs(value - values[j]) / (1 + Math.abs(value));
+               if (!(correction <= maximumCorrection)) {
+                  // larger or NaN
+                  maximumCorrection = correction;
+               }
+               values[j] = value;
+            }
+            System.arraycopy(newCoarseValues, 0, coarseValues[i], 0, numberOfLevelNodes);
+         }
+         iterationCorrections.add(maximumCorrection);
+
+         if (maximumCorrection <= tolerance || iteration == numberOfSegments) {
+            isConverged = true;
+            break;
+         }
+      }
+   }
+
+   /**
+    * Gets the value of the specified level node after the last round.
+    *
+    * @param levelNode level node of the executed model
+    * @return value after the last round
+    */
+   public double getFinalValue(LevelNode levelNode) {
+      return getBoundaryValue(getNumberOfSegments(), levelNode);
+   }
+
+   /**
+    * Gets the value of the specified level node at the beginning of the specified segment.
+    *
+    * @param segment segment (the number of segments for the value after the last round)
+    * @param levelNode level node of the executed model
+    * @return value at the beginning of the segment
+    */
+   public double getBoundaryValue(int segment, LevelNode levelNode) {
+      if (boundaryValues == null) {
+         throw new IllegalStateException("The model has not been executed yet.");
+      }
+      if (segment < 0 || segment > getNumberOfSegments()) {
+         throw new IllegalArgumentException("'segment' must be at least 0 and at most the number of segments.");
+      }
+      if (levelNode == null) {
+         throw new IllegalArgumentException("'levelNode' must not be null.");
+      }
+
+      return boundaryValues[segment][coarseModel.getSlot(levelNode)];
+   }
+
+   /**
+    * Gets the first round of the specified segment.
+    *
+    * @param segment segment (the number of segments for the number of rounds)
+    * @return first round
+    */
+   public int getSegmentStart(int segment) {
+      if (segment < 0 || segment > getNumberOfSegments()) {
+         throw new IllegalArgumentException("'segment' must be at least 0 and at most the number of segments.");
+      }
+
+      return segmentStart[segment];
+   }
+
+   /**
+    * Gets the number of iterations of the last execution.
+    *
+    * @return number of iterations
+    */
+   public int getNumberOfIterations() {
+      if (iterationCorrections == null) {
+         throw new IllegalStateException("The model has not been executed yet.");
+      }
+
+      return iterationCorrections.size();
+   }
+
+   /**
+    * Gets the convergence report of the last execution: the maximum correction of a level node's
+    * value (relative to 1 + |value|) in each iteration.
+    *
+    * @return maximum corrections of the iterations
+    */
+   public List<Double> getIterationCorrections() {
+      if (iterationCorrections == null) {
+         throw new IllegalStateException("The model has not been executed yet.");
+      }
+
+      return Collections.unmodifiableList(iterationCorrections);
+   }
+
+   /**
+    * Checks whether the last execution converged, i.e. the last correction was at most the
+    * tolerance or as many iterations as segments were needed.
+    *
+    * @return <code>true</code> iff converged
+    */
+   public boolean isConverged() {
+      return isConverged;
+   }
+
+   /**
+    * Checks the last execution against the sequential execution: all rounds are executed
+    * sequentially (with the same compiled model as the fine propagators) and the maximum deviation
+    * of a level node's value (relative to 1 + |sequential value|) at the segment boundaries is
+    * returned. The check takes as long as the sequential execution itself.
+    *
+    * @return maximum deviation at the segment boundaries (0 iff all values are equal)
+    */
+   public double computeMaximumDeviation() {
+      if (boundaryValues == null) {
+         throw new IllegalStateException("The model has not been executed yet.");
+      }
+
+      SimulationState sequentialState = coarseModel.createSimulationState();
+      double[] sequentialValues = sequentialState.getValues();
+      double maximumDeviation = 0;
+      for (int segment = 1; segment <= getNumberOfSegments(); segment++) {
+         for (int round = segmentStart[segment - 1]; round < segmentStart[segment]; round++) {
+            coarseModel.computeNextValues(sequentialState);
+         }
+         for (int i = 0; i < numberOfLevelNodes; i++) {
+            double deviation = Math.abs(boundaryValues[segment][i] - sequentialValues[i])
+                               / (1 + Math.abs(sequentialValues[i]));
+            if (!(deviation <= maximumDeviation)) {
+               // larger or NaN
+               maximumDeviation = deviation;
+            }
+         }
+      }
+      return maximumDeviation;
+   }
+
+   /**
+    * Stops the worker threads. Afterwards, the model must not be executed anymore.
+    */
+   public void shutdown() {
+      if (executorService != null) {
+         executorService.shutdown();
+      }
+   }
+
+   /**
+    * Propagates the specified values over the specified segment with the coarse propagator.
+    *
+    * @param segment segment
+    * @param initialValues level nodes' values at the beginning of the segment
+    * @param finalValues array for the level nodes' values at the end of the segment
+    */
+   private void propagateCoarsely(int segment, double[] initialValues, double[] finalValues) {
+      double[] values = coarseModel.getValues();
+      System.arraycopy(initialValues, 0, finalValues, 0, numberOfLevelNodes);
+      for (int round = segmentStart[segment]; round < segmentStart[segment + 1]; round += coarseStepMultiple) {
+         int stepSize = Math.min(coarseStepMultiple, segmentStart[segment + 1] - round);
+         // Euler step of several rounds: the change of one round multiplied by the step size
+         coarseModel.setLevelNodeValues(finalValues);
+         coarseModel.computeNextValues();
+         for (int i = 0; i < numberOfLevelNodes; i++) {
+            finalValues[i] += stepSize * (values[i] - finalValues[i]);
+         }
+      }
+   }
+
+   /**
+    * Propagates the values at the beginning of the segments (starting with the specified one) over
+    * their segments with the fine propagators (concurrently).
+    *
+    * @param firstSegment first segment
+    * @param fineValues array for the level nodes' values at the end of the segments
+    */
+   private void propagateFinely(final int firstSegment, final double[][] fineValues) {
+      ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>(fineStates.length - 1);
+      for (int i = 1; i < fineStates.length; i++) {
+         final int thread = i;
+         futures.add(executorService.submit(new Callable<Object>() {
+            public Object call() {
+               propagateFinely(thread, firstSegment, fineValues);
+               return null;
+            }
+         }));
+      }
+
+      propagateFinely(0, firstSegment, fineValues);
+
+      for (Future<Object> future : futures) {
+         try {
+            future.get();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while propagating the segments.");
+         } catch (ExecutionException e) {
+            // rethrow the exception of the worker thread (e.g. a node value out of range)
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+               throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+               throw (Error)cause;
+            }
+            throw new Error(cause);
+         }
+      }
+   }
+
+   /**
+    * Propagates the segments of the specified thread (every number of threads-th segment) with its
+    * fine propagator.
+    *
+    * @param thread thread
+    * @param firstSegment first segment
+    * @param fineValues array for the level nodes' values at the end of the segments
+    */
+   private void propagateFinely(int thread, int firstSegment, double[][] fineValues) {
+      SimulationState fineState = fineStates[thread];
+      for (int i = firstSegment + thread; i < getNumberOfSegments(); i += fineStates.length) {
+         fineState.setLevelNodeValues(boundaryValues[i]);
+         for (int round = segmentStart[i]; round < segmentStart[i + 1]; round++) {
+            coarseModel.computeNextValues(fineState);
+         }
+         System.arraycopy(fineState.getValues(), 0, fineValues[i], 0, numberOfLevelNodes);
+      }
+   }
+}
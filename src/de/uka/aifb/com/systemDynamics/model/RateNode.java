@@ -22,6 +22,7 @@
 package de.uka.aifb.com.systemDynamics.model;
 
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  * This class implements a System Dynamics model node representing a change rate.
@@ -44,6 +45,9 @@ public class RateNode extends AbstractNode {
    
    private ASTElement formula;
    
+   /** executed form of the formula (see {@link ASTOptimizer}) */
+   private ASTElement executionFormula;
+   
    /**
     * Constructor.
     * 
@@ -132,18 +136,14 @@ public class RateNode extends AbstractNode {
    }
    
    /**
-    * Sets the rate node's formula. A deep copy of the formula is stored. So the stored formula
-    * cannot be changed from outside. The formula can also be <code>null</code> in order to
-    * delete the formula.
+    * Sets the rate node's formula. As AST elements are immutable, the formula is stored without
+    * copying it. The formula can also be <code>null</code> in order to delete the formula.
     * 
     * @param formula formula
     */
    void setFormula(ASTElement formula) {
-      if (formula == null) {
-         this.formula = null;
-      } else {
-         this.formula = (ASTElement)formula.clone();
-      }
+      this.formula = formula;
+      executionFormula = formula;
    }
    
    /**
@@ -156,17 +156,38 @@ public class RateNode extends AbstractNode {
    }
    
    /**
-    * Gets the rate node's formula. A deep copy of the formula is returned. So the stored formula
-    * cannot be changed from outside.
+    * Gets the rate node's formula. As AST elements are immutable, the stored formula itself is
+    * returned.
     * 
     * @return rate node's formula or <code>null</code> iff there is no formula
     */
    public ASTElement getFormula() {
-      if (formula == null) {
-         return null;
+      return formula;
+   }
+   
+   /**
+    * Sets the executed form of the rate node's formula, i.e. an optimized formula which computes
+    * bit-identical values (see {@link ASTOptimizer}). The formula itself (e.g. for display and
+    * XML export) is not changed.
+    * 
+    * @param executionFormula executed form of the formula
+    */
+   void setExecutionFormula(ASTElement executionFormula) {
+      if (executionFormula == null) {
+         throw new IllegalArgumentException("'executionFormula' must not be null.");
       }
       
-      return (ASTElement)formula.clone();
+      this.executionFormula = executionFormula;
+   }
+   
+   /**
+    * Gets the executed form of the rate node's formula. Unless an optimized formula was set, this
+    * is the formula itself.
+    * 
+    * @return executed form of the formula or <code>null</code> iff there is no formula
+    */
+   ASTElement getExecutionFormula() {
+      return executionFormula;
    }
    
    /**
@@ -175,7 +196,38 @@ public class RateNode extends AbstractNode {
     * @return set of all nodes this rate node depends on (only nodes of node formula)
     */
    public HashSet<AbstractNode> getAllNodesThisOneDependsOn() {
-      return (formula != null) ? formula.getAllNodesInASTSubtree() : new HashSet<AbstractNode>();
+      HashSet<AbstractNode> nodeSet = new HashSet<AbstractNode>();
+      collectAllNodesThisOneDependsOn(nodeSet);
+      return nodeSet;
+   }
+   
+   /**
+    * Adds all nodes this rate node depends on (only nodes of node formula) to the specified set.
+    * 
+    * @param nodes set the nodes are added to
+    */
+   public void collectAllNodesThisOneDependsOn(Set<AbstractNode> nodes) {
+      if (nodes == null) {
+         throw new IllegalArgumentException("'nodes' must not be null.");
+      }
+      
+      if (formula != null) {
+         new ASTDependencyCollector().collectNodes(formula, nodes);
+      }
+   }
+   
+   /**
+    * Checks whether this rate node depends on the specified node (only nodes of node formula).
+    * 
+    * @param node node
+    * @return <code>true</code> iff the specified node is part of this rate node's formula
+    */
+   public boolean dependsOn(AbstractNode node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      
+      return (formula != null) && new ASTDependencyCollector().containsNode(formula, node);
    }
    
    /**
@@ -220,6 +272,6 @@ public double getCurrentValue() {
     */
    @Override
 void computeNextValue() {
-      currentValue = formula.evaluate();
+      currentValue = executionFormula.evaluate();
    }
 }
\ No newline at end of file
@@ -21,13 +21,15 @@
 
 package de.uka.aifb.com.systemDynamics.model;
 
+import java.util.*;
+
 /**
  * This RateNodeFlowException indicates that a rate node has no incoming <b>or</b> no outgoing flow.
  *
  * @author Joachim Melcher, University of Karlsruhe, AIFB
  * @version 1.0
  */
-public class RateNodeFlowException extends Exception {
+public class RateNodeFlowException extends ModelValidationException {
    
    private static final long serialVersionUID = 1L;
    private static final String MESSAGE = "A rate node has no incoming or no outgoing flow.";
@@ -55,4 +57,9 @@ public class RateNodeFlowException extends Exception {
    public RateNode getProblematicRateNode() {
       return problematicRateNode;
    }
+   
+   @Override
+   public List<AbstractNode> getProblematicNodes() {
+      return Collections.<AbstractNode>singletonList(problematicRateNode);
+   }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This class specifies how a model is simulated: the time step DT and the integration method.
+ * <p>
+ * A round is still one reporting interval (one time unit), i.e. the values are reported once per
+ * round. Within a round, the level nodes are integrated in 1 / DT time steps, so DT has to be 1
+ * divided by a positive integer. The default specification (Euler method, DT = 1) computes exactly
+ * the same values as before time steps could be configured.
+ * <p>
+ * For the adaptive Dormand-Prince method, DT is only the initial time step. The time steps are
+ * chosen so that the estimated error of each level node in a step is at most absolute tolerance +
+ * relative tolerance * |value| (root mean square over all level nodes). The last time step of a
+ * round is shortened, so that the values are still reported once per round.
+ * <p>
+ * Instances of this class are immutable.
+ *
+ * @version 1.0
+ */
+public class SimulationSpecification {
+   
+   /** Euler method with DT = 1, i.e. one time step per round */
+   public static final SimulationSpecification DEFAULT =
+      new SimulationSpecification(1, IntegrationMethod.EULER);
+   
+   /** default relative tolerance of the adaptive integration method */
+   public static final double DEFAULT_RELATIVE_TOLERANCE = 1E-6;
+   
+   /** default absolute tolerance of the adaptive integration method */
+   public static final double DEFAULT_ABSOLUTE_TOLERANCE = 1E-6;
+   
+   private double dt;
+   
+   private int numberOfStepsPerRound;
+   
+   private IntegrationMethod integrationMethod;
+   
+   private double relativeTolerance;
+   private double absoluteTolerance;
+   
+   /**
+    * Constructor. The adaptive integration method uses the default tolerances.
+    * 
+    * @param dt time step (1 divided by a positive integer, e.g. 0.25)
+    * @param integrationMethod integration method
+    */
+   public SimulationSpecification(double dt, IntegrationMethod integrationMethod) {
+      this(dt, integrationMethod, DEFAULT_RELATIVE_TOLERANCE, DEFAULT_ABSOLUTE_TOLERANCE);
+   }
+   
+   /**
+    * Constructor.
+    * 
+    * @param dt time step (1 divided by a positive integer, e.g. 0.25), initial time step of the
+    *           adaptive integration method
+    * @param integrationMethod integration method
+    * @param relativeTolerance relative tolerance of the adaptive integration method
+    * @param absoluteTolerance absolute tolerance of the adaptive integration method
+    */
+   public SimulationSpecification(double dt, IntegrationMethod integrationMethod,
+                                  double relativeTolerance, double absoluteTolerance) {
+      if (!(dt > 0 && dt <= 1)) {
+         throw new IllegalArgumentException("'dt' must be greater than 0 and at most 1.");
+      }
+      if (integrationMethod == null) {
+         throw new IllegalArgumentException("'integrationMethod' must not be null.");
+      }
+      if (!(relativeTolerance >= 0)) {
+         throw new IllegalArgumentException("'relativeTolerance' must not be negative.");
+      }
+      if (!(absoluteTolerance >= 0)) {
+         throw new IllegalArgumentException("'absoluteTolerance' must not be negative.");
+      }
+      if (relativeTolerance == 0 && absoluteTolerance == 0) {
+         throw new IllegalArgumentException("'relativeTolerance' and 'absoluteTolerance' must not both be 0.");
+      }
+      
+      numberOfStepsPerRound = (int)Math.round(1 / dt);
+      if (Math.abs(numberOfStepsPerRound * dt - 1) > 1E-9) {
+         throw new IllegalArgumentException("'dt' must be 1 divided by a positive integer.");
+      }
+      
+      this.dt = 1.0 / numberOfStepsPerRound;
+      this.integrationMethod = integrationMethod;
+      this.relativeTolerance = relativeTolerance;
+      this.absoluteTolerance = absoluteTolerance;
+   }
+   
+   /**
+    * Gets the time step DT.
+    * 
+    * @return time step
+    */
+   public double getDT() {
+      return dt;
+   }
+   
+   /**
+    * Gets the number of time steps per round (1 / DT). For the adaptive integration method, this is
+    * only the initial number.
+    * 
+    * @return number of time steps per round
+    */
+   public int getNumberOfStepsPerRound() {
+      return numberOfStepsPerRound;
+   }
+   
+   /**
+    * Gets the integration method.
+    * 
+    * @return integration method
+    */
+   public IntegrationMethod getIntegrationMethod() {
+      return integrationMethod;
+   }
+   
+   /**
+    * Gets the relative tolerance of the adaptive integration method.
+    * 
+    * @return relative tolerance
+    */
+   public double getRelativeTolerance() {
+      return relativeTolerance;
+   }
+   
+   /**
+    * Gets the absolute tolerance of the adaptive integration method.
+    * 
+    * @return absolute tolerance
+    */
+   public double getAbsoluteTolerance() {
+      return absoluteTolerance;
+   }
+   
+   /**
+    * Checks whether the time steps are chosen adaptively.
+    * 
+    * @return <code>true</code> iff adaptive integration method
+    */
+   public boolean isAdaptive() {
+      return (integrationMethod == IntegrationMethod.DORMAND_PRINCE);
+   }
+   
+   /**
+    * Checks whether the integration method is implicit, i.e. solves equations in each time step.
+    * 
+    * @return <code>true</code> iff implicit integration method
+    */
+   public boolean isImplicit() {
+      return (integrationMethod == IntegrationMethod.BACKWARD_EULER || integrationMethod == IntegrationMethod.BDF2);
+   }
+   
+   /**
+    * Checks whether this specification computes one Euler step per round, i.e. the values of the
+    * default specification.
+    * 
+    * @return <code>true</code> iff Euler method with DT = 1
+    */
+   public boolean isDefault() {
+      return (integrationMethod == IntegrationMethod.EULER && numberOfStepsPerRound == 1);
+   }
+   
+   /**
+    * Gets a string representation of this specification, e.g. 'DT = 0.25, RK4'.
+    * 
+    * @return string representation
+    */
+   @Override
+   public String toString() {
+      if (isAdaptive()) {
+         return "initial DT = " + dt + ", " + integrationMethod + ", relative tolerance = "
+                + relativeTolerance + ", absolute tolerance = " + absoluteTolerance;
+      }
+      return "DT = " + dt + ", " + integrationMethod;
+   }
+}
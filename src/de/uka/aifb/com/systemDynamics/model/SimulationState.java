@@ -0,0 +1,135 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+/**
+ * This class contains the state of one simulation run of a compiled model: the values of all
+ * slots and the number of executed rounds. The compiled model itself (instruction stream, slots
+ * and flows) is not changed by a run, so any number of runs of the same compiled model can be
+ * executed concurrently, each with its own state (see
+ * {@link CompiledModel#createSimulationState()} and
+ * {@link CompiledModel#computeNextValues(SimulationState)}).
+ * <p>
+ * A state must not be used by several threads at the same time.
+ *
+ * @version 1.0
+ */
+public class SimulationState {
+   
+   private CompiledModel compiledModel;
+   
+   /** values of all slots of the compiled model */
+   private double[] values;
+   
+   private int round;
+   
+   /**
+    * Constructor.
+    * 
+    * @param compiledModel compiled model the state belongs to
+    * @param values values of all slots (not copied)
+    */
+   SimulationState(CompiledModel compiledModel, double[] values) {
+      if (compiledModel == null) {
+         throw new IllegalArgumentException("'compiledModel' must not be null.");
+      }
+      if (values == null) {
+         throw new IllegalArgumentException("'values' must not be null.");
+      }
+      
+      this.compiledModel = compiledModel;
+      this.values = values;
+   }
+   
+   /**
+    * Gets the compiled model the state belongs to.
+    * 
+    * @return compiled model
+    */
+   public CompiledModel getCompiledModel() {
+      return compiledModel;
+   }
+   
+   /**
+    * Gets the number of executed rounds.
+    * 
+    * @return number of executed rounds
+    */
+   public int getRound() {
+      return round;
+   }
+   
+   /**
+    * Gets the current value of the specified node in this run.
+    * 
+    * @param node level, rate, auxiliary or constant node of the compiled model
+    * @return current value
+    */
+   public double getCurrentValue(AbstractNode node) {
+      if (node == null) {
+         throw new IllegalArgumentException("'node' must not be null.");
+      }
+      if (node instanceof SourceSinkNode) {
+         throw new UnsupportedOperationException();
+      }
+      
+      return values[compiledModel.getSlot(node)];
+   }
+   
+   /**
+    * Creates a copy of this state, e.g. to continue a run in different ways.
+    * 
+    * @return copy
+    */
+   public SimulationState copy() {
+      SimulationState copy = new SimulationState(compiledModel, values.clone());
+      copy.round = round;
+      return copy;
+   }
+   
+   /**
+    * Gets the values of all slots (in the order of the compiled model's slots).
+    * 
+    * @return values
+    */
+   double[] getValues() {
+      return values;
+   }
+   
+   /**
+    * Sets the level nodes' values (slots 0 to number of level nodes - 1), e.g. to continue the
+    * run from another state.
+    * 
+    * @param levelNodeValues level nodes' values (in the order of the slots)
+    */
+   void setLevelNodeValues(double[] levelNodeValues) {
+      System.arraycopy(levelNodeValues, 0, values, 0, compiledModel.getNumberOfLevelNodes());
+   }
+   
+   /**
+    * Increments the number of executed rounds.
+    */
+   void incrementRound() {
+      round++;
+   }
+}
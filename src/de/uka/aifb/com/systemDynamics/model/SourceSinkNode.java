@@ -21,7 +21,7 @@
 
 package de.uka.aifb.com.systemDynamics.model;
 
-import java.util.HashSet;
+import java.util.Set;
 
 /**
  * This class implements a System Dynamics model node representing a source/sink.
@@ -37,15 +37,15 @@ import java.util.HashSet;
  */
 public class SourceSinkNode extends AbstractNode {
    
-   private HashSet<RateNode> incomingFlows;
-   private HashSet<RateNode> outgoingFlows;
+   private NodeRegistry<RateNode> incomingFlows;
+   private NodeRegistry<RateNode> outgoingFlows;
    
    /**
     * Constructor.
     */
    protected SourceSinkNode() {
-      incomingFlows = new HashSet<RateNode>();
-      outgoingFlows = new HashSet<RateNode>();
+      incomingFlows = new NodeRegistry<RateNode>(false);
+      outgoingFlows = new NodeRegistry<RateNode>(false);
    }
    
    /**
@@ -87,12 +87,13 @@ public class SourceSinkNode extends AbstractNode {
    }
    
    /**
-    * Gets the set of all incoming flows. A shallow clone of the set of incoming flows is returned.
+    * Gets the set of all incoming flows. A read-only view of the set of incoming flows is returned
+    * (in the order in which the flows were added).
     * 
     * @return incoming flows
     */
-   public HashSet<RateNode> getIncomingFlows() {
-      return (HashSet<RateNode>)incomingFlows.clone();
+   public Set<RateNode> getIncomingFlows() {
+      return incomingFlows.getReadOnlyView();
    }
    
    /**
@@ -125,12 +126,13 @@ public class SourceSinkNode extends AbstractNode {
    }
 
    /**
-    * Gets the set of all outgoing flows. A shallow clone of the set of outgoing flows is returned.
+    * Gets the set of all outgoing flows. A read-only view of the set of outgoing flows is returned
+    * (in the order in which the flows were added).
     * 
     * @return outgoing flows
     */
-   public HashSet<RateNode> getOutgoingFlows() {
-      return (HashSet<RateNode>)outgoingFlows.clone();
+   public Set<RateNode> getOutgoingFlows() {
+      return outgoingFlows.getReadOnlyView();
    }
    
    /////////////////////////////////////////////////////////////////////////////////////////////////
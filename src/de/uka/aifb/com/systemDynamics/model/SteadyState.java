@@ -0,0 +1,135 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class contains the result of the steady-state solver (see
+ * {@link Model#computeSteadyState(double, int)}): the level nodes' values and how they were found.
+ * If the solver did not converge, the values are the last approximation.
+ * <p>
+ * Instances of this class are immutable.
+ *
+ * @version 1.0
+ */
+public class SteadyState {
+   
+   private Map<LevelNode, Double> levelNodeValues;
+   
+   private boolean isConverged;
+   
+   private double residual;
+   
+   private int numberOfIterations;
+   
+   private int numberOfRounds;
+   
+   /**
+    * Constructor.
+    * 
+    * @param levelNodeValues values of the level nodes
+    * @param isConverged <code>true</code> iff all net flows are within the tolerance
+    * @param residual maximum absolute net flow of a level node
+    * @param numberOfIterations number of Newton/Broyden iterations
+    * @param numberOfRounds number of rounds executed by the time stepping fallback
+    */
+   SteadyState(Map<LevelNode, Double> levelNodeValues, boolean isConverged, double residual,
+               int numberOfIterations, int numberOfRounds) {
+      if (levelNodeValues == null) {
+         throw new IllegalArgumentException("'levelNodeValues' must not be null.");
+      }
+      
+      this.levelNodeValues = Collections.unmodifiableMap(new HashMap<LevelNode, Double>(levelNodeValues));
+      this.isConverged = isConverged;
+      this.residual = residual;
+      this.numberOfIterations = numberOfIterations;
+      this.numberOfRounds = numberOfRounds;
+   }
+   
+   /**
+    * Gets the steady-state value of the specified level node.
+    * 
+    * @param levelNode level node of the model
+    * @return steady-state value
+    */
+   public double getValue(LevelNode levelNode) {
+      if (levelNode == null) {
+         throw new IllegalArgumentException("'levelNode' must not be null.");
+      }
+      
+      Double value = levelNodeValues.get(levelNode);
+      if (value == null) {
+         throw new IllegalArgumentException("'levelNode' must be a computed level node of the model.");
+      }
+      
+      return value;
+   }
+   
+   /**
+    * Gets the level nodes with their steady-state values.
+    * 
+    * @return level nodes with values
+    */
+   public Map<LevelNode, Double> getLevelNodeValues() {
+      return levelNodeValues;
+   }
+   
+   /**
+    * Checks whether a steady state was found, i.e. all net flows are within the tolerance.
+    * 
+    * @return <code>true</code> iff steady state found
+    */
+   public boolean isConverged() {
+      return isConverged;
+   }
+   
+   /**
+    * Gets the maximum absolute net flow (incoming minus outgoing flows) of a level node at the
+    * values.
+    * 
+    * @return maximum absolute net flow
+    */
+   public double getResidual() {
+      return residual;
+   }
+   
+   /**
+    * Gets the number of Newton/Broyden iterations.
+    * 
+    * @return number of iterations
+    */
+   public int getNumberOfIterations() {
+      return numberOfIterations;
+   }
+   
+   /**
+    * Gets the number of rounds executed by the time stepping fallback (0 if the Newton/Broyden
+    * iterations converged from the initial values).
+    * 
+    * @return number of rounds
+    */
+   public int getNumberOfRounds() {
+      return numberOfRounds;
+   }
+}
@@ -0,0 +1,268 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.util.*;
+
+/**
+ * This class computes a steady state of a {@link Model} directly (see
+ * {@link Model#computeSteadyState(double, int)}): damped Newton iterations with Broyden updates of
+ * the Jacobian, alternating with time stepping if they fail. The net flows and their Jacobians
+ * are computed by the model's {@link Integrator}.
+ *
+ * @version 1.0
+ */
+class SteadyStateSolver {
+   
+   /** maximum number of Newton/Broyden iterations of an attempt of the steady-state solver */
+   private static final int MAX_STEADY_STATE_ITERATIONS = 50;
+   
+   /** smallest damping factor of a Newton/Broyden step of the steady-state solver */
+   private static final double MIN_STEADY_STATE_DAMPING = 1.0 / 1024;
+   
+   /** rounds of time stepping between two attempts of the Newton/Broyden iterations */
+   private static final int STEADY_STATE_ROUNDS_PER_ATTEMPT = 100;
+   
+   private Model model;
+   
+   private Integrator integrator;
+   
+   /** Newton/Broyden iterations of this steady-state computation */
+   private int numberOfSteadyStateIterations;
+   
+   /**
+    * Constructor.
+    * 
+    * @param model model (must already be unchangeable)
+    * @param integrator integrator of the model
+    */
+   SteadyStateSolver(Model model, Integrator integrator) {
+      if (model == null) {
+         throw new IllegalArgumentException("'model' must not be null.");
+      }
+      if (integrator == null) {
+         throw new IllegalArgumentException("'integrator' must not be null.");
+      }
+      
+      this.model = model;
+      this.integrator = integrator;
+   }
+   
+   /**
+    * Computes a steady state, starting at the current values (see
+    * {@link Model#computeSteadyState(double, int)}).
+    * 
+    * @param tolerance tolerance of the net flows (greater than 0)
+    * @param maxRounds maximum number of rounds of the time stepping fallback (at least 0)
+    * @return steady state (or the last approximation, if none is found)
+    */
+   SteadyState computeSteadyState(double tolerance, int maxRounds) {
+      int firstLevelNodeIndex = integrator.getFirstLevelNodeIndex();
+      LevelNode[] scheduledLevelNodes = integrator.getScheduledLevelNodes(firstLevelNodeIndex);
+      double[] startValues = new double[scheduledLevelNodes.length];
+      for (int i = 0; i < scheduledLevelNodes.length; i++) {
+         startValues[i] = scheduledLevelNodes[i].getCurrentValue();
+      }
+      
+      numberOfSteadyStateIterations = 0;
+      double[] values = startValues.clone();
+      double[] slopes = new double[scheduledLevelNodes.length];
+      boolean isConverged = false;
+      int rounds = 0;
+      double residual = 0;
+      HashMap<LevelNode, Double> levelNodeValues = new HashMap<LevelNode, Double>();
+      try {
+         isConverged = solveSteadyState(firstLevelNodeIndex, scheduledLevelNodes, values, tolerance);
+         while (!isConverged && rounds < maxRounds) {
+            // time stepping brings the values closer to an attracting steady state
+            int attemptRounds = Math.min(STEADY_STATE_ROUNDS_PER_ATTEMPT, maxRounds - rounds);
+            try {
+               for (int i = 0; i < attemptRounds; i++) {
+                  model.computeNextValues();
+               }
+            } catch (ArithmeticException e) {
+               // implicit integration method failed
+               break;
+            } finally {
+               for (int i = 0; i < scheduledLevelNodes.length; i++) {
+                  values[i] = scheduledLevelNodes[i].getCurrentValue();
+               }
+            }
+            rounds += attemptRounds;
+            isConverged = solveSteadyState(firstLevelNodeIndex, scheduledLevelNodes, values, tolerance);
+         }
+         
+         for (int i = 0; i < scheduledLevelNodes.length; i++) {
+            scheduledLevelNodes[i].setCurrentValue(values[i]);
+         }
+         integrator.computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+         for (int i = 0; i < scheduledLevelNodes.length; i++) {
+            residual = Math.max(residual, Math.abs(slopes[i]));
+            levelNodeValues.put(scheduledLevelNodes[i], values[i]);
+         }
+      } finally {
+         if (!isConverged) {
+            // start values and the auxiliary and rate node values computed with them
+            for (int i = 0; i < scheduledLevelNodes.length; i++) {
+               scheduledLevelNodes[i].setCurrentValue(startValues[i]);
+            }
+            integrator.computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+         }
+         // the values of the previous time step are not the ones before the current values anymore
+         integrator.discardPreviousLevelNodeValues();
+      }
+      
+      return new SteadyState(levelNodeValues, isConverged, residual, numberOfSteadyStateIterations, rounds);
+   }
+   
+   /**
+    * Solves the steady-state equations f(y) = 0 (f: net flows) by damped Newton iterations with
+    * Broyden updates of the Jacobian, starting at the specified values. If they converge, the
+    * values are replaced by the solution and the level nodes have it. Otherwise, the level nodes
+    * have the specified values.
+    * 
+    * @param firstLevelNodeIndex index of the first level node in the evaluation schedule
+    * @param scheduledLevelNodes level nodes of the evaluation schedule
+    * @param values start values (replaced by the solution)
+    * @param tolerance tolerance of the net flows
+    * @return <code>true</code> iff the iterations converge
+    */
+   private boolean solveSteadyState(int firstLevelNodeIndex, LevelNode[] scheduledLevelNodes,
+                                    double[] values, double tolerance) {
+      int n = scheduledLevelNodes.length;
+      double[] x = values.clone();
+      double[] slopes = new double[n];
+      for (int i = 0; i < n; i++) {
+         scheduledLevelNodes[i].setCurrentValue(x[i]);
+      }
+      integrator.computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, slopes);
+      if (isSteadyState(x, slopes, tolerance)) {
+         return true;
+      }
+      
+      double[][] jacobian = integrator.computeJacobian(firstLevelNodeIndex, scheduledLevelNodes, x);
+      boolean isJacobianComputed = true;
+      double norm = getSquaredNorm(slopes);
+      double[] newX = new double[n];
+      double[] newSlopes = new double[n];
+      for (int iteration = 0; iteration < MAX_STEADY_STATE_ITERATIONS; iteration++) {
+         numberOfSteadyStateIterations++;
+         
+         // Newton step: J * step = -f(x), damped until the net flows decrease
+         boolean isDecreased = false;
+         double newNorm = norm;
+         LUDecomposition decomposition = new LUDecomposition(jacobian);
+         if (!decomposition.isSingular()) {
+            double[] step = new double[n];
+            for (int i = 0; i < n; i++) {
+               step[i] = -slopes[i];
+            }
+            decomposition.solve(step);
+            for (double damping = 1; damping >= MIN_STEADY_STATE_DAMPING && !isDecreased; damping /= 2) {
+               for (int i = 0; i < n; i++) {
+                  newX[i] = x[i] + damping * step[i];
+                  scheduledLevelNodes[i].setCurrentValue(newX[i]);
+               }
+               integrator.computeSlopes(firstLevelNodeIndex, scheduledLevelNodes, newSlopes);
+               newNorm = getSquaredNorm(newSlopes);
+               // (also false for NaN)
+               isDecreased = (newNorm < norm);
+            }
+         }
+         if (!isDecreased) {
+            if (isJacobianComputed) {
+               break;
+            }
+            // the Broyden updates are not accurate enough anymore
+            jacobian = integrator.computeJacobian(firstLevelNodeIndex, scheduledLevelNodes, x);
+            isJacobianComputed = true;
+            continue;
+         }
+         
+         if (isSteadyState(newX, newSlopes, tolerance)) {
+            System.arraycopy(newX, 0, values, 0, n);
+            return true;
+         }
+         
+         // Broyden update: J = J + (df - J * dx) * dx^T / (dx^T * dx)
+         double[] dx = new double[n];
+         double squaredStepNorm = 0;
+         for (int i = 0; i < n; i++) {
+            dx[i] = newX[i] - x[i];
+            squaredStepNorm += dx[i] * dx[i];
+         }
+         if (squaredStepNorm > 0) {
+            for (int i = 0; i < n; i++) {
+               double difference = newSlopes[i] - slopes[i];
+               for (int j = 0; j < n; j++) {
+                  difference -= jacobian[i][j] * dx[j];
+               }
+               for (int j = 0; j < n; j++) {
+                  jacobian[i][j] += difference * dx[j] / squaredStepNorm;
+               }
+            }
+         }
+         isJacobianComputed = false;
+         
+         System.arraycopy(newX, 0, x, 0, n);
+         System.arraycopy(newSlopes, 0, slopes, 0, n);
+         norm = newNorm;
+      }
+      
+      for (int i = 0; i < n; i++) {
+         scheduledLevelNodes[i].setCurrentValue(values[i]);
+      }
+      return false;
+   }
+   
+   /**
+    * Checks whether the net flow of every level node is at most tolerance * (1 + |value|).
+    * 
+    * @param values level node values
+    * @param slopes net flows at the values
+    * @param tolerance tolerance
+    * @return <code>true</code> iff steady state
+    */
+   private static boolean isSteadyState(double[] values, double[] slopes, double tolerance) {
+      for (int i = 0; i < values.length; i++) {
+         if (!(Math.abs(slopes[i]) <= tolerance * (1 + Math.abs(values[i])))) {
+            // (also for NaN)
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * Gets the sum of the squares of the specified values.
+    * 
+    * @param values values
+    * @return squared Euclidean norm
+    */
+   private static double getSquaredNorm(double[] values) {
+      double squaredNorm = 0;
+      for (double value : values) {
+         squaredNorm += value * value;
+      }
+      return squaredNorm;
+   }
+}
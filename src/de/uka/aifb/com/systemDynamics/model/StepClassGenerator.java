@@ -0,0 +1,504 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.model;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class generates the class file of a {@link de.uka.aifb.com.systemDynamics.model.ModelStep}
+ * implementation for the instruction stream of a
+ * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel}.
+ * <p>
+ * The generated method <code>step(double[])</code> is straight-line code: every instruction and
+ * every level node update is emitted with constant array indices, so that the JIT compiler can
+ * optimize the whole time step. The code is split into several static methods because HotSpot
+ * does not compile methods with more than 8000 bytes of bytecode.
+ * <p>
+ * The generated class file has version 49 (Java 5), so no stack map frames are needed.
+ *
+ * @version 1.0
+ */
+final class StepClassGenerator {
+   
+   /**
+    * a new method is started when a method's bytecode reaches this size (HotSpot does not compile
+    * methods with more than 8000 bytes of bytecode)
+    */
+   private static final int MAX_METHOD_SIZE = 6000;
+   
+   private static final String MODEL_STEP_INTERFACE = "de/uka/aifb/com/systemDynamics/model/ModelStep";
+   private static final String STEP_DESCRIPTOR = "([D)V";
+   private static final String ROUND_CLASS = "de/uka/aifb/com/systemDynamics/model/ASTRound";
+   
+   // constant pool tags
+   private static final int CONSTANT_UTF8 = 1;
+   private static final int CONSTANT_INTEGER = 3;
+   private static final int CONSTANT_CLASS = 7;
+   private static final int CONSTANT_METHODREF = 10;
+   private static final int CONSTANT_NAME_AND_TYPE = 12;
+   
+   // access flags
+   private static final int ACC_PUBLIC = 0x0001;
+   private static final int ACC_PRIVATE = 0x0002;
+   private static final int ACC_STATIC = 0x0008;
+   private static final int ACC_FINAL = 0x0010;
+   private static final int ACC_SUPER = 0x0020;
+   
+   // opcodes
+   private static final int ICONST_0 = 0x03;
+   private static final int BIPUSH = 0x10;
+   private static final int SIPUSH = 0x11;
+   private static final int LDC_W = 0x13;
+   private static final int ALOAD_0 = 0x2a;
+   private static final int ALOAD_1 = 0x2b;
+   private static final int DALOAD = 0x31;
+   private static final int DASTORE = 0x52;
+   private static final int DADD = 0x63;
+   private static final int DSUB = 0x67;
+   private static final int DMUL = 0x6b;
+   private static final int DDIV = 0x6f;
+   private static final int RETURN = 0xb1;
+   private static final int INVOKESPECIAL = 0xb7;
+   private static final int INVOKESTATIC = 0xb8;
+   
+   private String className;
+   
+   /** constant pool (without the unused entry 0) */
+   private ByteArrayOutputStream constantPoolBytes;
+   private DataOutputStream constantPool;
+   private HashMap<String, Integer> constantPoolIndexes;
+   private int constantPoolCount;
+   
+   /**
+    * Constructor.
+    * 
+    * @param className internal name of the class to generate (e.g. 'a/b/C')
+    */
+   private StepClassGenerator(String className) {
+      this.className = className;
+      
+      constantPoolBytes = new ByteArrayOutputStream();
+      constantPool = new DataOutputStream(constantPoolBytes);
+      constantPoolIndexes = new HashMap<String, Integer>();
+      constantPoolCount = 1;
+   }
+   
+   /**
+    * Generates the class file of a {@link de.uka.aifb.com.systemDynamics.model.ModelStep}
+    * implementation.
+    * 
+    * @param className internal name of the class to generate (e.g. 'a/b/C')
+    * @param code instruction stream
+    * @param numberOfLevelNodes number of level nodes (stored in slots 0 to numberOfLevelNodes - 1)
+    * @param incomingFlowStart start indexes of the level nodes' incoming flows
+    * @param incomingFlowSlots slots of the level nodes' incoming flows
+    * @param outgoingFlowStart start indexes of the level nodes' outgoing flows
+    * @param outgoingFlowSlots slots of the level nodes' outgoing flows
+    * @return class file
+    */
+   static byte[] generateClassFile(String className, int[] code, int numberOfLevelNodes,
+                                   int[] incomingFlowStart, int[] incomingFlowSlots,
+                                   int[] outgoingFlowStart, int[] outgoingFlowSlots) {
+      if (className == null) {
+         throw new IllegalArgumentException("'className' must not be null.");
+      }
+      if (code == null) {
+         throw new IllegalArgumentException("'code' must not be null.");
+      }
+      
+      try {
+         return new StepClassGenerator(className).generate(code, numberOfLevelNodes,
+                                                           incomingFlowStart, incomingFlowSlots,
+                                                           outgoingFlowStart, outgoingFlowSlots);
+      } catch (IOException e) {
+         // cannot happen: only byte array streams are used
+         throw new Error(e);
+      }
+   }
+   
+   /**
+    * Generates the class file.
+    * 
+    * @param code instruction stream
+    * @param numberOfLevelNodes number of level nodes
+    * @param incomingFlowStart start indexes of the level nodes' incoming flows
+    * @param incomingFlowSlots slots of the level nodes' incoming flows
+    * @param outgoingFlowStart start indexes of the level nodes' outgoing flows
+    * @param outgoingFlowSlots slots of the level nodes' outgoing flows
+    * @return class file
+    * @throws IOException cannot happen (only byte array streams are used)
+    */
+   private byte[] generate(int[] code, int numberOfLevelNodes,
+                           int[] incomingFlowStart, int[] incomingFlowSlots,
+                           int[] outgoingFlowStart, int[] outgoingFlowSlots) throws IOException {
+      int thisClassIndex = addClass(className);
+      int superClassIndex = addClass("java/lang/Object");
+      int interfaceIndex = addClass(MODEL_STEP_INTERFACE);
+      
+      // (1) bodies of the part methods: first the instructions, then the level node updates
+      ArrayList<byte[]> partBodies = new ArrayList<byte[]>();
+      ByteArrayOutputStream part = new ByteArrayOutputStream();
+      
+      for (int i = 0; i < code.length; i += CompiledModel.INSTRUCTION_LENGTH) {
+         if (part.size() >= MAX_METHOD_SIZE) {
+            partBodies.add(finishPart(part));
+            part = new ByteArrayOutputStream();
+         }
+         emitInstruction(part, code[i], code[i + 1], code[i + 2], code[i + 3]);
+      }
+      for (int i = 0; i < numberOfLevelNodes; i++) {
+         if (part.size() >= MAX_METHOD_SIZE) {
+            partBodies.add(finishPart(part));
+            part = new ByteArrayOutputStream();
+         }
+         emitLevelNodeUpdate(part, i, incomingFlowSlots, incomingFlowStart[i], incomingFlowStart[i + 1],
+                             outgoingFlowSlots, outgoingFlowStart[i], outgoingFlowStart[i + 1]);
+      }
+      partBodies.add(finishPart(part));
+      
+      // (2) constructor and 'step' method
+      ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+      constructor.write(ALOAD_0);
+      constructor.write(INVOKESPECIAL);
+      writeShort(constructor, addMethodref("java/lang/Object", "<init>", "()V"));
+      constructor.write(RETURN);
+      
+      ByteArrayOutputStream step = new ByteArrayOutputStream();
+      for (int i = 0; i < partBodies.size(); i++) {
+         step.write(ALOAD_1);
+         step.write(INVOKESTATIC);
+         writeShort(step, addMethodref(className, "part" + i, STEP_DESCRIPTOR));
+      }
+      step.write(RETURN);
+      
+      // (3) methods
+      ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+      DataOutputStream methods = new DataOutputStream(methodBytes);
+      writeMethod(methods, ACC_PUBLIC, "<init>", "()V", constructor.toByteArray(), 1, 1);
+      writeMethod(methods, ACC_PUBLIC, "step", STEP_DESCRIPTOR, step.toByteArray(), 1, 2);
+      for (int i = 0; i < partBodies.size(); i++) {
+         writeMethod(methods, ACC_PRIVATE | ACC_STATIC, "part" + i, STEP_DESCRIPTOR,
+                     partBodies.get(i), 6, 1);
+      }
+      methods.flush();
+      
+      // (4) class file
+      ByteArrayOutputStream classFileBytes = new ByteArrayOutputStream();
+      DataOutputStream classFile = new DataOutputStream(classFileBytes);
+      classFile.writeInt(0xCAFEBABE);
+      classFile.writeShort(0);  // minor version
+      classFile.writeShort(49); // major version (Java 5)
+      constantPool.flush();
+      classFile.writeShort(constantPoolCount);
+      classFile.write(constantPoolBytes.toByteArray());
+      classFile.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+      classFile.writeShort(thisClassIndex);
+      classFile.writeShort(superClassIndex);
+      classFile.writeShort(1); // interfaces
+      classFile.writeShort(interfaceIndex);
+      classFile.writeShort(0); // fields
+      classFile.writeShort(2 + partBodies.size());
+      classFile.write(methodBytes.toByteArray());
+      classFile.writeShort(0); // attributes
+      classFile.flush();
+      
+      return classFileBytes.toByteArray();
+   }
+   
+   /**
+    * Appends a 'return' to the specified part method body and returns it.
+    * 
+    * @param part part method body
+    * @return finished part method body
+    */
+   private static byte[] finishPart(ByteArrayOutputStream part) {
+      part.write(RETURN);
+      return part.toByteArray();
+   }
+   
+   /**
+    * Emits the bytecode for one instruction: values[target] = values[operand1] op values[operand2].
+    * 
+    * @param out output stream
+    * @param opcode opcode of the instruction (see {@link CompiledModel})
+    * @param targetSlot target slot
+    * @param operandSlot1 slot of first operand
+    * @param operandSlot2 slot of second operand
+    */
+   private void emitInstruction(ByteArrayOutputStream out, int opcode, int targetSlot,
+                                int operandSlot1, int operandSlot2) {
+      out.write(ALOAD_0);
+      emitInt(out, targetSlot);
+      emitLoad(out, operandSlot1);
+      switch (opcode) {
+         case CompiledModel.COPY:
+            break;
+         case CompiledModel.ADD:
+            emitLoad(out, operandSlot2);
+            out.write(DADD);
+            break;
+         case CompiledModel.SUBTRACT:
+            emitLoad(out, operandSlot2);
+            out.write(DSUB);
+            break;
+         case CompiledModel.MULTIPLY:
+            emitLoad(out, operandSlot2);
+            out.write(DMUL);
+            break;
+         case CompiledModel.DIVIDE:
+            emitLoad(out, operandSlot2);
+            out.write(DDIV);
+            break;
+         case CompiledModel.MIN:
+            emitLoad(out, operandSlot2);
+            out.write(INVOKESTATIC);
+            writeShort(out, addMethodref("java/lang/Math", "min", "(DD)D"));
+            break;
+         case CompiledModel.MAX:
+            emitLoad(out, operandSlot2);
+            out.write(INVOKESTATIC);
+            writeShort(out, addMethodref("java/lang/Math", "max", "(DD)D"));
+            break;
+         case CompiledModel.ROUND:
+            // same method as all other execution backends (public, so it can be linked by the
+            // generated class of another class loader)
+            emitLoad(out, operandSlot2);
+            out.write(INVOKESTATIC);
+            writeShort(out, addMethodref(ROUND_CLASS, "round", "(DD)D"));
+            break;
+         default:
+            throw new Error("Unsupported opcode " + opcode + ".");
+      }
+      out.write(DASTORE);
+   }
+   
+   /**
+    * Emits the bytecode for the update of one level node. The flows are added and subtracted in
+    * the same order as in {@link CompiledModel#computeNextValues()}.
+    * 
+    * @param out output stream
+    * @param levelNodeSlot slot of the level node
+    * @param incomingFlowSlots slots of all incoming flows
+    * @param incomingFrom first index of this level node's incoming flows
+    * @param incomingTo last index (exclusive) of this level node's incoming flows
+    * @param outgoingFlowSlots slots of all outgoing flows
+    * @param outgoingFrom first index of this level node's outgoing flows
+    * @param outgoingTo last index (exclusive) of this level node's outgoing flows
+    */
+   private void emitLevelNodeUpdate(ByteArrayOutputStream out, int levelNodeSlot,
+                                    int[] incomingFlowSlots, int incomingFrom, int incomingTo,
+                                    int[] outgoingFlowSlots, int outgoingFrom, int outgoingTo) {
+      out.write(ALOAD_0);
+      emitInt(out, levelNodeSlot);
+      emitLoad(out, levelNodeSlot);
+      for (int j = incomingFrom; j < incomingTo; j++) {
+         emitLoad(out, incomingFlowSlots[j]);
+         out.write(DADD);
+      }
+      for (int j = outgoingFrom; j < outgoingTo; j++) {
+         emitLoad(out, outgoingFlowSlots[j]);
+         out.write(DSUB);
+      }
+      out.write(DASTORE);
+   }
+   
+   /**
+    * Emits the bytecode for loading values[slot] onto the operand stack.
+    * 
+    * @param out output stream
+    * @param slot slot
+    */
+   private void emitLoad(ByteArrayOutputStream out, int slot) {
+      out.write(ALOAD_0);
+      emitInt(out, slot);
+      out.write(DALOAD);
+   }
+   
+   /**
+    * Emits the bytecode for pushing the specified non-negative <code>int</code> constant.
+    * 
+    * @param out output stream
+    * @param value constant
+    */
+   private void emitInt(ByteArrayOutputStream out, int value) {
+      if (value <= 5) {
+         out.write(ICONST_0 + value);
+      } else if (value <= Byte.MAX_VALUE) {
+         out.write(BIPUSH);
+         out.write(value);
+      } else if (value <= Short.MAX_VALUE) {
+         out.write(SIPUSH);
+         writeShort(out, value);
+      } else {
+         out.write(LDC_W);
+         writeShort(out, addInteger(value));
+      }
+   }
+   
+   /**
+    * Writes a method into the methods table.
+    * 
+    * @param methods methods table
+    * @param accessFlags access flags
+    * @param name method name
+    * @param descriptor method descriptor
+    * @param code bytecode
+    * @param maxStack maximal operand stack size
+    * @param maxLocals number of local variables
+    * @throws IOException cannot happen (only byte array streams are used)
+    */
+   private void writeMethod(DataOutputStream methods, int accessFlags, String name, String descriptor,
+                            byte[] code, int maxStack, int maxLocals) throws IOException {
+      methods.writeShort(accessFlags);
+      methods.writeShort(addUtf8(name));
+      methods.writeShort(addUtf8(descriptor));
+      methods.writeShort(1); // attributes
+      methods.writeShort(addUtf8("Code"));
+      methods.writeInt(12 + code.length);
+      methods.writeShort(maxStack);
+      methods.writeShort(maxLocals);
+      methods.writeInt(code.length);
+      methods.write(code);
+      methods.writeShort(0); // exception table
+      methods.writeShort(0); // attributes
+   }
+   
+   /**
+    * Writes an unsigned 16 bit value.
+    * 
+    * @param out output stream
+    * @param value value
+    */
+   private static void writeShort(ByteArrayOutputStream out, int value) {
+      out.write((value >>> 8) & 0xFF);
+      out.write(value & 0xFF);
+   }
+   
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   // constant pool
+   /////////////////////////////////////////////////////////////////////////////////////////////////
+   
+   /**
+    * Adds a UTF8 entry to the constant pool (if not already contained).
+    * 
+    * @param value string
+    * @return constant pool index
+    */
+   private int addUtf8(String value) {
+      String key = "Utf8:" + value;
+      Integer index = constantPoolIndexes.get(key);
+      if (index == null) {
+         try {
+            constantPool.writeByte(CONSTANT_UTF8);
+            constantPool.writeUTF(value);
+         } catch (IOException e) {
+            // cannot happen: only byte array streams are used
+            throw new Error(e);
+         }
+         index = constantPoolCount++;
+         constantPoolIndexes.put(key, index);
+      }
+      return index;
+   }
+   
+   /**
+    * Adds an integer entry to the constant pool (if not already contained).
+    * 
+    * @param value integer
+    * @return constant pool index
+    */
+   private int addInteger(int value) {
+      String key = "Integer:" + value;
+      Integer index = constantPoolIndexes.get(key);
+      if (index == null) {
+         try {
+            constantPool.writeByte(CONSTANT_INTEGER);
+            constantPool.writeInt(value);
+         } catch (IOException e) {
+            // cannot happen: only byte array streams are used
+            throw new Error(e);
+         }
+         index = constantPoolCount++;
+         constantPoolIndexes.put(key, index);
+      }
+      return index;
+   }
+   
+   /**
+    * Adds a class entry to the constant pool (if not already contained).
+    * 
+    * @param internalName internal class name (e.g. 'java/lang/Object')
+    * @return constant pool index
+    */
+   private int addClass(String internalName) {
+      String key = "Class:" + internalName;
+      Integer index = constantPoolIndexes.get(key);
+      if (index == null) {
+         int nameIndex = addUtf8(internalName);
+         try {
+            constantPool.writeByte(CONSTANT_CLASS);
+            constantPool.writeShort(nameIndex);
+         } catch (IOException e) {
+            // cannot happen: only byte array streams are used
+            throw new Error(e);
+         }
+         index = constantPoolCount++;
+         constantPoolIndexes.put(key, index);
+      }
+      return index;
+   }
+   
+   /**
+    * Adds a method reference entry to the constant pool (if not already contained).
+    * 
+    * @param owner internal name of the class declaring the method
+    * @param name method name
+    * @param descriptor method descriptor
+    * @return constant pool index
+    */
+   private int addMethodref(String owner, String name, String descriptor) {
+      String key = "Methodref:" + owner + "." + name + descriptor;
+      Integer index = constantPoolIndexes.get(key);
+      if (index == null) {
+         int classIndex = addClass(owner);
+         int nameIndex = addUtf8(name);
+         int descriptorIndex = addUtf8(descriptor);
+         try {
+            constantPool.writeByte(CONSTANT_NAME_AND_TYPE);
+            constantPool.writeShort(nameIndex);
+            constantPool.writeShort(descriptorIndex);
+            int nameAndTypeIndex = constantPoolCount++;
+            constantPool.writeByte(CONSTANT_METHODREF);
+            constantPool.writeShort(classIndex);
+            constantPool.writeShort(nameAndTypeIndex);
+         } catch (IOException e) {
+            // cannot happen: only byte array streams are used
+            throw new Error(e);
+         }
+         index = constantPoolCount++;
+         constantPoolIndexes.put(key, index);
+      }
+      return index;
+   }
+}
@@ -21,6 +21,8 @@
 
 package de.uka.aifb.com.systemDynamics.model;
 
+import java.util.*;
+
 /*
  * Changes:
  * ========
@@ -35,7 +37,7 @@ package de.uka.aifb.com.systemDynamics.model;
  * @author Joachim Melcher, University of Karlsruhe, AIFB
  * @version 1.1
  */
-public class UselessNodeException extends Exception {
+public class UselessNodeException extends ModelValidationException {
    
    private static final long serialVersionUID = 1L;
    private static final String MESSAGE = "There is a useless node in the model.";
@@ -67,4 +69,9 @@ public class UselessNodeException extends Exception {
    public AbstractNode getUselessNode() {
       return uselessNode;
    }
+   
+   @Override
+   public List<AbstractNode> getProblematicNodes() {
+      return Collections.<AbstractNode>singletonList(uselessNode);
+   }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@
 
         import de.uka.aifb.com.systemDynamics.model.*;
         import java.io.*;
+        import java.util.ArrayList;
         import java.util.HashMap;
 
         /**
@@ -63,7 +64,9 @@
   final public ASTElement Expression() throws ParseException {
         ASTElement formula;
         ASTElement tempFormula;
+        ArrayList<ASTElement> summands = new ArrayList<ASTElement>();
     formula = Term();
+                summands.add(formula);
     label_1:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -79,12 +82,14 @@
       case PLUS:
         jj_consume_token(PLUS);
         tempFormula = Term();
-                        formula = new ASTPlus(formula, tempFormula);
+                        summands.add(tempFormula);
         break;
       case MINUS:
         jj_consume_token(MINUS);
         tempFormula = Term();
-                        formula = new ASTMinus(formula, tempFormula);
+                        formula = new ASTMinus(ASTSum.createSum(summands), tempFormula);
+                        summands.clear();
+                        summands.add(formula);
         break;
       default:
         jj_la1[1] = jj_gen;
@@ -92,14 +97,16 @@
         throw new ParseException();
       }
     }
-                {if (true) return formula;}
+                {if (true) return ASTSum.createSum(summands);}
     throw new Error("Missing return statement in function");
   }
 
   final public ASTElement Term() throws ParseException {
         ASTElement formula;
         ASTElement tempFormula;
+        ArrayList<ASTElement> factors = new ArrayList<ASTElement>();
     formula = Primary();
+                factors.add(formula);
     label_2:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -115,12 +122,14 @@
       case TIMES:
         jj_consume_token(TIMES);
         tempFormula = Primary();
-                        formula = new ASTMultiply(formula, tempFormula);
+                        factors.add(tempFormula);
         break;
       case DIVIDE:
         jj_consume_token(DIVIDE);
         tempFormula = Primary();
-                        formula = new ASTDivide(formula, tempFormula);
+                        formula = new ASTDivide(ASTProduct.createProduct(factors), tempFormula);
+                        factors.clear();
+                        factors.add(formula);
         break;
       default:
         jj_la1[3] = jj_gen;
@@ -128,7 +137,7 @@
         throw new ParseException();
       }
     }
-                {if (true) return formula;}
+                {if (true) return ASTProduct.createProduct(factors);}
     throw new Error("Missing return statement in function");
   }
 
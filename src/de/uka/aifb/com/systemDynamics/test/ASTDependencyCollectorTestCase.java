@@ -0,0 +1,184 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTDependencyCollector}.
+ * 
+ * @version 1.0
+ */
+public class ASTDependencyCollectorTestCase extends TestCase {
+   
+   private Model model;
+   private LevelNode levelNode;
+   private ConstantNode constantNode;
+   private AuxiliaryNode auxiliaryNode;
+   private AuxiliaryNode otherAuxiliaryNode;
+   
+   /** formula: (level + constant) * (level - aux) */
+   private ASTElement formula;
+   
+   private ASTDependencyCollector collector;
+   
+   public static Test suite() {  
+      return new TestSuite(ASTDependencyCollectorTestCase.class);
+   }
+   
+   @Override
+   protected void setUp() {
+      model = new Model();
+      levelNode = model.createLevelNode("Level node", 0);
+      constantNode = model.createConstantNode("Constant node", 1);
+      auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      otherAuxiliaryNode = model.createAuxiliaryNode("Other auxiliary node");
+      
+      formula = new ASTMultiply(new ASTPlus(levelNode, constantNode),
+                                new ASTMinus(levelNode, auxiliaryNode));
+      
+      collector = new ASTDependencyCollector();
+   }
+   
+   @Override
+   protected void tearDown() {
+      model = null;
+      levelNode = null;
+      constantNode = null;
+      auxiliaryNode = null;
+      otherAuxiliaryNode = null;
+      formula = null;
+      collector = null;
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTDependencyCollector#collectNodes(ASTElement, Set)}.
+    */
+   public void testCollectNodes() {
+      // (1) 'null' parameters -> WRONG
+      try {
+         collector.collectNodes(null, new HashSet<AbstractNode>());
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'formula' must not be null.", e.getMessage());
+      }
+      try {
+         collector.collectNodes(formula, (Set<AbstractNode>)null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'nodes' must not be null.", e.getMessage());
+      }
+      
+      // (2) correct parameters; already contained nodes are kept
+      HashSet<AbstractNode> nodes = new HashSet<AbstractNode>();
+      nodes.add(otherAuxiliaryNode);
+      collector.collectNodes(formula, nodes);
+      assertEquals(4, nodes.size());
+      assertTrue(nodes.contains(levelNode));
+      assertTrue(nodes.contains(constantNode));
+      assertTrue(nodes.contains(auxiliaryNode));
+      assertTrue(nodes.contains(otherAuxiliaryNode));
+      
+      // (3) collector can be reused
+      nodes.clear();
+      collector.collectNodes(constantNode, nodes);
+      assertEquals(1, nodes.size());
+      assertTrue(nodes.contains(constantNode));
+      
+      // (4) same result as 'getAllNodesInASTSubtree'
+      nodes.clear();
+      collector.collectNodes(formula, nodes);
+      assertEquals(formula.getAllNodesInASTSubtree(), nodes);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTDependencyCollector#collectNodes(ASTElement, Map, BitSet)}.
+    */
+   public void testCollectNodes2() {
+      HashMap<AbstractNode, Integer> node2index = new HashMap<AbstractNode, Integer>();
+      node2index.put(levelNode, 0);
+      node2index.put(auxiliaryNode, 1);
+      node2index.put(otherAuxiliaryNode, 2);
+      
+      // (1) 'null' parameters -> WRONG
+      try {
+         collector.collectNodes(null, node2index, new BitSet());
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'formula' must not be null.", e.getMessage());
+      }
+      try {
+         collector.collectNodes(formula, null, new BitSet());
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'node2index' must not be null.", e.getMessage());
+      }
+      try {
+         collector.collectNodes(formula, node2index, null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'nodes' must not be null.", e.getMessage());
+      }
+      
+      // (2) correct parameters; nodes without index (constant node) are ignored
+      BitSet nodes = new BitSet();
+      collector.collectNodes(formula, node2index, nodes);
+      assertEquals(2, nodes.cardinality());
+      assertTrue(nodes.get(0));
+      assertTrue(nodes.get(1));
+      assertFalse(nodes.get(2));
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTDependencyCollector#containsNode(ASTElement, AbstractNode)}.
+    */
+   public void testContainsNode() {
+      // (1) 'null' parameters -> WRONG
+      try {
+         collector.containsNode(null, levelNode);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'formula' must not be null.", e.getMessage());
+      }
+      try {
+         collector.containsNode(formula, null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'node' must not be null.", e.getMessage());
+      }
+      
+      // (2) correct parameters
+      assertTrue(collector.containsNode(formula, levelNode));
+      assertTrue(collector.containsNode(formula, constantNode));
+      assertTrue(collector.containsNode(formula, auxiliaryNode));
+      assertFalse(collector.containsNode(formula, otherAuxiliaryNode));
+      assertTrue(collector.containsNode(auxiliaryNode, auxiliaryNode));
+      assertFalse(collector.containsNode(auxiliaryNode, levelNode));
+   }
+}
@@ -0,0 +1,149 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.xml.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTInterner}.
+ *
+ * @version 1.0
+ */
+public class ASTInternerTestCase extends TestCase {
+   
+   private Model model;
+   private LevelNode levelNode;
+   private AuxiliaryNode auxiliaryNode;
+   private ConstantNode constantNode;
+   
+   private ASTInterner interner;
+   
+   public static Test suite() {
+      return new TestSuite(ASTInternerTestCase.class);
+   }
+   
+   @Override
+   protected void setUp() {
+      model = new Model();
+      levelNode = model.createLevelNode("Level node", 5);
+      auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      constantNode = model.createConstantNode("Constant node", 2);
+      
+      interner = new ASTInterner();
+   }
+   
+   @Override
+   protected void tearDown() {
+      model = null;
+      levelNode = null;
+      auxiliaryNode = null;
+      constantNode = null;
+      interner = null;
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTInterner#intern(ASTElement)}.
+    */
+   public void testIntern() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         interner.intern(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'formula' must not be null.", e.getMessage());
+      }
+      
+      // (2) nodes are returned as they are
+      assertTrue(interner.intern(levelNode) == levelNode);
+      
+      // (3) first formula is returned as it is (no copy)
+      ASTElement formula1 = new ASTMultiply(levelNode, constantNode);
+      assertTrue(interner.intern(formula1) == formula1);
+      
+      // (4) structurally identical formula -> first instance
+      assertTrue(interner.intern(new ASTMultiply(levelNode, constantNode)) == formula1);
+      
+      // (5) identical subtrees are shared
+      ASTElement formula2 = interner.intern(new ASTMinus(new ASTMultiply(levelNode, constantNode),
+                                                         new ASTMultiply(levelNode, constantNode)));
+      assertTrue(formula2 instanceof ASTMinus);
+      assertTrue(((ASTMinus)formula2).getLeftElement() == formula1);
+      assertTrue(((ASTMinus)formula2).getRightElement() == formula1);
+      
+      // (6) different operations, operand orders or nodes are not shared
+      assertTrue(interner.intern(new ASTPlus(levelNode, constantNode)) != formula1);
+      assertTrue(interner.intern(new ASTMultiply(constantNode, levelNode)) != formula1);
+      assertTrue(interner.intern(new ASTMultiply(auxiliaryNode, constantNode)) != formula1);
+      
+      // (7) literals with the same value are shared
+      ASTLiteral literal = new ASTLiteral(0.5);
+      assertTrue(interner.intern(literal) == literal);
+      assertTrue(interner.intern(new ASTLiteral(0.5)) == literal);
+      assertTrue(interner.intern(new ASTLiteral(1.5)) != literal);
+   }
+   
+   /**
+    * Tests the methods
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTInterner#getNumberOfInternedOperations()} and
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTInterner#getNumberOfDistinctOperations()}.
+    */
+   public void testGetNumberOfOperations() {
+      assertEquals(0, interner.getNumberOfInternedOperations());
+      assertEquals(0, interner.getNumberOfDistinctOperations());
+      
+      interner.intern(new ASTMultiply(levelNode, constantNode));
+      interner.intern(new ASTPlus(new ASTMultiply(levelNode, constantNode), new ASTLiteral(1)));
+      interner.intern(new ASTPlus(new ASTMultiply(levelNode, constantNode), new ASTLiteral(1)));
+      
+      assertEquals(5, interner.getNumberOfInternedOperations());
+      assertEquals(2, interner.getNumberOfDistinctOperations());
+   }
+   
+   /**
+    * Tests that the formulas of models read from XML files are already interned, i.e. interning
+    * them again does not change them.
+    */
+   public void testInternXMLModel() {
+      Model xmlModel = null;
+      try {
+         xmlModel = XMLModelReader.readXMLModel("./testResources/model.xml");
+      } catch (Exception e) {
+         fail();
+      }
+      
+      for (AuxiliaryNode xmlAuxiliaryNode : xmlModel.getAuxiliaryNodes()) {
+         ASTElement formula = xmlAuxiliaryNode.getFormula();
+         assertTrue(interner.intern(formula) == formula);
+      }
+      for (RateNode xmlRateNode : xmlModel.getRateNodes()) {
+         ASTElement formula = xmlRateNode.getFormula();
+         assertTrue(interner.intern(formula) == formula);
+      }
+      assertEquals(xmlModel.getNumberOfDistinctFormulaOperations(),
+                   interner.getNumberOfDistinctOperations());
+   }
+}
@@ -22,6 +22,7 @@
 package de.uka.aifb.com.systemDynamics.test;
 
 import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
 import java.util.*;
 import junit.framework.*;
 import junitx.util.PrivateAccessor;
@@ -120,64 +121,52 @@ public class ASTMinusTestCase extends TestCase {
     * {@link de.uka.aifb.com.systemDynamics.model.ASTMinus#clone()}.
     */
    public void testClone() {
-      // (1) construct original ASTMinus instance
       ConstantNode constantNode1 = createConstantNode("A", 1);
       ConstantNode constantNode2 = createConstantNode("B", 1);
       ConstantNode constantNode3 = createConstantNode("C", 1);
       
-      ASTMinus subFormula = new ASTMinus(constantNode2, constantNode3);
-      astMinus = new ASTMinus(constantNode1, subFormula);
-      
-      // (2) check that cloned instance is equivalent
-      ASTMinus cloned = (ASTMinus)astMinus.clone();
-      
-      ConstantNode clonedNode = null;
-      try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(cloned, "leftElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      assertTrue(clonedNode == constantNode1);
+      astMinus = new ASTMinus(constantNode1, new ASTMinus(constantNode2, constantNode3));
       
-      ASTMinus clonedASTMinus = null;
-      try {
-         clonedASTMinus = (ASTMinus)PrivateAccessor.getField(cloned, "rightElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
+      // AST elements are immutable -> no copy
+      assertTrue(astMinus.clone() == astMinus);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTMinus#withOperands(ASTElement, ASTElement)}.
+    */
+   public void testWithOperands() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 2);
+      ConstantNode constantNode3 = createConstantNode("C", 3);
       
-      try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(clonedASTMinus, "leftElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      assertTrue(clonedNode == constantNode2);
+      ASTMinus subFormula = new ASTMinus(constantNode2, constantNode3);
+      astMinus = new ASTMinus(constantNode1, subFormula);
       
+      // (1) 'null' operand -> WRONG
       try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(clonedASTMinus, "rightElement");
-      } catch (NoSuchFieldException e) {
+         astMinus.withOperands(null, subFormula);
          fail();
+      } catch (IllegalArgumentException e) {
+         // do nothing
       }
-      assertTrue(clonedNode == constantNode3);
       
-      // (3) check that changes on the cloned instance do not influence original instance
-      ASTMinus newSubFormula = new ASTMinus(createConstantNode("X", 9), createConstantNode("Y", 10));
+      // (2) unchanged operands -> same instance
+      assertTrue(astMinus.withOperands(constantNode1, subFormula) == astMinus);
       
-      try {
-         PrivateAccessor.setField(cloned, "rightElement", newSubFormula);
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      
-      assertTrue(cloned.evaluate() == 2);
-      assertTrue(astMinus.evaluate() == 1);
+      // (3) changed operand -> new instance sharing the unchanged subtree
+      ASTMinus changed = astMinus.withOperands(constantNode3, subFormula);
+      assertTrue(changed != astMinus);
+      assertTrue(changed.getLeftElement() == constantNode3);
+      assertTrue(changed.getRightElement() == subFormula);
+      assertTrue(astMinus.getLeftElement() == constantNode1);
    }
    
    /**
     * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.ASTMinus#iterator()}.
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTMinus#accept(ASTVisitor)}.
     */
-   public void testIterator() {
+   public void testAccept() {
       ConstantNode constantNode1 = createConstantNode("A", 1);
       ConstantNode constantNode2 = createConstantNode("B", 1);
       ConstantNode constantNode3 = createConstantNode("C", 1);
@@ -185,61 +174,24 @@ public class ASTMinusTestCase extends TestCase {
       ASTPlus subFormula = new ASTPlus(constantNode1, constantNode2);
       astMinus = new ASTMinus(subFormula, constantNode3);
       
-      // (1) first iterator
-      Iterator<ASTElement> iterator = astMinus.iterator();
-      
-      assertTrue(iterator.hasNext());
-      ASTElement nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTMinus);
-      assertTrue(nextElement != astMinus);  // clone!
-      
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTPlus);
-      assertTrue(nextElement != subFormula);  // clone!
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode1);
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode2);
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode3);
-      
       try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
+         astMinus.accept(null);
+         fail();
+      } catch (IllegalArgumentException e) {
          // do nothing
       }
       
-      // (2) second iterator
-      iterator = astMinus.iterator();
+      // the very same instances are visited in preorder (no clones!)
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      astMinus.accept(recorder);
       
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTMinus);
-      assertTrue(nextElement != astMinus);  // clone!
-      
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTPlus);
-      assertTrue(nextElement != subFormula);  // clone!
-      
-      assertTrue(iterator.hasNext());
+      assertEquals(5, recorder.getVisitedElements().size());
+      Iterator<ASTElement> iterator = recorder.getVisitedElements().iterator();
+      assertTrue(iterator.next() == astMinus);
+      assertTrue(iterator.next() == subFormula);
       assertTrue(iterator.next() == constantNode1);
-      
-      assertTrue(iterator.hasNext());
       assertTrue(iterator.next() == constantNode2);
-      
-      assertTrue(iterator.hasNext());
       assertTrue(iterator.next() == constantNode3);
-      
-      try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
-         // do nothing
-      }
    }
    
    /**
@@ -22,6 +22,7 @@
 package de.uka.aifb.com.systemDynamics.test;
 
 import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
 import java.util.*;
 import junit.framework.*;
 import junitx.util.PrivateAccessor;
@@ -121,64 +122,52 @@ public class ASTMultiplyTestCase extends TestCase {
     * {@link de.uka.aifb.com.systemDynamics.model.ASTMultiply#clone()}.
     */
    public void testClone() {
-      // (1) construct original ASTMultiply instance
       ConstantNode constantNode1 = createConstantNode("A", 1);
       ConstantNode constantNode2 = createConstantNode("B", 1);
       ConstantNode constantNode3 = createConstantNode("C", 1);
       
-      ASTMultiply subFormula = new ASTMultiply(constantNode2, constantNode3);
-      astMultiply = new ASTMultiply(constantNode1, subFormula);
-      
-      // (2) check that cloned instance is equivalent
-      ASTMultiply cloned = (ASTMultiply)astMultiply.clone();
-      
-      ConstantNode clonedNode = null;
-      try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(cloned, "leftElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      assertTrue(clonedNode == constantNode1);
+      astMultiply = new ASTMultiply(constantNode1, new ASTMultiply(constantNode2, constantNode3));
       
-      ASTMultiply clonedASTPlus = null;
-      try {
-         clonedASTPlus = (ASTMultiply)PrivateAccessor.getField(cloned, "rightElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
+      // AST elements are immutable -> no copy
+      assertTrue(astMultiply.clone() == astMultiply);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTMultiply#withOperands(ASTElement, ASTElement)}.
+    */
+   public void testWithOperands() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 2);
+      ConstantNode constantNode3 = createConstantNode("C", 3);
       
-      try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(clonedASTPlus, "leftElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      assertTrue(clonedNode == constantNode2);
+      ASTMultiply subFormula = new ASTMultiply(constantNode2, constantNode3);
+      astMultiply = new ASTMultiply(constantNode1, subFormula);
       
+      // (1) 'null' operand -> WRONG
       try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(clonedASTPlus, "rightElement");
-      } catch (NoSuchFieldException e) {
+         astMultiply.withOperands(null, subFormula);
          fail();
+      } catch (IllegalArgumentException e) {
+         // do nothing
       }
-      assertTrue(clonedNode == constantNode3);
       
-      // (3) check that changes on the cloned instance do not influence original instance
-      ASTMultiply newSubFormula = new ASTMultiply(createConstantNode("X", 9), createConstantNode("Y", 10));
+      // (2) unchanged operands -> same instance
+      assertTrue(astMultiply.withOperands(constantNode1, subFormula) == astMultiply);
       
-      try {
-         PrivateAccessor.setField(cloned, "rightElement", newSubFormula);
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      
-      assertTrue(cloned.evaluate() == 90);
-      assertTrue(astMultiply.evaluate() == 1);
+      // (3) changed operand -> new instance sharing the unchanged subtree
+      ASTMultiply changed = astMultiply.withOperands(constantNode3, subFormula);
+      assertTrue(changed != astMultiply);
+      assertTrue(changed.getLeftElement() == constantNode3);
+      assertTrue(changed.getRightElement() == subFormula);
+      assertTrue(astMultiply.getLeftElement() == constantNode1);
    }
    
    /**
     * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.ASTMultiply#iterator()}.
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTMultiply#accept(ASTVisitor)}.
     */
-   public void testIterator() {
+   public void testAccept() {
       ConstantNode constantNode1 = createConstantNode("A", 1);
       ConstantNode constantNode2 = createConstantNode("B", 1);
       ConstantNode constantNode3 = createConstantNode("C", 1);
@@ -186,61 +175,24 @@ public class ASTMultiplyTestCase extends TestCase {
       ASTPlus subFormula = new ASTPlus(constantNode1, constantNode2);
       astMultiply = new ASTMultiply(subFormula, constantNode3);
       
-      // (1) first iterator
-      Iterator<ASTElement> iterator = astMultiply.iterator();
-      
-      assertTrue(iterator.hasNext());
-      ASTElement nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTMultiply);
-      assertTrue(nextElement != astMultiply);  // clone!
-      
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTPlus);
-      assertTrue(nextElement != subFormula);  // clone!
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode1);
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode2);
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode3);
-      
       try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
+         astMultiply.accept(null);
+         fail();
+      } catch (IllegalArgumentException e) {
          // do nothing
       }
       
-      // (2) second iterator
-      iterator = astMultiply.iterator();
+      // the very same instances are visited in preorder (no clones!)
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      astMultiply.accept(recorder);
       
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTMultiply);
-      assertTrue(nextElement != astMultiply);  // clone!
-      
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTPlus);
-      assertTrue(nextElement != subFormula);  // clone!
-      
-      assertTrue(iterator.hasNext());
+      assertEquals(5, recorder.getVisitedElements().size());
+      Iterator<ASTElement> iterator = recorder.getVisitedElements().iterator();
+      assertTrue(iterator.next() == astMultiply);
+      assertTrue(iterator.next() == subFormula);
       assertTrue(iterator.next() == constantNode1);
-      
-      assertTrue(iterator.hasNext());
       assertTrue(iterator.next() == constantNode2);
-      
-      assertTrue(iterator.hasNext());
       assertTrue(iterator.next() == constantNode3);
-      
-      try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
-         // do nothing
-      }
    }
    
    /**
@@ -0,0 +1,241 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTOptimizer}.
+ * 
+ * @version 1.0
+ */
+public class ASTOptimizerTestCase extends TestCase {
+   
+   private Model model;
+   private LevelNode levelNode;
+   private AuxiliaryNode auxiliaryNode;
+   private ConstantNode constantNode0;
+   private ConstantNode constantNode1;
+   private ConstantNode constantNode2;
+   private ConstantNode constantNode3;
+   
+   private ASTOptimizer optimizer;
+   
+   public static Test suite() {  
+      return new TestSuite(ASTOptimizerTestCase.class);
+   }
+   
+   @Override
+   protected void setUp() {
+      model = new Model();
+      levelNode = model.createLevelNode("Level node", 5);
+      auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      constantNode0 = model.createConstantNode("Constant node 0", 0);
+      constantNode1 = model.createConstantNode("Constant node 1", 1);
+      constantNode2 = model.createConstantNode("Constant node 2", 2);
+      constantNode3 = model.createConstantNode("Constant node 3", 3);
+      
+      optimizer = new ASTOptimizer();
+   }
+   
+   @Override
+   protected void tearDown() {
+      model = null;
+      levelNode = null;
+      auxiliaryNode = null;
+      constantNode0 = null;
+      constantNode1 = null;
+      constantNode2 = null;
+      constantNode3 = null;
+      optimizer = null;
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTOptimizer#optimize(ASTElement)} for constant
+    * folding.
+    */
+   public void testOptimize1() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         optimizer.optimize(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'formula' must not be null.", e.getMessage());
+      }
+      
+      // (2) constant node -> literal
+      assertLiteral(2, optimizer.optimize(constantNode2));
+      
+      // (3) operations with constant operands only -> literal
+      assertLiteral(5, optimizer.optimize(new ASTPlus(constantNode2, constantNode3)));
+      assertLiteral(-1, optimizer.optimize(new ASTMinus(constantNode2, constantNode3)));
+      assertLiteral(1.5, optimizer.optimize(new ASTDivide(constantNode3, constantNode2)));
+      assertLiteral(2, optimizer.optimize(new ASTMin(constantNode2, constantNode3)));
+      assertLiteral(3, optimizer.optimize(new ASTMax(constantNode2, constantNode3)));
+      assertLiteral(12, optimizer.optimize(new ASTMultiply(new ASTPlus(constantNode1, constantNode3),
+                                                           constantNode3)));
+      
+      // (4) constant subtree of a formula is folded
+      ASTElement optimizedFormula =
+         optimizer.optimize(new ASTPlus(levelNode, new ASTMultiply(constantNode2, constantNode3)));
+      assertTrue(optimizedFormula instanceof ASTPlus);
+      assertTrue(((ASTPlus)optimizedFormula).getLeftElement() == levelNode);
+      assertLiteral(6, ((ASTPlus)optimizedFormula).getRightElement());
+      
+      // (5) roundings are not folded
+      optimizedFormula = optimizer.optimize(new ASTRound(constantNode3, constantNode1));
+      assertTrue(optimizedFormula instanceof ASTRound);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTOptimizer#optimize(ASTElement)} for the
+    * simplification of identities.
+    */
+   public void testOptimize2() {
+      assertTrue(optimizer.optimize(new ASTPlus(levelNode, constantNode0)) == levelNode);
+      assertTrue(optimizer.optimize(new ASTPlus(constantNode0, levelNode)) == levelNode);
+      assertTrue(optimizer.optimize(new ASTMinus(levelNode, constantNode0)) == levelNode);
+      assertTrue(optimizer.optimize(new ASTMultiply(levelNode, constantNode1)) == levelNode);
+      assertTrue(optimizer.optimize(new ASTMultiply(constantNode1, levelNode)) == levelNode);
+      assertTrue(optimizer.optimize(new ASTDivide(levelNode, constantNode1)) == levelNode);
+      
+      // x * 0 -> 0 only if inexact rewrites are allowed (NaN * 0 is NaN)
+      assertTrue(optimizer.optimize(new ASTMultiply(levelNode, constantNode0)) instanceof ASTMultiply);
+      assertTrue(optimizer.optimize(new ASTMultiply(constantNode0, auxiliaryNode)) instanceof ASTMultiply);
+      ASTOptimizer inexactOptimizer = new ASTOptimizer(true);
+      assertLiteral(0, inexactOptimizer.optimize(new ASTMultiply(levelNode, constantNode0)));
+      assertLiteral(0, inexactOptimizer.optimize(new ASTMultiply(constantNode0, auxiliaryNode)));
+      
+      // MIN/MAX of structurally identical operands
+      assertTrue(optimizer.optimize(new ASTMin(levelNode, levelNode)) == levelNode);
+      ASTElement optimizedFormula =
+         optimizer.optimize(new ASTMax(new ASTPlus(levelNode, auxiliaryNode),
+                                       new ASTPlus(levelNode, auxiliaryNode)));
+      assertTrue(optimizedFormula instanceof ASTPlus);
+      
+      // no identity -> formula itself is returned (no copy)
+      ASTElement formula = new ASTMin(levelNode, new ASTPlus(levelNode, auxiliaryNode));
+      assertTrue(optimizer.optimize(formula) == formula);
+      formula = new ASTMinus(constantNode0, levelNode);
+      assertTrue(optimizer.optimize(formula) != formula);
+      assertTrue(optimizer.optimize(formula) instanceof ASTMinus);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTOptimizer#optimize(ASTElement)} for the
+    * normalisation of subtraction and division chains.
+    */
+   public void testOptimize3() {
+      // (1) not reassociated by default (different bits)
+      ASTElement innerFormula = new ASTMinus(levelNode, auxiliaryNode);
+      ASTElement optimizedFormula = optimizer.optimize(new ASTMinus(innerFormula, constantNode2));
+      assertTrue(optimizedFormula instanceof ASTMinus);
+      assertTrue(((ASTMinus)optimizedFormula).getLeftElement() == innerFormula);
+      optimizedFormula =
+         optimizer.optimize(new ASTDivide(new ASTDivide(levelNode, constantNode2), constantNode3));
+      assertTrue(((ASTDivide)optimizedFormula).getLeftElement() instanceof ASTDivide);
+      
+      ASTOptimizer optimizer = new ASTOptimizer(true);
+      
+      // (2) (LN - 1) - 2 -> LN - 3
+      optimizedFormula =
+         optimizer.optimize(new ASTMinus(new ASTMinus(levelNode, constantNode1), constantNode2));
+      assertTrue(optimizedFormula instanceof ASTMinus);
+      assertTrue(((ASTMinus)optimizedFormula).getLeftElement() == levelNode);
+      assertLiteral(3, ((ASTMinus)optimizedFormula).getRightElement());
+      assertTrue(optimizedFormula.evaluate() == 2);
+      
+      // (3) (LN / 2) / 3 -> LN / 6
+      innerFormula = new ASTPlus(levelNode, auxiliaryNode);
+      optimizedFormula =
+         optimizer.optimize(new ASTDivide(new ASTDivide(innerFormula, constantNode2), constantNode3));
+      assertTrue(optimizedFormula instanceof ASTDivide);
+      assertTrue(((ASTDivide)optimizedFormula).getLeftElement() == innerFormula);  // shared!
+      assertLiteral(6, ((ASTDivide)optimizedFormula).getRightElement());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTOptimizer#optimize(ASTElement)} for sums and
+    * products.
+    */
+   public void testOptimize4() {
+      // (1) constant sums and products -> literal
+      assertLiteral(6, optimizer.optimize(new ASTSum(new ASTElement[] { constantNode1, constantNode2,
+                                                                        constantNode3 })));
+      assertLiteral(6, optimizer.optimize(new ASTProduct(new ASTElement[] { constantNode1, constantNode2,
+                                                                            constantNode3 })));
+      
+      // (2) 2 + 3 + LN + AN -> 5 + LN + AN (only leading literals are folded)
+      ASTElement optimizedFormula =
+         optimizer.optimize(new ASTSum(new ASTElement[] { constantNode2, constantNode3, levelNode,
+                                                          auxiliaryNode }));
+      assertTrue(optimizedFormula instanceof ASTSum);
+      assertEquals(3, ((ASTSum)optimizedFormula).getNumberOfOperands());
+      assertLiteral(5, ((ASTSum)optimizedFormula).getOperand(0));
+      assertTrue(((ASTSum)optimizedFormula).getOperand(1) == levelNode);
+      assertTrue(((ASTSum)optimizedFormula).getOperand(2) == auxiliaryNode);
+      
+      // (3) LN + 0 + AN -> LN + AN
+      optimizedFormula =
+         optimizer.optimize(new ASTSum(new ASTElement[] { levelNode, constantNode0, auxiliaryNode }));
+      assertTrue(optimizedFormula instanceof ASTPlus);
+      assertTrue(((ASTPlus)optimizedFormula).getLeftElement() == levelNode);
+      assertTrue(((ASTPlus)optimizedFormula).getRightElement() == auxiliaryNode);
+      
+      // (4) LN * 1 * AN * 1 -> LN * AN, LN * 0 * AN -> 0 (only if inexact rewrites are allowed)
+      optimizedFormula =
+         optimizer.optimize(new ASTProduct(new ASTElement[] { levelNode, constantNode1, auxiliaryNode,
+                                                              constantNode1 }));
+      assertTrue(optimizedFormula instanceof ASTMultiply);
+      assertTrue(((ASTMultiply)optimizedFormula).getLeftElement() == levelNode);
+      assertTrue(((ASTMultiply)optimizedFormula).getRightElement() == auxiliaryNode);
+      optimizedFormula =
+         optimizer.optimize(new ASTProduct(new ASTElement[] { levelNode, constantNode0, auxiliaryNode }));
+      assertTrue(optimizedFormula instanceof ASTProduct);
+      assertEquals(3, ((ASTProduct)optimizedFormula).getNumberOfOperands());
+      assertLiteral(0, new ASTOptimizer(true).optimize(new ASTProduct(new ASTElement[] { levelNode,
+                                                                                         constantNode0,
+                                                                                         auxiliaryNode })));
+      
+      // (5) nothing to optimize -> same instance
+      ASTElement formula = new ASTSum(new ASTElement[] { levelNode, auxiliaryNode, levelNode });
+      assertTrue(optimizer.optimize(formula) == formula);
+   }
+   
+   /**
+    * Checks that the specified AST element is a literal with the specified value.
+    * 
+    * @param value expected value
+    * @param element AST element
+    */
+   private static void assertLiteral(double value, ASTElement element) {
+      assertTrue(element instanceof ASTLiteral);
+      assertEquals(value, ((ASTLiteral)element).getValue(), 0);
+   }
+}
@@ -22,6 +22,7 @@
 package de.uka.aifb.com.systemDynamics.test;
 
 import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
 import java.util.*;
 import junit.framework.*;
 import junitx.util.PrivateAccessor;
@@ -121,64 +122,52 @@ public class ASTPlusTestCase extends TestCase {
     * {@link de.uka.aifb.com.systemDynamics.model.ASTPlus#clone()}.
     */
    public void testClone() {
-      // (1) construct original ASTPlus instance
       ConstantNode constantNode1 = createConstantNode("A", 1);
       ConstantNode constantNode2 = createConstantNode("B", 1);
       ConstantNode constantNode3 = createConstantNode("C", 1);
       
-      ASTPlus subFormula = new ASTPlus(constantNode2, constantNode3);
-      astPlus = new ASTPlus(constantNode1, subFormula);
-      
-      // (2) check that cloned instance is equivalent
-      ASTPlus cloned = (ASTPlus)astPlus.clone();
-      
-      ConstantNode clonedNode = null;
-      try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(cloned, "leftElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      assertTrue(clonedNode == constantNode1);
+      astPlus = new ASTPlus(constantNode1, new ASTPlus(constantNode2, constantNode3));
       
-      ASTPlus clonedASTPlus = null;
-      try {
-         clonedASTPlus = (ASTPlus)PrivateAccessor.getField(cloned, "rightElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
+      // AST elements are immutable -> no copy
+      assertTrue(astPlus.clone() == astPlus);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTPlus#withOperands(ASTElement, ASTElement)}.
+    */
+   public void testWithOperands() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 2);
+      ConstantNode constantNode3 = createConstantNode("C", 3);
       
-      try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(clonedASTPlus, "leftElement");
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      assertTrue(clonedNode == constantNode2);
+      ASTPlus subFormula = new ASTPlus(constantNode2, constantNode3);
+      astPlus = new ASTPlus(constantNode1, subFormula);
       
+      // (1) 'null' operand -> WRONG
       try {
-         clonedNode = (ConstantNode)PrivateAccessor.getField(clonedASTPlus, "rightElement");
-      } catch (NoSuchFieldException e) {
+         astPlus.withOperands(null, subFormula);
          fail();
+      } catch (IllegalArgumentException e) {
+         // do nothing
       }
-      assertTrue(clonedNode == constantNode3);
       
-      // (3) check that changes on the cloned instance do not influence original instance
-      ASTPlus newSubFormula = new ASTPlus(createConstantNode("X", 9), createConstantNode("Y", 10));
+      // (2) unchanged operands -> same instance
+      assertTrue(astPlus.withOperands(constantNode1, subFormula) == astPlus);
       
-      try {
-         PrivateAccessor.setField(cloned, "rightElement", newSubFormula);
-      } catch (NoSuchFieldException e) {
-         fail();
-      }
-      
-      assertTrue(cloned.evaluate() == 20);
-      assertTrue(astPlus.evaluate() == 3);
+      // (3) changed operand -> new instance sharing the unchanged subtree
+      ASTPlus changed = astPlus.withOperands(constantNode3, subFormula);
+      assertTrue(changed != astPlus);
+      assertTrue(changed.getLeftElement() == constantNode3);
+      assertTrue(changed.getRightElement() == subFormula);
+      assertTrue(astPlus.getLeftElement() == constantNode1);
    }
    
    /**
     * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.ASTPlus#iterator()}.
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTPlus#accept(ASTVisitor)}.
     */
-   public void testIterator() {
+   public void testAccept() {
       ConstantNode constantNode1 = createConstantNode("A", 1);
       ConstantNode constantNode2 = createConstantNode("B", 1);
       ConstantNode constantNode3 = createConstantNode("C", 1);
@@ -186,61 +175,24 @@ public class ASTPlusTestCase extends TestCase {
       ASTPlus subFormula = new ASTPlus(constantNode2, constantNode3);
       astPlus = new ASTPlus(constantNode1, subFormula);
       
-      // (1) first iterator
-      Iterator<ASTElement> iterator = astPlus.iterator();
-      
-      assertTrue(iterator.hasNext());
-      ASTElement nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTPlus);
-      assertTrue(nextElement != astPlus);  // clone!
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode1);
-      
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTPlus);
-      assertTrue(nextElement != subFormula);  // clone!
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode2);
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode3);
-      
       try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
+         astPlus.accept(null);
+         fail();
+      } catch (IllegalArgumentException e) {
          // do nothing
       }
       
-      // (2) second iterator
-      iterator = astPlus.iterator();
+      // the very same instances are visited in preorder (no clones!)
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      astPlus.accept(recorder);
       
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTPlus);
-      assertTrue(nextElement != astPlus);  // clone!
-      
-      assertTrue(iterator.hasNext());
+      assertEquals(5, recorder.getVisitedElements().size());
+      Iterator<ASTElement> iterator = recorder.getVisitedElements().iterator();
+      assertTrue(iterator.next() == astPlus);
       assertTrue(iterator.next() == constantNode1);
-      
-      assertTrue(iterator.hasNext());
-      nextElement = iterator.next();
-      assertTrue(nextElement instanceof ASTPlus);
-      assertTrue(nextElement != subFormula);  // clone!
-      
-      assertTrue(iterator.hasNext());
+      assertTrue(iterator.next() == subFormula);
       assertTrue(iterator.next() == constantNode2);
-      
-      assertTrue(iterator.hasNext());
       assertTrue(iterator.next() == constantNode3);
-      
-      try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
-         // do nothing
-      }
    }
    
    /**
@@ -0,0 +1,155 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
+import static de.uka.aifb.com.systemDynamics.test.mocks.ConstantNodeFactory.createConstantNode;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTProduct}.
+ *
+ * @version 1.0
+ */
+public class ASTProductTestCase extends TestCase {
+   
+   private ASTProduct astProduct;
+   
+   public static Test suite() {
+      return new TestSuite(ASTProductTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor.
+    */
+   public void testASTProduct() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 2);
+      
+      // (1) null as factors -> WRONG
+      try {
+         new ASTProduct(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'factors' must not be null.", e.getMessage());
+      }
+      
+      // (2) only one factor -> WRONG
+      try {
+         new ASTProduct(new ASTElement[] { constantNode1 });
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'factors' must contain at least two factors.", e.getMessage());
+      }
+      
+      // (3) null as factor -> WRONG
+      try {
+         new ASTProduct(new ASTElement[] { constantNode1, constantNode2, null });
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'factors' must not contain null.", e.getMessage());
+      }
+      
+      // (4) correct parameters
+      new ASTProduct(new ASTElement[] { constantNode1, constantNode2, constantNode1 });
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTProduct#createProduct(List)}.
+    */
+   public void testCreateProduct() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 2);
+      ConstantNode constantNode3 = createConstantNode("C", 3);
+      
+      // (1) one factor -> factor itself
+      assertTrue(ASTProduct.createProduct(Arrays.asList(new ASTElement[] { constantNode1 }))
+                 == constantNode1);
+      
+      // (2) two factors -> multiplication
+      ASTElement product =
+         ASTProduct.createProduct(Arrays.asList(new ASTElement[] { constantNode1, constantNode2 }));
+      assertTrue(product instanceof ASTMultiply);
+      
+      // (3) multiplication as first factor -> flattened
+      product = ASTProduct.createProduct(Arrays.asList(new ASTElement[] { product, constantNode3 }));
+      assertTrue(product instanceof ASTProduct);
+      assertEquals(3, ((ASTProduct)product).getNumberOfOperands());
+      assertTrue(((ASTProduct)product).getOperand(0) == constantNode1);
+      assertTrue(((ASTProduct)product).getOperand(1) == constantNode2);
+      assertTrue(((ASTProduct)product).getOperand(2) == constantNode3);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTProduct#evaluate()}.
+    */
+   public void testEvaluate() {
+      astProduct = new ASTProduct(new ASTElement[] { createConstantNode("A", 2), createConstantNode("B", 3),
+                                                     createConstantNode("C", 4) });
+      assertTrue(astProduct.evaluate() == 24);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTProduct#getStringRepresentation()}.
+    */
+   public void testGetStringRepresentation() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 1);
+      ConstantNode constantNode3 = createConstantNode("C", 1);
+      
+      astProduct = new ASTProduct(new ASTElement[] { constantNode1, constantNode2, constantNode3 });
+      assertEquals("A(CN) * B(CN) * C(CN)", astProduct.getStringRepresentation());
+      
+      astProduct = new ASTProduct(new ASTElement[] { new ASTPlus(constantNode1, constantNode2), constantNode3,
+                                                     new ASTMultiply(constantNode2, constantNode3) });
+      assertEquals("(A(CN) + B(CN)) * C(CN) * (B(CN) * C(CN))", astProduct.getStringRepresentation());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTProduct#accept(ASTVisitor)}.
+    */
+   public void testAccept() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 1);
+      ConstantNode constantNode3 = createConstantNode("C", 1);
+      
+      astProduct = new ASTProduct(new ASTElement[] { constantNode1, constantNode2, constantNode3 });
+      
+      // the factors are visited from left to right
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      astProduct.accept(recorder);
+      
+      assertEquals(4, recorder.getVisitedElements().size());
+      Iterator<ASTElement> iterator = recorder.getVisitedElements().iterator();
+      assertTrue(iterator.next() == astProduct);
+      assertTrue(iterator.next() == constantNode1);
+      assertTrue(iterator.next() == constantNode2);
+      assertTrue(iterator.next() == constantNode3);
+   }
+}
@@ -0,0 +1,95 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTRound}.
+ *
+ * @version 1.0
+ */
+public class ASTRoundTestCase extends TestCase {
+   
+   private Locale defaultFormatLocale;
+   private Locale defaultDisplayLocale;
+   
+   public static Test suite() {
+      return new TestSuite(ASTRoundTestCase.class);
+   }
+   
+   @Override
+   protected void setUp() {
+      defaultFormatLocale = Locale.getDefault(Locale.Category.FORMAT);
+      defaultDisplayLocale = Locale.getDefault(Locale.Category.DISPLAY);
+   }
+   
+   @Override
+   protected void tearDown() {
+      Locale.setDefault(Locale.Category.FORMAT, defaultFormatLocale);
+      Locale.setDefault(Locale.Category.DISPLAY, defaultDisplayLocale);
+      defaultFormatLocale = null;
+      defaultDisplayLocale = null;
+   }
+   
+   /**
+    * Tests the constructor.
+    */
+   public void testASTRound() {
+      // (1) null as left element -> WRONG
+      try {
+         new ASTRound(null, new ASTLiteral(2));
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'firstFactor' must not be null.", e.getMessage());
+      }
+      
+      // (2) null as right element -> WRONG
+      try {
+         new ASTRound(new ASTLiteral(3.14159), null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'secondFactor' must not be null.", e.getMessage());
+      }
+      
+      // (3) correct parameters
+      new ASTRound(new ASTLiteral(3.14159), new ASTLiteral(2));
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTRound#evaluate()} with different default
+    * format locales.
+    */
+   public void testEvaluate() {
+      Locale[] locales = { Locale.US, Locale.GERMANY, Locale.FRANCE, new Locale("de", "CH") };
+      for (Locale locale : locales) {
+         Locale.setDefault(Locale.Category.FORMAT, locale);
+         assertTrue(new ASTRound(new ASTLiteral(3.1234), new ASTLiteral(2)).evaluate() == 3.12);
+         assertTrue(new ASTRound(new ASTLiteral(-2.5), new ASTLiteral(0)).evaluate() == -2);
+         assertTrue(new ASTRound(new ASTLiteral(12345.678), new ASTLiteral(1)).evaluate() == 12345.7);
+      }
+   }
+}
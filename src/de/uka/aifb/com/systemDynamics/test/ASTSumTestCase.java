@@ -0,0 +1,213 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
+import static de.uka.aifb.com.systemDynamics.test.mocks.ConstantNodeFactory.createConstantNode;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.ASTSum}.
+ *
+ * @version 1.0
+ */
+public class ASTSumTestCase extends TestCase {
+   
+   private ASTSum astSum;
+   
+   public static Test suite() {
+      return new TestSuite(ASTSumTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor.
+    */
+   public void testASTSum() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 2);
+      
+      // (1) null as summands -> WRONG
+      try {
+         new ASTSum(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'summands' must not be null.", e.getMessage());
+      }
+      
+      // (2) only one summand -> WRONG
+      try {
+         new ASTSum(new ASTElement[] { constantNode1 });
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'summands' must contain at least two summands.", e.getMessage());
+      }
+      
+      // (3) null as summand -> WRONG
+      try {
+         new ASTSum(new ASTElement[] { constantNode1, null, constantNode2 });
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'summands' must not contain null.", e.getMessage());
+      }
+      
+      // (4) correct parameters, the array is copied
+      ASTElement[] summands = new ASTElement[] { constantNode1, constantNode2, constantNode1 };
+      astSum = new ASTSum(summands);
+      summands[0] = constantNode2;
+      assertTrue(astSum.getOperand(0) == constantNode1);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTSum#createSum(List)}.
+    */
+   public void testCreateSum() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 2);
+      ConstantNode constantNode3 = createConstantNode("C", 3);
+      ConstantNode constantNode4 = createConstantNode("D", 4);
+      
+      // (1) one summand -> summand itself
+      assertTrue(ASTSum.createSum(Arrays.asList(new ASTElement[] { constantNode1 })) == constantNode1);
+      
+      // (2) two summands -> addition
+      ASTElement sum = ASTSum.createSum(Arrays.asList(new ASTElement[] { constantNode1, constantNode2 }));
+      assertTrue(sum instanceof ASTPlus);
+      
+      // (3) addition as first summand -> flattened
+      sum = ASTSum.createSum(Arrays.asList(new ASTElement[] { sum, constantNode3 }));
+      assertTrue(sum instanceof ASTSum);
+      assertEquals(3, ((ASTSum)sum).getNumberOfOperands());
+      assertTrue(((ASTSum)sum).getOperand(0) == constantNode1);
+      assertTrue(((ASTSum)sum).getOperand(1) == constantNode2);
+      assertTrue(((ASTSum)sum).getOperand(2) == constantNode3);
+      
+      // (4) sum as first summand -> flattened
+      sum = ASTSum.createSum(Arrays.asList(new ASTElement[] { sum, constantNode4 }));
+      assertEquals(4, ((ASTSum)sum).getNumberOfOperands());
+      assertTrue(((ASTSum)sum).getOperand(3) == constantNode4);
+      
+      // (5) addition as later summand -> not flattened
+      ASTPlus subFormula = new ASTPlus(constantNode2, constantNode3);
+      sum = ASTSum.createSum(Arrays.asList(new ASTElement[] { constantNode1, subFormula, constantNode4 }));
+      assertEquals(3, ((ASTSum)sum).getNumberOfOperands());
+      assertTrue(((ASTSum)sum).getOperand(1) == subFormula);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTSum#evaluate()}.
+    */
+   public void testEvaluate() {
+      astSum = new ASTSum(new ASTElement[] { createConstantNode("A", 1), createConstantNode("B", 2),
+                                             createConstantNode("C", 3), createConstantNode("D", 4) });
+      assertTrue(astSum.evaluate() == 10);
+      
+      // summands are added from left to right, like the equivalent chain of additions
+      ConstantNode constantNode1 = createConstantNode("E", 0.1);
+      ConstantNode constantNode2 = createConstantNode("F", 0.2);
+      ConstantNode constantNode3 = createConstantNode("G", 0.3);
+      astSum = new ASTSum(new ASTElement[] { constantNode1, constantNode2, constantNode3 });
+      ASTElement chain = new ASTPlus(new ASTPlus(constantNode1, constantNode2), constantNode3);
+      assertTrue(astSum.evaluate() == chain.evaluate());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTSum#getStringRepresentation()}.
+    */
+   public void testGetStringRepresentation() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 1);
+      ConstantNode constantNode3 = createConstantNode("C", 1);
+      ConstantNode constantNode4 = createConstantNode("D", 1);
+      
+      astSum = new ASTSum(new ASTElement[] { constantNode1, constantNode2, constantNode3 });
+      assertEquals("A(CN) + B(CN) + C(CN)", astSum.getStringRepresentation());
+      
+      astSum = new ASTSum(new ASTElement[] { new ASTMinus(constantNode1, constantNode2), constantNode3,
+                                             new ASTPlus(constantNode3, constantNode4) });
+      assertEquals("A(CN) - B(CN) + C(CN) + (C(CN) + D(CN))", astSum.getStringRepresentation());
+      
+      astSum = new ASTSum(new ASTElement[] { constantNode1, new ASTMultiply(constantNode2, constantNode3),
+                                             new ASTMinus(constantNode3, constantNode4) });
+      assertEquals("A(CN) + B(CN) * C(CN) + (C(CN) - D(CN))", astSum.getStringRepresentation());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTSum#withOperands(ASTElement[])}.
+    */
+   public void testWithOperands() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 2);
+      ConstantNode constantNode3 = createConstantNode("C", 3);
+      
+      astSum = new ASTSum(new ASTElement[] { constantNode1, constantNode2, constantNode3 });
+      
+      // (1) unchanged operands -> same instance
+      assertTrue(astSum.withOperands(new ASTElement[] { constantNode1, constantNode2, constantNode3 })
+                 == astSum);
+      
+      // (2) changed operand -> new instance
+      ASTSum changed = astSum.withOperands(new ASTElement[] { constantNode3, constantNode2, constantNode3 });
+      assertTrue(changed != astSum);
+      assertTrue(changed.getOperand(0) == constantNode3);
+      assertTrue(astSum.getOperand(0) == constantNode1);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ASTSum#accept(ASTVisitor)}.
+    */
+   public void testAccept() {
+      ConstantNode constantNode1 = createConstantNode("A", 1);
+      ConstantNode constantNode2 = createConstantNode("B", 1);
+      ConstantNode constantNode3 = createConstantNode("C", 1);
+      
+      ASTMultiply subFormula = new ASTMultiply(constantNode2, constantNode3);
+      astSum = new ASTSum(new ASTElement[] { constantNode1, subFormula, constantNode3 });
+      
+      try {
+         astSum.accept(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         // do nothing
+      }
+      
+      // the summands are visited from left to right
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      astSum.accept(recorder);
+      
+      assertEquals(6, recorder.getVisitedElements().size());
+      Iterator<ASTElement> iterator = recorder.getVisitedElements().iterator();
+      assertTrue(iterator.next() == astSum);
+      assertTrue(iterator.next() == constantNode1);
+      assertTrue(iterator.next() == subFormula);
+      assertTrue(iterator.next() == constantNode2);
+      assertTrue(iterator.next() == constantNode3);
+      assertTrue(iterator.next() == constantNode3);
+   }
+}
@@ -22,6 +22,7 @@
 package de.uka.aifb.com.systemDynamics.test;
 
 import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
 import java.util.*;
 import junit.framework.*;
 import junitx.util.PrivateAccessor;
@@ -78,7 +79,6 @@ protected void tearDown() throws Exception {
    public void testFormula() {
       LevelNode levelNode1 = createLevelNode("Level node 1", 0);
       LevelNode levelNode2 = createLevelNode("Level node 2", 0);
-      LevelNode levelNode3 = createLevelNode("Level node 3", 0);
       
       // (1) no formula at beginning
       assertFalse(auxiliaryNode.hasFormula());
@@ -94,60 +94,17 @@ protected void tearDown() throws Exception {
       }
       assertTrue(auxiliaryNode.hasFormula());
       
-      // ... check that clone is stored...
-      subFormula = new ASTPlus(levelNode3, levelNode3);
-      ASTPlus internFormula = null;
-      try {
-         internFormula = (ASTPlus)PrivateAccessor.getField(auxiliaryNode, "formula");
-      } catch (Throwable t) {
-         fail();
-      }
-      ASTPlus subFormulaInInternFormula = null;
-      try {
-         subFormulaInInternFormula =
-            (ASTPlus)PrivateAccessor.getField(internFormula, "rightElement");
-      } catch (Throwable t) {
-         fail();
-      }
-      LevelNode nodeInInternFormula = null;
-      try {
-         nodeInInternFormula =
-            (LevelNode)PrivateAccessor.getField(subFormulaInInternFormula, "leftElement");
-      } catch (Throwable t) {
-         fail();
-      }
-      assertTrue(nodeInInternFormula == levelNode2);
-      
-      // ... and another clone is returned
-      ASTPlus returnedFormula = (ASTPlus)auxiliaryNode.getFormula();
-      ASTPlus newSubFormula = new ASTPlus(levelNode3, levelNode3);
-      try {
-         PrivateAccessor.setField(returnedFormula, "rightElement", newSubFormula);
-      } catch (Throwable t) {
-         fail();
-      }
-      internFormula = null;
-      try {
-         internFormula = (ASTPlus)PrivateAccessor.getField(auxiliaryNode, "formula");
-      } catch (Throwable t) {
-         fail();
-      }
-      subFormulaInInternFormula = null;
-      try {
-         subFormulaInInternFormula =
-            (ASTPlus)PrivateAccessor.getField(internFormula, "rightElement");
-      } catch (Throwable t) {
-         fail();
-      }
-      nodeInInternFormula = null;
+      // ... check that the very same (immutable) formula is stored...
+      Object internFormula = null;
       try {
-         nodeInInternFormula =
-            (LevelNode)PrivateAccessor.getField(subFormulaInInternFormula, "leftElement");
+         internFormula = PrivateAccessor.getField(auxiliaryNode, "formula");
       } catch (Throwable t) {
          fail();
       }
-      assertTrue(nodeInInternFormula == levelNode2);
+      assertTrue(internFormula == firstFormula);
       
+      // ... and returned
+      assertTrue(auxiliaryNode.getFormula() == firstFormula);
       
       // (3) set second formula
       try {
@@ -333,32 +290,21 @@ protected void tearDown() throws Exception {
    
    /**
     * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.AuxiliaryNode#iterator()}.
+    * {@link de.uka.aifb.com.systemDynamics.model.AuxiliaryNode#accept(ASTVisitor)}.
     */
-   public void testIterator() {
-      // (1) first iterator
-      Iterator<ASTElement> iterator = auxiliaryNode.iterator();
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == auxiliaryNode);
-      assertFalse(iterator.hasNext());
+   public void testAccept() {
       try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
+         auxiliaryNode.accept(null);
+         fail();
+      } catch (IllegalArgumentException e) {
          // do nothing
       }
       
-      // (2) second iterator
-      iterator = auxiliaryNode.iterator();
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      auxiliaryNode.accept(recorder);
       
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == auxiliaryNode);
-      assertFalse(iterator.hasNext());
-      try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
-         // do nothing
-      }
+      assertEquals(1, recorder.getVisitedElements().size());
+      assertTrue(recorder.getVisitedElements().get(0) == auxiliaryNode);
    }
    
    /**
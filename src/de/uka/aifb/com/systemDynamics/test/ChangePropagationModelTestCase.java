@@ -0,0 +1,191 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.ChangePropagationModel}.
+ *
+ * @version 1.0
+ */
+public class ChangePropagationModelTestCase extends TestCase {
+   
+   private static final int NUMBER_ROUNDS = 20;
+   
+   public static Test suite() {
+      return new TestSuite(ChangePropagationModelTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.ChangePropagationModel#ChangePropagationModel(Model, double)}.
+    */
+   public void testChangePropagationModel() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         new ChangePropagationModel(null, 0);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'model' must not be null.", e.getMessage());
+      }
+      
+      // (2) model still changeable -> WRONG
+      Model model = new Model();
+      model.createLevelNode("Level node", 0);
+      try {
+         new ChangePropagationModel(model, 0);
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+      
+      // (3) negative epsilon -> WRONG
+      try {
+         new ChangePropagationModel(createModel(), -1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'epsilon' must not be negative.", e.getMessage());
+      }
+      
+      // (4) correct parameters -> nothing evaluated yet
+      ChangePropagationModel changePropagationModel = new ChangePropagationModel(createModel());
+      assertEquals(0, changePropagationModel.getNumberOfEvaluations());
+      assertEquals(0, changePropagationModel.getNumberOfSkippedEvaluations());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ChangePropagationModel#computeNextValues()}.
+    */
+   public void testComputeNextValues1() {
+      // exact change detection -> same values as the interpreter, quiescent nodes skipped
+      Model interpretedModel = createModel();
+      Model model = createModel();
+      ChangePropagationModel changePropagationModel = new ChangePropagationModel(model);
+      
+      String[] nodeNames = { "Staff", "Open positions", "Hiring", "Population", "Births" };
+      for (int round = 0; round < NUMBER_ROUNDS; round++) {
+         interpretedModel.computeNextValues();
+         changePropagationModel.computeNextValues();
+         for (String nodeName : nodeNames) {
+            assertEquals(nodeName + " (round " + (round + 1) + ")",
+                         Double.doubleToLongBits(interpretedModel.getCurrentValue(getNode(interpretedModel, nodeName))),
+                         Double.doubleToLongBits(changePropagationModel.getCurrentValue(getNode(model, nodeName))));
+         }
+      }
+      assertTrue(model.getCurrentValue(getNode(model, "Staff")) == 10);
+      
+      // staff pool reaches its target in round 4: afterwards, the staff level node is skipped and
+      // (from round 6 on) the open positions and the hiring, too
+      assertEquals(46, changePropagationModel.getNumberOfSkippedEvaluations());
+      assertEquals(5 * NUMBER_ROUNDS - 46, changePropagationModel.getNumberOfEvaluations());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ChangePropagationModel#computeNextValues()}.
+    */
+   public void testComputeNextValues2() {
+      // change detection with tolerance -> more evaluations skipped, births lag behind population
+      Model interpretedModel = createModel();
+      Model exactModel = createModel();
+      Model model = createModel();
+      ChangePropagationModel exactChangePropagationModel = new ChangePropagationModel(exactModel);
+      ChangePropagationModel changePropagationModel = new ChangePropagationModel(model, 0.5);
+      
+      for (int round = 0; round < NUMBER_ROUNDS; round++) {
+         interpretedModel.computeNextValues();
+         exactChangePropagationModel.computeNextValues();
+         changePropagationModel.computeNextValues();
+      }
+      assertTrue(changePropagationModel.getNumberOfSkippedEvaluations()
+                 > exactChangePropagationModel.getNumberOfSkippedEvaluations());
+      assertTrue(model.getCurrentValue(getNode(model, "Staff")) == 10);
+      double population = model.getCurrentValue(getNode(model, "Population"));
+      assertTrue(population < interpretedModel.getCurrentValue(getNode(interpretedModel, "Population")));
+      assertTrue(population >= 1 + 0.1 * NUMBER_ROUNDS);
+   }
+   
+   /**
+    * Creates a model with a staff pool reaching its target (subsystem with a fixed point) and an
+    * exponentially growing population:
+    * <p>
+    * Open positions = Target - Staff, Hiring = MIN(Maximum hiring, Open positions),
+    * Births = Population * Birth rate
+    * 
+    * @return created unchangeable model
+    */
+   private static Model createModel() {
+      Model model = new Model();
+      LevelNode staff = model.createLevelNode("Staff", 0);
+      LevelNode population = model.createLevelNode("Population", 1);
+      RateNode hiring = model.createRateNode("Hiring");
+      RateNode births = model.createRateNode("Births");
+      AuxiliaryNode openPositions = model.createAuxiliaryNode("Open positions");
+      ConstantNode target = model.createConstantNode("Target", 10);
+      ConstantNode maximumHiring = model.createConstantNode("Maximum hiring", 3);
+      ConstantNode birthRate = model.createConstantNode("Birth rate", 0.1);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, hiring);
+      model.addFlowFromRateNode2LevelNode(hiring, staff);
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, births);
+      model.addFlowFromRateNode2LevelNode(births, population);
+      model.setFormula(openPositions, new ASTMinus(target, staff));
+      model.setFormula(hiring, new ASTMin(maximumHiring, openPositions));
+      model.setFormula(births, new ASTMultiply(population, birthRate));
+      
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      return model;
+   }
+   
+   /**
+    * Gets the level, rate, auxiliary or constant node with the specified name.
+    * 
+    * @param model model
+    * @param nodeName node name
+    * @return node
+    */
+   private static AbstractNode getNode(Model model, String nodeName) {
+      HashSet<AbstractNode> nodes = new HashSet<AbstractNode>();
+      nodes.addAll(model.getLevelNodes());
+      nodes.addAll(model.getRateNodes());
+      nodes.addAll(model.getAuxiliaryNodes());
+      nodes.addAll(model.getConstantNodes());
+      for (AbstractNode node : nodes) {
+         if (node.getNodeName().equals(nodeName)) {
+            return node;
+         }
+      }
+      fail();
+      return null;
+   }
+}
@@ -0,0 +1,590 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.xml.*;
+import java.io.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel}.
+ * 
+ * @version 1.0
+ */
+public class CompiledModelTestCase extends TestCase {
+   
+   private static final int NUMBER_ROUNDS = 200;
+   private static final int WARM_UP_ROUNDS = 10;
+   
+   /** Phase and SponsorDemoSim models bundled in the project directory */
+   private static final String[] BUNDLED_MODEL_FILE_NAMES = { "./Phase-2.xml", "./Phase-3.xml",
+                                                              "./Phase-4.xml", "./Phase-5.xml",
+                                                              "./SponsorDemoSim.xml" };
+   
+   public static Test suite() {  
+      return new TestSuite(CompiledModelTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#CompiledModel(Model)}.
+    */
+   public void testCompiledModel() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         new CompiledModel(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'model' must not be null.", e.getMessage());
+      }
+      
+      // (2) model still changeable -> WRONG
+      Model model = new Model();
+      model.createLevelNode("Level node", 0);
+      try {
+         new CompiledModel(model);
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#CompiledModel(Model, int)}.
+    */
+   public void testCompiledModel2() {
+      Model model = createModel(false);
+      
+      // (1) negative number of warm-up rounds -> WRONG
+      try {
+         new CompiledModel(model, -1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'warmUpRounds' must be at least 0.", e.getMessage());
+      }
+      
+      // (2) bytecode tier is switched on after the warm-up rounds -> CORRECT
+      CompiledModel compiledModel = new CompiledModel(model, 2);
+      assertFalse(compiledModel.isBytecodeTierActive());
+      compiledModel.computeNextValues();
+      compiledModel.computeNextValues();
+      assertFalse(compiledModel.isBytecodeTierActive());
+      compiledModel.computeNextValues();
+      assertTrue(compiledModel.isBytecodeTierActive());
+      
+      // (3) no bytecode tier without warm-up rounds -> CORRECT
+      compiledModel = new CompiledModel(model);
+      for (int i = 0; i < 10; i++) {
+         compiledModel.computeNextValues();
+      }
+      assertFalse(compiledModel.isBytecodeTierActive());
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#CompiledModel(Model, SimulationSpecification)}.
+    */
+   public void testCompiledModel3() {
+      Model model = createModel(false);
+      
+      // (1) parameter 'null' -> WRONG
+      try {
+         new CompiledModel(model, (SimulationSpecification)null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'simulationSpecification' must not be null.", e.getMessage());
+      }
+      
+      // (2) adaptive or implicit integration method -> WRONG
+      IntegrationMethod[] integrationMethods = { IntegrationMethod.DORMAND_PRINCE,
+                                                 IntegrationMethod.BACKWARD_EULER,
+                                                 IntegrationMethod.BDF2 };
+      for (IntegrationMethod integrationMethod : integrationMethods) {
+         SimulationSpecification simulationSpecification = new SimulationSpecification(0.5, integrationMethod);
+         assertFalse(CompiledModel.isSupported(simulationSpecification));
+         try {
+            new CompiledModel(model, simulationSpecification);
+            fail();
+         } catch (IllegalArgumentException e) {
+            assertEquals("'simulationSpecification' must specify an explicit fixed-step method.", e.getMessage());
+         }
+      }
+      
+      // (3) explicit fixed-step method -> CORRECT
+      SimulationSpecification simulationSpecification = new SimulationSpecification(0.5, IntegrationMethod.HEUN);
+      assertTrue(CompiledModel.isSupported(simulationSpecification));
+      CompiledModel compiledModel = new CompiledModel(model, simulationSpecification);
+      assertSame(simulationSpecification, compiledModel.getSimulationSpecification());
+      assertSame(SimulationSpecification.DEFAULT, new CompiledModel(model).getSimulationSpecification());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#computeNextValues()} with a model
+    * using all kinds of formula elements.
+    */
+   public void testComputeNextValues1() {
+      Model model = createModel(true);
+      assertSameValues(model, new CompiledModel(model), NUMBER_ROUNDS);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#computeNextValues()} with the
+    * models of the test resources, the examples and the bundled Phase and SponsorDemoSim models.
+    */
+   public void testComputeNextValues2() {
+      String[] fileNames = { "./testResources/model.xml",
+                             "./testResources/model_small.xml",
+                             "./testResources/FirstIntegrationSim2.xml",
+                             "./examples/population_dynamic_en_US.xml",
+                             "./examples/bevoelkerungsdynamik_de_DE.xml" };
+      ArrayList<String> allFileNames = new ArrayList<String>(Arrays.asList(fileNames));
+      allFileNames.addAll(Arrays.asList(BUNDLED_MODEL_FILE_NAMES));
+      for (String fileName : allFileNames) {
+         Model model = null;
+         try {
+            model = XMLModelReader.readXMLModel(fileName);
+            model.validateModelAndSetUnchangeable();
+         } catch (Exception e) {
+            fail();
+         }
+         
+         assertSameValues(model, new CompiledModel(model), NUMBER_ROUNDS);
+      }
+   }
+   
+   /**
+    * Tests the bytecode tier of the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#computeNextValues()}.
+    */
+   public void testComputeNextValues3() {
+      // (1) model without rounding -> bytecode tier is used
+      Model model = createModel(false);
+      CompiledModel compiledModel = new CompiledModel(model, WARM_UP_ROUNDS);
+      assertSameValues(model, compiledModel, NUMBER_ROUNDS);
+      assertTrue(compiledModel.isBytecodeTierActive());
+      
+      // (2) model with rounding -> bytecode tier is used, too
+      model = createModel(true);
+      compiledModel = new CompiledModel(model, WARM_UP_ROUNDS);
+      assertSameValues(model, compiledModel, NUMBER_ROUNDS);
+      assertTrue(compiledModel.isBytecodeTierActive());
+   }
+   
+   /**
+    * Tests the bytecode tier of the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#computeNextValues()} with all
+    * valid models in the directories of the test resources and the examples and with the bundled
+    * Phase and SponsorDemoSim models.
+    */
+   public void testComputeNextValues4() {
+      String[] directoryNames = { "./testResources", "./examples" };
+      ArrayList<File> files = new ArrayList<File>();
+      for (String directoryName : directoryNames) {
+         File[] directoryFiles = new File(directoryName).listFiles();
+         assertNotNull(directoryFiles);
+         Arrays.sort(directoryFiles);
+         files.addAll(Arrays.asList(directoryFiles));
+      }
+      for (String fileName : BUNDLED_MODEL_FILE_NAMES) {
+         File file = new File(fileName);
+         assertTrue(fileName, file.isFile());
+         files.add(file);
+      }
+      
+      int numberTestedModels = 0;
+      for (File file : files) {
+         if (!file.getName().endsWith(".xml")) {
+            continue;
+         }
+         
+         Model model;
+         try {
+            model = XMLModelReader.readXMLModel(file.getPath());
+            model.validateModelAndSetUnchangeable();
+         } catch (Exception e) {
+            // invalid model (test resource for reader exceptions) -> skip
+            assertFalse(file.getName(), Arrays.asList(BUNDLED_MODEL_FILE_NAMES).contains(file.getPath()));
+            continue;
+         }
+         
+         CompiledModel compiledModel = new CompiledModel(model, WARM_UP_ROUNDS);
+         assertSameValues(model, compiledModel, NUMBER_ROUNDS);
+         assertTrue(file.getName(), compiledModel.isBytecodeTierActive());
+         numberTestedModels++;
+      }
+      assertTrue(numberTestedModels >= 5 + BUNDLED_MODEL_FILE_NAMES.length);
+   }
+   
+   /**
+    * Tests the common subexpression elimination of the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#computeNextValues()}.
+    */
+   public void testComputeNextValues5() {
+      Model model = new Model();
+      LevelNode levelNode1 = model.createLevelNode("Level node 1", 100);
+      LevelNode levelNode2 = model.createLevelNode("Level node 2", 3);
+      RateNode rateNode = model.createRateNode("Rate node");
+      AuxiliaryNode auxiliaryNode1 = model.createAuxiliaryNode("Auxiliary node 1");
+      AuxiliaryNode auxiliaryNode2 = model.createAuxiliaryNode("Auxiliary node 2");
+      model.addFlowFromLevelNode2RateNode(levelNode1, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode2);
+      
+      // auxiliary node 1 = LN1 * LN2
+      model.setFormula(auxiliaryNode1, new ASTMultiply(levelNode1, levelNode2));
+      // auxiliary node 2 = LN1 * LN2 + LN2
+      model.setFormula(auxiliaryNode2, new ASTPlus(new ASTMultiply(levelNode1, levelNode2), levelNode2));
+      // rate node = (LN1 * LN2 + LN2) / (AN2 + AN1)
+      model.setFormula(rateNode, new ASTDivide(new ASTPlus(new ASTMultiply(levelNode1, levelNode2), levelNode2),
+                                               new ASTPlus(auxiliaryNode2, auxiliaryNode1)));
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      
+      // (1) each distinct subexpression is evaluated once per round
+      CompiledModel compiledModel = new CompiledModel(model);
+      assertEquals(4, compiledModel.getNumberOfEvaluatedOperations());
+      assertEquals(3, compiledModel.getNumberOfEliminatedOperations());
+      
+      // (2) same values as the interpreter (instruction stream and bytecode tier)
+      assertSameValues(model, compiledModel, NUMBER_ROUNDS);
+      
+      compiledModel = new CompiledModel(model, WARM_UP_ROUNDS);
+      assertSameValues(model, compiledModel, NUMBER_ROUNDS);
+      assertTrue(compiledModel.isBytecodeTierActive());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#computeNextValues()}
+    * for formulas containing long sums and products.
+    */
+   public void testComputeNextValues6() {
+      Model model = new Model();
+      LevelNode levelNode1 = model.createLevelNode("Level node 1", 100);
+      LevelNode levelNode2 = model.createLevelNode("Level node 2", 3);
+      RateNode rateNode = model.createRateNode("Rate node");
+      AuxiliaryNode auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      ConstantNode constantNode = model.createConstantNode("Constant node", 0.01);
+      model.addFlowFromLevelNode2RateNode(levelNode1, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode2);
+      
+      // auxiliary node = CN + LN1 + LN2 + CN + LN1 + LN2 + ... (3000 summands)
+      ArrayList<ASTElement> summands = new ArrayList<ASTElement>();
+      for (int i = 0; i < 1000; i++) {
+         summands.add(constantNode);
+         summands.add(levelNode1);
+         summands.add(levelNode2);
+      }
+      model.setFormula(auxiliaryNode, ASTSum.createSum(summands));
+      // rate node = AN * CN * CN * CN
+      model.setFormula(rateNode, new ASTProduct(new ASTElement[] { auxiliaryNode, constantNode,
+                                                                   constantNode, constantNode }));
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      
+      CompiledModel compiledModel = new CompiledModel(model);
+      assertSameValues(model, compiledModel, NUMBER_ROUNDS);
+      
+      compiledModel = new CompiledModel(model, WARM_UP_ROUNDS);
+      assertSameValues(model, compiledModel, NUMBER_ROUNDS);
+      assertTrue(compiledModel.isBytecodeTierActive());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#computeNextValues(SimulationState)}
+    * with several runs of the same compiled model executed concurrently.
+    */
+   public void testComputeNextValues7() throws InterruptedException {
+      Model model = createModel(true);
+      final CompiledModel compiledModel = new CompiledModel(model);
+      
+      // (1) parameter 'null' -> WRONG
+      try {
+         compiledModel.computeNextValues(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'state' must not be null.", e.getMessage());
+      }
+      
+      // (2) state of another compiled model -> WRONG
+      try {
+         compiledModel.computeNextValues(new CompiledModel(model).createSimulationState());
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'state' must be a state of this compiled model.", e.getMessage());
+      }
+      
+      // (3) the compiled model's own run does not change the initial values of new runs
+      for (int i = 0; i < 10; i++) {
+         compiledModel.computeNextValues();
+      }
+      
+      // (4) concurrent runs -> each bit-identical to the interpreter
+      final SimulationState[] states = new SimulationState[4];
+      Thread[] threads = new Thread[states.length];
+      for (int i = 0; i < states.length; i++) {
+         states[i] = compiledModel.createSimulationState();
+         assertEquals(0, states[i].getRound());
+         final SimulationState state = states[i];
+         threads[i] = new Thread() {
+            public void run() {
+               for (int round = 0; round < NUMBER_ROUNDS; round++) {
+                  compiledModel.computeNextValues(state);
+               }
+            }
+         };
+         threads[i].start();
+      }
+      for (Thread thread : threads) {
+         thread.join();
+      }
+      
+      HashSet<AbstractNode> nodes = new HashSet<AbstractNode>();
+      nodes.addAll(model.getLevelNodes());
+      nodes.addAll(model.getRateNodes());
+      nodes.addAll(model.getAuxiliaryNodes());
+      nodes.addAll(model.getConstantNodes());
+      for (int round = 0; round < NUMBER_ROUNDS; round++) {
+         model.computeNextValues();
+      }
+      for (SimulationState state : states) {
+         assertEquals(NUMBER_ROUNDS, state.getRound());
+         for (AbstractNode node : nodes) {
+            assertEquals(node.getNodeName(), Double.doubleToLongBits(model.getCurrentValue(node)),
+                         Double.doubleToLongBits(state.getCurrentValue(node)));
+         }
+      }
+      
+      // (5) copied state -> continued independently
+      SimulationState copy = states[0].copy();
+      assertEquals(NUMBER_ROUNDS, copy.getRound());
+      compiledModel.computeNextValues(copy);
+      assertEquals(NUMBER_ROUNDS + 1, copy.getRound());
+      assertEquals(NUMBER_ROUNDS, states[0].getRound());
+      LevelNode levelNode = model.getLevelNodes().iterator().next();
+      model.computeNextValues();
+      assertEquals(Double.doubleToLongBits(model.getCurrentValue(levelNode)),
+                   Double.doubleToLongBits(copy.getCurrentValue(levelNode)));
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#computeNextValues()} with the
+    * explicit fixed-step methods and other time steps than DT = 1.
+    */
+   public void testComputeNextValues8() {
+      SimulationSpecification[] simulationSpecifications =
+         { new SimulationSpecification(0.25, IntegrationMethod.EULER),
+           new SimulationSpecification(0.5, IntegrationMethod.HEUN),
+           new SimulationSpecification(1, IntegrationMethod.RK4),
+           new SimulationSpecification(0.125, IntegrationMethod.RK4) };
+      
+      // (1) model using all kinds of formula elements
+      for (SimulationSpecification simulationSpecification : simulationSpecifications) {
+         Model model = createModel(true);
+         model.setSimulationSpecification(simulationSpecification);
+         assertSameValues(model, new CompiledModel(model, simulationSpecification), NUMBER_ROUNDS);
+      }
+      
+      // (2) bundled Phase and SponsorDemoSim models
+      for (String fileName : BUNDLED_MODEL_FILE_NAMES) {
+         for (SimulationSpecification simulationSpecification : simulationSpecifications) {
+            Model model = null;
+            try {
+               model = XMLModelReader.readXMLModel(fileName);
+               model.validateModelAndSetUnchangeable();
+            } catch (Exception e) {
+               fail();
+            }
+            model.setSimulationSpecification(simulationSpecification);
+            
+            assertSameValues(model, new CompiledModel(model, simulationSpecification), NUMBER_ROUNDS);
+         }
+      }
+      
+      // (3) concurrent runs integrate with the same specification
+      Model model = createModel(false);
+      model.setSimulationSpecification(simulationSpecifications[3]);
+      CompiledModel compiledModel = new CompiledModel(model, simulationSpecifications[3]);
+      SimulationState state = compiledModel.createSimulationState();
+      for (int i = 0; i < NUMBER_ROUNDS; i++) {
+         model.computeNextValues();
+         compiledModel.computeNextValues(state);
+      }
+      for (LevelNode levelNode : model.getLevelNodes()) {
+         assertEquals(Double.doubleToLongBits(model.getCurrentValue(levelNode)),
+                      Double.doubleToLongBits(state.getCurrentValue(levelNode)));
+      }
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.CompiledModel#getCurrentValue(AbstractNode)}.
+    */
+   public void testGetCurrentValue() {
+      Model model = new Model();
+      LevelNode levelNode = model.createLevelNode("Level node", 5);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode = model.createConstantNode("Constant node", 2);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode);
+      model.setFormula(rateNode, constantNode);
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      
+      CompiledModel compiledModel = new CompiledModel(model);
+      
+      // (1) parameter 'null' -> WRONG
+      try {
+         compiledModel.getCurrentValue(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'node' must not be null.", e.getMessage());
+      }
+      
+      // (2) source/sink node -> WRONG
+      try {
+         compiledModel.getCurrentValue(sourceSinkNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
+      
+      // (3) node of another model -> WRONG
+      Model otherModel = new Model();
+      LevelNode otherLevelNode = otherModel.createLevelNode("Level node", 5);
+      try {
+         compiledModel.getCurrentValue(otherLevelNode);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'node' must be a node of the compiled model.", e.getMessage());
+      }
+      
+      // (4) correct parameters -> CORRECT
+      assertEquals(5.0, compiledModel.getCurrentValue(levelNode));
+      assertEquals(2.0, compiledModel.getCurrentValue(constantNode));
+      compiledModel.computeNextValues();
+      assertEquals(2.0, compiledModel.getCurrentValue(rateNode));
+      assertEquals(7.0, compiledModel.getCurrentValue(levelNode));
+      
+      // (5) the nodes of the model are not changed by the compiled model
+      assertEquals(5.0, levelNode.getCurrentValue());
+   }
+   
+   /**
+    * Creates a validated, unchangeable model using all kinds of formula elements.
+    * 
+    * @param withRound use rounding?
+    * @return created model
+    */
+   private static Model createModel(boolean withRound) {
+      Model model = new Model();
+      LevelNode levelNode1 = model.createLevelNode("Level node 1", 100);
+      LevelNode levelNode2 = model.createLevelNode("Level node 2", 3);
+      RateNode rateNode1 = model.createRateNode("Rate node 1");
+      RateNode rateNode2 = model.createRateNode("Rate node 2");
+      RateNode rateNode3 = model.createRateNode("Rate node 3");
+      AuxiliaryNode auxiliaryNode1 = model.createAuxiliaryNode("Auxiliary node 1");
+      AuxiliaryNode auxiliaryNode2 = model.createAuxiliaryNode("Auxiliary node 2");
+      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 0.03);
+      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 7);
+      ConstantNode constantNode3 = model.createConstantNode("Constant node 3", 2);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode1);
+      model.addFlowFromRateNode2LevelNode(rateNode1, levelNode1);
+      model.addFlowFromLevelNode2RateNode(levelNode1, rateNode2);
+      model.addFlowFromRateNode2LevelNode(rateNode2, levelNode2);
+      model.addFlowFromLevelNode2RateNode(levelNode2, rateNode3);
+      model.addFlowFromRateNode2SourceSinkNode(rateNode3, sourceSinkNode);
+      
+      // auxiliary node 1 = ROUND(level node 1 * constant node 1, constant node 3)
+      //                   or level node 1 * constant node 1
+      if (withRound) {
+         model.setFormula(auxiliaryNode1, new ASTRound(new ASTMultiply(levelNode1, constantNode1),
+                                                       constantNode3));
+      } else {
+         model.setFormula(auxiliaryNode1, new ASTMultiply(levelNode1, constantNode1));
+      }
+      // auxiliary node 2 = MIN(auxiliary node 1, constant node 2) / (level node 2 + 1 - 1)
+      model.setFormula(auxiliaryNode2,
+                       new ASTDivide(new ASTMin(auxiliaryNode1, constantNode2),
+                                     new ASTMinus(new ASTPlus(levelNode2, constantNode3), constantNode3)));
+      // rate node 1 = constant node 2
+      model.setFormula(rateNode1, constantNode2);
+      // rate node 2 = MAX(auxiliary node 1, auxiliary node 2)
+      model.setFormula(rateNode2, new ASTMax(auxiliaryNode1, auxiliaryNode2));
+      // rate node 3 = level node 2 * constant node 1
+      model.setFormula(rateNode3, new ASTMultiply(levelNode2, constantNode1));
+      
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      
+      return model;
+   }
+   
+   /**
+    * Executes the specified model with the interpreter and a compiled model in lockstep and checks
+    * that all node values are bit-identical after each round.
+    * 
+    * @param model model (already validated and set unchangeable)
+    * @param compiledModel compiled model (created before the model is executed)
+    * @param numberRounds number of rounds to execute
+    */
+   private static void assertSameValues(Model model, CompiledModel compiledModel, int numberRounds) {
+      HashSet<AbstractNode> nodes = new HashSet<AbstractNode>();
+      nodes.addAll(model.getLevelNodes());
+      nodes.addAll(model.getRateNodes());
+      nodes.addAll(model.getAuxiliaryNodes());
+      nodes.addAll(model.getConstantNodes());
+      
+      for (int i = 0; i < numberRounds; i++) {
+         model.computeNextValues();
+         compiledModel.computeNextValues();
+         for (AbstractNode node : nodes) {
+            assertEquals(node.getNodeName() + " (round " + (i + 1) + ")",
+                         Double.doubleToLongBits(model.getCurrentValue(node)),
+                         Double.doubleToLongBits(compiledModel.getCurrentValue(node)));
+         }
+      }
+   }
+}
@@ -22,6 +22,7 @@
 package de.uka.aifb.com.systemDynamics.test;
 
 import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
 import java.util.*;
 import junit.framework.*;
 import junitx.util.PrivateAccessor;
@@ -244,32 +245,21 @@ protected void tearDown() throws Exception {
    
    /**
     * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.ConstantNode#iterator()}.
+    * {@link de.uka.aifb.com.systemDynamics.model.ConstantNode#accept(ASTVisitor)}.
     */
-   public void testIterator() {
-      // (1) first iterator
-      Iterator<ASTElement> iterator = constantNode.iterator();
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode);
-      assertFalse(iterator.hasNext());
+   public void testAccept() {
       try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
+         constantNode.accept(null);
+         fail();
+      } catch (IllegalArgumentException e) {
          // do nothing
       }
       
-      // (2) second iterator
-      iterator = constantNode.iterator();
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      constantNode.accept(recorder);
       
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == constantNode);
-      assertFalse(iterator.hasNext());
-      try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
-         // do nothing
-      }
+      assertEquals(1, recorder.getVisitedElements().size());
+      assertTrue(recorder.getVisitedElements().get(0) == constantNode);
    }
    
    /**
@@ -323,16 +323,12 @@ public class FormulaParserTestCase extends TestCase {
          ASTElement formula =
             FormulaParser.parseFormula("CN(1) + CN(2) + AN(1)", id2auxiliaryNode, id2constantNode, id2levelNode);
          
-         try {
-            assertTrue(formula instanceof ASTPlus);
-            assertTrue(PrivateAccessor.getField(formula, "leftElement") instanceof ASTPlus);
-            assertTrue(PrivateAccessor.getField(formula, "rightElement") == auxiliaryNode1);
-            ASTPlus subFormula = (ASTPlus)PrivateAccessor.getField(formula, "leftElement");
-            assertTrue(PrivateAccessor.getField(subFormula, "leftElement") == constantNode1);
-            assertTrue(PrivateAccessor.getField(subFormula, "rightElement") == constantNode2);
-         } catch (NoSuchFieldException e) {
-            fail();
-         }
+         assertTrue(formula instanceof ASTSum);
+         ASTSum sum = (ASTSum)formula;
+         assertEquals(3, sum.getNumberOfOperands());
+         assertTrue(sum.getOperand(0) == constantNode1);
+         assertTrue(sum.getOperand(1) == constantNode2);
+         assertTrue(sum.getOperand(2) == auxiliaryNode1);
       } catch (Exception e) {
          fail();
       }
@@ -380,16 +376,12 @@ public class FormulaParserTestCase extends TestCase {
          ASTElement formula =
             FormulaParser.parseFormula("CN(1) * CN(2) * AN(1)", id2auxiliaryNode, id2constantNode, id2levelNode);
          
-         try {
-            assertTrue(formula instanceof ASTMultiply);
-            assertTrue(PrivateAccessor.getField(formula, "leftElement") instanceof ASTMultiply);
-            assertTrue(PrivateAccessor.getField(formula, "rightElement") == auxiliaryNode1);
-            ASTMultiply subFormula = (ASTMultiply)PrivateAccessor.getField(formula, "leftElement");
-            assertTrue(PrivateAccessor.getField(subFormula, "leftElement") == constantNode1);
-            assertTrue(PrivateAccessor.getField(subFormula, "rightElement") == constantNode2);
-         } catch (NoSuchFieldException e) {
-            fail();
-         }
+         assertTrue(formula instanceof ASTProduct);
+         ASTProduct product = (ASTProduct)formula;
+         assertEquals(3, product.getNumberOfOperands());
+         assertTrue(product.getOperand(0) == constantNode1);
+         assertTrue(product.getOperand(1) == constantNode2);
+         assertTrue(product.getOperand(2) == auxiliaryNode1);
       } catch (Exception e) {
          fail();
       }
@@ -22,6 +22,7 @@
 package de.uka.aifb.com.systemDynamics.test;
 
 import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
 import de.uka.aifb.com.systemDynamics.test.mocks.RateNodeMockObject;
 import java.util.*;
 import junit.framework.*;
@@ -231,10 +232,15 @@ protected void tearDown() throws Exception {
       assertTrue(levelNode.getIncomingFlows().size() == 1);
       levelNode.getIncomingFlows().contains(secondRateNode);
       
-      // (7) check that 'getIncomingFlows()' returns only a clone of the set
-      HashSet<RateNode> incomingFlows = levelNode.getIncomingFlows();
-      incomingFlows.add(thirdRateNode);
-      assertTrue(incomingFlows.size() == 2);
+      // (7) check that 'getIncomingFlows()' returns a read-only view of the set
+      Set<RateNode> incomingFlows = levelNode.getIncomingFlows();
+      try {
+         incomingFlows.add(thirdRateNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
+      assertTrue(incomingFlows.size() == 1);
       assertTrue(levelNode.getIncomingFlows().size() == 1);
       
       // (8) parameter not 'null' for method 'addIncomingFlow(RateNode)'
@@ -345,10 +351,15 @@ protected void tearDown() throws Exception {
       assertTrue(levelNode.getOutgoingFlows().size() == 1);
       levelNode.getOutgoingFlows().contains(secondRateNode);
       
-      // (7) check that 'getOutgoingFlows()' returns only a clone of the set
-      HashSet<RateNode> outgoingFlows = levelNode.getOutgoingFlows();
-      outgoingFlows.add(thirdRateNode);
-      assertTrue(outgoingFlows.size() == 2);
+      // (7) check that 'getOutgoingFlows()' returns a read-only view of the set
+      Set<RateNode> outgoingFlows = levelNode.getOutgoingFlows();
+      try {
+         outgoingFlows.add(thirdRateNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
+      assertTrue(outgoingFlows.size() == 1);
       assertTrue(levelNode.getOutgoingFlows().size() == 1);
       
       // (8) parameter not 'null' for method 'addOutgoingFlow(RateNode)'
@@ -552,32 +563,21 @@ protected void tearDown() throws Exception {
    
    /**
     * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.LevelNode#iterator()}.
+    * {@link de.uka.aifb.com.systemDynamics.model.LevelNode#accept(ASTVisitor)}.
     */
-   public void testIterator() {
-      // (1) first iterator
-      Iterator<ASTElement> iterator = levelNode.iterator();
-      
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == levelNode);
-      assertFalse(iterator.hasNext());
+   public void testAccept() {
       try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
+         levelNode.accept(null);
+         fail();
+      } catch (IllegalArgumentException e) {
          // do nothing
       }
       
-      // (2) second iterator
-      iterator = levelNode.iterator();
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      levelNode.accept(recorder);
       
-      assertTrue(iterator.hasNext());
-      assertTrue(iterator.next() == levelNode);
-      assertFalse(iterator.hasNext());
-      try {
-         iterator.next();
-      } catch (NoSuchElementException e) {
-         // do nothing
-      }
+      assertEquals(1, recorder.getVisitedElements().size());
+      assertTrue(recorder.getVisitedElements().get(0) == levelNode);
    }
    
    /**
@@ -0,0 +1,301 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.LinearizationAnalysis}.
+ *
+ * @version 1.0
+ */
+public class LinearizationAnalysisTestCase extends TestCase {
+   
+   private static final double EPSILON = 1E-12;
+   
+   public static Test suite() {
+      return new TestSuite(LinearizationAnalysisTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.LinearizationAnalysis#LinearizationAnalysis(Model, JacobianMethod, int)}.
+    */
+   public void testLinearizationAnalysis() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         new LinearizationAnalysis(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'model' must not be null.", e.getMessage());
+      }
+      
+      // (2) model still changeable -> WRONG
+      Model model = new Model();
+      model.createLevelNode("Level node", 0);
+      try {
+         new LinearizationAnalysis(model);
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+      
+      // (3) Jacobian method 'null' -> WRONG
+      try {
+         new LinearizationAnalysis(createDecayModel(), null, 1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'jacobianMethod' must not be null.", e.getMessage());
+      }
+      
+      // (4) no thread -> WRONG
+      try {
+         new LinearizationAnalysis(createDecayModel(), JacobianMethod.FINITE_DIFFERENCES, 0);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'numberOfThreads' must be at least 1.", e.getMessage());
+      }
+   }
+   
+   /**
+    * Tests the linearization of a model with exponential decay: Outflow = Stock * 0.1.
+    */
+   public void testDecay() {
+      Model model = createDecayModel();
+      LevelNode stock = getLevelNode(model, "Stock");
+      LinearizationAnalysis analysis = new LinearizationAnalysis(model);
+      
+      assertEquals(1, analysis.getLevelNodes().size());
+      assertEquals(-0.1, analysis.getJacobianEntry(stock, stock), EPSILON);
+      assertEquals(1, analysis.getNumberOfEigenvalues());
+      assertEquals(-0.1, analysis.getEigenvalueRealPart(0), EPSILON);
+      assertTrue(analysis.getEigenvalueImaginaryPart(0) == 0);
+      assertEquals(10, analysis.getTimeConstant(0), 1E-9);
+      assertEquals(10, analysis.getDominantTimeConstant(), 1E-9);
+      assertTrue(Double.isInfinite(analysis.getOscillationPeriod(0)));
+      assertTrue(analysis.isStable());
+      assertTrue(analysis.isRoundMapStable());
+      assertFalse(analysis.isOscillating());
+      
+      // the model's nodes are not changed
+      assertTrue(model.getCurrentValue(stock) == 100);
+      
+      try {
+         analysis.getJacobianEntry(null, stock);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'rowLevelNode' must not be null.", e.getMessage());
+      }
+      try {
+         analysis.getEigenvalueRealPart(1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         // do nothing
+      }
+   }
+   
+   /**
+    * Tests the linearization of a damped oscillator: X' = Y, Y' = -X - 0.2 * Y, i.e. the
+    * eigenvalues -0.1 +/- sqrt(0.99)i.
+    */
+   public void testOscillator() {
+      for (JacobianMethod jacobianMethod : JacobianMethod.values()) {
+         Model model = createOscillatorModel();
+         LevelNode x = getLevelNode(model, "X");
+         LevelNode y = getLevelNode(model, "Y");
+         LinearizationAnalysis analysis = new LinearizationAnalysis(model, jacobianMethod, 2);
+         double epsilon = (jacobianMethod == JacobianMethod.FORMULAS) ? EPSILON : 1E-6;
+         
+         assertEquals(0, analysis.getJacobianEntry(x, x), epsilon);
+         assertEquals(1, analysis.getJacobianEntry(x, y), epsilon);
+         assertEquals(-1, analysis.getJacobianEntry(y, x), epsilon);
+         assertEquals(-0.2, analysis.getJacobianEntry(y, y), epsilon);
+         assertEquals(1, analysis.getNumberOfBlocks());
+         assertEquals(2, analysis.getLargestBlockSize());
+         
+         assertEquals(2, analysis.getNumberOfEigenvalues());
+         for (int i = 0; i < 2; i++) {
+            assertEquals(-0.1, analysis.getEigenvalueRealPart(i), epsilon);
+            assertEquals(10, analysis.getTimeConstant(i), 1E-4);
+            assertEquals(2 * Math.PI / Math.sqrt(0.99), analysis.getOscillationPeriod(i), 1E-4);
+         }
+         assertEquals(Math.sqrt(0.99), analysis.getEigenvalueImaginaryPart(0), epsilon);
+         assertEquals(-Math.sqrt(0.99), analysis.getEigenvalueImaginaryPart(1), epsilon);
+         assertTrue(analysis.isStable());
+         assertTrue(analysis.isOscillating());
+         // |1 + eigenvalue| = sqrt(0.81 + 0.99) > 1
+         assertFalse(analysis.isRoundMapStable());
+      }
+   }
+   
+   /**
+    * Tests the linearization of a model with a nonlinear (logistic) growth feeding a second stock
+    * (block triangular Jacobian): Growth = Population * 0.1 * (1 - Population / 100),
+    * Inflow = Population / 10, Outflow = Stock * 0.5.
+    */
+   public void testNonlinearModel() {
+      Model model = createNonlinearModel();
+      LevelNode population = getLevelNode(model, "Population");
+      LevelNode stock = getLevelNode(model, "Stock");
+      LinearizationAnalysis formulas = new LinearizationAnalysis(model);
+      LinearizationAnalysis finiteDifferences =
+         new LinearizationAnalysis(model, JacobianMethod.FINITE_DIFFERENCES, 2);
+      
+      // d Growth / d Population = 0.1 * (1 - 2 * Population / 100) = 0.08
+      assertEquals(0.08, formulas.getJacobianEntry(population, population), EPSILON);
+      assertEquals(0, formulas.getJacobianEntry(population, stock), EPSILON);
+      assertEquals(0.1, formulas.getJacobianEntry(stock, population), EPSILON);
+      assertEquals(-0.5, formulas.getJacobianEntry(stock, stock), EPSILON);
+      assertEquals(3, formulas.getNumberOfNonZeroEntries());
+      assertEquals(2, formulas.getNumberOfBlocks());
+      assertEquals(1, formulas.getLargestBlockSize());
+      
+      // the finite differences agree with the differentiated formulas
+      for (LevelNode row : formulas.getLevelNodes()) {
+         for (LevelNode column : formulas.getLevelNodes()) {
+            assertEquals(formulas.getJacobianEntry(row, column),
+                         finiteDifferences.getJacobianEntry(row, column), 1E-6);
+         }
+      }
+      
+      // the eigenvalues of a block triangular matrix are the diagonal entries
+      assertEquals(0.08, formulas.getEigenvalueRealPart(0), EPSILON);
+      assertEquals(-0.5, formulas.getEigenvalueRealPart(1), EPSILON);
+      assertEquals(12.5, formulas.getDominantTimeConstant(), 1E-9);
+      assertFalse(formulas.isStable());
+      assertFalse(formulas.isRoundMapStable());
+      assertFalse(formulas.isOscillating());
+   }
+   
+   /**
+    * Creates a model with exponential decay: Outflow = Stock * 0.1, Stock = 100 initially.
+    * 
+    * @return created unchangeable model
+    */
+   private static Model createDecayModel() {
+      Model model = new Model();
+      LevelNode stock = model.createLevelNode("Stock", 100);
+      RateNode outflow = model.createRateNode("Outflow");
+      ConstantNode decayRate = model.createConstantNode("Decay rate", 0.1);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      
+      model.addFlowFromLevelNode2RateNode(stock, outflow);
+      model.addFlowFromRateNode2SourceSinkNode(outflow, sourceSinkNode);
+      model.setFormula(outflow, new ASTMultiply(stock, decayRate));
+      
+      setUnchangeable(model);
+      return model;
+   }
+   
+   /**
+    * Creates a damped oscillator: X' = Y, Y' = -X - 0.2 * Y, X = 1 and Y = 0 initially.
+    * 
+    * @return created unchangeable model
+    */
+   private static Model createOscillatorModel() {
+      Model model = new Model();
+      LevelNode x = model.createLevelNode("X", 1);
+      LevelNode y = model.createLevelNode("Y", 0);
+      RateNode xInflow = model.createRateNode("X inflow");
+      RateNode yOutflow = model.createRateNode("Y outflow");
+      ConstantNode damping = model.createConstantNode("Damping", 0.2);
+      SourceSinkNode source = model.createSourceSinkNode();
+      SourceSinkNode sink = model.createSourceSinkNode();
+      
+      model.addFlowFromSourceSinkNode2RateNode(source, xInflow);
+      model.addFlowFromRateNode2LevelNode(xInflow, x);
+      model.addFlowFromLevelNode2RateNode(y, yOutflow);
+      model.addFlowFromRateNode2SourceSinkNode(yOutflow, sink);
+      model.setFormula(xInflow, y);
+      model.setFormula(yOutflow, new ASTPlus(x, new ASTMultiply(damping, y)));
+      
+      setUnchangeable(model);
+      return model;
+   }
+   
+   /**
+    * Creates a model with logistic growth feeding a second stock: Growth = Population * 0.1 *
+    * (1 - Population / 100), Inflow = Population / 10, Outflow = Stock * 0.5, Population = 10 and
+    * Stock = 0 initially.
+    * 
+    * @return created unchangeable model
+    */
+   private static Model createNonlinearModel() {
+      Model model = new Model();
+      LevelNode population = model.createLevelNode("Population", 10);
+      LevelNode stock = model.createLevelNode("Stock", 0);
+      RateNode growth = model.createRateNode("Growth");
+      RateNode inflow = model.createRateNode("Inflow");
+      RateNode outflow = model.createRateNode("Outflow");
+      AuxiliaryNode crowding = model.createAuxiliaryNode("Crowding");
+      ConstantNode capacity = model.createConstantNode("Capacity", 100);
+      SourceSinkNode source = model.createSourceSinkNode();
+      SourceSinkNode sink = model.createSourceSinkNode();
+      
+      model.addFlowFromSourceSinkNode2RateNode(source, growth);
+      model.addFlowFromRateNode2LevelNode(growth, population);
+      model.addFlowFromSourceSinkNode2RateNode(source, inflow);
+      model.addFlowFromRateNode2LevelNode(inflow, stock);
+      model.addFlowFromLevelNode2RateNode(stock, outflow);
+      model.addFlowFromRateNode2SourceSinkNode(outflow, sink);
+      model.setFormula(crowding, new ASTMinus(new ASTLiteral(1), new ASTDivide(population, capacity)));
+      model.setFormula(growth, new ASTMultiply(new ASTMultiply(population, new ASTLiteral(0.1)), crowding));
+      model.setFormula(inflow, new ASTDivide(population, new ASTLiteral(10)));
+      model.setFormula(outflow, new ASTMultiply(stock, new ASTLiteral(0.5)));
+      
+      setUnchangeable(model);
+      return model;
+   }
+   
+   /**
+    * Validates the specified model and sets it unchangeable.
+    * 
+    * @param model model
+    */
+   private static void setUnchangeable(Model model) {
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+   }
+   
+   /**
+    * Gets the level node with the specified name.
+    * 
+    * @param model model
+    * @param nodeName node name
+    * @return level node
+    */
+   private static LevelNode getLevelNode(Model model, String nodeName) {
+      for (LevelNode levelNode : model.getLevelNodes()) {
+         if (levelNode.getNodeName().equals(nodeName)) {
+            return levelNode;
+         }
+      }
+      fail();
+      return null;
+   }
+}
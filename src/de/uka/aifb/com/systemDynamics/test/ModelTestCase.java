@@ -22,6 +22,7 @@
 package de.uka.aifb.com.systemDynamics.test;
 
 import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.xml.*;
 import java.util.*;
 import junit.framework.*;
 import junitx.util.PrivateAccessor;
@@ -91,6 +92,99 @@ public class ModelTestCase extends TestCase {
       assertEquals(MODEL_NAME, model.getModelName());      
    }
    
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#deepCopy(Map)}.
+    */
+   public void testDeepCopy() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         model.deepCopy(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'node2copy' must not be null.", e.getMessage());
+      }
+      
+      // (2) models of the test resources and the examples -> copies compute bit-identical values
+      String[] fileNames = { "./testResources/model.xml",
+                             "./testResources/FirstIntegrationSim2.xml",
+                             "./examples/population_dynamic_en_US.xml" };
+      for (String fileName : fileNames) {
+         Model originalModel = null;
+         try {
+            originalModel = XMLModelReader.readXMLModel(fileName);
+         } catch (Exception e) {
+            fail();
+         }
+         
+         HashMap<AbstractNode, AbstractNode> node2copy = new HashMap<AbstractNode, AbstractNode>();
+         Model copy = originalModel.deepCopy(node2copy);
+         assertEquals(originalModel.getModelName(), copy.getModelName());
+         assertEquals(originalModel.getLevelNodes().size() + originalModel.getRateNodes().size()
+                      + originalModel.getConstantNodes().size() + originalModel.getAuxiliaryNodes().size()
+                      + originalModel.getSourceSinkNodes().size(), node2copy.size());
+         for (AbstractNode node : node2copy.keySet()) {
+            AbstractNode nodeCopy = node2copy.get(node);
+            assertNotNull(nodeCopy);
+            assertFalse(node == nodeCopy);
+            assertEquals(node.getClass(), nodeCopy.getClass());
+            if (!(node instanceof SourceSinkNode)) {
+               assertEquals(node.getNodeName(), nodeCopy.getNodeName());
+            }
+         }
+         assertEquals(originalModel.getNumberOfFormulaOperations(), copy.getNumberOfFormulaOperations());
+         
+         try {
+            originalModel.validateModelAndSetUnchangeable();
+            copy.validateModelAndSetUnchangeable();
+         } catch (Exception e) {
+            fail();
+         }
+         for (int round = 1; round <= 100; round++) {
+            originalModel.computeNextValues();
+            copy.computeNextValues();
+            for (AbstractNode node : node2copy.keySet()) {
+               if (!(node instanceof SourceSinkNode)) {
+                  assertEquals(fileName + ", " + node.getNodeName() + " (round " + round + ")",
+                               Double.doubleToLongBits(originalModel.getCurrentValue(node)),
+                               Double.doubleToLongBits(copy.getCurrentValue(node2copy.get(node))));
+               }
+            }
+         }
+      }
+      
+      // (3) copy of an executed model -> changeable, starts with the start values, independent
+      LevelNode levelNode = model.createLevelNode("Level node", 10);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode = model.createConstantNode("Constant node", 2);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode);
+      model.setFormula(rateNode, constantNode);
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      model.computeNextValues();
+      assertEquals(12.0, model.getCurrentValue(levelNode));
+      
+      HashMap<AbstractNode, AbstractNode> node2copy = new HashMap<AbstractNode, AbstractNode>();
+      Model copy = model.deepCopy(node2copy);
+      assertTrue(copy.isChangeable());
+      LevelNode levelNodeCopy = (LevelNode)node2copy.get(levelNode);
+      RateNode rateNodeCopy = (RateNode)node2copy.get(rateNode);
+      assertEquals(10.0, copy.getCurrentValue(levelNodeCopy));
+      assertTrue(rateNodeCopy.getFlowSource() == node2copy.get(sourceSinkNode));
+      assertTrue(rateNodeCopy.getFlowSink() == levelNodeCopy);
+      assertTrue(rateNodeCopy.getFormula() == node2copy.get(constantNode));
+      
+      copy.setNodeName(levelNodeCopy, "Changed level node");
+      copy.setConstantValue((ConstantNode)node2copy.get(constantNode), 5);
+      assertEquals("Level node", levelNode.getNodeName());
+      assertEquals(2.0, constantNode.getConstantValue());
+   }
+   
    /**
     * Tests the methods
     * {@link de.uka.aifb.com.systemDynamics.model.Model#createLevelNode(String, double)}
@@ -107,8 +201,8 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getLevelNodes().size() == 1);
       assertTrue(model.getLevelNodes().contains(levelNode1));
       
-      // (4) check that cloned level node set is returned
-      HashSet<LevelNode> levelNodes = model.getLevelNodes();
+      // (4) check that a read-only view of the level node set is returned
+      Set<LevelNode> levelNodes = model.getLevelNodes();
       LevelNode levelNode = null;
       try {
          levelNode = (LevelNode)PrivateAccessor.invoke(LevelNode.class, "createLevelNode",
@@ -117,7 +211,12 @@ public class ModelTestCase extends TestCase {
       } catch (Throwable t) {
          fail();
       }
-      levelNodes.add(levelNode);
+      try {
+         levelNodes.add(levelNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
       assertTrue(model.getLevelNodes().size() == 1);
       
       // (5) create second level node
@@ -127,6 +226,7 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getLevelNodes().size() == 2);
       assertTrue(model.getLevelNodes().contains(levelNode1));
       assertTrue(model.getLevelNodes().contains(levelNode2));
+      assertTrue(levelNodes.size() == 2);
       
       // (7) check that no new level node can be created after model was set unchangeable
       try {
@@ -159,8 +259,8 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getRateNodes().size() == 1);
       assertTrue(model.getRateNodes().contains(rateNode1));
       
-      // (4) check that cloned rate node set is returned
-      HashSet<RateNode> rateNodes = model.getRateNodes();
+      // (4) check that a read-only view of the rate node set is returned
+      Set<RateNode> rateNodes = model.getRateNodes();
       RateNode rateNode = null;
       try {
          rateNode = (RateNode)PrivateAccessor.invoke(RateNode.class, "createRateNode",
@@ -169,7 +269,12 @@ public class ModelTestCase extends TestCase {
       } catch (Throwable t) {
          fail();
       }
-      rateNodes.add(rateNode);
+      try {
+         rateNodes.add(rateNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
       assertTrue(model.getRateNodes().size() == 1);
       
       // (5) create second rate node
@@ -179,6 +284,7 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getRateNodes().size() == 2);
       assertTrue(model.getRateNodes().contains(rateNode1));
       assertTrue(model.getRateNodes().contains(rateNode2));
+      assertTrue(rateNodes.size() == 2);
       
       // (7) check that no new rate node can be created after model was set unchangeable
       try {
@@ -211,8 +317,8 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getConstantNodes().size() == 1);
       assertTrue(model.getConstantNodes().contains(constantNode1));
       
-      // (4) check that cloned constant node set is returned
-      HashSet<ConstantNode> constantNodes = model.getConstantNodes();
+      // (4) check that a read-only view of the constant node set is returned
+      Set<ConstantNode> constantNodes = model.getConstantNodes();
       ConstantNode constantNode = null;
       try {
          constantNode = (ConstantNode)PrivateAccessor.invoke(ConstantNode.class,
@@ -222,7 +328,12 @@ public class ModelTestCase extends TestCase {
       } catch (Throwable t) {
          fail();
       }
-      constantNodes.add(constantNode);
+      try {
+         constantNodes.add(constantNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
       assertTrue(model.getConstantNodes().size() == 1);
       
       // (5) create second constant node
@@ -232,6 +343,7 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getConstantNodes().size() == 2);
       assertTrue(model.getConstantNodes().contains(constantNode1));
       assertTrue(model.getConstantNodes().contains(constantNode2));
+      assertTrue(constantNodes.size() == 2);
       
       // (7) check that no new constant node can be created after model was set unchangeable
       try {
@@ -264,8 +376,8 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getAuxiliaryNodes().size() == 1);
       assertTrue(model.getAuxiliaryNodes().contains(auxiliaryNode1));
       
-      // (4) check that cloned auxiliary node set is returned
-      HashSet<AuxiliaryNode> auxiliaryNodes = model.getAuxiliaryNodes();
+      // (4) check that a read-only view of the auxiliary node set is returned
+      Set<AuxiliaryNode> auxiliaryNodes = model.getAuxiliaryNodes();
       AuxiliaryNode auxiliaryNode = null;
       try {
          auxiliaryNode = (AuxiliaryNode)PrivateAccessor.invoke(AuxiliaryNode.class,
@@ -275,7 +387,12 @@ public class ModelTestCase extends TestCase {
       } catch (Throwable t) {
          fail();
       }
-      auxiliaryNodes.add(auxiliaryNode);
+      try {
+         auxiliaryNodes.add(auxiliaryNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
       assertTrue(model.getAuxiliaryNodes().size() == 1);
       
       // (5) create second auxiliary node
@@ -285,6 +402,7 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getAuxiliaryNodes().size() == 2);
       assertTrue(model.getAuxiliaryNodes().contains(auxiliaryNode1));
       assertTrue(model.getAuxiliaryNodes().contains(auxiliaryNode2));
+      assertTrue(auxiliaryNodes.size() == 2);
       
       // (7) check that no new auxiliary node can be created after model was set unchangeable
       try {
@@ -317,8 +435,8 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getSourceSinkNodes().size() == 1);
       assertTrue(model.getSourceSinkNodes().contains(sourceSinkNode1));
       
-      // (4) check that cloned source/sink node set is returned
-      HashSet<SourceSinkNode> sourceSinkNodes = model.getSourceSinkNodes();
+      // (4) check that a read-only view of the source/sink node set is returned
+      Set<SourceSinkNode> sourceSinkNodes = model.getSourceSinkNodes();
       SourceSinkNode sourceSinkNode = null;
       try {
          sourceSinkNode = (SourceSinkNode)PrivateAccessor.invoke(SourceSinkNode.class,
@@ -326,7 +444,12 @@ public class ModelTestCase extends TestCase {
       } catch (Throwable t) {
          fail();
       }
-      sourceSinkNodes.add(sourceSinkNode);
+      try {
+         sourceSinkNodes.add(sourceSinkNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
       assertTrue(model.getSourceSinkNodes().size() == 1);
       
       // (5) create second source/sink node
@@ -336,6 +459,7 @@ public class ModelTestCase extends TestCase {
       assertTrue(model.getSourceSinkNodes().size() == 2);
       assertTrue(model.getSourceSinkNodes().contains(sourceSinkNode1));
       assertTrue(model.getSourceSinkNodes().contains(sourceSinkNode2));
+      assertTrue(sourceSinkNodes.size() == 2);
       
       // (7) check that no new source/sink node can be created after model was set unchangeable
       try {
@@ -705,6 +829,59 @@ public class ModelTestCase extends TestCase {
       }
    }
    
+   /**
+    * Tests the sharing of identical subtrees by the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#validateModelAndSetUnchangeable()} and
+    * the methods {@link de.uka.aifb.com.systemDynamics.model.Model#getNumberOfFormulaOperations()}
+    * and {@link de.uka.aifb.com.systemDynamics.model.Model#getNumberOfDistinctFormulaOperations()}.
+    */
+   public void testSetFormula2() {
+      LevelNode levelNode = model.createLevelNode("Level node", 0);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode = model.createConstantNode("Constant node", 0);
+      AuxiliaryNode auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode);
+      assertEquals(0, model.getNumberOfFormulaOperations());
+      assertEquals(0, model.getNumberOfDistinctFormulaOperations());
+      
+      // (1) formulas are stored as they are while the model is changeable
+      ASTMultiply auxiliaryFormula = new ASTMultiply(levelNode, constantNode);
+      model.setFormula(auxiliaryNode, auxiliaryFormula);
+      assertTrue(auxiliaryNode.getFormula() == auxiliaryFormula);
+      ASTPlus rateFormula = new ASTPlus(new ASTMultiply(levelNode, constantNode), auxiliaryNode);
+      model.setFormula(rateNode, rateFormula);
+      assertTrue(rateNode.getFormula() == rateFormula);
+      assertEquals(3, model.getNumberOfFormulaOperations());
+      assertEquals(3, model.getNumberOfDistinctFormulaOperations());
+      
+      // (2) formula 'null'
+      model.setFormula(rateNode, null);
+      assertTrue(rateNode.getFormula() == null);
+      assertEquals(1, model.getNumberOfFormulaOperations());
+      assertEquals(1, model.getNumberOfDistinctFormulaOperations());
+      model.setFormula(rateNode, rateFormula);
+      
+      // (3) identical subtree of second formula is replaced by the first instance when the model
+      //     is set unchangeable
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      assertTrue(auxiliaryNode.getFormula() == auxiliaryFormula);
+      ASTElement storedRateFormula = rateNode.getFormula();
+      assertTrue(storedRateFormula instanceof ASTPlus);
+      assertTrue(((ASTPlus)storedRateFormula).getLeftElement() == auxiliaryFormula);
+      assertTrue(((ASTPlus)storedRateFormula).getRightElement() == auxiliaryNode);
+      assertEquals(rateFormula.getStringRepresentation(), storedRateFormula.getStringRepresentation());
+      
+      // (4) statistics
+      assertEquals(3, model.getNumberOfFormulaOperations());
+      assertEquals(2, model.getNumberOfDistinctFormulaOperations());
+   }
+   
    /**
     * Tests the methods
     * {@link de.uka.aifb.com.systemDynamics.model.Model#addFlowFromLevelNode2RateNode(LevelNode, RateNode)}
@@ -1319,6 +1496,110 @@ public class ModelTestCase extends TestCase {
       }
    }
    
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#getDependants(AbstractNode)}.
+    */
+   public void testGetDependants() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         model.getDependants(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'node' must not be null.", e.getMessage());
+      }
+      
+      // create model
+      LevelNode levelNode = model.createLevelNode("Level node", 0);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode = model.createConstantNode("Constant node", 0);
+      AuxiliaryNode auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      
+      // (2) no dependants
+      assertTrue(model.getDependants(constantNode).isEmpty());
+      
+      // (3) formulas
+      model.setFormula(auxiliaryNode, new ASTPlus(constantNode, levelNode));
+      model.setFormula(rateNode, new ASTMultiply(auxiliaryNode, constantNode));
+      assertEquals(2, model.getDependants(constantNode).size());
+      assertTrue(model.getDependants(constantNode).contains(auxiliaryNode));
+      assertTrue(model.getDependants(constantNode).contains(rateNode));
+      assertEquals(1, model.getDependants(auxiliaryNode).size());
+      assertTrue(model.getDependants(auxiliaryNode).contains(rateNode));
+      
+      // (4) changed formula -> old dependencies removed
+      model.setFormula(rateNode, auxiliaryNode);
+      assertEquals(1, model.getDependants(constantNode).size());
+      assertTrue(model.getDependants(constantNode).contains(auxiliaryNode));
+      
+      // (5) flows
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode);
+      assertEquals(1, model.getDependants(sourceSinkNode).size());
+      assertTrue(model.getDependants(sourceSinkNode).contains(rateNode));
+      assertEquals(1, model.getDependants(rateNode).size());
+      assertTrue(model.getDependants(rateNode).contains(levelNode));
+      
+      // (6) flow from and to the same level node -> still dependant after one flow is removed
+      model.removeFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode);
+      assertTrue(model.getDependants(sourceSinkNode).isEmpty());
+      model.addFlowFromLevelNode2RateNode(levelNode, rateNode);
+      model.removeFlowFromLevelNode2RateNode(levelNode, rateNode);
+      assertTrue(model.getDependants(rateNode).contains(levelNode));
+      model.removeFlowFromRateNode2LevelNode(rateNode, levelNode);
+      assertTrue(model.getDependants(rateNode).isEmpty());
+      
+      // (7) read-only view
+      try {
+         model.getDependants(constantNode).add(levelNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
+      
+      // (8) removed node -> no longer dependant
+      try {
+         model.removeNode(rateNode);
+      } catch (FormulaDependencyException e) {
+         fail();
+      }
+      assertTrue(model.getDependants(auxiliaryNode).isEmpty());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#getAllDependants(AbstractNode)}.
+    */
+   public void testGetAllDependants() {
+      // create model
+      LevelNode levelNode1 = model.createLevelNode("Level node 1", 0);
+      LevelNode levelNode2 = model.createLevelNode("Level node 2", 0);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 0);
+      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 0);
+      AuxiliaryNode auxiliaryNode1 = model.createAuxiliaryNode("Auxiliary node 1");
+      AuxiliaryNode auxiliaryNode2 = model.createAuxiliaryNode("Auxiliary node 2");
+      
+      model.addFlowFromLevelNode2RateNode(levelNode1, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode2);
+      model.setFormula(auxiliaryNode1, constantNode1);
+      model.setFormula(auxiliaryNode2, new ASTMultiply(auxiliaryNode1, constantNode2));
+      model.setFormula(rateNode, new ASTMultiply(auxiliaryNode2, levelNode1));
+      
+      // (1) constant node 1 -> auxiliary nodes, rate node and (by the flows) both level nodes
+      Set<AbstractNode> allDependants = model.getAllDependants(constantNode1);
+      assertEquals(5, allDependants.size());
+      assertTrue(allDependants.contains(auxiliaryNode1));
+      assertTrue(allDependants.contains(auxiliaryNode2));
+      assertTrue(allDependants.contains(rateNode));
+      assertTrue(allDependants.contains(levelNode1));
+      assertTrue(allDependants.contains(levelNode2));
+      
+      // (2) level node 2 -> nothing
+      assertTrue(model.getAllDependants(levelNode2).isEmpty());
+   }
+   
    /**
     * Tests the method {@link de.uka.aifb.com.systemDynamics.model.Model#validateModel()}.
     */
@@ -1608,6 +1889,108 @@ public class ModelTestCase extends TestCase {
       }
    }
    
+   /**
+    * Tests the method {@link de.uka.aifb.com.systemDynamics.model.Model#getModelErrors()}.
+    */
+   public void testGetModelErrors1() {
+      // (1) valid model -> no error
+      LevelNode levelNode = model.createLevelNode("Level node", 0);
+      RateNode rateNode1 = model.createRateNode("Rate node 1");
+      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 0);
+      model.addFlowFromLevelNode2RateNode(levelNode, rateNode1);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromRateNode2SourceSinkNode(rateNode1, sourceSinkNode);
+      model.setFormula(rateNode1, constantNode1);
+      assertTrue(model.getModelErrors().isEmpty());
+      
+      // (2) several errors -> all errors in the order of the checks
+      RateNode rateNode2 = model.createRateNode("Rate node 2");
+      AuxiliaryNode auxiliaryNode1 = model.createAuxiliaryNode("Auxiliary node 1");
+      AuxiliaryNode auxiliaryNode2 = model.createAuxiliaryNode("Auxiliary node 2");
+      AuxiliaryNode auxiliaryNode3 = model.createAuxiliaryNode("Auxiliary node 3");
+      AuxiliaryNode auxiliaryNode4 = model.createAuxiliaryNode("Auxiliary node 4");
+      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 0);
+      model.setFormula(rateNode1, new ASTPlus(auxiliaryNode1, auxiliaryNode3));
+      model.setFormula(auxiliaryNode1, auxiliaryNode2);
+      model.setFormula(auxiliaryNode2, auxiliaryNode1);
+      model.setFormula(auxiliaryNode3, new ASTPlus(auxiliaryNode3, constantNode1));
+      
+      List<ModelValidationException> modelErrors = model.getModelErrors();
+      assertEquals(7, modelErrors.size());
+      assertTrue(((RateNodeFlowException)modelErrors.get(0)).getProblematicRateNode() == rateNode2);
+      assertTrue(((NoFormulaException)modelErrors.get(1)).getNodeWithourFormula() == rateNode2);
+      assertTrue(((NoFormulaException)modelErrors.get(2)).getNodeWithourFormula() == auxiliaryNode4);
+      List<AuxiliaryNode> cycleNodes = ((AuxiliaryNodesCycleDependencyException)modelErrors.get(3)).getCycleNodes();
+      assertEquals(2, cycleNodes.size());
+      assertTrue(cycleNodes.get(0) == auxiliaryNode1);
+      assertTrue(cycleNodes.get(1) == auxiliaryNode2);
+      cycleNodes = ((AuxiliaryNodesCycleDependencyException)modelErrors.get(4)).getCycleNodes();
+      assertEquals(1, cycleNodes.size());
+      assertTrue(cycleNodes.get(0) == auxiliaryNode3);
+      assertTrue(((UselessNodeException)modelErrors.get(5)).getUselessNode() == constantNode2);
+      assertTrue(((UselessNodeException)modelErrors.get(6)).getUselessNode() == auxiliaryNode4);
+      assertTrue(modelErrors.get(6).getProblematicNodes().size() == 1);
+      assertTrue(modelErrors.get(6).getProblematicNodes().get(0) == auxiliaryNode4);
+      
+      // (3) validateModel throws the first error
+      try {
+         model.validateModel();
+         fail();
+      } catch (RateNodeFlowException e) {
+         assertTrue(e.getProblematicRateNode() == rateNode2);
+      } catch (Exception e) {
+         fail();
+      }
+      
+      // (4) without the rate node -> the cycles are thrown first
+      try {
+         model.removeNode(rateNode2);
+      } catch (FormulaDependencyException e) {
+         fail();
+      }
+      model.setFormula(auxiliaryNode4, constantNode2);
+      try {
+         model.validateModel();
+         fail();
+      } catch (AuxiliaryNodesCycleDependencyException e) {
+         assertEquals(2, e.getCycleNodes().size());
+      } catch (Exception e) {
+         fail();
+      }
+   }
+   
+   /**
+    * Tests the method {@link de.uka.aifb.com.systemDynamics.model.Model#getModelErrors()}.
+    */
+   public void testGetModelErrors2() {
+      // long chain of auxiliary nodes closed to a cycle -> one cycle with all nodes (no stack
+      // overflow)
+      final int NUMBER_AUXILIARY_NODES = 20000;
+      
+      LevelNode levelNode = model.createLevelNode("Level node", 0);
+      RateNode rateNode = model.createRateNode("Rate node");
+      model.addFlowFromLevelNode2RateNode(levelNode, rateNode);
+      model.addFlowFromRateNode2SourceSinkNode(rateNode, model.createSourceSinkNode());
+      
+      AuxiliaryNode[] auxiliaryNodes = new AuxiliaryNode[NUMBER_AUXILIARY_NODES];
+      for (int i = 0; i < NUMBER_AUXILIARY_NODES; i++) {
+         auxiliaryNodes[i] = model.createAuxiliaryNode("Auxiliary node " + i);
+         if (i > 0) {
+            model.setFormula(auxiliaryNodes[i], auxiliaryNodes[i - 1]);
+         }
+      }
+      model.setFormula(auxiliaryNodes[0], auxiliaryNodes[NUMBER_AUXILIARY_NODES - 1]);
+      model.setFormula(rateNode, auxiliaryNodes[0]);
+      
+      List<ModelValidationException> modelErrors = model.getModelErrors();
+      assertEquals(1, modelErrors.size());
+      List<AuxiliaryNode> cycleNodes = ((AuxiliaryNodesCycleDependencyException)modelErrors.get(0)).getCycleNodes();
+      assertEquals(NUMBER_AUXILIARY_NODES, cycleNodes.size());
+      for (int i = 0; i < NUMBER_AUXILIARY_NODES; i++) {
+         assertTrue(cycleNodes.get(i) == auxiliaryNodes[i]);
+      }
+   }
+   
    /**
     * Tests the method
     * {@link de.uka.aifb.com.systemDynamics.model.Model#validateModelAndSetUnchangeable()}.
@@ -1655,6 +2038,126 @@ public class ModelTestCase extends TestCase {
       assertFalse(isChangeable);
    }
    
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#getNodesLevelNodesDependOn(Collection)}.
+    */
+   public void testGetNodesLevelNodesDependOn() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         model.getNodesLevelNodesDependOn(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'levelNodes' must not be null.", e.getMessage());
+      }
+      
+      // (2) level nodes depend on their flows and the formula nodes (also of other level nodes)
+      AbstractNode[] nodes = createSlicingModel(model);
+      Set<AbstractNode> nodeSet = model.getNodesLevelNodesDependOn(Arrays.asList((LevelNode)nodes[0]));
+      assertEquals(3, nodeSet.size());
+      assertTrue(nodeSet.containsAll(Arrays.asList(nodes[0], nodes[1], nodes[2])));
+      
+      nodeSet = model.getNodesLevelNodesDependOn(Arrays.asList((LevelNode)nodes[3]));
+      assertEquals(7, nodeSet.size());
+      assertTrue(nodeSet.containsAll(Arrays.asList(nodes[0], nodes[1], nodes[2], nodes[3], nodes[4],
+                                                   nodes[5], nodes[6])));
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#setOutputNodes(Collection)}.
+    */
+   public void testSetOutputNodes() {
+      AbstractNode[] nodes = createSlicingModel(model);
+      
+      // (1) model still changeable -> WRONG
+      try {
+         model.setOutputNodes(null);
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+      
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      assertEquals(7, model.getNumberOfEvaluatedNodes());
+      
+      // (2) level node of another model -> WRONG
+      try {
+         model.setOutputNodes(Arrays.asList(new Model().createLevelNode("Level node", 0)));
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'outputNodes' must only contain level nodes of this model.", e.getMessage());
+      }
+      
+      // (3) sliced model -> fewer nodes computed, same values for the output nodes
+      Model unslicedModel = new Model();
+      AbstractNode[] unslicedNodes = createSlicingModel(unslicedModel);
+      try {
+         unslicedModel.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      
+      model.setOutputNodes(Arrays.asList((LevelNode)nodes[3]));
+      assertEquals(5, model.getNumberOfEvaluatedNodes());
+      CompiledModel compiledModel = new CompiledModel(model);
+      for (int i = 0; i < 10; i++) {
+         model.computeNextValues();
+         compiledModel.computeNextValues();
+         unslicedModel.computeNextValues();
+         for (int j : new int[] { 0, 3 }) {
+            assertTrue(model.getCurrentValue(nodes[j]) == unslicedModel.getCurrentValue(unslicedNodes[j]));
+            assertTrue(compiledModel.getCurrentValue(nodes[j]) == unslicedModel.getCurrentValue(unslicedNodes[j]));
+         }
+      }
+      // (level node 3 is not computed any more)
+      assertTrue(model.getCurrentValue(nodes[7]) == 3);
+      assertTrue(unslicedModel.getCurrentValue(unslicedNodes[7]) != 3);
+      
+      // (4) parameter 'null' -> all nodes computed again
+      model.setOutputNodes(null);
+      assertEquals(7, model.getNumberOfEvaluatedNodes());
+   }
+   
+   /**
+    * Creates a model for the slicing tests in the specified (empty) model:
+    * <p>
+    * L1 &lt;- R1 = C1 * L1, L2 &lt;- R2 = A2 + C2 with A2 = L1, L3 &lt;- R3 = C1
+    * 
+    * @param model empty model
+    * @return L1, R1, C1, L2, R2, A2, C2, L3, R3
+    */
+   private static AbstractNode[] createSlicingModel(Model model) {
+      LevelNode levelNode1 = model.createLevelNode("Level node 1", 1);
+      LevelNode levelNode2 = model.createLevelNode("Level node 2", 2);
+      LevelNode levelNode3 = model.createLevelNode("Level node 3", 3);
+      RateNode rateNode1 = model.createRateNode("Rate node 1");
+      RateNode rateNode2 = model.createRateNode("Rate node 2");
+      RateNode rateNode3 = model.createRateNode("Rate node 3");
+      AuxiliaryNode auxiliaryNode2 = model.createAuxiliaryNode("Auxiliary node 2");
+      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 0.5);
+      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 2);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode1);
+      model.addFlowFromRateNode2LevelNode(rateNode1, levelNode1);
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode2);
+      model.addFlowFromRateNode2LevelNode(rateNode2, levelNode2);
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode3);
+      model.addFlowFromRateNode2LevelNode(rateNode3, levelNode3);
+      model.setFormula(rateNode1, new ASTMultiply(constantNode1, levelNode1));
+      model.setFormula(auxiliaryNode2, levelNode1);
+      model.setFormula(rateNode2, new ASTPlus(auxiliaryNode2, constantNode2));
+      model.setFormula(rateNode3, constantNode1);
+      
+      return new AbstractNode[] { levelNode1, rateNode1, constantNode1, levelNode2, rateNode2,
+                                  auxiliaryNode2, constantNode2, levelNode3, rateNode3 };
+   }
+   
    /**
     * Tests the method {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()}. 
     */
@@ -1932,33 +2435,648 @@ public class ModelTestCase extends TestCase {
    }
    
    /**
-    * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.Model#haveAuxiliaryNodesCycleDependency()}.
+    * Tests the method {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()} with
+    * different simulation specifications.
     */
-   public void testHaveAuxiliaryNodesCycleDependency() {
-      // (1) model without any nodes -> return 'false'
-      Boolean returnedValue = null;
+   public void testComputeNextValues7() {
+      // exponential decay (outflow = 0.5 * level node) over 10 rounds: exact value exp(-5)
+      double exactValue = Math.exp(-5);
+      
+      // (1) Euler method with DT = 1 -> same values as the default specification
+      assertEquals(Math.pow(0.5, 10), computeDecay(new SimulationSpecification(1, IntegrationMethod.EULER), 10), 0);
+      
+      // (2) growth factors of one time step with DT = 0.5
+      double eulerValue = computeDecay(new SimulationSpecification(0.5, IntegrationMethod.EULER), 10);
+      double heunValue = computeDecay(new SimulationSpecification(0.5, IntegrationMethod.HEUN), 10);
+      double rk4Value = computeDecay(new SimulationSpecification(0.5, IntegrationMethod.RK4), 10);
+      assertEquals(Math.pow(0.75, 20), eulerValue, 1E-15);
+      assertEquals(Math.pow(0.78125, 20), heunValue, 1E-15);
+      assertEquals(Math.pow(1 - 0.25 + 0.25 * 0.25 / 2 - 0.25 * 0.25 * 0.25 / 6 + 0.25 * 0.25 * 0.25 * 0.25 / 24, 20),
+                   rk4Value, 1E-15);
+      
+      // (3) higher order -> more accurate
+      assertTrue(Math.abs(heunValue - exactValue) < Math.abs(eulerValue - exactValue));
+      assertTrue(Math.abs(rk4Value - exactValue) < Math.abs(heunValue - exactValue));
+      assertTrue(Math.abs(rk4Value - exactValue) < 1E-5);
+   }
+   
+   /**
+    * Tests the method {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()} with
+    * the adaptive integration method.
+    */
+   public void testComputeNextValues8() {
+      // (1) exponential decay -> within tolerance
+      double value = computeDecay(new SimulationSpecification(1, IntegrationMethod.DORMAND_PRINCE, 1E-8, 1E-8), 10);
+      assertTrue(Math.abs(value - Math.exp(-5)) < 1E-7);
       
+      // (2) constant flow -> no error, one time step per round after the initial time step
+      LevelNode levelNode = model.createLevelNode("Level node", 0);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode = model.createConstantNode("Constant node", 3);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode);
+      model.setFormula(rateNode, constantNode);
       try {
-         returnedValue = (Boolean)PrivateAccessor.invoke(model, "haveAuxiliaryNodesCycleDependency",
-                                                         null, null);
-      } catch (Throwable t) {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
          fail();
       }
+      model.setSimulationSpecification(new SimulationSpecification(0.25, IntegrationMethod.DORMAND_PRINCE));
       
-      assertFalse(returnedValue);
-      
-      // (2) only one auxiliary node, nothing else in model -> return 'false'
-      AuxiliaryNode auxiliaryNodeA = model.createAuxiliaryNode("Auxiliary node 1");
-      
+      model.computeNextValues();
+      assertTrue(levelNode.getCurrentValue() == 3);
+      assertEquals(2, model.getNumberOfAcceptedSteps());
+      for (int i = 0; i < 9; i++) {
+         model.computeNextValues();
+      }
+      assertTrue(levelNode.getCurrentValue() == 30);
+      assertEquals(11, model.getNumberOfAcceptedSteps());
+      assertEquals(0, model.getNumberOfRejectedSteps());
+   }
+   
+   /**
+    * Tests the method {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()} with
+    * the adaptive integration method for a model with a sudden transition.
+    */
+   public void testComputeNextValues9() {
+      // outflow = 2 * MAX(0, level node - 10): quiet until the level node reaches 10 (round 10)
+      LevelNode levelNode = model.createLevelNode("Level node", 0);
+      RateNode inflow = model.createRateNode("Inflow");
+      RateNode outflow = model.createRateNode("Outflow");
+      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 1);
+      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 10);
+      ConstantNode constantNode3 = model.createConstantNode("Constant node 3", 2);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, inflow);
+      model.addFlowFromRateNode2LevelNode(inflow, levelNode);
+      model.addFlowFromLevelNode2RateNode(levelNode, outflow);
+      model.addFlowFromRateNode2SourceSinkNode(outflow, sourceSinkNode);
+      model.setFormula(inflow, constantNode1);
+      model.setFormula(outflow, new ASTMultiply(constantNode3,
+                                                new ASTMax(new ASTLiteral(0),
+                                                           new ASTMinus(levelNode, constantNode2))));
       try {
-         returnedValue = (Boolean)PrivateAccessor.invoke(model, "haveAuxiliaryNodesCycleDependency",
-                                                         null, null);
-      } catch (Throwable t) {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
          fail();
       }
+      model.setSimulationSpecification(new SimulationSpecification(1, IntegrationMethod.DORMAND_PRINCE, 1E-8, 1E-8));
       
-      assertFalse(returnedValue);
+      for (int i = 0; i < 10; i++) {
+         model.computeNextValues();
+      }
+      assertTrue(Math.abs(levelNode.getCurrentValue() - 10) < 1E-9);
+      assertEquals(10, model.getNumberOfAcceptedSteps());
+      assertEquals(0, model.getNumberOfRejectedSteps());
+      
+      // afterwards: level node = 10.5 - 0.5 * exp(-2t)
+      for (int i = 0; i < 5; i++) {
+         model.computeNextValues();
+      }
+      assertTrue(Math.abs(levelNode.getCurrentValue() - (10.5 - 0.5 * Math.exp(-10))) < 1E-6);
+      assertTrue(model.getNumberOfAcceptedSteps() > 15);
+   }
+   
+   /**
+    * Tests the method {@link de.uka.aifb.com.systemDynamics.model.Model#computeNextValues()} with
+    * the implicit integration methods.
+    */
+   public void testComputeNextValues10() {
+      // (1) stiff decay (outflow = 50 * level node) with DT = 1: Euler method diverges, backward
+      //     Euler method decays by factor 1 / 51 per time step with a single Jacobian
+      assertTrue(Math.abs(computeDecay(new SimulationSpecification(1, IntegrationMethod.EULER), 5, 50)) > 1E6);
+      
+      LevelNode levelNode = model.createLevelNode("Level node", 1);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode = model.createConstantNode("Constant node", 50);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromLevelNode2RateNode(levelNode, rateNode);
+      model.addFlowFromRateNode2SourceSinkNode(rateNode, sourceSinkNode);
+      model.setFormula(rateNode, new ASTMultiply(levelNode, constantNode));
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      model.setSimulationSpecification(new SimulationSpecification(1, IntegrationMethod.BACKWARD_EULER));
+      for (int i = 0; i < 5; i++) {
+         model.computeNextValues();
+      }
+      assertEquals(Math.pow(51, -5), levelNode.getCurrentValue(), 1E-12 * Math.pow(51, -5));
+      assertEquals(5, model.getNumberOfAcceptedSteps());
+      assertEquals(1, model.getNumberOfJacobianEvaluations());
+      
+      // (2) BDF2 also stays stable
+      assertTrue(Math.abs(computeDecay(new SimulationSpecification(1, IntegrationMethod.BDF2), 10, 50)) < 1E-3);
+      
+      // (3) non-stiff decay: BDF2 (second order) is more accurate than backward Euler
+      double exactValue = Math.exp(-5);
+      double backwardEulerValue = computeDecay(new SimulationSpecification(0.1, IntegrationMethod.BACKWARD_EULER), 10, 0.5);
+      double bdf2Value = computeDecay(new SimulationSpecification(0.1, IntegrationMethod.BDF2), 10, 0.5);
+      assertTrue(Math.abs(bdf2Value - exactValue) < Math.abs(backwardEulerValue - exactValue));
+      assertTrue(Math.abs(bdf2Value - exactValue) < 1E-4);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Integrator#computeJacobian(int, LevelNode[], double[])}.
+    */
+   public void testComputeJacobian() {
+      // decays A, B, C, transfer from D to E and decay of E: the columns of A, B, C and D have
+      // disjoint rows -> 2 groups of perturbed columns
+      double[] decayRates = { 0.1, 0.2, 0.3, 0.4, 0.5 };
+      String[] names = { "A", "B", "C", "D", "E" };
+      LevelNode[] levelNodes = new LevelNode[names.length];
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      for (int i = 0; i < names.length; i++) {
+         levelNodes[i] = model.createLevelNode(names[i], i + 1);
+      }
+      for (int i = 0; i < names.length; i++) {
+         RateNode rateNode = model.createRateNode("Rate " + names[i]);
+         model.addFlowFromLevelNode2RateNode(levelNodes[i], rateNode);
+         if (i == 3) {
+            model.addFlowFromRateNode2LevelNode(rateNode, levelNodes[4]);
+         } else {
+            model.addFlowFromRateNode2SourceSinkNode(rateNode, sourceSinkNode);
+         }
+         model.setFormula(rateNode, new ASTMultiply(levelNodes[i],
+                                                    model.createConstantNode("Constant " + names[i], decayRates[i])));
+      }
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      
+      double[][] jacobian = null;
+      LevelNode[] scheduledLevelNodes = null;
+      try {
+         Object integrator = PrivateAccessor.getField(model, "integrator");
+         int firstLevelNodeIndex = (Integer)PrivateAccessor.invoke(integrator, "getFirstLevelNodeIndex", null, null);
+         scheduledLevelNodes = (LevelNode[])PrivateAccessor.invoke(integrator, "getScheduledLevelNodes",
+                                                                   new Class[] { int.class },
+                                                                   new Object[] { firstLevelNodeIndex });
+         double[] values = new double[scheduledLevelNodes.length];
+         for (int i = 0; i < values.length; i++) {
+            values[i] = scheduledLevelNodes[i].getCurrentValue();
+         }
+         jacobian = (double[][])PrivateAccessor.invoke(integrator, "computeJacobian",
+                                                       new Class[] { int.class, LevelNode[].class, double[].class },
+                                                       new Object[] { firstLevelNodeIndex, scheduledLevelNodes, values });
+         assertEquals(2, ((int[][])PrivateAccessor.getField(integrator, "jacobianColumnGroups")).length);
+      } catch (Throwable t) {
+         fail();
+      }
+      
+      List<LevelNode> order = Arrays.asList(scheduledLevelNodes);
+      for (int j = 0; j < levelNodes.length; j++) {
+         int column = order.indexOf(levelNodes[j]);
+         for (int i = 0; i < levelNodes.length; i++) {
+            int row = order.indexOf(levelNodes[i]);
+            double expectedValue = 0;
+            if (i == j) {
+               expectedValue = -decayRates[j];
+            } else if (j == 3 && i == 4) {
+               expectedValue = decayRates[3];
+            }
+            if (expectedValue == 0) {
+               assertTrue(names[i] + "/" + names[j], jacobian[row][column] == 0);
+            } else {
+               assertEquals(names[i] + "/" + names[j], expectedValue, jacobian[row][column], 1E-6);
+            }
+         }
+         // the level nodes have their values again
+         assertTrue(levelNodes[j].getCurrentValue() == j + 1);
+      }
+      assertEquals(1, model.getNumberOfJacobianEvaluations());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#setSimulationSpecification(SimulationSpecification)}.
+    */
+   public void testSetSimulationSpecification() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         model.setSimulationSpecification(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'simulationSpecification' must not be null.", e.getMessage());
+      }
+      
+      // (2) invalid time steps -> WRONG
+      try {
+         new SimulationSpecification(0, IntegrationMethod.EULER);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'dt' must be greater than 0 and at most 1.", e.getMessage());
+      }
+      try {
+         new SimulationSpecification(0.3, IntegrationMethod.EULER);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'dt' must be 1 divided by a positive integer.", e.getMessage());
+      }
+      
+      // (3) invalid tolerances -> WRONG
+      try {
+         new SimulationSpecification(1, IntegrationMethod.DORMAND_PRINCE, -1, 1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'relativeTolerance' must not be negative.", e.getMessage());
+      }
+      try {
+         new SimulationSpecification(1, IntegrationMethod.DORMAND_PRINCE, 0, 0);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'relativeTolerance' and 'absoluteTolerance' must not both be 0.", e.getMessage());
+      }
+      
+      // (4) correct parameters
+      SimulationSpecification simulationSpecification = new SimulationSpecification(0.25, IntegrationMethod.RK4);
+      assertEquals(4, simulationSpecification.getNumberOfStepsPerRound());
+      assertTrue(simulationSpecification.getDT() == 0.25);
+      assertFalse(simulationSpecification.isDefault());
+      assertTrue(SimulationSpecification.DEFAULT.isDefault());
+      assertSame(SimulationSpecification.DEFAULT, model.getSimulationSpecification());
+      
+      // (5) the compiled backends support the explicit fixed-step methods, the other backends
+      //     fall back to the interpreter for other specifications than the default one
+      createSlicingModel(model);
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      model.setSimulationSpecification(simulationSpecification);
+      assertTrue(ExecutionEngine.COMPILED.supports(simulationSpecification));
+      assertTrue(ExecutionEngine.BYTECODE.supports(simulationSpecification));
+      assertFalse(ExecutionEngine.PARALLEL.supports(simulationSpecification));
+      ModelExecutor modelExecutor = ExecutionEngine.COMPILED.createModelExecutor(model);
+      assertTrue(modelExecutor instanceof CompiledModel);
+      assertSame(simulationSpecification, ((CompiledModel)modelExecutor).getSimulationSpecification());
+      assertTrue(ExecutionEngine.BYTECODE.createModelExecutor(model) instanceof CompiledModel);
+      assertSame(model, ExecutionEngine.PARALLEL.createModelExecutor(model));
+      assertSame(model, ExecutionEngine.CHANGE_PROPAGATION.createModelExecutor(model));
+      SimulationSpecification implicitSpecification = new SimulationSpecification(0.5, IntegrationMethod.BDF2);
+      model.setSimulationSpecification(implicitSpecification);
+      assertFalse(ExecutionEngine.COMPILED.supports(implicitSpecification));
+      assertTrue(ExecutionEngine.INTERPRETER.supports(implicitSpecification));
+      assertSame(model, ExecutionEngine.COMPILED.createModelExecutor(model));
+      model.setSimulationSpecification(SimulationSpecification.DEFAULT);
+      assertTrue(ExecutionEngine.COMPILED.createModelExecutor(model) instanceof CompiledModel);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#computeSteadyState(double, int)}.
+    */
+   public void testComputeSteadyState() {
+      // (1) model still changeable -> WRONG
+      try {
+         model.computeSteadyState();
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+      
+      // (2) nonlinear model: Inflow = 10, Outflow = 0.1 * A * A, Transfer = A, Loss = 0.5 * B
+      //     -> A = 10, B = 20 by Newton/Broyden iterations (the rounds would oscillate around it)
+      LevelNode levelNodeA = model.createLevelNode("A", 1);
+      LevelNode levelNodeB = model.createLevelNode("B", 0);
+      RateNode inflow = model.createRateNode("Inflow");
+      RateNode outflow = model.createRateNode("Outflow");
+      RateNode transfer = model.createRateNode("Transfer");
+      RateNode loss = model.createRateNode("Loss");
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, inflow);
+      model.addFlowFromRateNode2LevelNode(inflow, levelNodeA);
+      model.addFlowFromLevelNode2RateNode(levelNodeA, outflow);
+      model.addFlowFromRateNode2SourceSinkNode(outflow, sourceSinkNode);
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, transfer);
+      model.addFlowFromRateNode2LevelNode(transfer, levelNodeB);
+      model.addFlowFromLevelNode2RateNode(levelNodeB, loss);
+      model.addFlowFromRateNode2SourceSinkNode(loss, sourceSinkNode);
+      model.setFormula(inflow, model.createConstantNode("Inflow constant", 10));
+      model.setFormula(outflow, new ASTMultiply(new ASTMultiply(levelNodeA, levelNodeA),
+                                                model.createConstantNode("Outflow constant", 0.1)));
+      model.setFormula(transfer, levelNodeA);
+      model.setFormula(loss, new ASTMultiply(levelNodeB, model.createConstantNode("Loss constant", 0.5)));
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      
+      try {
+         model.computeSteadyState(0, 100);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'tolerance' must be greater than 0.", e.getMessage());
+      }
+      
+      SteadyState steadyState = model.computeSteadyState();
+      assertTrue(steadyState.isConverged());
+      assertEquals(0, steadyState.getNumberOfRounds());
+      assertTrue(steadyState.getNumberOfIterations() > 0);
+      assertEquals(10, steadyState.getValue(levelNodeA), 1E-7);
+      assertEquals(20, steadyState.getValue(levelNodeB), 1E-7);
+      assertTrue(steadyState.getResidual() <= 1E-8);
+      assertTrue(model.getCurrentValue(levelNodeA) == steadyState.getValue(levelNodeA));
+      assertEquals(10, model.getCurrentValue(outflow), 1E-7);
+      
+      // (3) singular Jacobian (Transfer = 0.1 * A from A to B, the total is conserved): Newton
+      //     iterations fail, time stepping until A has (almost) flowed to B
+      Model transferModel = new Model();
+      levelNodeA = transferModel.createLevelNode("A", 10);
+      levelNodeB = transferModel.createLevelNode("B", 0);
+      transfer = transferModel.createRateNode("Transfer");
+      transferModel.addFlowFromLevelNode2RateNode(levelNodeA, transfer);
+      transferModel.addFlowFromRateNode2LevelNode(transfer, levelNodeB);
+      transferModel.setFormula(transfer, new ASTMultiply(levelNodeA, transferModel.createConstantNode("Transfer constant", 0.1)));
+      try {
+         transferModel.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      
+      steadyState = transferModel.computeSteadyState(1E-9, 0);
+      assertFalse(steadyState.isConverged());
+      assertTrue(transferModel.getCurrentValue(levelNodeA) == 10);
+      assertTrue(transferModel.getCurrentValue(transfer) == 1);
+      
+      // not converged after some rounds -> level nodes restored, rate node computed with them
+      steadyState = transferModel.computeSteadyState(1E-9, 50);
+      assertFalse(steadyState.isConverged());
+      assertEquals(50, steadyState.getNumberOfRounds());
+      assertTrue(transferModel.getCurrentValue(levelNodeA) == 10);
+      assertTrue(transferModel.getCurrentValue(levelNodeB) == 0);
+      assertTrue(transferModel.getCurrentValue(transfer) == 1);
+      
+      steadyState = transferModel.computeSteadyState(1E-9, 1000);
+      assertTrue(steadyState.isConverged());
+      assertEquals(200, steadyState.getNumberOfRounds());
+      assertEquals(0, steadyState.getValue(levelNodeA), 1E-8);
+      assertEquals(10, steadyState.getValue(levelNodeB), 1E-8);
+   }
+   
+   /**
+    * Computes the level node's value of an exponential decay model (outflow = 0.5 * level node,
+    * start value 1) after the specified number of rounds.
+    * 
+    * @param simulationSpecification simulation specification
+    * @param numberRounds number of rounds
+    * @return level node's value
+    */
+   private static double computeDecay(SimulationSpecification simulationSpecification, int numberRounds) {
+      return computeDecay(simulationSpecification, numberRounds, 0.5);
+   }
+   
+   /**
+    * Computes the level node's value of an exponential decay model (outflow = decay rate * level
+    * node, start value 1) after the specified number of rounds.
+    * 
+    * @param simulationSpecification simulation specification
+    * @param numberRounds number of rounds
+    * @param decayRate decay rate
+    * @return level node's value
+    */
+   private static double computeDecay(SimulationSpecification simulationSpecification, int numberRounds,
+                                      double decayRate) {
+      Model model = new Model();
+      LevelNode levelNode = model.createLevelNode("Level node", 1);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode = model.createConstantNode("Constant node", decayRate);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromLevelNode2RateNode(levelNode, rateNode);
+      model.addFlowFromRateNode2SourceSinkNode(rateNode, sourceSinkNode);
+      model.setFormula(rateNode, new ASTMultiply(levelNode, constantNode));
+      
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      model.setSimulationSpecification(simulationSpecification);
+      
+      for (int i = 0; i < numberRounds; i++) {
+         model.computeNextValues();
+      }
+      return levelNode.getCurrentValue();
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#createEvaluationSchedule()}.
+    */
+   public void testCreateEvaluationSchedule() {
+      // (1) model with only one level node -> schedule contains only this level node
+      LevelNode levelNode1 = model.createLevelNode("Level node 1", 0);
+      
+      AbstractNode[] schedule = null;
+      try {
+         schedule = (AbstractNode[])PrivateAccessor.invoke(model, "createEvaluationSchedule",
+                                                           null, null);
+      } catch (Throwable t) {
+         fail();
+      }
+      assertTrue(schedule.length == 1);
+      assertTrue(schedule[0] == levelNode1);
+      
+      // (2) "normal" model: auxiliary nodes (topological order), rate nodes, level nodes
+      LevelNode levelNode2 = model.createLevelNode("Level node 2", 0);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 0);
+      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 0);
+      AuxiliaryNode auxiliaryNode1 = model.createAuxiliaryNode("Auxiliary node 1");
+      AuxiliaryNode auxiliaryNode2 = model.createAuxiliaryNode("Auxiliary node 2");
+      AuxiliaryNode auxiliaryNode3 = model.createAuxiliaryNode("Auxiliary node 3");
+      model.addFlowFromLevelNode2RateNode(levelNode1, rateNode);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode2);
+      model.setFormula(rateNode, auxiliaryNode1);
+      model.setFormula(auxiliaryNode1, new ASTPlus(auxiliaryNode2, auxiliaryNode3));
+      model.setFormula(auxiliaryNode2, new ASTPlus(auxiliaryNode3, constantNode1));
+      model.setFormula(auxiliaryNode3, constantNode2);
+      
+      try {
+         schedule = (AbstractNode[])PrivateAccessor.invoke(model, "createEvaluationSchedule",
+                                                           null, null);
+      } catch (Throwable t) {
+         fail();
+      }
+      assertTrue(schedule.length == 6);
+      assertTrue(schedule[0] == auxiliaryNode3);
+      assertTrue(schedule[1] == auxiliaryNode2);
+      assertTrue(schedule[2] == auxiliaryNode1);
+      assertTrue(schedule[3] == rateNode);
+      assertTrue(schedule[4] instanceof LevelNode);
+      assertTrue(schedule[5] instanceof LevelNode);
+      assertTrue(schedule[4] != schedule[5]);
+      
+      // (3) schedule is stored while setting the model unchangeable
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      try {
+         schedule = (AbstractNode[])PrivateAccessor.getField(model, "evaluationSchedule");
+      } catch (Throwable t) {
+         fail();
+      }
+      assertTrue(schedule.length == 6);
+      assertTrue(schedule[3] == rateNode);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#optimizeFormulas()}.
+    */
+   public void testOptimizeFormulas() {
+      LevelNode levelNode = model.createLevelNode("Level node", 10);
+      RateNode rateNode = model.createRateNode("Rate node");
+      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 0.25);
+      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 0.75);
+      AuxiliaryNode auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      model.addFlowFromLevelNode2RateNode(levelNode, rateNode);
+      model.addFlowFromRateNode2SourceSinkNode(rateNode, sourceSinkNode);
+      ASTElement auxiliaryFormula =
+         new ASTMultiply(new ASTPlus(constantNode1, constantNode2), levelNode);
+      ASTElement rateFormula = new ASTMultiply(auxiliaryNode, constantNode1);
+      model.setFormula(auxiliaryNode, auxiliaryFormula);
+      model.setFormula(rateNode, rateFormula);
+      
+      // (1) formulas are executed as they are while the model is changeable
+      ASTElement executionFormula = null;
+      try {
+         executionFormula = (ASTElement)PrivateAccessor.invoke(auxiliaryNode, "getExecutionFormula",
+                                                               null, null);
+      } catch (Throwable t) {
+         fail();
+      }
+      assertTrue(executionFormula == auxiliaryFormula);
+      
+      // (2) optimized when the model is set unchangeable: (0.25 + 0.75) * LN -> LN
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      try {
+         executionFormula = (ASTElement)PrivateAccessor.invoke(auxiliaryNode, "getExecutionFormula",
+                                                               null, null);
+      } catch (Throwable t) {
+         fail();
+      }
+      assertTrue(executionFormula == levelNode);
+      
+      try {
+         executionFormula = (ASTElement)PrivateAccessor.invoke(rateNode, "getExecutionFormula",
+                                                               null, null);
+      } catch (Throwable t) {
+         fail();
+      }
+      assertTrue(executionFormula instanceof ASTMultiply);
+      assertTrue(((ASTMultiply)executionFormula).getLeftElement() == auxiliaryNode);
+      assertTrue(((ASTMultiply)executionFormula).getRightElement() instanceof ASTLiteral);
+      
+      // (3) original formulas are kept (e.g. for display and XML export)
+      assertTrue(auxiliaryNode.getFormula() == auxiliaryFormula);
+      assertTrue(rateNode.getFormula() == rateFormula);
+      
+      // (4) same values as the original formulas
+      model.computeNextValues();
+      assertTrue(auxiliaryNode.getCurrentValue() == 10);
+      assertTrue(rateNode.getCurrentValue() == 2.5);
+      assertTrue(levelNode.getCurrentValue() == 7.5);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#optimizeFormulas()} for bit-identical
+    * results: the bundled Phase models are executed with the optimized formulas and with the
+    * original formulas (baseline).
+    */
+   public void testOptimizeFormulas2() {
+      String[] fileNames = { "./Phase-2.xml", "./Phase-3.xml", "./Phase-4.xml", "./Phase-5.xml" };
+      for (String fileName : fileNames) {
+         Model optimizedModel = null;
+         Model baselineModel = null;
+         try {
+            optimizedModel = XMLModelReader.readXMLModel(fileName);
+            baselineModel = XMLModelReader.readXMLModel(fileName);
+            optimizedModel.validateModelAndSetUnchangeable();
+            baselineModel.validateModelAndSetUnchangeable();
+         } catch (Exception e) {
+            fail();
+         }
+         
+         // baseline: execute the original formulas
+         try {
+            for (AuxiliaryNode auxiliaryNode : baselineModel.getAuxiliaryNodes()) {
+               PrivateAccessor.invoke(auxiliaryNode, "setExecutionFormula", new Class[] { ASTElement.class },
+                                      new Object[] { auxiliaryNode.getFormula() });
+            }
+            for (RateNode rateNode : baselineModel.getRateNodes()) {
+               PrivateAccessor.invoke(rateNode, "setExecutionFormula", new Class[] { ASTElement.class },
+                                      new Object[] { rateNode.getFormula() });
+            }
+         } catch (Throwable t) {
+            fail();
+         }
+         
+         ArrayList<AbstractNode> optimizedNodes = new ArrayList<AbstractNode>();
+         ArrayList<AbstractNode> baselineNodes = new ArrayList<AbstractNode>();
+         optimizedNodes.addAll(optimizedModel.getLevelNodes());
+         optimizedNodes.addAll(optimizedModel.getRateNodes());
+         optimizedNodes.addAll(optimizedModel.getAuxiliaryNodes());
+         baselineNodes.addAll(baselineModel.getLevelNodes());
+         baselineNodes.addAll(baselineModel.getRateNodes());
+         baselineNodes.addAll(baselineModel.getAuxiliaryNodes());
+         assertEquals(baselineNodes.size(), optimizedNodes.size());
+         
+         for (int round = 0; round < 200; round++) {
+            optimizedModel.computeNextValues();
+            baselineModel.computeNextValues();
+            for (int i = 0; i < optimizedNodes.size(); i++) {
+               assertEquals(baselineNodes.get(i).getNodeName(), optimizedNodes.get(i).getNodeName());
+               assertEquals(Double.doubleToLongBits(baselineModel.getCurrentValue(baselineNodes.get(i))),
+                            Double.doubleToLongBits(optimizedModel.getCurrentValue(optimizedNodes.get(i))));
+            }
+         }
+      }
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#haveAuxiliaryNodesCycleDependency()}.
+    */
+   public void testHaveAuxiliaryNodesCycleDependency() {
+      // (1) model without any nodes -> return 'false'
+      Boolean returnedValue = null;
+      
+      try {
+         returnedValue = (Boolean)PrivateAccessor.invoke(model, "haveAuxiliaryNodesCycleDependency",
+                                                         null, null);
+      } catch (Throwable t) {
+         fail();
+      }
+      
+      assertFalse(returnedValue);
+      
+      // (2) only one auxiliary node, nothing else in model -> return 'false'
+      AuxiliaryNode auxiliaryNodeA = model.createAuxiliaryNode("Auxiliary node 1");
+      
+      try {
+         returnedValue = (Boolean)PrivateAccessor.invoke(model, "haveAuxiliaryNodesCycleDependency",
+                                                         null, null);
+      } catch (Throwable t) {
+         fail();
+      }
+      
+      assertFalse(returnedValue);
       
       // (3) two auxiliary nodes with cycle dependency -> return 'true'
       AuxiliaryNode auxiliaryNodeB = model.createAuxiliaryNode("Auxiliary node 2");
@@ -2086,175 +3204,121 @@ public class ModelTestCase extends TestCase {
    
    /**
     * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.Model#getAdjacentListOfAuxiliaryNodes()}.
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#createsAuxiliaryNodesCycleDependency(AbstractNode, ASTElement)}.
     */
-   public void testGetAdjacentListOfAuxiliaryNodes() {
-      HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>> adjacentList = null;
-      
-      // (1) empty model -> empty adjacent list
+   public void testCreatesAuxiliaryNodesCycleDependency() {
+      // (1) parameter 'null' -> WRONG
       try {
-         adjacentList =
-            (HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>>)PrivateAccessor.invoke(model,
-                                                                  "getAdjacentListOfAuxiliaryNodes",
-                                                                  null, null);
-      } catch (Throwable t) {
+         model.createsAuxiliaryNodesCycleDependency(null, null);
          fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'node' must not be null.", e.getMessage());
       }
-      assertTrue(adjacentList.isEmpty());
       
-      // (2) only one auxiliary node, nothing else in model -> empty adjacent list
-      AuxiliaryNode auxiliaryNodeA = model.createAuxiliaryNode("Auxiliary node 1");
+      // create model: A <- B <- C
+      ConstantNode constantNode = model.createConstantNode("Constant node", 1);
+      RateNode rateNode = model.createRateNode("Rate node");
+      AuxiliaryNode auxiliaryNodeA = model.createAuxiliaryNode("Auxiliary node A");
+      AuxiliaryNode auxiliaryNodeB = model.createAuxiliaryNode("Auxiliary node B");
+      AuxiliaryNode auxiliaryNodeC = model.createAuxiliaryNode("Auxiliary node C");
+      model.setFormula(auxiliaryNodeA, constantNode);
+      model.setFormula(auxiliaryNodeB, auxiliaryNodeA);
+      model.setFormula(auxiliaryNodeC, auxiliaryNodeB);
       
+      // (2) formulas without cycle
+      assertFalse(model.createsAuxiliaryNodesCycleDependency(auxiliaryNodeA, null));
+      assertFalse(model.createsAuxiliaryNodesCycleDependency(auxiliaryNodeA, constantNode));
+      assertFalse(model.createsAuxiliaryNodesCycleDependency(auxiliaryNodeC, auxiliaryNodeA));
+      assertFalse(model.createsAuxiliaryNodesCycleDependency(rateNode, auxiliaryNodeC));
+      
+      // (3) formulas with cycle
+      assertTrue(model.createsAuxiliaryNodesCycleDependency(auxiliaryNodeA, auxiliaryNodeA));
+      assertTrue(model.createsAuxiliaryNodesCycleDependency(auxiliaryNodeA,
+                                                            new ASTPlus(constantNode, auxiliaryNodeC)));
+      assertTrue(model.createsAuxiliaryNodesCycleDependency(auxiliaryNodeB, auxiliaryNodeC));
+      
+      // (4) the model is not changed by the check
+      Boolean returnedValue = null;
       try {
-         adjacentList =
-            (HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>>)PrivateAccessor.invoke(model,
-                                                                  "getAdjacentListOfAuxiliaryNodes",
-                                                                  null, null);
+         returnedValue = (Boolean)PrivateAccessor.invoke(model, "haveAuxiliaryNodesCycleDependency",
+                                                         null, null);
       } catch (Throwable t) {
          fail();
       }
+      assertFalse(returnedValue);
       
-      assertTrue(adjacentList.isEmpty());
-      
-      // (3) two auxiliary nodes with cycle dependency
-      AuxiliaryNode auxiliaryNodeB = model.createAuxiliaryNode("Auxiliary node 2");
-      model.setFormula(auxiliaryNodeA, auxiliaryNodeB);
-      model.setFormula(auxiliaryNodeB, auxiliaryNodeA);
-      
+      // (5) cycle set nevertheless -> found; removed again -> not found any more
+      model.setFormula(auxiliaryNodeA, auxiliaryNodeC);
       try {
-         adjacentList =
-            (HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>>)PrivateAccessor.invoke(model,
-                                                                  "getAdjacentListOfAuxiliaryNodes",
-                                                                  null, null);
+         returnedValue = (Boolean)PrivateAccessor.invoke(model, "haveAuxiliaryNodesCycleDependency",
+                                                         null, null);
       } catch (Throwable t) {
          fail();
       }
+      assertTrue(returnedValue);
+      assertTrue(model.createsAuxiliaryNodesCycleDependency(auxiliaryNodeB, auxiliaryNodeC));
       
-      assertTrue(adjacentList.size() == 2);
-      assertTrue(adjacentList.get(auxiliaryNodeA).size() == 1);
-      assertTrue(adjacentList.get(auxiliaryNodeA).contains(auxiliaryNodeB));
-      assertTrue(adjacentList.get(auxiliaryNodeB).size() == 1);
-      assertTrue(adjacentList.get(auxiliaryNodeB).contains(auxiliaryNodeA));
-      
-      
-      // (4) "normel" model
-      LevelNode levelNode1 = model.createLevelNode("Level node 1", 0);
-      LevelNode levelNode2 = model.createLevelNode("Level node 2", 0);
-      RateNode rateNode = model.createRateNode("Rate node");
-      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 0);
-      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 0);
-      AuxiliaryNode auxiliaryNode1 = model.createAuxiliaryNode("Auxiliary node 1");
-      AuxiliaryNode auxiliaryNode2 = model.createAuxiliaryNode("Auxiliary node 2");
-      AuxiliaryNode auxiliaryNode3 = model.createAuxiliaryNode("Auxiliary node 3");
-      model.addFlowFromLevelNode2RateNode(levelNode1, rateNode);
-      model.addFlowFromRateNode2LevelNode(rateNode, levelNode2);
-      model.setFormula(rateNode, auxiliaryNode1);
-      model.setFormula(auxiliaryNode1, new ASTPlus(auxiliaryNode2, auxiliaryNode3));
-      model.setFormula(auxiliaryNode2, new ASTPlus(constantNode1, auxiliaryNode3));
-      model.setFormula(auxiliaryNode3, constantNode2);
-      
+      model.setFormula(auxiliaryNodeB, constantNode);
       try {
-         adjacentList =
-            (HashMap<AuxiliaryNode, HashSet<AuxiliaryNode>>)PrivateAccessor.invoke(model,
-                                                                  "getAdjacentListOfAuxiliaryNodes",
-                                                                  null, null);
+         returnedValue = (Boolean)PrivateAccessor.invoke(model, "haveAuxiliaryNodesCycleDependency",
+                                                         null, null);
       } catch (Throwable t) {
          fail();
       }
-      
-      assertTrue(adjacentList.size() == 4);
-      assertTrue(adjacentList.get(auxiliaryNodeA).size() == 1);
-      assertTrue(adjacentList.get(auxiliaryNodeA).contains(auxiliaryNodeB));
-      assertTrue(adjacentList.get(auxiliaryNodeB).size() == 1);
-      assertTrue(adjacentList.get(auxiliaryNodeB).contains(auxiliaryNodeA));
-      assertTrue(adjacentList.get(auxiliaryNode2).size() == 1);
-      assertTrue(adjacentList.get(auxiliaryNode2).contains(auxiliaryNode1));
-      assertTrue(adjacentList.get(auxiliaryNode3).size() == 2);
-      assertTrue(adjacentList.get(auxiliaryNode3).contains(auxiliaryNode1));
-      assertTrue(adjacentList.get(auxiliaryNode3).contains(auxiliaryNode2));
+      assertFalse(returnedValue);
    }
    
    /**
     * Tests the method
-    * {@link de.uka.aifb.com.systemDynamics.model.Model#getNumberOfPredecessorsMap()}.
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#createEvaluationSchedule()} with auxiliary
+    * nodes whose formulas are set against the order of their creation, so that the maintained
+    * topological order has to be changed.
     */
-   public void testGetNumberOfPredecessorsMap() {
-      HashMap<AuxiliaryNode, Integer> mapping = null;
+   public void testCreateEvaluationSchedule2() {
+      final int numberOfAuxiliaryNodes = 50;
       
-      // (1) empty model -> empty map
-      try {
-         mapping =
-            (HashMap<AuxiliaryNode, Integer>)PrivateAccessor.invoke(model,
-                                                                    "getNumberOfPredecessorsMap",
-                                                                    null, null);
-      } catch (Throwable t) {
-         fail();
-      }
-      assertTrue(mapping.isEmpty());
-      
-      // (2) only one auxiliary node, nothing else in model
-      AuxiliaryNode auxiliaryNodeA = model.createAuxiliaryNode("Auxiliary node 1");
-      
-      try {
-         mapping =
-            (HashMap<AuxiliaryNode, Integer>)PrivateAccessor.invoke(model,
-                                                                    "getNumberOfPredecessorsMap",
-                                                                    null, null);
-      } catch (Throwable t) {
-         fail();
-      }
-      
-      assertTrue(mapping.size() == 1);
-      assertTrue(mapping.get(auxiliaryNodeA) == 0);
-      
-      // (3) two auxiliary nodes with cycle dependency
-      AuxiliaryNode auxiliaryNodeB = model.createAuxiliaryNode("Auxiliary node 2");
-      model.setFormula(auxiliaryNodeA, auxiliaryNodeB);
-      model.setFormula(auxiliaryNodeB, auxiliaryNodeA);
-      
-      try {
-         mapping =
-            (HashMap<AuxiliaryNode, Integer>)PrivateAccessor.invoke(model,
-                                                                    "getNumberOfPredecessorsMap",
-                                                                    null, null);
-      } catch (Throwable t) {
-         fail();
-      }
-      
-      assertTrue(mapping.size() == 2);
-      assertTrue(mapping.get(auxiliaryNodeA) == 1);
-      assertTrue(mapping.get(auxiliaryNodeB) == 1);
-      
-      // (4) "normel" model
-      LevelNode levelNode1 = model.createLevelNode("Level node 1", 0);
-      LevelNode levelNode2 = model.createLevelNode("Level node 2", 0);
+      LevelNode levelNode = model.createLevelNode("Level node", 0);
       RateNode rateNode = model.createRateNode("Rate node");
-      ConstantNode constantNode1 = model.createConstantNode("Constant node 1", 0);
-      ConstantNode constantNode2 = model.createConstantNode("Constant node 2", 0);
-      AuxiliaryNode auxiliaryNode1 = model.createAuxiliaryNode("Auxiliary node 1");
-      AuxiliaryNode auxiliaryNode2 = model.createAuxiliaryNode("Auxiliary node 2");
-      AuxiliaryNode auxiliaryNode3 = model.createAuxiliaryNode("Auxiliary node 3");
-      model.addFlowFromLevelNode2RateNode(levelNode1, rateNode);
-      model.addFlowFromRateNode2LevelNode(rateNode, levelNode2);
-      model.setFormula(rateNode, auxiliaryNode1);
-      model.setFormula(auxiliaryNode1, new ASTPlus(auxiliaryNode2, auxiliaryNode3));
-      model.setFormula(auxiliaryNode2, constantNode1);
-      model.setFormula(auxiliaryNode3, constantNode2);
+      ConstantNode constantNode = model.createConstantNode("Constant node", 1);
+      AuxiliaryNode[] auxiliaryNodes = new AuxiliaryNode[numberOfAuxiliaryNodes];
+      for (int i = 0; i < numberOfAuxiliaryNodes; i++) {
+         auxiliaryNodes[i] = model.createAuxiliaryNode("Auxiliary node " + i);
+      }
+      
+      // node i depends on nodes i + 1 and 2 * i + 1 (if they exist), the last node on the constant
+      for (int i = numberOfAuxiliaryNodes - 1; i >= 0; i--) {
+         ASTElement formula = constantNode;
+         if (i + 1 < numberOfAuxiliaryNodes) {
+            formula = auxiliaryNodes[i + 1];
+         }
+         if (2 * i + 1 < numberOfAuxiliaryNodes) {
+            formula = new ASTPlus(formula, auxiliaryNodes[2 * i + 1]);
+         }
+         model.setFormula(auxiliaryNodes[i], formula);
+      }
+      model.setFormula(rateNode, auxiliaryNodes[0]);
+      model.addFlowFromRateNode2LevelNode(rateNode, levelNode);
       
+      AbstractNode[] schedule = null;
       try {
-         mapping =
-            (HashMap<AuxiliaryNode, Integer>)PrivateAccessor.invoke(model,
-                                                                    "getNumberOfPredecessorsMap",
-                                                                    null, null);
+         schedule = (AbstractNode[])PrivateAccessor.invoke(model, "createEvaluationSchedule", null, null);
       } catch (Throwable t) {
          fail();
       }
       
-      assertTrue(mapping.size() == 5);
-      assertTrue(mapping.get(auxiliaryNodeA) == 1);
-      assertTrue(mapping.get(auxiliaryNodeB) == 1);
-      assertTrue(mapping.get(auxiliaryNode1) == 2);
-      assertTrue(mapping.get(auxiliaryNode2) == 0);
-      assertTrue(mapping.get(auxiliaryNode3) == 0);
+      // every auxiliary node is scheduled after all auxiliary nodes of its formula
+      HashSet<AbstractNode> scheduledNodes = new HashSet<AbstractNode>();
+      for (int i = 0; i < numberOfAuxiliaryNodes; i++) {
+         AuxiliaryNode auxiliaryNode = (AuxiliaryNode)schedule[i];
+         for (AbstractNode node : auxiliaryNode.getAllNodesThisOneDependsOn()) {
+            if (node instanceof AuxiliaryNode) {
+               assertTrue(scheduledNodes.contains(node));
+            }
+         }
+         scheduledNodes.add(auxiliaryNode);
+      }
+      assertEquals(numberOfAuxiliaryNodes, scheduledNodes.size());
+      assertTrue(schedule[numberOfAuxiliaryNodes] == rateNode);
+      assertTrue(schedule[numberOfAuxiliaryNodes + 1] == levelNode);
    }
-}
\ No newline at end of file
+}
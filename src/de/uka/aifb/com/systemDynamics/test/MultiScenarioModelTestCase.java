@@ -0,0 +1,212 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.MultiScenarioModel}.
+ *
+ * @version 1.0
+ */
+public class MultiScenarioModelTestCase extends TestCase {
+   
+   private static final int NUMBER_ROUNDS = 100;
+   
+   /** values of the constant nodes 'Growth' and 'Capacity' in the scenarios */
+   private static final double[][] CONSTANT_VALUES = { { 0.1, 100 }, { 0.25, 80 }, { 0.05, 1000 } };
+   
+   public static Test suite() {
+      return new TestSuite(MultiScenarioModelTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.MultiScenarioModel#MultiScenarioModel(Model, int)}.
+    */
+   public void testMultiScenarioModel() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         new MultiScenarioModel(null, 2);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'model' must not be null.", e.getMessage());
+      }
+      
+      // (2) model still changeable -> WRONG
+      Model model = new Model();
+      model.createLevelNode("Level node", 0);
+      try {
+         new MultiScenarioModel(model, 2);
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+      
+      // (3) no scenario -> WRONG
+      try {
+         new MultiScenarioModel(createModel(0.1, 100), 0);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'numberOfScenarios' must be at least 1.", e.getMessage());
+      }
+      
+      // (4) correct parameters -> all scenarios start with the model's values
+      model = createModel(0.1, 100);
+      MultiScenarioModel multiScenarioModel = new MultiScenarioModel(model, 3);
+      assertEquals(3, multiScenarioModel.getNumberOfScenarios());
+      LevelNode levelNode = model.getLevelNodes().iterator().next();
+      assertTrue(Arrays.equals(new double[] { 10, 10, 10 }, multiScenarioModel.getCurrentValues(levelNode)));
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.MultiScenarioModel#setConstantValue(ConstantNode, int, double)}.
+    */
+   public void testSetConstantValue() {
+      Model model = createModel(0.1, 100);
+      MultiScenarioModel multiScenarioModel = new MultiScenarioModel(model, 2);
+      ConstantNode constantNode = model.getConstantNodes().iterator().next();
+      
+      // (1) parameter 'null' -> WRONG
+      try {
+         multiScenarioModel.setConstantValue(null, 0, 1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'constantNode' must not be null.", e.getMessage());
+      }
+      
+      // (2) scenario does not exist -> WRONG
+      try {
+         multiScenarioModel.setConstantValue(constantNode, 2, 1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'scenario' must be from 0 to 1.", e.getMessage());
+      }
+      
+      // (3) value out of range -> WRONG
+      try {
+         multiScenarioModel.setConstantValue(constantNode, 0, ConstantNode.MAX_CONSTANT + 1);
+         fail();
+      } catch (NodeParameterOutOfRangeException e) {
+         // do nothing
+      }
+      
+      // (4) correct parameters -> only the specified scenario is changed
+      multiScenarioModel.setConstantValue(constantNode, 1, 7);
+      assertTrue(multiScenarioModel.getCurrentValue(constantNode, 0) == constantNode.getConstantValue());
+      assertTrue(multiScenarioModel.getCurrentValue(constantNode, 1) == 7);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.MultiScenarioModel#computeNextValues()}.
+    */
+   public void testComputeNextValues() {
+      // one model per scenario (executed by the interpreter) and one multi scenario model
+      Model[] models = new Model[CONSTANT_VALUES.length];
+      for (int i = 0; i < models.length; i++) {
+         models[i] = createModel(CONSTANT_VALUES[i][0], CONSTANT_VALUES[i][1]);
+      }
+      Model model = createModel(0, 1);
+      MultiScenarioModel multiScenarioModel = new MultiScenarioModel(model, CONSTANT_VALUES.length);
+      for (int i = 0; i < CONSTANT_VALUES.length; i++) {
+         multiScenarioModel.setConstantValue((ConstantNode)getNode(model, "Growth"), i, CONSTANT_VALUES[i][0]);
+         multiScenarioModel.setConstantValue((ConstantNode)getNode(model, "Capacity"), i, CONSTANT_VALUES[i][1]);
+      }
+      
+      String[] nodeNames = { "Population", "Births", "Deaths", "Crowding" };
+      for (int round = 0; round < NUMBER_ROUNDS; round++) {
+         multiScenarioModel.computeNextValues();
+         for (int i = 0; i < models.length; i++) {
+            models[i].computeNextValues();
+            for (String nodeName : nodeNames) {
+               assertEquals(nodeName + " (scenario " + i + ", round " + (round + 1) + ")",
+                            Double.doubleToLongBits(models[i].getCurrentValue(getNode(models[i], nodeName))),
+                            Double.doubleToLongBits(multiScenarioModel.getCurrentValue(getNode(model, nodeName), i)));
+            }
+         }
+      }
+   }
+   
+   /**
+    * Creates a logistic growth model with the specified constant values:
+    * <p>
+    * Crowding = Population / Capacity, Births = Growth * Population,
+    * Deaths = Growth * Population * Crowding
+    * 
+    * @param growth value of constant node 'Growth'
+    * @param capacity value of constant node 'Capacity'
+    * @return created unchangeable model
+    */
+   private static Model createModel(double growth, double capacity) {
+      Model model = new Model();
+      LevelNode population = model.createLevelNode("Population", 10);
+      RateNode births = model.createRateNode("Births");
+      RateNode deaths = model.createRateNode("Deaths");
+      AuxiliaryNode crowding = model.createAuxiliaryNode("Crowding");
+      ConstantNode growthNode = model.createConstantNode("Growth", growth);
+      ConstantNode capacityNode = model.createConstantNode("Capacity", capacity);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, births);
+      model.addFlowFromRateNode2LevelNode(births, population);
+      model.addFlowFromLevelNode2RateNode(population, deaths);
+      model.addFlowFromRateNode2SourceSinkNode(deaths, sourceSinkNode);
+      model.setFormula(crowding, new ASTDivide(population, capacityNode));
+      model.setFormula(births, new ASTMultiply(growthNode, population));
+      model.setFormula(deaths, new ASTMultiply(new ASTMultiply(growthNode, population), crowding));
+      
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      return model;
+   }
+   
+   /**
+    * Gets the level, rate, auxiliary or constant node with the specified name.
+    * 
+    * @param model model
+    * @param nodeName node name
+    * @return node
+    */
+   private static AbstractNode getNode(Model model, String nodeName) {
+      HashSet<AbstractNode> nodes = new HashSet<AbstractNode>();
+      nodes.addAll(model.getLevelNodes());
+      nodes.addAll(model.getRateNodes());
+      nodes.addAll(model.getAuxiliaryNodes());
+      nodes.addAll(model.getConstantNodes());
+      for (AbstractNode node : nodes) {
+         if (node.getNodeName().equals(nodeName)) {
+            return node;
+         }
+      }
+      fail();
+      return null;
+   }
+}
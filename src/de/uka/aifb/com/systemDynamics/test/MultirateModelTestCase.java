@@ -0,0 +1,215 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.MultirateModel}.
+ *
+ * @version 1.0
+ */
+public class MultirateModelTestCase extends TestCase {
+   
+   private static final int NUMBER_ROUNDS = 20;
+   
+   public static Test suite() {
+      return new TestSuite(MultirateModelTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.MultirateModel#MultirateModel(Model, Map)}.
+    */
+   public void testMultirateModel() {
+      HashMap<LevelNode, Integer> levelNodeStepMultiples = new HashMap<LevelNode, Integer>();
+      
+      // (1) parameter 'null' -> WRONG
+      try {
+         new MultirateModel(null, levelNodeStepMultiples);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'model' must not be null.", e.getMessage());
+      }
+      try {
+         new MultirateModel(createModel(), null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'levelNodeStepMultiples' must not be null.", e.getMessage());
+      }
+      
+      // (2) model still changeable -> WRONG
+      Model model = new Model();
+      model.createLevelNode("Level node", 0);
+      try {
+         new MultirateModel(model, levelNodeStepMultiples);
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+      
+      // (3) level node of another model -> WRONG
+      model = createModel();
+      levelNodeStepMultiples.put((LevelNode)getNode(createModel(), "Population"), 2);
+      try {
+         new MultirateModel(model, levelNodeStepMultiples);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'levelNodeStepMultiples' must only contain level nodes of the model.", e.getMessage());
+      }
+      
+      // (4) step multiple 0 -> WRONG
+      levelNodeStepMultiples.clear();
+      levelNodeStepMultiples.put((LevelNode)getNode(model, "Population"), 0);
+      try {
+         new MultirateModel(model, levelNodeStepMultiples);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'levelNodeStepMultiples' must only contain step multiples of at least 1.", e.getMessage());
+      }
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.MultirateModel#computeNextValues()}.
+    */
+   public void testComputeNextValues1() {
+      // all step multiples 1 -> same values as the interpreter
+      Model interpretedModel = createModel();
+      Model model = createModel();
+      HashMap<LevelNode, Integer> levelNodeStepMultiples = new HashMap<LevelNode, Integer>();
+      levelNodeStepMultiples.put((LevelNode)getNode(model, "Population"), 1);
+      MultirateModel multirateModel = new MultirateModel(model, levelNodeStepMultiples);
+      
+      String[] nodeNames = { "Staff", "Open positions", "Hiring", "Population", "Births" };
+      for (int round = 0; round < NUMBER_ROUNDS; round++) {
+         interpretedModel.computeNextValues();
+         multirateModel.computeNextValues();
+         for (String nodeName : nodeNames) {
+            assertEquals(nodeName + " (round " + (round + 1) + ")",
+                         Double.doubleToLongBits(interpretedModel.getCurrentValue(getNode(interpretedModel, nodeName))),
+                         Double.doubleToLongBits(multirateModel.getCurrentValue(getNode(model, nodeName))));
+         }
+      }
+      assertEquals(5 * NUMBER_ROUNDS, multirateModel.getNumberOfEvaluations());
+      assertEquals(0, multirateModel.getNumberOfSkippedEvaluations());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.MultirateModel#computeNextValues()}.
+    */
+   public void testComputeNextValues2() {
+      // population advanced every 4 rounds -> Euler method with time step 4 for the population,
+      // the (independent) staff pool is not affected
+      Model interpretedModel = createModel();
+      Model model = createModel();
+      HashMap<LevelNode, Integer> levelNodeStepMultiples = new HashMap<LevelNode, Integer>();
+      levelNodeStepMultiples.put((LevelNode)getNode(model, "Population"), 4);
+      MultirateModel multirateModel = new MultirateModel(model, levelNodeStepMultiples);
+      
+      double population = 1;
+      for (int round = 1; round <= NUMBER_ROUNDS; round++) {
+         interpretedModel.computeNextValues();
+         multirateModel.computeNextValues();
+         assertEquals(Double.doubleToLongBits(interpretedModel.getCurrentValue(getNode(interpretedModel, "Staff"))),
+                      Double.doubleToLongBits(multirateModel.getCurrentValue(getNode(model, "Staff"))));
+         if (round % 4 == 0) {
+            population *= 1.4;
+         }
+         // held between the steps
+         assertEquals(population, multirateModel.getCurrentValue(getNode(model, "Population")), 1E-12);
+      }
+      
+      // births and population: 3 of 4 evaluations skipped
+      assertEquals(30, multirateModel.getNumberOfSkippedEvaluations());
+      assertEquals(5 * NUMBER_ROUNDS - 30, multirateModel.getNumberOfEvaluations());
+      
+      // accuracy trade-off: larger error than the single-rate execution (1.1^20 = 6.73)
+      double singleRatePopulation = interpretedModel.getCurrentValue(getNode(interpretedModel, "Population"));
+      assertEquals(Math.pow(1.1, NUMBER_ROUNDS), singleRatePopulation, 1E-9);
+      assertTrue(Math.abs(population - singleRatePopulation) < 0.25 * singleRatePopulation);
+   }
+   
+   /**
+    * Creates a model with a staff pool reaching its target (subsystem with a fixed point) and an
+    * exponentially growing population:
+    * <p>
+    * Open positions = Target - Staff, Hiring = MIN(Maximum hiring, Open positions),
+    * Births = Population * Birth rate
+    * 
+    * @return created unchangeable model
+    */
+   private static Model createModel() {
+      Model model = new Model();
+      LevelNode staff = model.createLevelNode("Staff", 0);
+      LevelNode population = model.createLevelNode("Population", 1);
+      RateNode hiring = model.createRateNode("Hiring");
+      RateNode births = model.createRateNode("Births");
+      AuxiliaryNode openPositions = model.createAuxiliaryNode("Open positions");
+      ConstantNode target = model.createConstantNode("Target", 10);
+      ConstantNode maximumHiring = model.createConstantNode("Maximum hiring", 3);
+      ConstantNode birthRate = model.createConstantNode("Birth rate", 0.1);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, hiring);
+      model.addFlowFromRateNode2LevelNode(hiring, staff);
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, births);
+      model.addFlowFromRateNode2LevelNode(births, population);
+      model.setFormula(openPositions, new ASTMinus(target, staff));
+      model.setFormula(hiring, new ASTMin(maximumHiring, openPositions));
+      model.setFormula(births, new ASTMultiply(population, birthRate));
+      
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      return model;
+   }
+   
+   /**
+    * Gets the level, rate, auxiliary or constant node with the specified name.
+    * 
+    * @param model model
+    * @param nodeName node name
+    * @return node
+    */
+   private static AbstractNode getNode(Model model, String nodeName) {
+      HashSet<AbstractNode> nodes = new HashSet<AbstractNode>();
+      nodes.addAll(model.getLevelNodes());
+      nodes.addAll(model.getRateNodes());
+      nodes.addAll(model.getAuxiliaryNodes());
+      nodes.addAll(model.getConstantNodes());
+      for (AbstractNode node : nodes) {
+         if (node.getNodeName().equals(nodeName)) {
+            return node;
+         }
+      }
+      fail();
+      return null;
+   }
+}
@@ -0,0 +1,177 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.ParallelModel}.
+ *
+ * @version 1.0
+ */
+public class ParallelModelTestCase extends TestCase {
+   
+   private static final int NUMBER_ROUNDS = 100;
+   private static final int WIDTH = 200;
+   
+   public static Test suite() {
+      return new TestSuite(ParallelModelTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.ParallelModel#ParallelModel(Model, int, int)}.
+    */
+   public void testParallelModel() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         new ParallelModel(null, 2, 1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'model' must not be null.", e.getMessage());
+      }
+      
+      // (2) model still changeable -> WRONG
+      Model model = new Model();
+      model.createLevelNode("Level node", 0);
+      try {
+         new ParallelModel(model, 2, 1);
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+      
+      // (3) illegal number of threads or stage width -> WRONG
+      model = createWideModel();
+      try {
+         new ParallelModel(model, 0, 1);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'numberOfThreads' must be at least 1.", e.getMessage());
+      }
+      try {
+         new ParallelModel(model, 2, 0);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'minimumParallelStageWidth' must be at least 1.", e.getMessage());
+      }
+      
+      // (4) two auxiliary node stages, rate nodes and level nodes
+      ParallelModel parallelModel = new ParallelModel(model, 4, WIDTH);
+      assertEquals(4, parallelModel.getNumberOfStages());
+      assertEquals(4, parallelModel.getNumberOfParallelStages());
+      parallelModel.shutdown();
+      
+      // (5) stages narrower than the minimum parallel stage width are computed sequentially
+      parallelModel = new ParallelModel(model, 4, WIDTH + 1);
+      assertEquals(0, parallelModel.getNumberOfParallelStages());
+      
+      // (6) one thread -> sequential
+      parallelModel = new ParallelModel(model, 1, 1);
+      assertEquals(0, parallelModel.getNumberOfParallelStages());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.ParallelModel#computeNextValues()}.
+    */
+   public void testComputeNextValues() {
+      // (1) parallel computation -> same values as the compiled model (and so as the interpreter)
+      Model model = createWideModel();
+      CompiledModel compiledModel = new CompiledModel(model);
+      ParallelModel parallelModel = new ParallelModel(model, 4, 16);
+      assertSameValues(model, compiledModel, parallelModel, NUMBER_ROUNDS);
+      parallelModel.shutdown();
+      
+      // (2) sequential computation -> same values
+      model = createWideModel();
+      compiledModel = new CompiledModel(model);
+      parallelModel = new ParallelModel(model, 4, WIDTH + 1);
+      assertSameValues(model, compiledModel, parallelModel, NUMBER_ROUNDS);
+   }
+   
+   /**
+    * Creates a model with <code>WIDTH</code> level, rate and auxiliary nodes of each depth:
+    * <p>
+    * A_i = L_i * C1, B_i = A_i + A_(i+1), R_i = B_i / C2 (flow from L_i to L_(i+1))
+    * 
+    * @return created unchangeable model
+    */
+   private static Model createWideModel() {
+      Model model = new Model();
+      ConstantNode constantNode1 = model.createConstantNode("C1", 0.3);
+      ConstantNode constantNode2 = model.createConstantNode("C2", 7);
+      
+      LevelNode[] levelNodes = new LevelNode[WIDTH];
+      AuxiliaryNode[] auxiliaryNodesA = new AuxiliaryNode[WIDTH];
+      for (int i = 0; i < WIDTH; i++) {
+         levelNodes[i] = model.createLevelNode("L" + i, i);
+         auxiliaryNodesA[i] = model.createAuxiliaryNode("A" + i);
+         model.setFormula(auxiliaryNodesA[i], new ASTMultiply(levelNodes[i], constantNode1));
+      }
+      for (int i = 0; i < WIDTH; i++) {
+         AuxiliaryNode auxiliaryNodeB = model.createAuxiliaryNode("B" + i);
+         model.setFormula(auxiliaryNodeB, new ASTPlus(auxiliaryNodesA[i], auxiliaryNodesA[(i + 1) % WIDTH]));
+         RateNode rateNode = model.createRateNode("R" + i);
+         model.setFormula(rateNode, new ASTDivide(auxiliaryNodeB, constantNode2));
+         model.addFlowFromLevelNode2RateNode(levelNodes[i], rateNode);
+         model.addFlowFromRateNode2LevelNode(rateNode, levelNodes[(i + 1) % WIDTH]);
+      }
+      
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      return model;
+   }
+   
+   /**
+    * Checks that the compiled model and the parallel model compute the same values.
+    * 
+    * @param model model
+    * @param compiledModel compiled model
+    * @param parallelModel parallel model
+    * @param numberRounds number of rounds
+    */
+   private static void assertSameValues(Model model, CompiledModel compiledModel,
+                                        ParallelModel parallelModel, int numberRounds) {
+      HashSet<AbstractNode> nodes = new HashSet<AbstractNode>();
+      nodes.addAll(model.getLevelNodes());
+      nodes.addAll(model.getRateNodes());
+      nodes.addAll(model.getAuxiliaryNodes());
+      
+      for (int i = 0; i < numberRounds; i++) {
+         compiledModel.computeNextValues();
+         parallelModel.computeNextValues();
+         for (AbstractNode node : nodes) {
+            assertEquals(node.getNodeName() + " (round " + (i + 1) + ")",
+                         Double.doubleToLongBits(compiledModel.getCurrentValue(node)),
+                         Double.doubleToLongBits(parallelModel.getCurrentValue(node)));
+         }
+      }
+   }
+}
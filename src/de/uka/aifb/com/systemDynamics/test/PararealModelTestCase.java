@@ -0,0 +1,272 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+import junit.framework.*;
+
+/**
+ * This class implements a test case for the class
+ * {@link de.uka.aifb.com.systemDynamics.model.PararealModel}.
+ *
+ * @version 1.0
+ */
+public class PararealModelTestCase extends TestCase {
+   
+   private static final int NUMBER_ROUNDS = 1000;
+   private static final int NUMBER_SEGMENTS = 8;
+   
+   public static Test suite() {
+      return new TestSuite(PararealModelTestCase.class);
+   }
+   
+   /**
+    * Tests the constructor
+    * {@link de.uka.aifb.com.systemDynamics.model.PararealModel#PararealModel(Model, int, int, int, double, int)}.
+    */
+   public void testPararealModel() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         new PararealModel(null, NUMBER_ROUNDS, NUMBER_SEGMENTS, 10, 0, 2);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'model' must not be null.", e.getMessage());
+      }
+      
+      // (2) model still changeable -> WRONG
+      Model model = new Model();
+      model.createLevelNode("Level node", 0);
+      try {
+         new PararealModel(model, NUMBER_ROUNDS, NUMBER_SEGMENTS, 10, 0, 2);
+         fail();
+      } catch (ModelStillChangeableException e) {
+         // do nothing
+      }
+      
+      // (3) more segments than rounds -> WRONG
+      try {
+         new PararealModel(createModel(), 5, 6, 1, 0, 2);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'numberOfSegments' must be at least 1 and at most 'numberRounds'.", e.getMessage());
+      }
+      
+      // (4) coarse step multiple 0 -> WRONG
+      try {
+         new PararealModel(createModel(), NUMBER_ROUNDS, NUMBER_SEGMENTS, 0, 0, 2);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'coarseStepMultiple' must be at least 1.", e.getMessage());
+      }
+      
+      // (5) negative tolerance -> WRONG
+      try {
+         new PararealModel(createModel(), NUMBER_ROUNDS, NUMBER_SEGMENTS, 10, -1, 2);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'tolerance' must not be negative.", e.getMessage());
+      }
+      
+      // (6) correct parameters -> segments of (almost) equal length, not executed yet
+      PararealModel pararealModel = new PararealModel(createModel(), 10, 3, 2, 0, 2);
+      assertEquals(3, pararealModel.getNumberOfSegments());
+      assertEquals(0, pararealModel.getSegmentStart(0));
+      assertEquals(3, pararealModel.getSegmentStart(1));
+      assertEquals(6, pararealModel.getSegmentStart(2));
+      assertEquals(10, pararealModel.getSegmentStart(3));
+      try {
+         pararealModel.getNumberOfIterations();
+         fail();
+      } catch (IllegalStateException e) {
+         // do nothing
+      }
+      try {
+         pararealModel.computeMaximumDeviation();
+         fail();
+      } catch (IllegalStateException e) {
+         // do nothing
+      }
+      pararealModel.shutdown();
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.PararealModel#execute()}.
+    */
+   public void testExecute1() {
+      // tolerance 0 -> exactly the values of the sequential execution at all segment boundaries
+      Model model = createModel();
+      PararealModel pararealModel = new PararealModel(model, NUMBER_ROUNDS, NUMBER_SEGMENTS, 25, 0, 4);
+      pararealModel.execute();
+      pararealModel.shutdown();
+      
+      assertTrue(pararealModel.isConverged());
+      assertTrue(pararealModel.getNumberOfIterations() <= NUMBER_SEGMENTS);
+      assertEquals(pararealModel.getNumberOfIterations(), pararealModel.getIterationCorrections().size());
+      
+      Model sequentialModel = createModel();
+      for (int segment = 0; segment <= NUMBER_SEGMENTS; segment++) {
+         if (segment > 0) {
+            for (int round = pararealModel.getSegmentStart(segment - 1); round < pararealModel.getSegmentStart(segment); round++) {
+               sequentialModel.computeNextValues();
+            }
+         }
+         for (String nodeName : new String[] { "Staff", "Population" }) {
+            assertEquals(nodeName + " (segment " + segment + ")",
+                         Double.doubleToLongBits(sequentialModel.getCurrentValue(getLevelNode(sequentialModel, nodeName))),
+                         Double.doubleToLongBits(pararealModel.getBoundaryValue(segment, getLevelNode(model, nodeName))));
+         }
+      }
+      
+      assertTrue(pararealModel.computeMaximumDeviation() == 0);
+      
+      // the model's nodes are not changed
+      assertTrue(model.getCurrentValue(getLevelNode(model, "Population")) == 1000);
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.model.PararealModel#execute()}.
+    */
+   public void testExecute2() {
+      // accurate coarse propagator -> converged within the tolerance after few iterations
+      Model model = createModel();
+      PararealModel pararealModel = new PararealModel(model, NUMBER_ROUNDS, NUMBER_SEGMENTS, 5, 1E-9, 4);
+      pararealModel.execute();
+      
+      assertTrue(pararealModel.isConverged());
+      assertTrue(pararealModel.getNumberOfIterations() < NUMBER_SEGMENTS);
+      List<Double> iterationCorrections = pararealModel.getIterationCorrections();
+      assertTrue(iterationCorrections.get(iterationCorrections.size() - 1) <= 1E-9);
+      
+      Model sequentialModel = createModel();
+      for (int round = 0; round < NUMBER_ROUNDS; round++) {
+         sequentialModel.computeNextValues();
+      }
+      for (String nodeName : new String[] { "Staff", "Population" }) {
+         double value = sequentialModel.getCurrentValue(getLevelNode(sequentialModel, nodeName));
+         assertEquals(nodeName, value, pararealModel.getFinalValue(getLevelNode(model, nodeName)),
+                      1E-6 * (1 + Math.abs(value)));
+      }
+      
+      // executed again -> same result
+      double population = pararealModel.getFinalValue(getLevelNode(model, "Population"));
+      pararealModel.execute();
+      pararealModel.shutdown();
+      assertTrue(pararealModel.getFinalValue(getLevelNode(model, "Population")) == population);
+   }
+   
+   /**
+    * Tests the methods
+    * {@link de.uka.aifb.com.systemDynamics.model.PararealModel#execute()} and
+    * {@link de.uka.aifb.com.systemDynamics.model.PararealModel#computeMaximumDeviation()}.
+    */
+   public void testExecute3() {
+      // converged with a tolerance -> boundary values close to a sequential compiled run
+      Model model = createModel();
+      PararealModel pararealModel = new PararealModel(model, NUMBER_ROUNDS, NUMBER_SEGMENTS, 5, 1E-9, 4);
+      pararealModel.execute();
+      pararealModel.shutdown();
+      assertTrue(pararealModel.isConverged());
+      
+      CompiledModel compiledModel = new CompiledModel(createModel());
+      LevelNode[] levelNodes = compiledModel.getModel().getLevelNodes().toArray(new LevelNode[0]);
+      double maximumDeviation = 0;
+      for (int segment = 1; segment <= NUMBER_SEGMENTS; segment++) {
+         for (int round = pararealModel.getSegmentStart(segment - 1); round < pararealModel.getSegmentStart(segment); round++) {
+            compiledModel.computeNextValues();
+         }
+         for (LevelNode levelNode : levelNodes) {
+            double value = compiledModel.getCurrentValue(levelNode);
+            double boundaryValue =
+               pararealModel.getBoundaryValue(segment, getLevelNode(model, levelNode.getNodeName()));
+            double deviation = Math.abs(boundaryValue - value) / (1 + Math.abs(value));
+            assertTrue(levelNode.getNodeName() + " (segment " + segment + ")", deviation <= 1E-6);
+            maximumDeviation = Math.max(maximumDeviation, deviation);
+         }
+      }
+      
+      // the check reports the same maximum deviation
+      assertEquals(maximumDeviation, pararealModel.computeMaximumDeviation(), 0);
+   }
+   
+   /**
+    * Creates a model with a staff pool approaching its target and a population with births and
+    * deaths:
+    * <p>
+    * Hiring = (Target - Staff) * Adjustment rate, Births = Population * Birth rate,
+    * Deaths = Population * Death rate
+    * 
+    * @return created unchangeable model
+    */
+   private static Model createModel() {
+      Model model = new Model();
+      LevelNode staff = model.createLevelNode("Staff", 0);
+      LevelNode population = model.createLevelNode("Population", 1000);
+      RateNode hiring = model.createRateNode("Hiring");
+      RateNode births = model.createRateNode("Births");
+      RateNode deaths = model.createRateNode("Deaths");
+      AuxiliaryNode openPositions = model.createAuxiliaryNode("Open positions");
+      ConstantNode target = model.createConstantNode("Target", 100);
+      ConstantNode adjustmentRate = model.createConstantNode("Adjustment rate", 0.01);
+      ConstantNode birthRate = model.createConstantNode("Birth rate", 0.003);
+      ConstantNode deathRate = model.createConstantNode("Death rate", 0.002);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, hiring);
+      model.addFlowFromRateNode2LevelNode(hiring, staff);
+      model.addFlowFromSourceSinkNode2RateNode(sourceSinkNode, births);
+      model.addFlowFromRateNode2LevelNode(births, population);
+      model.addFlowFromLevelNode2RateNode(population, deaths);
+      model.addFlowFromRateNode2SourceSinkNode(deaths, sourceSinkNode);
+      model.setFormula(openPositions, new ASTMinus(target, staff));
+      model.setFormula(hiring, new ASTMultiply(openPositions, adjustmentRate));
+      model.setFormula(births, new ASTMultiply(population, birthRate));
+      model.setFormula(deaths, new ASTMultiply(population, deathRate));
+      
+      try {
+         model.validateModelAndSetUnchangeable();
+      } catch (Exception e) {
+         fail();
+      }
+      return model;
+   }
+   
+   /**
+    * Gets the level node with the specified name.
+    * 
+    * @param model model
+    * @param nodeName node name
+    * @return level node
+    */
+   private static LevelNode getLevelNode(Model model, String nodeName) {
+      for (LevelNode levelNode : model.getLevelNodes()) {
+         if (levelNode.getNodeName().equals(nodeName)) {
+            return levelNode;
+         }
+      }
+      fail();
+      return null;
+   }
+}
@@ -203,7 +203,6 @@ protected void tearDown() throws Exception {
    public void testFormula() {
       LevelNode levelNode1 = createLevelNode("Level node 1", 0);
       LevelNode levelNode2 = createLevelNode("Level node 2", 0);
-      LevelNode levelNode3 = createLevelNode("Level node 3", 0);
       
       // (1) no formula at beginning
       assertFalse(rateNode.hasFormula());
@@ -219,60 +218,17 @@ protected void tearDown() throws Exception {
       }
       assertTrue(rateNode.hasFormula());
       
-      // ... check that clone is stored...
-      subFormula = new ASTPlus(levelNode3, levelNode3);
-      ASTPlus internFormula = null;
-      try {
-         internFormula = (ASTPlus)PrivateAccessor.getField(rateNode, "formula");
-      } catch (Throwable t) {
-         fail();
-      }
-      ASTPlus subFormulaInInternFormula = null;
-      try {
-         subFormulaInInternFormula =
-            (ASTPlus)PrivateAccessor.getField(internFormula, "rightElement");
-      } catch (Throwable t) {
-         fail();
-      }
-      LevelNode nodeInInternFormula = null;
-      try {
-         nodeInInternFormula =
-            (LevelNode)PrivateAccessor.getField(subFormulaInInternFormula, "leftElement");
-      } catch (Throwable t) {
-         fail();
-      }
-      assertTrue(nodeInInternFormula == levelNode2);
-      
-      // ... and another clone is returned
-      ASTPlus returnedFormula = (ASTPlus)rateNode.getFormula();
-      ASTPlus newSubFormula = new ASTPlus(levelNode3, levelNode3);
-      try {
-         PrivateAccessor.setField(returnedFormula, "rightElement", newSubFormula);
-      } catch (Throwable t) {
-         fail();
-      }
-      internFormula = null;
-      try {
-         internFormula = (ASTPlus)PrivateAccessor.getField(rateNode, "formula");
-      } catch (Throwable t) {
-         fail();
-      }
-      subFormulaInInternFormula = null;
-      try {
-         subFormulaInInternFormula =
-            (ASTPlus)PrivateAccessor.getField(internFormula, "rightElement");
-      } catch (Throwable t) {
-         fail();
-      }
-      nodeInInternFormula = null;
+      // ... check that the very same (immutable) formula is stored...
+      Object internFormula = null;
       try {
-         nodeInInternFormula =
-            (LevelNode)PrivateAccessor.getField(subFormulaInInternFormula, "leftElement");
+         internFormula = PrivateAccessor.getField(rateNode, "formula");
       } catch (Throwable t) {
          fail();
       }
-      assertTrue(nodeInInternFormula == levelNode2);
+      assertTrue(internFormula == firstFormula);
       
+      // ... and returned
+      assertTrue(rateNode.getFormula() == firstFormula);
       
       // (3) set second formula
       try {
@@ -37,16 +37,29 @@ public class RunAllTestCases extends TestCase {
    public static Test suite() {
       TestSuite suite = new TestSuite();
 
+      suite.addTest(ASTDependencyCollectorTestCase.suite());
+      suite.addTest(ASTInternerTestCase.suite());
       suite.addTest(ASTMinusTestCase.suite());
       suite.addTest(ASTMultiplyTestCase.suite());
+      suite.addTest(ASTOptimizerTestCase.suite());
       suite.addTest(ASTPlusTestCase.suite());
+      suite.addTest(ASTProductTestCase.suite());
+      suite.addTest(ASTRoundTestCase.suite());
+      suite.addTest(ASTSumTestCase.suite());
       suite.addTest(AuxiliaryNodeTestCase.suite());
+      suite.addTest(ChangePropagationModelTestCase.suite());
+      suite.addTest(CompiledModelTestCase.suite());
       suite.addTest(ConstantNodeTestCase.suite());
       suite.addTest(CSVExportTestCase.suite());
       suite.addTest(FormulaParserTestCase.suite());
       suite.addTest(LevelNodeTestCase.suite());
-      suite.addTest(ModelTestCase.suite());
+      suite.addTest(LinearizationAnalysisTestCase.suite());
+      suite.addTest(ModelTestCase.suite());
+      suite.addTest(MultirateModelTestCase.suite());
+      suite.addTest(MultiScenarioModelTestCase.suite());
       suite.addTest(NodeParameterOutOfRangeExceptionTestCase.suite());
+      suite.addTest(ParallelModelTestCase.suite());
+      suite.addTest(PararealModelTestCase.suite());
       suite.addTest(RateNodeTestCase.suite());
       suite.addTest(SourceSinkNodeTestCase.suite());
       suite.addTest(XMLExportTestCase.suite());
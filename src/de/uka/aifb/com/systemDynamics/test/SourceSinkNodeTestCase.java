@@ -23,7 +23,7 @@ package de.uka.aifb.com.systemDynamics.test;
 
 import de.uka.aifb.com.systemDynamics.model.*;
 import de.uka.aifb.com.systemDynamics.test.mocks.RateNodeMockObject;
-import java.util.HashSet;
+import java.util.Set;
 import junit.framework.*;
 import junitx.util.PrivateAccessor;
 
@@ -137,10 +137,15 @@ protected void tearDown() throws Exception {
       assertTrue(sourceSinkNode.getIncomingFlows().size() == 1);
       sourceSinkNode.getIncomingFlows().contains(secondRateNode);
       
-      // (7) check that 'getIncomingFlows()' returns only a clone of the set
-      HashSet<RateNode> incomingFlows = sourceSinkNode.getIncomingFlows();
-      incomingFlows.add(thirdRateNode);
-      assertTrue(incomingFlows.size() == 2);
+      // (7) check that 'getIncomingFlows()' returns a read-only view of the set
+      Set<RateNode> incomingFlows = sourceSinkNode.getIncomingFlows();
+      try {
+         incomingFlows.add(thirdRateNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
+      assertTrue(incomingFlows.size() == 1);
       assertTrue(sourceSinkNode.getIncomingFlows().size() == 1);
       
       // (8) parameter not 'null' for method 'addIncomingFlow(RateNode)'
@@ -251,10 +256,15 @@ protected void tearDown() throws Exception {
       assertTrue(sourceSinkNode.getOutgoingFlows().size() == 1);
       sourceSinkNode.getOutgoingFlows().contains(secondRateNode);
       
-      // (7) check that 'getOutgoingFlows()' returns only a clone of the set
-      HashSet<RateNode> outgoingFlows = sourceSinkNode.getOutgoingFlows();
-      outgoingFlows.add(thirdRateNode);
-      assertTrue(outgoingFlows.size() == 2);
+      // (7) check that 'getOutgoingFlows()' returns a read-only view of the set
+      Set<RateNode> outgoingFlows = sourceSinkNode.getOutgoingFlows();
+      try {
+         outgoingFlows.add(thirdRateNode);
+         fail();
+      } catch (UnsupportedOperationException e) {
+         // do nothing
+      }
+      assertTrue(outgoingFlows.size() == 1);
       assertTrue(sourceSinkNode.getOutgoingFlows().size() == 1);
       
       // (8) parameter not 'null' for method 'addOutgoingFlow(RateNode)'
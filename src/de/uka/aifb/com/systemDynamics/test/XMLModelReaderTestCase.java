@@ -24,7 +24,7 @@ package de.uka.aifb.com.systemDynamics.test;
 import de.uka.aifb.com.systemDynamics.model.*;
 import de.uka.aifb.com.systemDynamics.xml.*;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.*;
 import junit.framework.*;
 import junitx.util.PrivateAccessor;
 import org.xml.sax.*;
@@ -304,28 +304,13 @@ public class XMLModelReaderTestCase extends TestCase {
       // check formulas...
       // ... formula of rate node 1
       ASTElement rateNode1Formula = rateNode1.getFormula();
-      assertTrue(rateNode1Formula instanceof ASTPlus);
-      try {
-         assertTrue(PrivateAccessor.getField(rateNode1Formula, "rightElement") == constantNode1);
-      } catch (Throwable t) {
-         fail();
-      }
-      ASTPlus subFormula1 = null;
-      try {
-         subFormula1 = (ASTPlus)PrivateAccessor.getField(rateNode1Formula, "leftElement");
-      } catch (Throwable t) {
-         fail();
-      }
-      try {
-         assertTrue(PrivateAccessor.getField(subFormula1, "leftElement") == auxiliaryNode1);
-      } catch (Throwable t) {
-         fail();
-      }
-      try {
-         assertTrue(PrivateAccessor.getField(subFormula1, "rightElement") == auxiliaryNode2);
-      } catch (Throwable t) {
-         fail();
-      }
+      // (chain of additions -> sum)
+      assertTrue(rateNode1Formula instanceof ASTSum);
+      ASTSum sum = (ASTSum)rateNode1Formula;
+      assertEquals(3, sum.getNumberOfOperands());
+      assertTrue(sum.getOperand(0) == auxiliaryNode1);
+      assertTrue(sum.getOperand(1) == auxiliaryNode2);
+      assertTrue(sum.getOperand(2) == constantNode1);
       // ... formula of rate node 2
       ASTElement rateNode2Formula = rateNode2.getFormula();
       assertTrue(rateNode2Formula instanceof ASTMultiply);
@@ -369,4 +354,54 @@ public class XMLModelReaderTestCase extends TestCase {
       assertTrue(sourceSinkNode.getIncomingFlows().contains(rateNode2));
       assertTrue(sourceSinkNode.getOutgoingFlows().isEmpty());
    }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.xml.XMLModelReader#readXMLModelReportingAllErrors(String)}.
+    */
+   public void testReadXMLModelReportingAllErrors() {
+      // (1) parameter 'null' -> WRONG
+      try {
+         XMLModelReader.readXMLModelReportingAllErrors(null);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("'fileName' must not be null.", e.getMessage());
+      } catch (Exception e) {
+         fail();
+      }
+      
+      // (2) AuxiliaryNodesCycleDependencyException -> all nodes of the cycle with XML node Ids
+      try {
+         XMLModelReader.readXMLModelReportingAllErrors("./testResources/model_AuxiliaryNodesCycleDependencyException.xml");
+         fail();
+      } catch (XMLModelValidationException e) {
+         assertEquals(1, e.getModelErrors().size());
+         ModelValidationException modelError = e.getModelErrors().get(0);
+         assertTrue(modelError instanceof AuxiliaryNodesCycleDependencyException);
+         assertEquals(Arrays.asList("AN0001", "AN0002"), e.getXMLNodeIds(modelError));
+      } catch (Exception e) {
+         fail();
+      }
+      
+      // (3) UselessNodeException -> XML node Id
+      try {
+         XMLModelReader.readXMLModelReportingAllErrors("./testResources/model_XMLUselessNodeException.xml");
+         fail();
+      } catch (XMLModelValidationException e) {
+         assertEquals(1, e.getModelErrors().size());
+         ModelValidationException modelError = e.getModelErrors().get(0);
+         assertTrue(modelError instanceof UselessNodeException);
+         assertEquals(Arrays.asList("CN0001"), e.getXMLNodeIds(modelError));
+      } catch (Exception e) {
+         fail();
+      }
+      
+      // (4) existing and correct file -> CORRECT
+      try {
+         Model model = XMLModelReader.readXMLModelReportingAllErrors("./testResources/model_small.xml");
+         assertEquals("Model name", model.getModelName());
+      } catch (Exception e) {
+         fail();
+      }
+   }
 }
\ No newline at end of file
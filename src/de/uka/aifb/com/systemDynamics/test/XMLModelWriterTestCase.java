@@ -24,6 +24,7 @@ package de.uka.aifb.com.systemDynamics.test;
 import de.uka.aifb.com.systemDynamics.SystemDynamics;
 import de.uka.aifb.com.systemDynamics.gui.systemDynamicsGraph.*;
 import de.uka.aifb.com.systemDynamics.model.*;
+import de.uka.aifb.com.systemDynamics.test.mocks.ASTElementRecorder;
 import de.uka.aifb.com.systemDynamics.xml.*;
 import java.io.*;
 import java.util.*;
@@ -339,9 +340,11 @@ public class XMLModelWriterTestCase extends TestCase {
       
       for (AuxiliaryNode auxiliaryNode : model.getAuxiliaryNodes()) {
          ASTElement formula = auxiliaryNode.getFormula();
-         Iterator<ASTElement> formulaIterator = formula.iterator();
+         Iterator<ASTElement> formulaIterator =
+            ASTElementRecorder.getElementsInPreorder(formula).iterator();
          ASTElement importedFormula = ((AuxiliaryNode)node2ImportedNode.get(auxiliaryNode)).getFormula();
-         Iterator<ASTElement> importedFormulaIterator = importedFormula.iterator();
+         Iterator<ASTElement> importedFormulaIterator =
+            ASTElementRecorder.getElementsInPreorder(importedFormula).iterator();
          
          while (formulaIterator.hasNext()) {
             ASTElement astElement = formulaIterator.next();
@@ -350,7 +353,7 @@ public class XMLModelWriterTestCase extends TestCase {
             if (astElement instanceof AbstractNode) {
                assertTrue(importedASTElement == node2ImportedNode.get(astElement));
             } else {
-               // ASTMinus, ASTMultiply or ASTPlus
+               // operation
                assertTrue(importedASTElement.getClass() == astElement.getClass());
             }
          }
@@ -358,9 +361,11 @@ public class XMLModelWriterTestCase extends TestCase {
       
       for (RateNode rateNode_ : model.getRateNodes()) {
          ASTElement formula = rateNode_.getFormula();
-         Iterator<ASTElement> formulaIterator = formula.iterator();
+         Iterator<ASTElement> formulaIterator =
+            ASTElementRecorder.getElementsInPreorder(formula).iterator();
          ASTElement importedFormula = ((RateNode)node2ImportedNode.get(rateNode_)).getFormula();
-         Iterator<ASTElement> importedFormulaIterator = importedFormula.iterator();
+         Iterator<ASTElement> importedFormulaIterator =
+            ASTElementRecorder.getElementsInPreorder(importedFormula).iterator();
          
          while (formulaIterator.hasNext()) {
             ASTElement astElement = formulaIterator.next();
@@ -369,7 +374,7 @@ public class XMLModelWriterTestCase extends TestCase {
             if (astElement instanceof AbstractNode) {
                assertTrue(importedASTElement == node2ImportedNode.get(astElement));
             } else {
-               // ASTMinus, ASTMultiply or ASTPlus
+               // operation
                assertTrue(importedASTElement.getClass() == astElement.getClass());
             }
          }
@@ -379,6 +384,121 @@ public class XMLModelWriterTestCase extends TestCase {
       assertTrue(new File(FILE_NAME).delete());
    }
    
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.xml.XMLModelWriter#writeXMLModel(Model, String)}
+    * for formulas containing divisions, minimums, maximums and roundings.
+    */
+   public void testWriteXMLModel9() {
+      Model model = new Model();
+      model.setModelName("Model name");
+      
+      LevelNode levelNode = model.createLevelNode("Level node", 10);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      RateNode rateNode = model.createRateNode("Rate node");
+      AuxiliaryNode auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      ConstantNode constantNodeA = model.createConstantNode("Constant node A", 3);
+      ConstantNode constantNodeB = model.createConstantNode("Constant node B", 0.5);
+      
+      model.addFlowFromLevelNode2RateNode(levelNode, rateNode);
+      model.addFlowFromRateNode2SourceSinkNode(rateNode, sourceSinkNode);
+      model.setFormula(auxiliaryNode, new ASTDivide(levelNode, constantNodeA));
+      model.setFormula(rateNode, new ASTMax(new ASTMin(auxiliaryNode, constantNodeA),
+                                            new ASTRound(constantNodeB, constantNodeA)));
+      
+      try {
+         XMLModelWriter.writeXMLModel(model, FILE_NAME);
+      } catch (Exception e) {
+         fail();
+      }
+      
+      Model importedModel = null;
+      try {
+         importedModel = XMLModelReader.readXMLModel(FILE_NAME);
+      } catch (Exception e) {
+         fail();
+      }
+      
+      assertTrue(importedModel.getAuxiliaryNodes().size() == 1);
+      ASTElement importedFormula = importedModel.getAuxiliaryNodes().iterator().next().getFormula();
+      assertTrue(importedFormula instanceof ASTDivide);
+      assertEquals(auxiliaryNode.getFormula().getStringRepresentation(),
+                   importedFormula.getStringRepresentation());
+      
+      assertTrue(importedModel.getRateNodes().size() == 1);
+      importedFormula = importedModel.getRateNodes().iterator().next().getFormula();
+      Iterator<ASTElement> formulaIterator =
+         ASTElementRecorder.getElementsInPreorder(rateNode.getFormula()).iterator();
+      Iterator<ASTElement> importedFormulaIterator =
+         ASTElementRecorder.getElementsInPreorder(importedFormula).iterator();
+      while (formulaIterator.hasNext()) {
+         assertTrue(importedFormulaIterator.next().getClass() == formulaIterator.next().getClass());
+      }
+      assertFalse(importedFormulaIterator.hasNext());
+      assertEquals(rateNode.getFormula().getStringRepresentation(),
+                   importedFormula.getStringRepresentation());
+      
+      // delete temporary XML file
+      assertTrue(new File(FILE_NAME).delete());
+   }
+   
+   /**
+    * Tests the method
+    * {@link de.uka.aifb.com.systemDynamics.xml.XMLModelWriter#writeXMLModel(Model, String)}
+    * for formulas containing sums and products.
+    */
+   public void testWriteXMLModel10() {
+      Model model = new Model();
+      model.setModelName("Model name");
+      
+      LevelNode levelNode = model.createLevelNode("Level node", 10);
+      SourceSinkNode sourceSinkNode = model.createSourceSinkNode();
+      RateNode rateNode = model.createRateNode("Rate node");
+      AuxiliaryNode auxiliaryNode = model.createAuxiliaryNode("Auxiliary node");
+      ConstantNode constantNodeA = model.createConstantNode("Constant node A", 3);
+      ConstantNode constantNodeB = model.createConstantNode("Constant node B", 0.5);
+      
+      model.addFlowFromLevelNode2RateNode(levelNode, rateNode);
+      model.addFlowFromRateNode2SourceSinkNode(rateNode, sourceSinkNode);
+      model.setFormula(auxiliaryNode,
+                       new ASTSum(new ASTElement[] { levelNode, new ASTMinus(constantNodeA, constantNodeB),
+                                                     new ASTPlus(levelNode, constantNodeA), constantNodeB }));
+      model.setFormula(rateNode,
+                       new ASTProduct(new ASTElement[] { new ASTPlus(auxiliaryNode, constantNodeA),
+                                                         constantNodeB, new ASTMultiply(levelNode, constantNodeB) }));
+      
+      try {
+         XMLModelWriter.writeXMLModel(model, FILE_NAME);
+      } catch (Exception e) {
+         fail();
+      }
+      
+      Model importedModel = null;
+      try {
+         importedModel = XMLModelReader.readXMLModel(FILE_NAME);
+      } catch (Exception e) {
+         fail();
+      }
+      
+      // sums and products are stored as chains of binary operations and read as sums and products
+      assertTrue(importedModel.getAuxiliaryNodes().size() == 1);
+      ASTElement importedFormula = importedModel.getAuxiliaryNodes().iterator().next().getFormula();
+      assertTrue(importedFormula instanceof ASTSum);
+      assertEquals(4, ((ASTSum)importedFormula).getNumberOfOperands());
+      assertEquals(auxiliaryNode.getFormula().getStringRepresentation(),
+                   importedFormula.getStringRepresentation());
+      
+      assertTrue(importedModel.getRateNodes().size() == 1);
+      importedFormula = importedModel.getRateNodes().iterator().next().getFormula();
+      assertTrue(importedFormula instanceof ASTProduct);
+      assertEquals(3, ((ASTProduct)importedFormula).getNumberOfOperands());
+      assertEquals(rateNode.getFormula().getStringRepresentation(),
+                   importedFormula.getStringRepresentation());
+      
+      // delete temporary XML file
+      assertTrue(new File(FILE_NAME).delete());
+   }
+   
    /**
     * Tests the method
     * {@link de.uka.aifb.com.systemDynamics.xml.XMLModelWriter#writeXMLSystemDynamicsGraph(SystemDynamicsGraph, Model, LinkedList, LinkedList, LinkedList, String)}.
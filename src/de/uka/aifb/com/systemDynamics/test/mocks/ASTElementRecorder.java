@@ -0,0 +1,79 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+package de.uka.aifb.com.systemDynamics.test.mocks;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+
+/**
+ * This class implements an AST walker that records all visited AST elements in preorder. Called by
+ * JUnit test cases.
+ * 
+ * @version 1.0
+ */
+public class ASTElementRecorder extends ASTWalker {
+   
+   private List<ASTElement> visitedElements;
+   
+   /**
+    * Constructor.
+    */
+   public ASTElementRecorder() {
+      visitedElements = new LinkedList<ASTElement>();
+   }
+   
+   /**
+    * Returns all AST elements of the specified formula in preorder.
+    * 
+    * @param formula formula
+    * @return all AST elements of the specified formula in preorder
+    */
+   public static List<ASTElement> getElementsInPreorder(ASTElement formula) {
+      if (formula == null) {
+         throw new IllegalArgumentException("'formula' must not be null.");
+      }
+      
+      ASTElementRecorder recorder = new ASTElementRecorder();
+      formula.accept(recorder);
+      return recorder.getVisitedElements();
+   }
+   
+   /**
+    * Gets the visited AST elements in preorder.
+    * 
+    * @return visited AST elements in preorder
+    */
+   public List<ASTElement> getVisitedElements() {
+      return visitedElements;
+   }
+   
+   @Override
+   protected void visitOperation(ASTElement operation) {
+      visitedElements.add(operation);
+   }
+   
+   @Override
+   protected void visitNode(AbstractNode node) {
+      visitedElements.add((ASTElement)node);
+   }
+}
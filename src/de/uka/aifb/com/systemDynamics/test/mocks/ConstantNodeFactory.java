@@ -0,0 +1,65 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+
+
+package de.uka.aifb.com.systemDynamics.test.mocks;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import junit.framework.Assert;
+import junitx.util.PrivateAccessor;
+
+/**
+ * This class creates constant nodes without a model by invoking the private factory method of
+ * class {@link de.uka.aifb.com.systemDynamics.model.ConstantNode}. Called by JUnit test cases.
+ *
+ * @version 1.0
+ */
+public final class ConstantNodeFactory {
+   
+   /**
+    * Private constructor (no instances).
+    */
+   private ConstantNodeFactory() {
+   }
+   
+   /**
+    * Creates a constant node by invoking the private factory method of class ConstantNode.
+    * 
+    * @param nodeName node name
+    * @param constantValue constant value
+    * @return created new instance of class ConstantNode
+    */
+   public static ConstantNode createConstantNode(String nodeName, double constantValue) {
+      ConstantNode node = null;
+      try {
+         node = (ConstantNode)PrivateAccessor.invoke(ConstantNode.class, "createConstantNode",
+                                                     new Class<?>[] { String.class, double.class },
+                                                     new Object[] { nodeName, constantValue });
+      } catch (IllegalArgumentException e) {
+         throw e;
+      } catch (Throwable t) {
+         // no other error/exception other than IllegalArgumentException possible
+         Assert.fail();
+      }
+      return node;
+   }
+}
@@ -105,12 +105,66 @@ public class XMLModelReader {
       System.out.println("Current Working Directory : "+ dir);*/
      
       createModelFromXML(fileName, XSD_FILE_NAME, model, "Model", id2auxiliaryNode, id2constantNode,
-                         id2levelNode, id2rateNode, id2sourceSinkNode);
+                         id2levelNode, id2rateNode, id2sourceSinkNode, true);
      
       setLevelNodes(id2levelNode);
       return model;
    }
    
+   /**
+    * Reads a System Dynamics model stored in an XML file like
+    * {@link #readXMLModel(String)}, but does not stop at the first model error: all errors that
+    * cannot be expressed in the XML Schema are found in one pass (see
+    * {@link de.uka.aifb.com.systemDynamics.model.Model#getModelErrors()}) and reported together
+    * with the XML node Ids of the problematic nodes.
+    * 
+    * @param fileName file name
+    * @return System Dynamics model
+    * @throws XMLModelReaderWriterException if there is any exception (wrapper for inner exception)
+    * @throws XMLModelValidationException if the model has errors
+    * @throws XMLNodeParameterOutOfRangeException if a node parameter is out of range
+    */
+   public static Model readXMLModelReportingAllErrors(String fileName)
+         throws XMLModelReaderWriterException,
+                XMLModelValidationException,
+                XMLNodeParameterOutOfRangeException {
+      if (fileName == null) {
+         throw new IllegalArgumentException("'fileName' must not be null.");
+      }
+      
+      Model model = new Model();
+      
+      HashMap<String, AuxiliaryNode> id2auxiliaryNode = new HashMap<String, AuxiliaryNode>();
+      HashMap<String, ConstantNode> id2constantNode = new HashMap<String, ConstantNode>();
+      HashMap<String, LevelNode> id2levelNode = new HashMap<String, LevelNode>();
+      HashMap<String, RateNode> id2rateNode = new HashMap<String, RateNode>();
+      HashMap<String, SourceSinkNode> id2sourceSinkNode = new HashMap<String, SourceSinkNode>();
+      try {
+         createModelFromXML(fileName, XSD_FILE_NAME, model, "Model", id2auxiliaryNode, id2constantNode,
+                            id2levelNode, id2rateNode, id2sourceSinkNode, false);
+      } catch (AuxiliaryNodesCycleDependencyException e) {
+         // model is not validated -> no exception
+         throw new XMLModelReaderWriterException(e);
+      } catch (XMLRateNodeFlowException e) {
+         // model is not validated -> no exception
+         throw new XMLModelReaderWriterException(e);
+      } catch (XMLUselessNodeException e) {
+         // model is not validated -> no exception
+         throw new XMLModelReaderWriterException(e);
+      }
+      
+      List<ModelValidationException> modelErrors = model.getModelErrors();
+      if (!modelErrors.isEmpty()) {
+         throw new XMLModelValidationException(modelErrors,
+                                               createNode2IdMapping(id2auxiliaryNode, id2constantNode,
+                                                                    id2levelNode, id2rateNode,
+                                                                    id2sourceSinkNode));
+      }
+      
+      setLevelNodes(id2levelNode);
+      return model;
+   }
+   
    public static void setLevelNodes(HashMap<String, LevelNode> id2levelNode){
 	   HashMap<String,String> levelNodes = new HashMap<String,String>();
 	      Iterator itMap= id2levelNode.entrySet().iterator();
@@ -185,7 +239,7 @@ public class XMLModelReader {
    
    /**
     * Creates (i.e. completes) a model (given as an input parameter) from the specified XML file.
-    * The model is validated at the end of this method. 
+    * If specified, the model is validated at the end of this method. 
     * 
     * @param fileString XML file name
     * @param xsdFileString XSD file name
@@ -196,6 +250,7 @@ public class XMLModelReader {
     * @param id2levelNode id to level node mapping
     * @param id2rateNode id to rate node mapping
     * @param id2sourceSinkNode id to source/sink node mapping
+    * @param validateModel <code>true</code> iff the model should be validated
     * @throws AuxiliaryNodesCycleDependencyException if the model's auxiliary nodes have a cycle
     *                                                dependency
     * @throws XMLModelReaderWriterException if there is any exception (wrapper for inner exception)
@@ -209,7 +264,8 @@ public class XMLModelReader {
                                             HashMap<String, ConstantNode> id2constantNode,
                                             HashMap<String, LevelNode> id2levelNode,
                                             HashMap<String, RateNode> id2rateNode,
-                                            HashMap<String, SourceSinkNode> id2sourceSinkNode)
+                                            HashMap<String, SourceSinkNode> id2sourceSinkNode,
+                                            boolean validateModel)
          throws AuxiliaryNodesCycleDependencyException,
                 XMLModelReaderWriterException,
                 XMLNodeParameterOutOfRangeException,
@@ -505,35 +561,25 @@ public class XMLModelReader {
          throw new XMLModelReaderWriterException(e);
       }
       
+      if (!validateModel) {
+         return;
+      }
+      
       // is model valide? (check for errors that cannot be expressed in the XML Schema)
       try {
          model.validateModel();
       } catch (RateNodeFlowException e) {
-         // search problematic rate node ID
-         RateNode problematicRateNode = e.getProblematicRateNode();
-         for (String id : id2rateNode.keySet()) {
-            if (id2rateNode.get(id) == problematicRateNode) {
-               throw new XMLRateNodeFlowException(id);
-            }
-         }
+         // problematic rate node ID
+         throw new XMLRateNodeFlowException(createNode2IdMapping(id2auxiliaryNode, id2constantNode,
+                                                                 id2levelNode, id2rateNode,
+                                                                 id2sourceSinkNode)
+                                               .get(e.getProblematicRateNode()));
       } catch (UselessNodeException e) {
-         // search problematic node ID (only constant, auxiliary or source/sink node possible!)
-         AbstractNode problematicNode = e.getUselessNode();
-         for (String id : id2constantNode.keySet()) {
-            if (id2constantNode.get(id) == problematicNode) {
-               throw new XMLUselessNodeException(id);
-            }
-         }
-         for (String id : id2auxiliaryNode.keySet()) {
-            if (id2auxiliaryNode.get(id) == problematicNode) {
-               throw new XMLUselessNodeException(id);
-            }
-         }
-         for (String id : id2sourceSinkNode.keySet()) {
-            if (id2sourceSinkNode.get(id) == problematicNode) {
-               throw new XMLUselessNodeException(id);
-            }
-         }
+         // problematic node ID (only constant, auxiliary or source/sink node possible!)
+         throw new XMLUselessNodeException(createNode2IdMapping(id2auxiliaryNode, id2constantNode,
+                                                                id2levelNode, id2rateNode,
+                                                                id2sourceSinkNode)
+                                              .get(e.getUselessNode()));
       } catch (NoFormulaException e) {
          // that must not happen -> SAXException is thrown earlier
          throw new XMLModelReaderWriterException(e);
@@ -543,6 +589,41 @@ public class XMLModelReader {
       }
    }
    
+   /**
+    * Creates the node to id mapping, i.e. the back-references of the specified id to node mappings.
+    * With it, the XML node Id of a problematic node is found in constant time.
+    * 
+    * @param id2auxiliaryNode id to auxiliary node mapping
+    * @param id2constantNode id to constant node mapping
+    * @param id2levelNode id to level node mapping
+    * @param id2rateNode id to rate node mapping
+    * @param id2sourceSinkNode id to source/sink node mapping
+    * @return node to id mapping
+    */
+   private static HashMap<AbstractNode, String> createNode2IdMapping(HashMap<String, AuxiliaryNode> id2auxiliaryNode,
+                                                                     HashMap<String, ConstantNode> id2constantNode,
+                                                                     HashMap<String, LevelNode> id2levelNode,
+                                                                     HashMap<String, RateNode> id2rateNode,
+                                                                     HashMap<String, SourceSinkNode> id2sourceSinkNode) {
+      HashMap<AbstractNode, String> node2id = new HashMap<AbstractNode, String>();
+      for (String id : id2auxiliaryNode.keySet()) {
+         node2id.put(id2auxiliaryNode.get(id), id);
+      }
+      for (String id : id2constantNode.keySet()) {
+         node2id.put(id2constantNode.get(id), id);
+      }
+      for (String id : id2levelNode.keySet()) {
+         node2id.put(id2levelNode.get(id), id);
+      }
+      for (String id : id2rateNode.keySet()) {
+         node2id.put(id2rateNode.get(id), id);
+      }
+      for (String id : id2sourceSinkNode.keySet()) {
+         node2id.put(id2sourceSinkNode.get(id), id);
+      }
+      return node2id;
+   }
+   
    /**
     * Creates (i.e. completes) a model (given as an input parameter) from the specified XML file.
     * The model is validated at the end of this method. 
@@ -823,6 +904,9 @@ public class XMLModelReader {
       }
       
       // (2) set formulas (and dependency edges)
+      ASTDependencyCollector dependencyCollector = new ASTDependencyCollector();
+      HashSet<AbstractNode> formulaNodes = new HashSet<AbstractNode>();
+      
       // (2a) set formulas of auxiliary nodes
       try {
          NodeList auxiliaryNodeElements =
@@ -836,7 +920,9 @@ public class XMLModelReader {
             ASTElement formula = createFormula(formulaElement, id2auxiliaryNode, id2constantNode,
                                                id2levelNode, id2rateNode);
             graph.setFormula(id2auxiliaryNodeGraphCell.get(id), formula, false);
-            for (AbstractNode node : formula.getAllNodesInASTSubtree()) {
+            formulaNodes.clear();
+            dependencyCollector.collectNodes(formula, formulaNodes);
+            for (AbstractNode node : formulaNodes) {
                graphLayout.createEdge(abstractNode2Vertex.get(node), graphCell2Vertex.get(id2auxiliaryNodeGraphCell.get(id)));
             }
          }
@@ -858,7 +944,9 @@ public class XMLModelReader {
             ASTElement formula = createFormula(formulaElement, id2auxiliaryNode, id2constantNode,
                                                id2levelNode, id2rateNode);
             graph.setFormula(id2rateNodeGraphCell.get(id), formula, false);
-            for (AbstractNode node : formula.getAllNodesInASTSubtree()) {
+            formulaNodes.clear();
+            dependencyCollector.collectNodes(formula, formulaNodes);
+            for (AbstractNode node : formulaNodes) {
                graphLayout.createEdge(abstractNode2Vertex.get(node), graphCell2Vertex.get(id2rateNodeGraphCell.get(id)));
             }
          }
@@ -1024,31 +1112,17 @@ public class XMLModelReader {
       try {
          graph.validateModel();
       } catch (RateNodeFlowException e) {
-         // search problematic rate node ID
-         RateNode problematicRateNode = e.getProblematicRateNode();
-         for (String id : id2rateNode.keySet()) {
-            if (id2rateNode.get(id) == problematicRateNode) {
-               throw new XMLRateNodeFlowException(id);
-            }
-         }
+         // problematic rate node ID
+         throw new XMLRateNodeFlowException(createNode2IdMapping(id2auxiliaryNode, id2constantNode,
+                                                                 id2levelNode, id2rateNode,
+                                                                 id2sourceSinkNode)
+                                               .get(e.getProblematicRateNode()));
       } catch (UselessNodeException e) {
-         // search problematic node ID (only constant, auxiliary or source/sink node possible!)
-         AbstractNode problematicNode = e.getUselessNode();
-         for (String id : id2constantNode.keySet()) {
-            if (id2constantNode.get(id) == problematicNode) {
-               throw new XMLUselessNodeException(id);
-            }
-         }
-         for (String id : id2auxiliaryNode.keySet()) {
-            if (id2auxiliaryNode.get(id) == problematicNode) {
-               throw new XMLUselessNodeException(id);
-            }
-         }
-         for (String id : id2sourceSinkNode.keySet()) {
-            if (id2sourceSinkNode.get(id) == problematicNode) {
-               throw new XMLUselessNodeException(id);
-            }
-         }
+         // problematic node ID (only constant, auxiliary or source/sink node possible!)
+         throw new XMLUselessNodeException(createNode2IdMapping(id2auxiliaryNode, id2constantNode,
+                                                                id2levelNode, id2rateNode,
+                                                                id2sourceSinkNode)
+                                              .get(e.getUselessNode()));
       } catch (NoFormulaException e) {
          // that must not happen -> SAXException is thrown earlier
          throw new XMLModelReaderWriterException(e);
@@ -1452,6 +1526,37 @@ public class XMLModelReader {
          throw new IllegalArgumentException ("'id2rateNode' must not be null.");
       }
       
+      String operationTagName = binaryOperationElement.getTagName();
+      if (operationTagName.equals("ASTPlus") || operationTagName.equals("ASTMultiply")) {
+         // left-nested chain of additions or multiplications -> sum or product (the chain is
+         // walked iteratively, so long chains do not lead to a deep recursion)
+         LinkedList<Element> operandElements = new LinkedList<Element>();
+         Element chainElement = binaryOperationElement;
+         while (chainElement.getTagName().equals(operationTagName)) {
+            ArrayList<Element> childElements = getChildElements(chainElement);
+            operandElements.addFirst(childElements.get(1));
+            chainElement = childElements.get(0);
+         }
+         operandElements.addFirst(chainElement);
+         
+         ArrayList<ASTElement> operands = new ArrayList<ASTElement>(operandElements.size());
+         for (Element operandElement : operandElements) {
+            if (operandElement.getTagName().endsWith("Node")) {
+               operands.add(createNodeFormula(operandElement, id2auxiliaryNode, id2constantNode,
+                                              id2levelNode, id2rateNode));
+            } else {
+               operands.add(createBinaryOperationFormula(operandElement, id2auxiliaryNode,
+                                                         id2constantNode, id2levelNode, id2rateNode));
+            }
+         }
+         
+         if (operationTagName.equals("ASTPlus")) {
+            return ASTSum.createSum(operands);
+         } else {
+            return ASTProduct.createProduct(operands);
+         }
+      }
+      
       boolean firstOperandCreated = false;
 
       ASTElement firstOperand = null;
@@ -1490,26 +1595,37 @@ public class XMLModelReader {
          }
       }
 
-      String tagName = binaryOperationElement.getTagName();
-      if (tagName.equals("ASTMinus")) {
+      if (operationTagName.equals("ASTMinus")) {
          return new ASTMinus(firstOperand, secondOperand);
       }
-      if (tagName.equals("ASTMultiply")) {
-         return new ASTMultiply(firstOperand, secondOperand);
-      }
-      if (tagName.equals("ASTPlus")) {
-         return new ASTPlus(firstOperand, secondOperand);
-      }
-      if (tagName.equals("ASTDivide")) {
+      if (operationTagName.equals("ASTDivide")) {
           return new ASTDivide(firstOperand, secondOperand);
        }
-      if (tagName.equals("ASTRound"))
+      if (operationTagName.equals("ASTRound"))
     	  return new ASTRound(firstOperand, secondOperand);
-      if (tagName.equals("ASTMax"))
+      if (operationTagName.equals("ASTMax"))
     	  return new ASTMax(firstOperand, secondOperand);
-      if (tagName.equals("ASTMin"))
+      if (operationTagName.equals("ASTMin"))
     	  return new ASTMin(firstOperand, secondOperand);
       // will never be reached -> only for compiler!
       return null;
    }
+   
+   /**
+    * Gets the child elements of the specified XML element.
+    * 
+    * @param element XML element
+    * @return child elements (in document order)
+    */
+   private static ArrayList<Element> getChildElements(Element element) {
+      ArrayList<Element> childElements = new ArrayList<Element>();
+      NodeList children = element.getChildNodes();
+      for (int i = 0; i < children.getLength(); i++) {
+         Node child = children.item(i);
+         if (child.getNodeType() == Node.ELEMENT_NODE) {
+            childElements.add((Element)child);
+         }
+      }
+      return childElements;
+   }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+/* ======================================================================================================
+ * SystemDynamics: Java application for modeling, visualization and execution of System Dynamics models
+ * ======================================================================================================
+ *
+ * (C) Copyright 2007-2008, Joachim Melcher, Institut AIFB, Universitaet Karlsruhe (TH), Germany
+ *
+ * Project Info:  http://sourceforge.net/projects/system-dynamics
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA  02110-1301, USA.
+ */
+
+package de.uka.aifb.com.systemDynamics.xml;
+
+import de.uka.aifb.com.systemDynamics.model.*;
+import java.util.*;
+
+/**
+ * This XMLModelValidationException indicates that a model stored in an XML file has model errors
+ * that cannot be expressed in the XML Schema. In contrast to the other XML exceptions, it contains
+ * all model errors, each with the XML node Ids of the problematic nodes.
+ *
+ * @version 1.0
+ */
+public class XMLModelValidationException extends Exception {
+   
+   private static final long serialVersionUID = 1L;
+   
+   private List<ModelValidationException> modelErrors;
+   
+   private HashMap<ModelValidationException, List<String>> modelError2XMLNodeIds;
+   
+   /**
+    * Constructor.
+    * 
+    * @param modelErrors model errors (at least one)
+    * @param node2XMLNodeId node to XML node Id mapping
+    */
+   public XMLModelValidationException(List<ModelValidationException> modelErrors,
+                                      Map<AbstractNode, String> node2XMLNodeId) {
+      super("The model has " + (modelErrors == null ? 0 : modelErrors.size()) + " error(s).");
+      
+      if (modelErrors == null) {
+         throw new IllegalArgumentException("'modelErrors' must not be null.");
+      }
+      if (modelErrors.isEmpty()) {
+         throw new IllegalArgumentException("'modelErrors' must not be empty.");
+      }
+      if (node2XMLNodeId == null) {
+         throw new IllegalArgumentException("'node2XMLNodeId' must not be null.");
+      }
+      
+      this.modelErrors = Collections.unmodifiableList(new ArrayList<ModelValidationException>(modelErrors));
+      modelError2XMLNodeIds = new HashMap<ModelValidationException, List<String>>();
+      for (ModelValidationException modelError : modelErrors) {
+         ArrayList<String> xmlNodeIds = new ArrayList<String>();
+         for (AbstractNode node : modelError.getProblematicNodes()) {
+            xmlNodeIds.add(node2XMLNodeId.get(node));
+         }
+         modelError2XMLNodeIds.put(modelError, Collections.unmodifiableList(xmlNodeIds));
+      }
+   }
+   
+   /**
+    * Gets all model errors.
+    * 
+    * @return model errors
+    */
+   public List<ModelValidationException> getModelErrors() {
+      return modelErrors;
+   }
+   
+   /**
+    * Gets the XML node Ids of the problematic nodes of the specified model error.
+    * 
+    * @param modelError model error of this exception
+    * @return XML node Ids (in the order of
+    *         {@link de.uka.aifb.com.systemDynamics.model.ModelValidationException#getProblematicNodes()})
+    */
+   public List<String> getXMLNodeIds(ModelValidationException modelError) {
+      if (modelError == null) {
+         throw new IllegalArgumentException("'modelError' must not be null.");
+      }
+      
+      List<String> xmlNodeIds = modelError2XMLNodeIds.get(modelError);
+      if (xmlNodeIds == null) {
+         throw new IllegalArgumentException("'modelError' must be a model error of this exception.");
+      }
+      return xmlNodeIds;
+   }
+}
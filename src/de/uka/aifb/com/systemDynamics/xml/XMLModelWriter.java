@@ -756,76 +756,7 @@ public class XMLModelWriter {
          throw new IllegalArgumentException("'node2Id' must not be null.");
       }
 
-      Iterator<ASTElement> iterator = formula.iterator();
-      ASTElement rootASTElement = iterator.next();
-
-      if (rootASTElement instanceof AbstractNode) {
-         return createXMLForAbstractNode(document, (AbstractNode)rootASTElement, node2Id);
-      } else {
-         // ASTPlus, ASTMinus or ASTMultiply
-         return createXMLForBinaryOperation(document, rootASTElement, iterator, node2Id);
-      }
-   }
-
-   /**
-    * Creates the XML DOM subtree for the specified binary operation.
-    *
-    * @param document DOM document
-    * @param binaryOperation binary operation
-    * @param iterator iterator (at current position in formula tree)
-    * @param node2Id node to Id mapping
-    * @return XML DOM subtree for the specified binary operation
-    */
-   private static Element createXMLForBinaryOperation(Document document, ASTElement binaryOperation,
-                                               Iterator<ASTElement> iterator,
-                                               HashMap<AbstractNode, String> node2Id) {
-      if (document == null) {
-         throw new IllegalArgumentException("'document' must not be null.");
-      }
-      if (binaryOperation == null) {
-         throw new IllegalArgumentException("'binaryOperation' must not be null.");
-      }
-      if (binaryOperation instanceof AbstractNode) {
-         throw new IllegalArgumentException("'binaryOperation' must bot be instance of AbstractNode.");
-      }
-      if (iterator == null) {
-         throw new IllegalArgumentException("'iterator' must not be null.");
-      }
-      if (node2Id == null) {
-         throw new IllegalArgumentException("'node2Id' must not be null.");
-      }
-
-      // root of subtree
-      Element binaryOperationElement = null;
-      if (binaryOperation instanceof ASTMinus) {
-         binaryOperationElement = document.createElement("ASTMinus");
-      }
-      if (binaryOperation instanceof ASTMultiply) {
-         binaryOperationElement = document.createElement("ASTMultiply");
-      }
-      if (binaryOperation instanceof ASTPlus) {
-         binaryOperationElement = document.createElement("ASTPlus");
-      }
-
-      // left subtree
-      ASTElement leftASTElement = iterator.next();
-      if (leftASTElement instanceof AbstractNode) {
-         binaryOperationElement.appendChild(createXMLForAbstractNode(document, (AbstractNode)leftASTElement, node2Id));
-      } else {
-         // ASTPlus, ASTMinus or ASTMultiply
-         binaryOperationElement.appendChild(createXMLForBinaryOperation(document, leftASTElement, iterator, node2Id));
-      }
-
-      // right subtree
-      ASTElement rightASTElement = iterator.next();
-      if (rightASTElement instanceof AbstractNode) {
-         binaryOperationElement.appendChild(createXMLForAbstractNode(document, (AbstractNode)rightASTElement, node2Id));
-      } else {
-         // ASTPlus, ASTMinus or ASTMultiply
-         binaryOperationElement.appendChild(createXMLForBinaryOperation(document, rightASTElement, iterator, node2Id));
-      }
-
-      return binaryOperationElement;
+      return new FormulaXMLCreator(document, node2Id).createXML(formula);
    }
 
    /**
@@ -871,4 +802,143 @@ public class XMLModelWriter {
       // not reachable -> just for compiler!
       return null;
    }
+
+   /**
+    * Inner class implementing an {@link de.uka.aifb.com.systemDynamics.model.ASTVisitor} which
+    * creates the XML DOM subtree for a formula.
+    */
+   private static class FormulaXMLCreator implements ASTVisitor {
+
+      private Document document;
+      private HashMap<AbstractNode, String> node2Id;
+
+      /** XML DOM subtree for the last visited AST element */
+      private Element element;
+
+      /**
+       * Constructor.
+       *
+       * @param document DOM document
+       * @param node2Id node to Id mapping
+       */
+      private FormulaXMLCreator(Document document, HashMap<AbstractNode, String> node2Id) {
+         if (document == null) {
+            throw new IllegalArgumentException("'document' must not be null.");
+         }
+         if (node2Id == null) {
+            throw new IllegalArgumentException("'node2Id' must not be null.");
+         }
+
+         this.document = document;
+         this.node2Id = node2Id;
+      }
+
+      /**
+       * Creates the XML DOM subtree for the specified AST element.
+       *
+       * @param astElement AST element
+       * @return XML DOM subtree for the specified AST element
+       */
+      private Element createXML(ASTElement astElement) {
+         astElement.accept(this);
+         return element;
+      }
+
+      /**
+       * Creates the XML DOM subtree for a binary operation.
+       *
+       * @param tagName tag name of the binary operation
+       * @param leftElement left operand
+       * @param rightElement right operand
+       */
+      private void createXMLForBinaryOperation(String tagName, ASTElement leftElement,
+                                               ASTElement rightElement) {
+         Element binaryOperationElement = document.createElement(tagName);
+         binaryOperationElement.appendChild(createXML(leftElement));
+         binaryOperationElement.appendChild(createXML(rightElement));
+         element = binaryOperationElement;
+      }
+
+      /**
+       * Creates the XML DOM subtree for a sum or product, i.e. the equivalent left-nested chain of
+       * binary operations. The chain is built iteratively.
+       *
+       * @param tagName tag name of the binary operation
+       * @param operands operands (at least two)
+       */
+      private void createXMLForChain(String tagName, ASTElement[] operands) {
+         Element chainElement = document.createElement(tagName);
+         chainElement.appendChild(createXML(operands[0]));
+         chainElement.appendChild(createXML(operands[1]));
+         for (int i = 2; i < operands.length; i++) {
+            Element binaryOperationElement = document.createElement(tagName);
+            binaryOperationElement.appendChild(chainElement);
+            binaryOperationElement.appendChild(createXML(operands[i]));
+            chainElement = binaryOperationElement;
+         }
+         element = chainElement;
+      }
+
+      public void visit(ASTPlus astPlus) {
+         createXMLForBinaryOperation("ASTPlus", astPlus.getLeftElement(), astPlus.getRightElement());
+      }
+
+      public void visit(ASTMinus astMinus) {
+         createXMLForBinaryOperation("ASTMinus", astMinus.getLeftElement(), astMinus.getRightElement());
+      }
+
+      public void visit(ASTMultiply astMultiply) {
+         createXMLForBinaryOperation("ASTMultiply", astMultiply.getLeftElement(),
+                                     astMultiply.getRightElement());
+      }
+
+      public void visit(ASTSum astSum) {
+         ASTElement[] summands = new ASTElement[astSum.getNumberOfOperands()];
+         for (int i = 0; i < summands.length; i++) {
+            summands[i] = astSum.getOperand(i);
+         }
+         createXMLForChain("ASTPlus", summands);
+      }
+
+      public void visit(ASTProduct astProduct) {
+         ASTElement[] factors = new ASTElement[astProduct.getNumberOfOperands()];
+         for (int i = 0; i < factors.length; i++) {
+            factors[i] = astProduct.getOperand(i);
+         }
+         createXMLForChain("ASTMultiply", factors);
+      }
+
+      public void visit(ASTDivide astDivide) {
+         createXMLForBinaryOperation("ASTDivide", astDivide.getLeftElement(), astDivide.getRightElement());
+      }
+
+      public void visit(ASTMin astMin) {
+         createXMLForBinaryOperation("ASTMin", astMin.getLeftElement(), astMin.getRightElement());
+      }
+
+      public void visit(ASTMax astMax) {
+         createXMLForBinaryOperation("ASTMax", astMax.getLeftElement(), astMax.getRightElement());
+      }
+
+      public void visit(ASTRound astRound) {
+         createXMLForBinaryOperation("ASTRound", astRound.getLeftElement(), astRound.getRightElement());
+      }
+
+      public void visit(AuxiliaryNode auxiliaryNode) {
+         element = createXMLForAbstractNode(document, auxiliaryNode, node2Id);
+      }
+
+      public void visit(ConstantNode constantNode) {
+         element = createXMLForAbstractNode(document, constantNode, node2Id);
+      }
+
+      public void visit(LevelNode levelNode) {
+         element = createXMLForAbstractNode(document, levelNode, node2Id);
+      }
+      
+      public void visit(ASTLiteral astLiteral) {
+         // literals only occur in optimized formulas, which are never exported
+         throw new IllegalArgumentException("Formulas with literals cannot be written.");
+      }
+   }
 }
\ No newline at end of file